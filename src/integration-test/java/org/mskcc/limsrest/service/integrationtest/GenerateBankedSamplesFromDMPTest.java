@@ -41,6 +41,7 @@ public class GenerateBankedSamplesFromDMPTest {
     public void setUp() throws Exception {
         recordSaverSpy = new RecordSaverSpy();
         generateBankedSamplesFromDMP = new GenerateBankedSamplesFromDMP();
+        generateBankedSamplesFromDMP.setTumorTypeRetriever(tumorTypeRetriever);
     }
 
     @Test
@@ -0,0 +1,465 @@
+package org.mskcc.limsrest.benchmark;
+
+import com.velox.api.datamgmtserver.DataMgmtServer;
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import com.velox.api.workflow.Workflow;
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.MockDataRecord;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * In memory LIMS for benchmarks. Records are DataRecords over a RecordProxy that reads and writes a graph of records
+ * held here, and the DataRecordManager answers its queries and bulk calls from the same graph, so the services run
+ * unchanged. The DataRecordManager interface is only part of the Velox API artifact, so it is a java.lang.reflect.Proxy
+ * dispatching to plain methods of this class; calls no service makes return null, 0 or false.
+ * <p>
+ * Every call that is a round trip to the real LIMS, i.e. relationship lookups and DataRecordManager calls, is counted
+ * and can be slowed down by roundTripMicros to see how a code path scales with LIMS latency.
+ */
+public class FakeLims {
+    private static final Pattern EQUALS = Pattern.compile("(\\w+)\\s*=\\s*(?:'([^']*)'|(-?\\d+))");
+    private static final Pattern GREATER = Pattern.compile("(\\w+)\\s*>\\s*(-?\\d+)");
+    private static final Pattern IN = Pattern.compile("(?i)(\\w+)\\s+in\\s*\\((.*)\\)");
+    private static final Pattern LIKE = Pattern.compile("(?i)(\\w+)\\s+like\\s*'([^']*)'");
+
+    private final long roundTripNanos;
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final Map<String, List<Record>> byType = new HashMap<>();
+    private final Map<Long, Record> byId = new HashMap<>();
+    private final List<Workflow> workflows = new ArrayList<>();
+    private long nextRecordId = 1;
+
+    private final User user;
+    private final DataRecordManager dataRecordManager;
+    private final DataMgmtServer dataMgmtServer;
+    private final VeloxConnection veloxConnection;
+    private final ConnectionLIMS connection;
+
+    public FakeLims(long roundTripMicros) {
+        this.roundTripNanos = roundTripMicros * 1000;
+        this.user = mock(User.class);
+        when(user.getUsername()).thenReturn("benchmark");
+        this.dataRecordManager = (DataRecordManager) Proxy.newProxyInstance(DataRecordManager.class.getClassLoader(),
+                new Class<?>[]{DataRecordManager.class}, this::invokeManager);
+        this.dataMgmtServer = mock(DataMgmtServer.class, RETURNS_DEEP_STUBS);
+        try {
+            when(dataMgmtServer.getWorkflowManager(user).getLatestWorkflowList(user)).thenReturn(workflows);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        this.veloxConnection = mock(VeloxConnection.class);
+        when(veloxConnection.getUser()).thenReturn(user);
+        when(veloxConnection.getDataRecordManager()).thenReturn(dataRecordManager);
+        when(veloxConnection.getDataMgmtServer()).thenReturn(dataMgmtServer);
+
+        ConnectionLIMS.Lease lease = mock(ConnectionLIMS.Lease.class);
+        when(lease.getConnection()).thenReturn(veloxConnection);
+        when(lease.getUser()).thenReturn(user);
+        when(lease.getDataRecordManager()).thenReturn(dataRecordManager);
+        when(lease.getDataMgmtServer()).thenReturn(dataMgmtServer);
+        this.connection = mock(ConnectionLIMS.class);
+        when(connection.lease()).thenReturn(lease);
+        when(connection.getConnection()).thenReturn(veloxConnection);
+    }
+
+    public synchronized DataRecord add(String dataType, Map<String, Object> fields) {
+        Record record = new Record(nextRecordId++, dataType);
+        record.fields.putAll(fields);
+        record.fields.put("RecordId", record.id);
+        record.dataRecord = new DataRecord(record.id, dataType, new RecordProxy(record));
+        byType.computeIfAbsent(dataType, k -> new ArrayList<>()).add(record);
+        byId.put(record.id, record);
+        return record.dataRecord;
+    }
+
+    public synchronized void link(DataRecord parent, DataRecord child) {
+        link(record(parent), record(child));
+    }
+
+    private synchronized void link(Record parent, Record child) {
+        parent.children.add(child);
+        child.parents.add(parent);
+    }
+
+    /**
+     * Adds a LIMS workflow, Sample statuses of the workflow map to the stage in @shortDesc.
+     */
+    public void addWorkflow(String workflowName, String shortDesc) {
+        Workflow workflow = mock(Workflow.class);
+        when(workflow.getWorkflowName()).thenReturn(workflowName);
+        when(workflow.getShortDesc()).thenReturn(shortDesc);
+        workflows.add(workflow);
+    }
+
+    public long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public DataRecordManager getDataRecordManager() {
+        return dataRecordManager;
+    }
+
+    public VeloxConnection getVeloxConnection() {
+        return veloxConnection;
+    }
+
+    public ConnectionLIMS getConnection() {
+        return connection;
+    }
+
+    private void roundTrip() {
+        roundTrips.incrementAndGet();
+        if (roundTripNanos > 0)
+            LockSupport.parkNanos(roundTripNanos);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object invokeManager(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "queryDataRecords":
+                roundTrip();
+                if (args.length == 4 && args[2] instanceof List)
+                    return query((String) args[0], in((String) args[1], (List<?>) args[2]));
+                return query((String) args[0], where((String) args[1]));
+            case "getFieldsForRecords":
+                roundTrip();
+                List<Map<String, Object>> fields = new ArrayList<>();
+                for (DataRecord record : (List<DataRecord>) args[0])
+                    fields.add(new HashMap<>(record(record).fields));
+                return fields;
+            case "getValueList":
+                roundTrip();
+                List<Object> values = new ArrayList<>();
+                for (DataRecord record : (List<DataRecord>) args[0])
+                    values.add(record(record).fields.get((String) args[1]));
+                return values;
+            case "getChildrenOfType":
+                roundTrip();
+                return related((List<DataRecord>) args[0], r -> r.children, (String) args[1]);
+            case "getParentsOfType":
+                roundTrip();
+                return related((List<DataRecord>) args[0], r -> r.parents, (String) args[1]);
+            case "getDescendantsOfType":
+                roundTrip();
+                return related((List<DataRecord>) args[0], r -> walk(r, x -> x.children), (String) args[1]);
+            case "getAncestorsOfType":
+                roundTrip();
+                return related((List<DataRecord>) args[0], r -> walk(r, x -> x.parents), (String) args[1]);
+            case "getFieldsForChildrenOfType":
+                roundTrip();
+                return relatedFields((List<DataRecord>) args[0], r -> r.children, (String) args[1]);
+            case "getFieldsForParentsOfType":
+                roundTrip();
+                return relatedFields((List<DataRecord>) args[0], r -> r.parents, (String) args[1]);
+            case "getFieldsForDescendantsOfType":
+                roundTrip();
+                return relatedFields((List<DataRecord>) args[0], r -> walk(r, x -> x.children), (String) args[1]);
+            case "addDataRecord":
+                roundTrip();
+                return add((String) args[0], Collections.emptyMap());
+            case "storeAndCommit":
+                roundTrip();
+                return null;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "FakeLims DataRecordManager";
+            default:
+                return defaultValue(method.getReturnType());
+        }
+    }
+
+    private synchronized List<DataRecord> query(String dataType, Predicate<Record> predicate) {
+        List<DataRecord> matches = new ArrayList<>();
+        for (Record record : byType.getOrDefault(dataType, Collections.emptyList())) {
+            if (predicate.test(record))
+                matches.add(record.dataRecord);
+        }
+        return matches;
+    }
+
+    private synchronized List<List<DataRecord>> related(List<DataRecord> records,
+                                                        Function<Record, Collection<Record>> relation,
+                                                        String dataType) {
+        List<List<DataRecord>> result = new ArrayList<>();
+        for (DataRecord record : records)
+            result.add(ofType(relation.apply(record(record)), dataType));
+        return result;
+    }
+
+    private synchronized List<List<Map<String, Object>>> relatedFields(List<DataRecord> records,
+                                                                       Function<Record, Collection<Record>> relation,
+                                                                       String dataType) {
+        List<List<Map<String, Object>>> result = new ArrayList<>();
+        for (DataRecord record : records) {
+            List<Map<String, Object>> fields = new ArrayList<>();
+            for (Record r : relation.apply(record(record))) {
+                if (r.type.equals(dataType))
+                    fields.add(new HashMap<>(r.fields));
+            }
+            result.add(fields);
+        }
+        return result;
+    }
+
+    private synchronized Record record(DataRecord record) {
+        return byId.get(record.getRecordId());
+    }
+
+    /**
+     * Supports the where clauses the services use: "=", ">", "in" and "like" joined by "and".
+     */
+    static Predicate<Record> where(String whereClause) {
+        Predicate<Record> predicate = r -> true;
+        for (String condition : whereClause.split("(?i)\\s+and\\s+")) {
+            predicate = predicate.and(condition(condition.trim()));
+        }
+        return predicate;
+    }
+
+    private static Predicate<Record> condition(String condition) {
+        Matcher m = IN.matcher(condition);
+        if (m.matches()) {
+            List<String> values = new ArrayList<>();
+            for (String value : m.group(2).split(","))
+                values.add(value.trim().replaceAll("^'|'$", ""));
+            return in(m.group(1), values);
+        }
+        m = LIKE.matcher(condition);
+        if (m.matches()) {
+            Pattern like = Pattern.compile(Pattern.quote(m.group(2)).replace("%", "\\E.*\\Q"));
+            String field = m.group(1);
+            return r -> r.fields.get(field) != null && like.matcher(r.fields.get(field).toString()).matches();
+        }
+        m = GREATER.matcher(condition);
+        if (m.matches()) {
+            String field = m.group(1);
+            long min = Long.parseLong(m.group(2));
+            return r -> r.fields.get(field) instanceof Number && ((Number) r.fields.get(field)).longValue() > min;
+        }
+        m = EQUALS.matcher(condition);
+        if (m.matches()) {
+            String field = m.group(1);
+            String value = m.group(2) != null ? m.group(2) : m.group(3);
+            return r -> r.fields.get(field) != null && r.fields.get(field).toString().equals(value);
+        }
+        throw new IllegalArgumentException("FakeLims does not support the condition: " + condition);
+    }
+
+    private static Predicate<Record> in(String field, List<?> values) {
+        Set<String> valueSet = new HashSet<>();
+        for (Object value : values)
+            valueSet.add(String.valueOf(value));
+        return r -> r.fields.get(field) != null && valueSet.contains(r.fields.get(field).toString());
+    }
+
+    private static Collection<Record> walk(Record start,
+                                           Function<Record, List<Record>> next) {
+        Set<Record> visited = new LinkedHashSet<>();
+        Deque<Record> queue = new ArrayDeque<>(next.apply(start));
+        while (!queue.isEmpty()) {
+            Record r = queue.poll();
+            if (visited.add(r))
+                queue.addAll(next.apply(r));
+        }
+        return visited;
+    }
+
+    // null dataType for all records
+    private static List<DataRecord> ofType(Collection<Record> records, String dataType) {
+        List<DataRecord> matches = new ArrayList<>();
+        for (Record r : records) {
+            if (dataType == null || r.type.equals(dataType))
+                matches.add(r.dataRecord);
+        }
+        return matches;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class)
+            return null;
+        if (type == boolean.class)
+            return false;
+        if (type == char.class)
+            return '\0';
+        if (type == long.class)
+            return 0L;
+        if (type == int.class)
+            return 0;
+        if (type == short.class)
+            return (short) 0;
+        if (type == byte.class)
+            return (byte) 0;
+        if (type == double.class)
+            return 0.0;
+        return 0.0f;
+    }
+
+    /**
+     * The fields and links of one record, relationship lookups count as round trips.
+     */
+    private class RecordProxy extends MockDataRecord {
+        private final Record record;
+
+        RecordProxy(Record record) {
+            this.record = record;
+        }
+
+        @Override
+        public Object getDataField(long recordId, String dataTypeName, String dataFieldName, User user) {
+            return record.fields.get(dataFieldName);
+        }
+
+        @Override
+        public void setDataField(long recordId, String dataTypeName, String dataFieldName, Object newValue, User user) {
+            record.fields.put(dataFieldName, newValue);
+        }
+
+        @Override
+        public Object getValue(long recordId, String dataTypeName, String dataFieldName, User user) {
+            return record.fields.get(dataFieldName);
+        }
+
+        @Override
+        public String getStringVal(long recordId, String dataTypeName, String dataFieldName, User user) {
+            Object value = record.fields.get(dataFieldName);
+            return value == null ? null : value.toString();
+        }
+
+        @Override
+        public String getPickListVal(long recordId, String dataTypeName, String dataFieldName, User user) {
+            return getStringVal(recordId, dataTypeName, dataFieldName, user);
+        }
+
+        @Override
+        public long getLongVal(long recordId, String dataTypeName, String dataFieldName, User user) {
+            return number(dataFieldName).longValue();
+        }
+
+        @Override
+        public long getDateVal(long recordId, String dataTypeName, String dataFieldName, User user) {
+            return number(dataFieldName).longValue();
+        }
+
+        @Override
+        public int getIntegerVal(long recordId, String dataTypeName, String dataFieldName, User user) {
+            return number(dataFieldName).intValue();
+        }
+
+        @Override
+        public short getShortVal(long recordId, String dataTypeName, String dataFieldName, User user) {
+            return number(dataFieldName).shortValue();
+        }
+
+        @Override
+        public double getDoubleVal(long recordId, String dataTypeName, String dataFieldName, User user) {
+            return number(dataFieldName).doubleValue();
+        }
+
+        @Override
+        public boolean getBooleanVal(long recordId, String dataTypeName, String dataFieldName, User user) {
+            return (Boolean) record.fields.get(dataFieldName);
+        }
+
+        @Override
+        public Map<String, Object> getFields(long recordId, String dataTypeName, User user) {
+            return new HashMap<>(record.fields);
+        }
+
+        @Override
+        public void setFields(long recordId, String dataTypeName, Map<String, Object> fields, User user) {
+            record.fields.putAll(fields);
+        }
+
+        @Override
+        public boolean hasChildren(long recordId, String dataTypeName, User user) {
+            roundTrip();
+            return !record.children.isEmpty();
+        }
+
+        @Override
+        public DataRecord[] getChildren(long recordId, String dataTypeName, User user) {
+            roundTrip();
+            return ofType(record.children, null).toArray(new DataRecord[0]);
+        }
+
+        @Override
+        public DataRecord[] getChildrenOfType(long recordId, String dataTypeName, String childTypeName, User user) {
+            roundTrip();
+            return ofType(record.children, childTypeName).toArray(new DataRecord[0]);
+        }
+
+        @Override
+        public List<DataRecord> getParentList(long recordId, String dataTypeName, User user) {
+            roundTrip();
+            return ofType(record.parents, null);
+        }
+
+        @Override
+        public List<DataRecord> getParentsOfType(long recordId, String dataTypeName, String parentTypeName,
+                                                 User user) {
+            roundTrip();
+            return ofType(record.parents, parentTypeName);
+        }
+
+        @Override
+        public List<DataRecord> getDescendantsOfType(long recordId, String dataTypeName, String descendantTypeName,
+                                                     User user) {
+            roundTrip();
+            return ofType(walk(record, r -> r.children), descendantTypeName);
+        }
+
+        @Override
+        public List<DataRecord> getAncestorsOfType(long recordId, String dataTypeName, String ancestorTypeName,
+                                                   User user) {
+            roundTrip();
+            return ofType(walk(record, r -> r.parents), ancestorTypeName);
+        }
+
+        @Override
+        public DataRecord addChild(long recordId, String dataTypeName, DataRecord child, User user) {
+            roundTrip();
+            link(record, record(child));
+            return child;
+        }
+
+        private Number number(String dataFieldName) {
+            return (Number) record.fields.get(dataFieldName);
+        }
+    }
+
+    static class Record {
+        final long id;
+        final String type;
+        final Map<String, Object> fields = new HashMap<>();
+        final List<Record> parents = new ArrayList<>();
+        final List<Record> children = new ArrayList<>();
+        DataRecord dataRecord;
+
+        Record(long id, String type) {
+            this.id = id;
+            this.type = type;
+        }
+    }
+}
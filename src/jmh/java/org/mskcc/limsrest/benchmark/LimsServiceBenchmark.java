@@ -0,0 +1,198 @@
+package org.mskcc.limsrest.benchmark;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.user.User;
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.service.*;
+import org.mskcc.limsrest.service.ngsstats.NgsStatsClient;
+import org.mskcc.limsrest.service.requesttracker.ProjectSample;
+import org.mskcc.limsrest.service.requesttracker.ProjectSampleTree;
+import org.mskcc.limsrest.service.requesttracker.WorkflowSample;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the service paths that walk request trees, run against a FakeLims holding one generated request.
+ * <p>
+ * Besides the time per operation every benchmark reports limsRoundTrips, the calls that would each be a round trip
+ * to the real LIMS. Set roundTripMicros to see how a path behaves with LIMS latency, e.g.
+ * ./gradlew jmh -PjmhArgs="LimsServiceBenchmark -p samples=10,100,500 -p roundTripMicros=200"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LimsServiceBenchmark {
+    private static final String REQUEST_ID = "BENCH_A";
+
+    @Param({"10", "100"})
+    public int samples;
+
+    @Param({"10"})
+    public int samplesPerPool;
+
+    @Param({"0"})
+    public long roundTripMicros;
+
+    private FakeLims lims;
+    private DataRecord request;
+    private String[] igoIds;
+    private List<ProjectSampleTree> trees;
+    private NgsStatsClient ngsStats;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class RoundTrips {
+        public long limsRoundTrips;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        lims = new FakeLims(roundTripMicros);
+        request = new RequestTreeGenerator(lims).generate(REQUEST_ID, samples, samplesPerPool);
+        igoIds = RequestTreeGenerator.igoIds(REQUEST_ID, samples).toArray(new String[0]);
+        ngsStats = new FakeNgsStatsClient();
+
+        trees = new ArrayList<>();
+        for (DataRecord sample : request.getChildrenOfType("Sample", lims.getUser()))
+            trees.add(buildTree(sample));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ngsStats.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> getRequestTracking(RoundTrips roundTrips) throws Exception {
+        long before = lims.getRoundTrips();
+        Map<String, Object> result = new GetRequestTrackingTask(REQUEST_ID, lims.getConnection()).execute();
+        roundTrips.limsRoundTrips += lims.getRoundTrips() - before;
+        return result;
+    }
+
+    @Benchmark
+    public GetSampleManifestTask.SampleManifestResult getSampleManifest(RoundTrips roundTrips) {
+        long before = lims.getRoundTrips();
+        GetSampleManifestTask.SampleManifestResult result =
+                new GetSampleManifestTask(igoIds, lims.getConnection(), ngsStats).execute();
+        roundTrips.limsRoundTrips += lims.getRoundTrips() - before;
+        return result;
+    }
+
+    @Benchmark
+    public List<RequestSummary> getSampleQc(RoundTrips roundTrips) {
+        long before = lims.getRoundTrips();
+        List<RequestSummary> result = new GetSampleQc(new String[]{REQUEST_ID}, lims.getConnection(), ngsStats)
+                .execute();
+        roundTrips.limsRoundTrips += lims.getRoundTrips() - before;
+        return result;
+    }
+
+    @Benchmark
+    public List<ProjectSample> evaluateProjectSamples(RoundTrips roundTrips) {
+        long before = lims.getRoundTrips();
+        List<ProjectSample> projectSamples = new ArrayList<>(trees.size());
+        for (ProjectSampleTree tree : trees)
+            projectSamples.add(tree.evaluateProjectSample());
+        roundTrips.limsRoundTrips += lims.getRoundTrips() - before;
+        return projectSamples;
+    }
+
+    @Benchmark
+    public RequestDetailed annotateRequestDetailed(RoundTrips roundTrips) {
+        long before = lims.getRoundTrips();
+        RequestDetailed requestDetailed = new RequestDetailed(REQUEST_ID);
+        new AnnotateTask(lims.getUser()).annotateRequestDetailed(requestDetailed, request);
+        roundTrips.limsRoundTrips += lims.getRoundTrips() - before;
+        return requestDetailed;
+    }
+
+    /**
+     * Builds the tree of a sample the way GetRequestTrackingTask does, without the batch loading of its children.
+     */
+    private ProjectSampleTree buildTree(DataRecord record) throws Exception {
+        WorkflowSample root = new WorkflowSample(record, lims.getConnection());
+        ProjectSampleTree tree = new ProjectSampleTree(root, lims.getUser());
+        tree.addSample(root);
+        addSubtree(root, tree);
+        return tree;
+    }
+
+    private void addSubtree(WorkflowSample node, ProjectSampleTree tree) throws Exception {
+        tree.addStageToTracked(node);
+        DataRecord[] children = node.getRecord().getChildrenOfType("Sample", lims.getUser());
+        if (children.length == 0) {
+            tree.updateTreeOnLeafStatus(node);
+            return;
+        }
+        node.setComplete(Boolean.TRUE);
+        for (DataRecord record : children) {
+            WorkflowSample child = new WorkflowSample(record, lims.getConnection());
+            child.setParent(node);
+            node.addChild(child);
+            tree.addSample(child);
+            addSubtree(child, tree);
+        }
+    }
+
+    /**
+     * LimsTask with the session fields set so its annotate methods can be called directly.
+     */
+    private static class AnnotateTask extends LimsTask {
+        AnnotateTask(User user) {
+            this.user = user;
+        }
+
+        @Override
+        public Object execute(VeloxConnection conn) {
+            return null;
+        }
+    }
+
+    /**
+     * ngs-stats answers without the network, every sample has one fastq on the generated run.
+     */
+    private static class FakeNgsStatsClient extends NgsStatsClient {
+        FakeNgsStatsClient() {
+            super("http://localhost/", 1, 1000, 1000, 0, 0, 0, 0);
+        }
+
+        @Override
+        public List<ArchivedFastq> getFastqsByIgoId(String igoId) {
+            return Collections.singletonList(fastq(igoId));
+        }
+
+        @Override
+        public List<ArchivedFastq> getMostRecentFastqPaths(String run, String sampleName) {
+            return Collections.singletonList(fastq(sampleName));
+        }
+
+        @Override
+        public List<ArchivedFastq> getPooledNormals(String request) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<QCSiteStats> getPooledNormalStats(String run) {
+            return Collections.emptyList();
+        }
+
+        private static ArchivedFastq fastq(String sample) {
+            ArchivedFastq fastq = new ArchivedFastq();
+            fastq.setRun(RequestTreeGenerator.RUN);
+            fastq.setRunBaseDirectory(RequestTreeGenerator.RUN);
+            fastq.setProject("Project_" + REQUEST_ID);
+            fastq.setSample(sample);
+            fastq.setFastq("/igo/delivery/FASTQ/" + RequestTreeGenerator.RUN + "/Project_" + REQUEST_ID + "/Sample_"
+                    + sample + "_IGO_" + sample + "/" + sample + "_S1_R1_001.fastq.gz");
+            fastq.setFastqLastModified(new Date());
+            return fastq;
+        }
+    }
+}
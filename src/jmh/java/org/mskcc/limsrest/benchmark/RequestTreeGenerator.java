@@ -0,0 +1,139 @@
+package org.mskcc.limsrest.benchmark;
+
+import com.velox.api.datarecord.DataRecord;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mskcc.limsrest.util.StatusTrackerConfig.*;
+
+/**
+ * Generates a sequencing request in a FakeLims shaped like the trees IGO creates for a whole exome request:
+ * <pre>
+ * Request
+ *   Sample (received)           - SampleCMOInfoRecords, QCDatum
+ *     Sample (library prep)     - IndexBarcode, KAPALibPlateSetupProtocol1
+ *       Sample (capture)        - NimbleGenHybProtocol, SeqAnalysisSampleQC
+ *         Sample (pool)         - shared by samplesPerPool captures
+ *           FlowCellLane        - child of IlluminaSeqExperiment > FlowCell
+ * </pre>
+ */
+public class RequestTreeGenerator {
+    static final String RUN = "PITT_0001_AHBENCHXX";
+
+    private final FakeLims lims;
+    private final long now = System.currentTimeMillis();
+
+    public RequestTreeGenerator(FakeLims lims) {
+        this.lims = lims;
+        lims.addWorkflow("Library Preparation", STAGE_LIBRARY_PREP);
+        lims.addWorkflow("Hybrid Capture", STAGE_LIBRARY_CAPTURE);
+        lims.addWorkflow("Illumina Sequencing", STAGE_SEQUENCING);
+        lims.addWorkflow("Illumina Sequencing Analysis", STAGE_SEQUENCING_ANALYSIS);
+    }
+
+    /**
+     * @return the request record, its IGO IDs are requestId + "_1" ... requestId + "_" + samples
+     */
+    public DataRecord generate(String requestId, int samples, int samplesPerPool) {
+        DataRecord request = lims.add("Request", fields(
+                "RequestId", requestId,
+                "RequestName", "WholeExomeSequencing",
+                "ProjectName", "Benchmark",
+                "LaboratoryHead", "Lab Head",
+                "LabHeadEmail", "labhead@mskcc.org",
+                "Investigator", "Investigator",
+                "ProjectManager", "Project Manager",
+                "GroupLeader", "Group Leader",
+                "PlatformApplication", "WES",
+                "CostCenter", "12345",
+                "FundNum", "67890",
+                "ReadMe", "",
+                "SampleNumber", (short) samples,
+                "ReceivedDate", now,
+                "DueDate", now,
+                "DateCreated", now));
+
+        DataRecord experiment = lims.add("IlluminaSeqExperiment", fields("SequencerRunFolder", RUN));
+        DataRecord flowCell = lims.add("FlowCell", fields("FlowcellId", "HBENCHXX"));
+        lims.link(experiment, flowCell);
+
+        DataRecord pool = null;
+        for (int i = 1; i <= samples; i++) {
+            String igoId = requestId + "_" + i;
+            DataRecord sample = sample(requestId, igoId, "Received", null);
+            lims.link(request, sample);
+            lims.link(sample, lims.add("SampleCMOInfoRecords", fields(
+                    "SampleId", igoId, "CorrectedCMOID", "C-BENCH" + i + "-T001-d", "OtherSampleId", "S" + i)));
+            lims.link(sample, lims.add("QCDatum", fields(
+                    "SampleId", igoId, "QCStatus", "Passed", "DatatypeName", "QcReportDna", "DateCreated", now)));
+
+            DataRecord library = sample(requestId, igoId + "_1", WORKFLOW_STATUS_COMPLETED + "Library Preparation",
+                    sample);
+            lims.link(library, lims.add("IndexBarcode", fields("IndexId", "DUAL_IDT_LIB_" + i, "IndexTag",
+                    "ACGTACGT-TGCATGCA")));
+            lims.link(library, lims.add("KAPALibPlateSetupProtocol1", fields("Valid", true,
+                    "TargetMassAliq1", 200.0, "ElutionVol", 30.0, "DateCreated", now)));
+
+            DataRecord capture = sample(requestId, igoId + "_1_1", WORKFLOW_STATUS_COMPLETED + "Hybrid Capture",
+                    library);
+            lims.link(capture, lims.add("NimbleGenHybProtocol", fields("Valid", true, "Recipe", "WES_Human")));
+            lims.link(capture, lims.add("SeqAnalysisSampleQC", fields(
+                    "Request", requestId,
+                    "SampleId", igoId,
+                    "OtherSampleId", "S" + i,
+                    "SeqQCStatus", "Passed",
+                    "SequencerRunFolder", RUN,
+                    "MeanTargetCoverage", 150.0,
+                    "ReadsExamined", 40000000L,
+                    "DateCreated", now)));
+
+            if ((i - 1) % samplesPerPool == 0) {
+                pool = sample(requestId, "Pool-" + requestId + "-Tube" + i,
+                        WORKFLOW_STATUS_COMPLETED + "Illumina Sequencing", null);
+                DataRecord lane = lims.add("FlowCellLane", fields("LaneNum", (long) i));
+                lims.link(flowCell, lane);
+                lims.link(pool, lane);
+            }
+            lims.link(capture, pool);
+        }
+        return request;
+    }
+
+    private DataRecord sample(String requestId, String sampleId, String status, DataRecord parent) {
+        DataRecord sample = lims.add("Sample", fields(
+                "SampleId", sampleId,
+                "OtherSampleId", sampleId.replace(requestId, "S"),
+                "AltId", "ALT-" + sampleId,
+                "RequestId", requestId,
+                "ExemplarSampleStatus", status,
+                "ExemplarSampleType", "DNA",
+                "Species", "Human",
+                "Recipe", "WholeExomeSequencing",
+                "Volume", 20.0,
+                "Concentration", 10.0,
+                "TotalMass", 200.0,
+                "ConcentrationUnits", "ng/uL",
+                "DateCreated", now,
+                "DateModified", now));
+        if (parent != null)
+            lims.link(parent, sample);
+        return sample;
+    }
+
+    private static Map<String, Object> fields(Object... keysAndValues) {
+        Map<String, Object> fields = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2)
+            fields.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        return fields;
+    }
+
+    public static List<String> igoIds(String requestId, int samples) {
+        List<String> igoIds = new ArrayList<>();
+        for (int i = 1; i <= samples; i++)
+            igoIds.add(requestId + "_" + i);
+        return igoIds;
+    }
+}
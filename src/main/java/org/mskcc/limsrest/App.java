@@ -2,6 +2,19 @@ package org.mskcc.limsrest;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.controller.LimsTaskResults;
+import org.mskcc.limsrest.service.cmoinfo.PatientCmoSampleViewCache;
+import org.mskcc.limsrest.service.cvr.CvrClient;
+import org.mskcc.limsrest.service.hiseq.HiseqRunIndex;
+import org.mskcc.limsrest.service.interops.InterOpsIndex;
+import org.mskcc.limsrest.service.ngsstats.NgsStatsClient;
+import org.mskcc.limsrest.service.oncotree.OncotreeDictionary;
+import org.mskcc.limsrest.service.sampletracker.WESSampleDataStore;
+import org.mskcc.limsrest.service.timeline.ProjectTimelineStore;
+import org.mskcc.limsrest.util.AttachmentSpool;
+import org.mskcc.limsrest.util.DataRecordFieldCache;
+import org.mskcc.limsrest.util.SingleFlight;
+import org.mskcc.limsrest.util.WorkflowStageRefresher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
@@ -20,7 +33,13 @@ import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @SpringBootApplication
 @EnableSwagger2
@@ -55,8 +74,31 @@ public class App extends SpringBootServletInitializer {
         String user2 = env.getProperty("lims.user2");
         String pass2 = env.getProperty("lims.pword2");
 
+        int minSize = env.getProperty("lims.pool.minSize", Integer.class, 2);
+        int maxSize = env.getProperty("lims.pool.maxSize", Integer.class, 2);
+        long borrowTimeout = env.getProperty("lims.pool.borrowTimeoutMillis", Long.class, 60000L);
+        long idleTimeout = env.getProperty("lims.pool.idleTimeoutMillis", Long.class, 1800000L);
+        int maxQueuedTasks = env.getProperty("lims.pool.maxQueuedTasks", Integer.class, 100);
+        int maxBatchWorkers = env.getProperty("lims.pool.maxBatchWorkers", Integer.class, Math.max(maxSize - 1, 1));
+        long maxWait = env.getProperty("lims.pool.maxWaitMillis", Long.class, 60000L);
+
         log.info("Creating LIMS connection pool.");
-        return new ConnectionPoolLIMS(host, port, guid, user1, pass1, user2, pass2);
+        ConnectionPoolLIMS pool = new ConnectionPoolLIMS(host, port, guid, new String[][]{{user1, pass1}, {user2,
+                pass2}}, minSize, maxSize, borrowTimeout, idleTimeout, maxQueuedTasks, maxBatchWorkers, maxWait);
+        pool.setRetryAfterSeconds(env.getProperty("lims.pool.retryAfterSeconds", Long.class, 30L));
+        pool.warmUp();
+        return pool;
+    }
+
+    /**
+     * Timeouts of the endpoints answered asynchronously, lims.async.timeoutMillis.<endpoint> overrides the default.
+     */
+    @Bean
+    public LimsTaskResults limsTaskResults() {
+        long timeout = env.getProperty("lims.async.timeoutMillis", Long.class, 120000L);
+        return new LimsTaskResults(
+                endpoint -> env.getProperty("lims.async.timeoutMillis." + endpoint, Long.class, timeout),
+                env.getProperty("lims.pool.retryAfterSeconds", Long.class, 30L));
     }
 
     @Bean(destroyMethod = "close")
@@ -67,8 +109,132 @@ public class App extends SpringBootServletInitializer {
         String user2 = env.getProperty("lims.user2");
         String pass2 = env.getProperty("lims.pword2");
 
+        int sessions = env.getProperty("lims.connection.sessions", Integer.class, 1);
+        long leaseTimeout = env.getProperty("lims.connection.leaseTimeoutMillis", Long.class, 60000L);
+        long keepAlive = env.getProperty("lims.connection.keepAliveMillis", Long.class, 300000L);
+
         log.info("Creating LIMS connection");
-        return new ConnectionLIMS(host, port, guid, user2, pass2);
+        return new ConnectionLIMS(host, port, guid, user2, pass2, sessions, leaseTimeout, keepAlive);
+    }
+
+    @Bean(destroyMethod = "close")
+    public WorkflowStageRefresher workflowStageRefresher() {
+        return new WorkflowStageRefresher(connection(),
+                env.getProperty("lims.workflowStages.refreshMillis", Long.class, 900000L)).start();
+    }
+
+    /**
+     * Workers shared by all /api/getSampleManifest calls, each sample holds one LIMS session while it runs.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService sampleManifestExecutor() {
+        int workers = env.getProperty("lims.manifest.workers", Integer.class, 4);
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(workers,
+                r -> new Thread(r, "sample-manifest-" + threadNumber.incrementAndGet()));
+    }
+
+    /**
+     * Bounded pool of the CVR, consent and oncotree calls of /getWESSampleData.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService wesLookupExecutor() {
+        int threads = env.getProperty("lims.wes.lookupThreads", Integer.class, 8);
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "wes-lookup-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Bean(destroyMethod = "close")
+    public CvrClient cvrClient() throws IOException, GeneralSecurityException {
+        String dir = env.getProperty("cvr.cacheDir", System.getProperty("java.io.tmpdir") + "/limsrest-cvr");
+        return new CvrClient(env.getProperty("cvr.url", "https://draco.mskcc.org:9898/"), new File(dir),
+                env.getProperty("cvr.maxConnections", Integer.class, 8),
+                env.getProperty("cvr.connectTimeoutMillis", Integer.class, 5000),
+                env.getProperty("cvr.readTimeoutMillis", Integer.class, 60000),
+                env.getProperty("cvr.cacheTtlMillis", Long.class, 86400000L));
+    }
+
+    @Bean(destroyMethod = "close")
+    public OncotreeDictionary oncotreeDictionary() throws IOException {
+        String dir = env.getProperty("oncotree.snapshotDir",
+                System.getProperty("java.io.tmpdir") + "/limsrest-oncotree");
+        return new OncotreeDictionary(OncotreeDictionary.ONCOTREE_URL, oncotreeRestUrl, new File(dir),
+                env.getProperty("oncotree.refreshMillis", Long.class, 86400000L),
+                env.getProperty("oncotree.timeoutMillis", Integer.class, 30000)).start();
+    }
+
+    @Bean
+    public WESSampleDataStore wesSampleDataStore() {
+        return new WESSampleDataStore(env.getProperty("lims.wes.fullRefreshMillis", Long.class, 604800000L));
+    }
+
+    @Bean(destroyMethod = "close")
+    public NgsStatsClient ngsStatsClient() {
+        return new NgsStatsClient(env.getProperty("delphiRestUrl"),
+                env.getProperty("ngsStats.maxConnections", Integer.class, 20),
+                env.getProperty("ngsStats.connectTimeoutMillis", Integer.class, 5000),
+                env.getProperty("ngsStats.readTimeoutMillis", Integer.class, 60000),
+                env.getProperty("ngsStats.maxRetries", Integer.class, 2),
+                env.getProperty("ngsStats.retryBackoffMillis", Long.class, 500L),
+                env.getProperty("ngsStats.cacheTtlMillis", Long.class, 600000L),
+                env.getProperty("ngsStats.cacheMaxEntries", Integer.class, 10000));
+    }
+
+    @Bean
+    public InterOpsIndex interOpsIndex() {
+        return new InterOpsIndex(env.getProperty("lims.interops.refreshMillis", Long.class, 60000L),
+                env.getProperty("lims.interops.fullRefreshMillis", Long.class, 3600000L));
+    }
+
+    @Bean
+    public HiseqRunIndex hiseqRunIndex() {
+        return new HiseqRunIndex(env.getProperty("lims.runs.refreshMillis", Long.class, 60000L),
+                env.getProperty("lims.runs.fullRefreshMillis", Long.class, 86400000L));
+    }
+
+    @Bean
+    public AttachmentSpool attachmentSpool() throws IOException {
+        String dir = env.getProperty("lims.attachments.spoolDir",
+                System.getProperty("java.io.tmpdir") + "/limsrest-attachments");
+        return new AttachmentSpool(new File(dir),
+                env.getProperty("lims.attachments.spoolMaxBytes", Long.class, 1073741824L));
+    }
+
+    @Bean
+    public ProjectTimelineStore projectTimelineStore() throws IOException {
+        String dir = env.getProperty("lims.timelines.dir",
+                System.getProperty("java.io.tmpdir") + "/limsrest-timelines");
+        return new ProjectTimelineStore(new File(dir),
+                env.getProperty("lims.timelines.fullRefreshMillis", Long.class, 604800000L));
+    }
+
+    /**
+     * Samples of patients shared by all CMO Sample Id generation, see /warmSampleCmoIdCache.
+     */
+    @Bean
+    public PatientCmoSampleViewCache patientCmoSampleViewCache() {
+        return new PatientCmoSampleViewCache(
+                env.getProperty("lims.cmoSampleViews.maxPatients", Integer.class, 5000),
+                env.getProperty("lims.cmoSampleViews.ttlMillis", Long.class, 600000L));
+    }
+
+    /**
+     * Shares the result of request tracking, request samples and project QC reads between identical concurrent calls.
+     */
+    @Bean
+    public SingleFlight singleFlight() {
+        return new SingleFlight(env.getProperty("lims.singleFlight.reuseMillis", Long.class, 2000L));
+    }
+
+    @Bean
+    public DataRecordFieldCache dataRecordFieldCache() {
+        int maxEntries = env.getProperty("lims.cache.maxEntries", Integer.class, 5000);
+        long ttl = env.getProperty("lims.cache.ttlMillis", Long.class, 300000L);
+        return new DataRecordFieldCache(maxEntries, ttl);
     }
 
     @Bean
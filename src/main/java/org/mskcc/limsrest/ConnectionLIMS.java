@@ -1,51 +1,250 @@
 package org.mskcc.limsrest;
 
+import com.velox.api.datamgmtserver.DataMgmtServer;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared LIMS sessions for tasks that run directly on the request thread.
+ * <p>
+ * Callers lease a session for the duration of their work:
+ * <pre>
+ *     try (ConnectionLIMS.Lease lease = conn.lease()) {
+ *         User user = lease.getUser();
+ *         ...
+ *     }
+ * </pre>
+ * A lease is bound to the calling thread, so code called while it is held (e.g. {@link #getConnection()} in
+ * helpers that only receive this class) sees the same session. Sessions found disconnected are handed to a
+ * background thread to reconnect instead of blocking the caller, and idle sessions are periodically pinged to keep
+ * them alive.
+ */
 public class ConnectionLIMS {
     private static Log log = LogFactory.getLog(ConnectionLIMS.class);
 
-    private VeloxConnection conn1;
-    private VeloxConnection conn2;
-    private VeloxConnection inUse;
+    private static final long RECONNECT_RETRY_MILLIS = 10000;
+
+    private final List<VeloxConnection> sessions = new ArrayList<>();
+    private final BlockingDeque<VeloxConnection> available = new LinkedBlockingDeque<>();
+    private final ThreadLocal<Lease> currentLease = new ThreadLocal<>();
+    private final ScheduledExecutorService maintenance;
+    private final long leaseTimeoutMillis;
+
+    private final AtomicLong leaseCount = new AtomicLong();
+    private final AtomicLong leaseTimeouts = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
 
     public ConnectionLIMS(String host, int port, String guid, String user1, String pass1) {
-        conn1 = new VeloxConnection(host, port, guid, user1, pass1);
-        try {
-            log.info("Opening LIMS connection to host: " + host + guid);
-            boolean status = conn1.open();
-            if (conn1.isConnected()) {
-                log.info("LIMS connection established with status: " + status);
+        this(host, port, guid, user1, pass1, 1, 60000, 300000);
+    }
+
+    /**
+     * @param sessionCount       number of LIMS sessions opened for the account
+     * @param leaseTimeoutMillis how long a caller waits for a free session before failing
+     * @param keepAliveMillis    interval between pings of idle sessions
+     */
+    public ConnectionLIMS(String host, int port, String guid, String user1, String pass1, int sessionCount,
+                          long leaseTimeoutMillis, long keepAliveMillis) {
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lims-connection-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+
+        log.info("Opening " + sessionCount + " LIMS sessions to host: " + host + guid);
+        for (int i = 0; i < sessionCount; i++) {
+            VeloxConnection session = new VeloxConnection(host, port, guid, user1, pass1);
+            sessions.add(session);
+            try {
+                boolean status = session.open();
+                if (session.isConnected()) {
+                    log.info("LIMS connection established with status: " + status);
+                    available.addLast(session);
+                    continue;
+                }
+            } catch (Exception e) {
+                log.error("Connection error:" + e);
             }
-        } catch (Exception e) {
-            log.error("Connection error:" + e);
+            scheduleReconnect(session, RECONNECT_RETRY_MILLIS);
+        }
+        if (available.isEmpty()) {
+            close();
             throw new RuntimeException("Failed to open LIMS connection.");
         }
 
-        inUse = conn1;
+        maintenance.scheduleWithFixedDelay(this::keepAlive, keepAliveMillis, keepAliveMillis, TimeUnit.MILLISECONDS);
     }
 
-    public synchronized VeloxConnection getConnection() {
-        if (!inUse.isConnected()) {
+    /**
+     * Leases a session for exclusive use by the calling thread until the lease is closed. Nested calls on the same
+     * thread return the lease already held.
+     */
+    public Lease lease() {
+        Lease current = currentLease.get();
+        if (current != null) {
+            current.depth++;
+            return current;
+        }
+
+        long deadline = System.currentTimeMillis() + leaseTimeoutMillis;
+        while (true) {
+            VeloxConnection session;
             try {
-                boolean opened = inUse.open();
-                log.info("Attempt to re-open connection with result: " + opened);
-            } catch (Exception e) {
-                log.error("Failed to re-open connection: " + e.getMessage());
+                session = available.pollFirst(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for a LIMS session.", e);
             }
+            if (session == null) {
+                leaseTimeouts.incrementAndGet();
+                throw new RuntimeException("No LIMS session available after " + leaseTimeoutMillis + "ms");
+            }
+            if (session.isConnected()) {
+                leaseCount.incrementAndGet();
+                Lease lease = new Lease(session);
+                currentLease.set(lease);
+                return lease;
+            }
+            log.warn("Leased LIMS session is disconnected, reconnecting in background.");
+            scheduleReconnect(session, 0);
         }
+    }
+
+    /**
+     * Returns the session leased by the calling thread. Outside of a lease, returns a shared session without
+     * exclusive use, which is only safe for short read-only calls.
+     */
+    public VeloxConnection getConnection() {
+        Lease current = currentLease.get();
+        if (current != null)
+            return current.getConnection();
 
-        return inUse;
+        VeloxConnection session = available.peekFirst();
+        return session != null ? session : sessions.get(0);
     }
 
-    public void close() {
-        if (conn1.isConnected()) {
+    private void release(VeloxConnection session) {
+        if (session.isConnected()) {
+            available.addFirst(session);
+        } else {
+            scheduleReconnect(session, 0);
+        }
+    }
+
+    private void scheduleReconnect(VeloxConnection session, long delayMillis) {
+        try {
+            maintenance.schedule(() -> reconnect(session), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.info("LIMS connection closed, not reconnecting session.");
+        }
+    }
+
+    private void reconnect(VeloxConnection session) {
+        reconnects.incrementAndGet();
+        try {
+            if (session.isConnected())
+                session.close();
+        } catch (Exception e) {
+            log.warn("Failed to close LIMS session before reconnect: " + e.getMessage());
+        }
+        try {
+            boolean opened = session.open();
+            log.info("Attempt to re-open connection with result: " + opened);
+        } catch (Exception e) {
+            log.error("Failed to re-open connection: " + e.getMessage());
+        }
+        if (session.isConnected()) {
+            available.addLast(session);
+        } else {
+            scheduleReconnect(session, RECONNECT_RETRY_MILLIS);
+        }
+    }
+
+    /**
+     * Pings each idle session with a query that matches nothing, so the LIMS does not expire them between requests.
+     */
+    private void keepAlive() {
+        int idle = available.size();
+        for (int i = 0; i < idle; i++) {
+            VeloxConnection session = available.pollLast();
+            if (session == null)
+                return;
             try {
-                conn1.close();
+                session.getDataRecordManager().queryDataRecords("Request", "RecordId = -1", session.getUser());
+                available.addLast(session);
             } catch (Exception e) {
+                log.warn("LIMS session failed keep-alive, reconnecting: " + e.getMessage());
+                scheduleReconnect(session, 0);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", sessions.size());
+        stats.put("availableSessions", available.size());
+        stats.put("leaseCount", leaseCount.get());
+        stats.put("leaseTimeouts", leaseTimeouts.get());
+        stats.put("reconnects", reconnects.get());
+        return stats;
+    }
+
+    public void close() {
+        maintenance.shutdownNow();
+        for (VeloxConnection session : sessions) {
+            if (session.isConnected()) {
+                try {
+                    session.close();
+                } catch (Exception e) {
+                }
             }
         }
     }
+
+    /**
+     * Exclusive use of one LIMS session, returned to the pool on close.
+     */
+    public class Lease implements AutoCloseable {
+        private final VeloxConnection session;
+        private int depth = 1;
+
+        private Lease(VeloxConnection session) {
+            this.session = session;
+        }
+
+        public VeloxConnection getConnection() {
+            return session;
+        }
+
+        public User getUser() {
+            return session.getUser();
+        }
+
+        public DataRecordManager getDataRecordManager() {
+            return session.getDataRecordManager();
+        }
+
+        public DataMgmtServer getDataMgmtServer() {
+            return session.getDataMgmtServer();
+        }
+
+        @Override
+        public void close() {
+            if (--depth > 0)
+                return;
+            currentLease.remove();
+            release(session);
+        }
+    }
 }
@@ -1,52 +1,407 @@
 package org.mskcc.limsrest;
 
 import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.service.LimsTask;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.rmi.RemoteException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * LIMS connection pool with dedicated LIMS connections.
+ * <p>
+ * Tasks are queued in submission order and run on one worker thread per connection. Each task borrows a
+ * VeloxConnection for the duration of {@link LimsTask#call()} and hands it back when done. Connections are created
+ * lazily up to maxSize, rotating through the configured LIMS accounts, and waiting borrowers are served first come
+ * first served.
+ * <p>
+ * Sessions stay logged in between tasks. A session idle for a while is checked with a cheap query before it is
+ * reused and logged in again if the LIMS dropped it, and sessions idle longer than idleTimeoutMillis are logged out
+ * down to minSize.
+ * <p>
+ * At most maxQueuedTasks tasks wait for a worker, further tasks are rejected with a {@link LimsBusyException} so a slow
+ * LIMS doesn't pile up work the clients have long given up on. Waiting tasks are taken by {@link LimsTask#getPriority()},
+ * see {@link LimsTaskQueue}.
  */
 public class ConnectionPoolLIMS {
-    private static final ExecutorService executor = Executors.newFixedThreadPool(1);
+    private static Log log = LogFactory.getLog(ConnectionPoolLIMS.class);
 
-    private final VeloxConnection conn1;
-    private final VeloxConnection conn2;
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 30000;
+
+    private final String host;
+    private final int port;
+    private final String guid;
+    private final String[][] credentials;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final int maxQueuedTasks;
+    private long retryAfterSeconds = 30;
+
+    private final ThreadPoolExecutor executor;
+    private final LimsTaskQueue queue;
+    private final Semaphore permits;
+    private final BlockingDeque<VeloxConnection> idle = new LinkedBlockingDeque<>();
+    private final Map<VeloxConnection, Long> lastUsed = new ConcurrentHashMap<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private final ScheduledExecutorService maintenance;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong logins = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
 
     public ConnectionPoolLIMS(String host, int port, String guid, String user1, String pass1, String user2, String pass2) {
-        conn1 = new VeloxConnection(host, port, guid, user1, pass1);
-        conn2 = new VeloxConnection(host, port, guid, user2, pass2);
+        this(host, port, guid, new String[][]{{user1, pass1}, {user2, pass2}}, 2, 2, 60000, 1800000);
     }
 
-    public VeloxConnection getConnection() {
-        // use the connection that is not busy (current logic prefers conn1)
-        if (conn1.isConnected()) { // TODO check other connection is open or it must be since only 2 threads?
-            System.out.println("USING CONNECTION 2");
-            return conn2;
-        } else {
-            System.out.println("USING CONNECTION 1");
-            return conn1;
+    public ConnectionPoolLIMS(String host, int port, String guid, String[][] credentials, int minSize, int maxSize,
+                              long borrowTimeoutMillis, long idleTimeoutMillis) {
+        this(host, port, guid, credentials, minSize, maxSize, borrowTimeoutMillis, idleTimeoutMillis,
+                Integer.MAX_VALUE);
+    }
+
+    public ConnectionPoolLIMS(String host, int port, String guid, String[][] credentials, int minSize, int maxSize,
+                              long borrowTimeoutMillis, long idleTimeoutMillis, int maxQueuedTasks) {
+        this(host, port, guid, credentials, minSize, maxSize, borrowTimeoutMillis, idleTimeoutMillis, maxQueuedTasks,
+                Math.max(maxSize - 1, 1), 60000);
+    }
+
+    /**
+     * @param credentials         LIMS accounts as {user, password} pairs, connection n uses account n % length
+     * @param minSize             connections created up front
+     * @param maxSize             maximum connections and worker threads
+     * @param borrowTimeoutMillis how long a task waits for a free connection before failing
+     * @param idleTimeoutMillis   how long a session may sit unused before it is logged out
+     * @param maxQueuedTasks      tasks waiting for a worker before new ones are rejected
+     * @param maxBatchWorkers     workers batch tasks may occupy at once, the others are kept for interactive work
+     * @param maxWaitMillis       how long a task may wait before it is taken ahead of higher priority tasks
+     */
+    public ConnectionPoolLIMS(String host, int port, String guid, String[][] credentials, int minSize, int maxSize,
+                              long borrowTimeoutMillis, long idleTimeoutMillis, int maxQueuedTasks,
+                              int maxBatchWorkers, long maxWaitMillis) {
+        if (credentials.length == 0 || minSize < 0 || maxSize < 1 || minSize > maxSize || maxQueuedTasks < 1 ||
+                maxBatchWorkers < 1)
+            throw new IllegalArgumentException(String.format("Invalid LIMS pool configuration, accounts: %d, min: %d, " +
+                    "max: %d", credentials.length, minSize, maxSize));
+        this.host = host;
+        this.port = port;
+        this.guid = guid;
+        this.credentials = credentials;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxQueuedTasks = maxQueuedTasks;
+        this.permits = new Semaphore(maxSize, true);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.queue = new LimsTaskQueue(maxQueuedTasks, maxBatchWorkers, maxWaitMillis);
+        this.executor = new ThreadPoolExecutor(maxSize, maxSize, 0L, TimeUnit.MILLISECONDS, queue,
+                r -> new Thread(r, "lims-task-" + threadNumber.incrementAndGet()),
+                (r, e) -> {
+                    rejected.incrementAndGet();
+                    throw new LimsBusyException(String.format("LIMS task queue is full, %d tasks waiting.",
+                            e.getQueue().size()), retryAfterSeconds);
+                }) {
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                queue.afterExecute(r);
+            }
+        };
+        // every task goes through the queue, a new worker would run its first task regardless of priority
+        executor.prestartAllCoreThreads();
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lims-pool-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        long evictionInterval = Math.max(idleTimeoutMillis / 2, 1000);
+        maintenance.scheduleWithFixedDelay(this::evictIdleConnections, evictionInterval, evictionInterval,
+                TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < minSize; i++) {
+            idle.addLast(createConnection());
+        }
+        log.info(String.format("LIMS connection pool created with %d of max %d connections.", minSize, maxSize));
+    }
+
+    /**
+     * Logs in the first minSize connections so the first tasks after startup do not pay for the login. Failures are
+     * logged and left for the first task using the connection to retry.
+     */
+    public void warmUp() {
+        for (int i = 0; i < minSize; i++) {
+            VeloxConnection conn = null;
+            try {
+                conn = borrowConnection();
+                ensureLoggedIn(conn);
+            } catch (Exception e) {
+                log.warn("LIMS connection warm-up failed: " + e.getMessage());
+            } finally {
+                // return to the back so the next warm-up borrow picks a different connection
+                if (conn != null) {
+                    idle.addLast(conn);
+                    permits.release();
+                }
+            }
         }
+        log.info("LIMS connection pool warmed up, open sessions: " + countOpenSessions());
     }
 
+    /**
+     * @throws LimsBusyException if maxQueuedTasks tasks are already waiting
+     */
     public Future<Object> submitTask(LimsTask task) {
         task.setConnectionPool(this);
-        return executor.submit(task);
+        LimsTaskQueue.Task futureTask = new LimsTaskQueue.Task(task, task.getPriority());
+        executor.execute(futureTask);
+        return futureTask;
     }
 
-    public void cleanup() {
-        executor.shutdown();
-        try {
-            if (conn1 != null && conn1.isConnected()) {
-                conn1.close();
+    /**
+     * Same as {@link #submitTask(LimsTask)} but completes the returned future from the worker thread so the caller
+     * doesn't block waiting for the result. Cancelling the future before the task started takes it out of the queue
+     * without borrowing a connection.
+     *
+     * @throws LimsBusyException if maxQueuedTasks tasks are already waiting
+     */
+    public CompletableFuture<Object> submitTaskAsync(LimsTask task) {
+        task.setConnectionPool(this);
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        LimsTaskQueue.Task futureTask = new LimsTaskQueue.Task(task, task.getPriority()) {
+            @Override
+            protected void done() {
+                try {
+                    result.complete(get());
+                } catch (ExecutionException e) {
+                    result.completeExceptionally(e.getCause());
+                } catch (CancellationException | InterruptedException e) {
+                    result.cancel(false);
+                }
             }
-            if (conn2 != null && conn2.isConnected()) {
-                conn2.close();
+        };
+        result.whenComplete((value, e) -> {
+            if (result.isCancelled())
+                futureTask.cancel(false);
+        });
+        executor.execute(futureTask);
+        return result;
+    }
+
+    /**
+     * Waits up to the borrow timeout for a connection. Every borrowed connection must be handed back with
+     * {@link #returnConnection(VeloxConnection)}.
+     */
+    public VeloxConnection borrowConnection() throws InterruptedException, TimeoutException {
+        long start = System.currentTimeMillis();
+        if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            borrowTimeouts.incrementAndGet();
+            throw new TimeoutException("No LIMS connection available after " + borrowTimeoutMillis + "ms");
+        }
+        long waited = System.currentTimeMillis() - start;
+        borrowCount.incrementAndGet();
+        totalWaitMillis.addAndGet(waited);
+        maxWaitMillis.accumulateAndGet(waited, Math::max);
+
+        VeloxConnection conn;
+        while ((conn = idle.pollFirst()) != null) {
+            if (isHealthy(conn))
+                return conn;
+            discard(conn);
+        }
+        return createConnection();
+    }
+
+    public void returnConnection(VeloxConnection conn) {
+        returnConnection(conn, true);
+    }
+
+    /**
+     * @param healthy false if the task failed talking to the LIMS, in which case the session is dropped and the next
+     *                borrower gets a fresh one
+     */
+    public void returnConnection(VeloxConnection conn, boolean healthy) {
+        if (conn == null)
+            return;
+        if (healthy) {
+            lastUsed.put(conn, System.currentTimeMillis());
+            idle.addFirst(conn);
+        } else {
+            discard(conn);
+        }
+        permits.release();
+    }
+
+    /**
+     * Makes sure a borrowed connection has a live, logged in session. Sessions that have been idle longer than
+     * {@link #VALIDATE_AFTER_IDLE_MILLIS} are pinged first and logged in again if the ping fails.
+     */
+    public void ensureLoggedIn(VeloxConnection conn) throws Exception {
+        if (conn.isConnected() && conn.getUser() != null) {
+            Long used = lastUsed.get(conn);
+            if (used != null && System.currentTimeMillis() - used < VALIDATE_AFTER_IDLE_MILLIS)
+                return;
+            try {
+                conn.getDataRecordManager().queryDataRecords("Request", "RecordId = -1", conn.getUser());
+                return;
+            } catch (Exception e) {
+                log.warn("LIMS session expired, logging in again: " + e.getMessage());
+                closeQuietly(conn);
             }
+        }
+        logins.incrementAndGet();
+        conn.open();
+        if (!conn.isConnected())
+            throw new IllegalStateException("Failed to log in to the LIMS.");
+        lastUsed.put(conn, System.currentTimeMillis());
+    }
+
+    /**
+     * True if the error came from talking to the LIMS server rather than from the task's own logic.
+     */
+    public static boolean isConnectionFailure(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof RemoteException)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * A connection is reused only if it is logged out or still holds a session user.
+     */
+    private boolean isHealthy(VeloxConnection conn) {
+        try {
+            return !conn.isConnected() || conn.getUser() != null;
         } catch (Exception e) {
+            log.warn("LIMS connection failed health check: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void discard(VeloxConnection conn) {
+        discarded.incrementAndGet();
+        created.decrementAndGet();
+        lastUsed.remove(conn);
+        closeQuietly(conn);
+    }
+
+    private void closeQuietly(VeloxConnection conn) {
+        try {
+            if (conn.isConnected())
+                conn.close();
+        } catch (Exception e) {
+            log.warn("Failed to close LIMS connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Logs out idle sessions unused for longer than the idle timeout, least recently used first, keeping minSize
+     * sessions logged in. Each session is checked while holding a permit so no task can borrow it mid-logout.
+     */
+    void evictIdleConnections() {
+        int open = countOpenSessions();
+        long now = System.currentTimeMillis();
+        for (Iterator<VeloxConnection> it = idle.descendingIterator(); it.hasNext() && open > minSize; ) {
+            VeloxConnection conn = it.next();
+            Long used = lastUsed.get(conn);
+            if (!conn.isConnected() || used == null || now - used < idleTimeoutMillis)
+                continue;
+            if (!permits.tryAcquire())
+                return;
+            try {
+                if (idle.removeLastOccurrence(conn)) {
+                    log.info("Logging out LIMS session idle for " + (now - used) + "ms");
+                    closeQuietly(conn);
+                    lastUsed.remove(conn);
+                    evicted.incrementAndGet();
+                    open--;
+                    idle.addLast(conn);
+                }
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private int countOpenSessions() {
+        int open = 0;
+        for (VeloxConnection conn : idle) {
+            if (conn.isConnected())
+                open++;
+        }
+        return open;
+    }
+
+    private VeloxConnection createConnection() {
+        int n = created.getAndIncrement();
+        String[] account = credentials[n % credentials.length];
+        log.info("Creating LIMS connection " + (n + 1) + " for user " + account[0]);
+        return new VeloxConnection(host, port, guid, account[0], account[1]);
+    }
+
+    /**
+     * Sent to clients whose task was rejected as the time to try again.
+     */
+    public void setRetryAfterSeconds(long retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Queue depth and connection wait time counters since startup.
+     */
+    public Map<String, Object> getStats() {
+        long borrows = borrowCount.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxSize", maxSize);
+        stats.put("connections", created.get());
+        stats.put("idleConnections", idle.size());
+        stats.put("activeTasks", executor.getActiveCount());
+        stats.put("queuedTasks", executor.getQueue().size());
+        stats.put("maxQueuedTasks", maxQueuedTasks);
+        stats.put("rejectedTasks", rejected.get());
+        stats.put("priorityLanes", queue.getStats());
+        stats.put("waitingForConnection", permits.getQueueLength());
+        stats.put("completedTasks", executor.getCompletedTaskCount());
+        stats.put("borrowCount", borrows);
+        stats.put("borrowTimeouts", borrowTimeouts.get());
+        stats.put("averageWaitMillis", borrows == 0 ? 0 : totalWaitMillis.get() / borrows);
+        stats.put("maxWaitMillis", maxWaitMillis.get());
+        stats.put("discardedConnections", discarded.get());
+        stats.put("idleOpenSessions", countOpenSessions());
+        stats.put("logins", logins.get());
+        stats.put("evictedSessions", evicted.get());
+        return stats;
+    }
+
+    public void cleanup() {
+        maintenance.shutdownNow();
+        executor.shutdown();
+        VeloxConnection conn;
+        while ((conn = idle.pollFirst()) != null) {
+            try {
+                if (conn.isConnected()) {
+                    conn.close();
+                }
+            } catch (Exception e) {
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package org.mskcc.limsrest;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown instead of queueing more LIMS work than the service can answer in time, clients should try again after
+ * retryAfterSeconds. Answered with a 503 by {@link org.mskcc.limsrest.controller.LimsBusyHandler}.
+ */
+public class LimsBusyException extends RejectedExecutionException {
+    private final long retryAfterSeconds;
+
+    public LimsBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,324 @@
+package org.mskcc.limsrest;
+
+import org.mskcc.limsrest.service.LimsTask;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Work queue of the ConnectionPoolLIMS workers with one FIFO lane per {@link LimsTask.Priority}.
+ * <p>
+ * Workers take interactive tasks first, then normal, then batch tasks. Batch tasks never run on more than
+ * maxBatchWorkers workers at once so the remaining workers stay free for UI calls while a long sweep runs, and a task
+ * which has waited longer than maxWaitMillis is taken before any other so batch work still finishes under steady
+ * interactive load.
+ */
+class LimsTaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+    private static final LimsTask.Priority[] LANES = LimsTask.Priority.values();
+
+    private final int capacity;
+    private final int maxBatchWorkers;
+    private final long maxWaitMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dispatchable = lock.newCondition();
+    private final Map<LimsTask.Priority, Deque<Task>> lanes = new EnumMap<>(LimsTask.Priority.class);
+    private int size = 0;
+    private int runningBatch = 0;
+
+    private final Map<LimsTask.Priority, AtomicLong> dispatched = new EnumMap<>(LimsTask.Priority.class);
+    private final AtomicLong promoted = new AtomicLong();
+
+    LimsTaskQueue(int capacity, int maxBatchWorkers, long maxWaitMillis) {
+        this.capacity = capacity;
+        this.maxBatchWorkers = maxBatchWorkers;
+        this.maxWaitMillis = maxWaitMillis;
+        for (LimsTask.Priority priority : LANES) {
+            lanes.put(priority, new ArrayDeque<>());
+            dispatched.put(priority, new AtomicLong());
+        }
+    }
+
+    /**
+     * A queued LimsTask, other runnables handed to the executor are queued as {@link LimsTask.Priority#NORMAL}.
+     */
+    static class Task extends FutureTask<Object> {
+        private final LimsTask.Priority priority;
+        private long enqueuedAt;
+
+        Task(Callable<Object> callable, LimsTask.Priority priority) {
+            super(callable);
+            this.priority = priority == null ? LimsTask.Priority.NORMAL : priority;
+        }
+
+        LimsTask.Priority getPriority() {
+            return priority;
+        }
+    }
+
+    /**
+     * Called by the executor once a task taken from this queue finished running.
+     */
+    void afterExecute(Runnable r) {
+        if (!(r instanceof Task) || ((Task) r).priority != LimsTask.Priority.BATCH)
+            return;
+        lock.lock();
+        try {
+            runningBatch--;
+            dispatchable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable r) {
+        Task task = r instanceof Task ? (Task) r : new Task(() -> {
+            r.run();
+            return null;
+        }, LimsTask.Priority.NORMAL);
+        lock.lock();
+        try {
+            if (size >= capacity)
+                return false;
+            task.enqueuedAt = System.currentTimeMillis();
+            lanes.get(task.priority).addLast(task);
+            size++;
+            dispatchable.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable r) throws InterruptedException {
+        if (!offer(r))
+            throw new IllegalStateException("LIMS task queue is full");
+    }
+
+    @Override
+    public boolean offer(Runnable r, long timeout, TimeUnit unit) {
+        return offer(r);
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Task task;
+            while ((task = next()) == null)
+                dispatchable.await();
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            Task task;
+            while ((task = next()) == null) {
+                if (nanos <= 0)
+                    return null;
+                nanos = dispatchable.awaitNanos(nanos);
+            }
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The oldest task waiting longer than maxWaitMillis, otherwise the head of the highest priority lane. Batch tasks
+     * are left queued while maxBatchWorkers batch tasks run.
+     */
+    private Task next() {
+        long now = System.currentTimeMillis();
+        LimsTask.Priority starved = null;
+        for (LimsTask.Priority priority : LANES) {
+            Task head = lanes.get(priority).peekFirst();
+            if (head == null || !canRun(priority) || now - head.enqueuedAt < maxWaitMillis)
+                continue;
+            if (starved == null || head.enqueuedAt < lanes.get(starved).peekFirst().enqueuedAt)
+                starved = priority;
+        }
+        if (starved != null) {
+            for (LimsTask.Priority priority : LANES) {
+                if (priority.compareTo(starved) < 0 && !lanes.get(priority).isEmpty()) {
+                    promoted.incrementAndGet();
+                    break;
+                }
+            }
+            return dispatch(lanes.get(starved));
+        }
+        for (LimsTask.Priority priority : LANES) {
+            if (!lanes.get(priority).isEmpty() && canRun(priority))
+                return dispatch(lanes.get(priority));
+        }
+        return null;
+    }
+
+    private boolean canRun(LimsTask.Priority priority) {
+        return priority != LimsTask.Priority.BATCH || runningBatch < maxBatchWorkers;
+    }
+
+    private Task dispatch(Deque<Task> lane) {
+        Task task = lane.pollFirst();
+        size--;
+        if (task.priority == LimsTask.Priority.BATCH)
+            runningBatch++;
+        dispatched.get(task.priority).incrementAndGet();
+        return task;
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            for (LimsTask.Priority priority : LANES) {
+                Task head = lanes.get(priority).peekFirst();
+                if (head != null)
+                    return head;
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            for (Deque<Task> lane : lanes.values()) {
+                if (lane.remove(o)) {
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Snapshot of the queued tasks, removing through the iterator removes the task from the queue.
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        List<Runnable> snapshot = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Deque<Task> lane : lanes.values())
+                snapshot.addAll(lane);
+        } finally {
+            lock.unlock();
+        }
+        Iterator<Runnable> it = snapshot.iterator();
+        return new Iterator<Runnable>() {
+            private Runnable last;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                return last = it.next();
+            }
+
+            @Override
+            public void remove() {
+                LimsTaskQueue.this.remove(last);
+            }
+        };
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            for (Deque<Task> lane : lanes.values()) {
+                while (drained < maxElements && !lane.isEmpty()) {
+                    c.add(lane.pollFirst());
+                    size--;
+                    drained++;
+                }
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            for (LimsTask.Priority priority : LANES)
+                stats.put("queued" + label(priority), lanes.get(priority).size());
+            stats.put("runningBatch", runningBatch);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("maxBatchWorkers", maxBatchWorkers);
+        stats.put("maxWaitMillis", maxWaitMillis);
+        for (LimsTask.Priority priority : LANES)
+            stats.put("dispatched" + label(priority), dispatched.get(priority).get());
+        stats.put("promotedAfterMaxWait", promoted.get());
+        return stats;
+    }
+
+    // BATCH -> Batch
+    private static String label(LimsTask.Priority priority) {
+        return priority.name().charAt(0) + priority.name().substring(1).toLowerCase();
+    }
+}
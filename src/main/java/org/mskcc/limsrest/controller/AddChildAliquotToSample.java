@@ -19,7 +19,6 @@ import java.util.concurrent.Future;
 public class AddChildAliquotToSample {
     private static Log log = LogFactory.getLog(AddChildAliquotToSample.class);
     private final ConnectionPoolLIMS conn;
-    private final AddChildSample task = new AddChildSample();
 
     public AddChildAliquotToSample(ConnectionPoolLIMS conn) {
         this.conn = conn;
@@ -34,6 +33,7 @@ public class AddChildAliquotToSample {
         if (!Whitelists.sampleMatches(sample))
             return "FAILURE: sample is not using a valid format";
         log.info("Starting to add child aliquot to " + sample + " by" + igoUser);
+        AddChildSample task = new AddChildSample();
         task.init(sample, status, additionalType, igoUser, childSample);
         Future<Object> result = conn.submitTask(task);
         try {
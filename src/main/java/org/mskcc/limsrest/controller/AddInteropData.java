@@ -7,6 +7,7 @@ import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.LimsException;
 import org.mskcc.limsrest.service.SetOrCreateInteropData;
+import org.mskcc.limsrest.service.interops.InterOpsIndex;
 import org.mskcc.limsrest.util.Messages;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -26,9 +27,11 @@ public class AddInteropData {
     private static final Log log = LogFactory.getLog(AddInteropData.class);
     private ConnectionPoolLIMS connectionQueue;
     private static ObjectMapper objectMapper;
+    private final InterOpsIndex interOpsIndex;
 
-    public AddInteropData(ConnectionPoolLIMS connectionQueue) {
+    public AddInteropData(ConnectionPoolLIMS connectionQueue, InterOpsIndex interOpsIndex) {
         this.connectionQueue = connectionQueue;
+        this.interOpsIndex = interOpsIndex;
         objectMapper = new ObjectMapper();
     }
 
@@ -55,7 +58,7 @@ public class AddInteropData {
         }
 
         SetOrCreateInteropData setOrCreateInteropData = new SetOrCreateInteropData();
-        setOrCreateInteropData.init(allFields);
+        setOrCreateInteropData.init(allFields, interOpsIndex);
         Future<Object> result = connectionQueue.submitTask(setOrCreateInteropData);
         String returnCode = "";
 
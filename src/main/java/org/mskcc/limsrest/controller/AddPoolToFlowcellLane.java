@@ -18,7 +18,6 @@ import java.util.concurrent.Future;
 public class AddPoolToFlowcellLane{
     private static Log log = LogFactory.getLog(AddPoolToFlowcellLane.class);
     private final ConnectionPoolLIMS conn;
-    private final AddPoolToLane task = new AddPoolToLane();
    
     public AddPoolToFlowcellLane( ConnectionPoolLIMS conn){
         this.conn = conn;
@@ -44,6 +43,7 @@ public class AddPoolToFlowcellLane{
        if(force.toUpperCase().equals("TRUE")){
             isForce = true;
        }
+       AddPoolToLane task = new AddPoolToLane();
        task.init(flowcell, sample, removeSample, igoUser, Long.parseLong(lane), isForce);
        Future<Object> result = conn.submitTask(task);
        String returnCode = "";
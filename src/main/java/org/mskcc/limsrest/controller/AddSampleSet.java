@@ -16,7 +16,6 @@ import java.util.concurrent.Future;
 public class AddSampleSet {
     private static Log log = LogFactory.getLog(AddSampleSet.class);
     private final ConnectionPoolLIMS conn;
-    private final AddOrCreateSet task = new AddOrCreateSet();
 
     public AddSampleSet(ConnectionPoolLIMS conn) {
         this.conn = conn;
@@ -69,6 +68,7 @@ public class AddSampleSet {
                     }
                 }
             }
+            AddOrCreateSet task = new AddOrCreateSet();
             task.init(igoUser, name, mapName, request, igoId, pair, category, baitSet, primeRecipe, primeRequest,
                     externalSpecimen);
             Future<Object> result = conn.submitTask(task);
@@ -21,12 +21,10 @@ import java.util.concurrent.Future;
 public class BillingReport {
 
     private final ConnectionPoolLIMS conn;
-    private final GetBillingReport task;
     private static Log log = LogFactory.getLog(BillingReport.class);
 
-    public BillingReport(ConnectionPoolLIMS conn, GetBillingReport getBillingReport) {
+    public BillingReport(ConnectionPoolLIMS conn) {
         this.conn = conn;
-        this.task = getBillingReport;
     }
 
     @GetMapping("/getBillingReport")
@@ -34,6 +32,7 @@ public class BillingReport {
         RunSummary rs = new RunSummary("BLANK_RUN", "BLANK_REQUEST");
         LinkedList<RunSummary> runSums = new LinkedList<>();
         log.info("Starting get billing report for project " + proj);
+        GetBillingReport task = new GetBillingReport();
         task.init(proj);
         Future<Object> result = conn.submitTask(task);
         try {
@@ -5,6 +5,7 @@ import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.dmp.DefaultTodayDateParser;
 import org.mskcc.limsrest.service.dmp.GenerateBankedSamplesFromDMP;
+import org.mskcc.limsrest.service.oncotree.OncotreeDictionary;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -20,10 +21,11 @@ public class CreateBankedSamplesFromDMP {
     private static final Log log = LogFactory.getLog(CreateBankedSamplesFromDMP.class);
 
     private final ConnectionPoolLIMS conn;
-    private final GenerateBankedSamplesFromDMP generateBankedSamplesFromDMP = new GenerateBankedSamplesFromDMP();
+    private final OncotreeDictionary oncotree;
 
-    public CreateBankedSamplesFromDMP(ConnectionPoolLIMS conn) {
+    public CreateBankedSamplesFromDMP(ConnectionPoolLIMS conn, OncotreeDictionary oncotree) {
         this.conn = conn;
+        this.oncotree = oncotree;
     }
 
     @RequestMapping("/createBankedSamplesFromDMP")
@@ -34,6 +36,8 @@ public class CreateBankedSamplesFromDMP {
             log.info(String.format("Starting to create banked samples from DMP samples for date: %s", localDate));
             log.info("Creating task");
 
+            GenerateBankedSamplesFromDMP generateBankedSamplesFromDMP = new GenerateBankedSamplesFromDMP();
+            generateBankedSamplesFromDMP.setTumorTypeRetriever(oncotree);
             generateBankedSamplesFromDMP.setDate(localDate);
 
             log.info("Getting result");
@@ -6,18 +6,22 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.GetAttachmentFileTask;
+import org.mskcc.limsrest.util.AttachmentSpool;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.io.IOException;
-import java.util.HashMap;
 import java.util.concurrent.Future;
 
 //Get Attachment File by its record id.
@@ -27,40 +31,51 @@ public class GetAttachmentFile {
 
     private static Log log = LogFactory.getLog(GetAttachmentFile.class);
     private final ConnectionPoolLIMS conn;
+    private final AttachmentSpool spool;
 
-    public GetAttachmentFile(ConnectionPoolLIMS conn) {
+    public GetAttachmentFile(ConnectionPoolLIMS conn, AttachmentSpool spool) {
         this.conn = conn;
+        this.spool = spool;
     }
 
+    /**
+     * Streams the attachment from the spool. Returning a Resource lets Spring write Content-Length and answer Range
+     * requests with 206 Partial Content. The spool entry stays pinned until the request completes, after the body
+     * was written, so it can't be evicted while it streams.
+     */
     @ApiOperation(httpMethod = "GET", value = "Get Attachment File by its record id.", response = Byte.class, tags = "/getAttachmentFile")
     @GetMapping("/getAttachmentFile")
-    public ResponseEntity<byte[]> getAttachmentFile(@RequestParam(value = "recordId", required = true) String recordId) throws IOException {
-        log.info("Starting get /getAttachmentFile");
-
-
-        GetAttachmentFileTask task = new GetAttachmentFileTask();
-        task.init(recordId);
-        Future<Object> result = conn.submitTask(task);
-        HashMap<String, Object> file;
-
-        try {
-            file = (HashMap<String, Object>) result.get();
-        } catch (Exception e) {
-            log.error(e);
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+    public ResponseEntity<Resource> getAttachmentFile(@RequestParam(value = "recordId", required = true) String recordId) {
+        log.info("Starting get /getAttachmentFile " + recordId);
+        if (!recordId.matches("\\d+"))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid record id: " + recordId);
+
+        AttachmentSpool.Entry file = spool.get(recordId);
+        if (file == null) {
+            GetAttachmentFileTask task = new GetAttachmentFileTask();
+            task.init(recordId, spool);
+            Future<Object> result = conn.submitTask(task);
+            try {
+                file = (AttachmentSpool.Entry) result.get();
+            } catch (Exception e) {
+                log.error(e);
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+            }
         }
+        if (file == null)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No attachment with record id " + recordId);
+        AttachmentSpool.Entry pinned = file;
+        RequestContextHolder.currentRequestAttributes().registerDestructionCallback(
+                AttachmentSpool.class.getName(), () -> spool.release(pinned), RequestAttributes.SCOPE_REQUEST);
 
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + file.get("fileName"));
-
-        log.info("Returning Attachment " + file.get("fileName"));
-        headers.setContentType(MediaType.APPLICATION_PDF);
-
-        ResponseEntity<byte[]> response = new ResponseEntity<>((byte[]) file.get("data"), headers, HttpStatus.OK);
-        return response;
-
+        headers.setContentType(MediaTypeFactory.getMediaType(file.getFileName())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM));
+        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + file.getFileName());
+        headers.add(HttpHeaders.ACCEPT_RANGES, "bytes");
 
+        log.info("Returning Attachment " + file.getFileName() + ", " + file.getLength() + " bytes");
+        return new ResponseEntity<>(new FileSystemResource(file.getFile()), headers, HttpStatus.OK);
     }
 
 }
@@ -7,7 +7,10 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.domain.sample.*;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.service.GenerateBulkSampleCmoIdsTask;
 import org.mskcc.limsrest.service.GenerateSampleCmoIdTask;
+import org.mskcc.limsrest.service.WarmPatientCmoSampleViewsTask;
+import org.mskcc.limsrest.service.cmoinfo.PatientCmoSampleViewCache;
 import org.mskcc.limsrest.service.cmoinfo.SampleTypeCorrectedCmoSampleIdGenerator;
 import org.mskcc.limsrest.util.Constants;
 import org.mskcc.limsrest.util.Utils;
@@ -16,11 +19,11 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Future;
 
 @RestController
 @RequestMapping("/")
@@ -28,9 +31,14 @@ public class GetCorrectedSampleCmoId {
     private static Log log = LogFactory.getLog(GetCorrectedSampleCmoId.class);
     private final static String DMP_SUFFIX = "Z";
     private final ConnectionPoolLIMS conn;
+    private final PatientCmoSampleViewCache patientSamplesCache;
+    private final LimsTaskResults taskResults;
 
-    public GetCorrectedSampleCmoId(ConnectionPoolLIMS conn) {
+    public GetCorrectedSampleCmoId(ConnectionPoolLIMS conn, PatientCmoSampleViewCache patientSamplesCache,
+                                   LimsTaskResults taskResults) {
         this.conn = conn;
+        this.patientSamplesCache = patientSamplesCache;
+        this.taskResults = taskResults;
     }
 
     /**
@@ -40,31 +48,35 @@ public class GetCorrectedSampleCmoId {
      * @return CMO Sample Id
      */
     @GetMapping("/getSampleCmoId")
-    public ResponseEntity<String> getSampleCmoIdByIgoId(@RequestParam(value = "sampleIgoId") String sampleIgoId) {
+    public DeferredResult<ResponseEntity<String>> getSampleCmoIdByIgoId(@RequestParam(value = "sampleIgoId") String sampleIgoId) {
         try {
             validateSampleId(sampleIgoId);
+        } catch (Exception e) {
+            return LimsTaskResults.completed(sampleCmoIdError(sampleIgoId, e));
+        }
 
-            log.info(String.format("Starting to generate sample cmo id for sample igo id: %s", sampleIgoId));
-
-            GenerateSampleCmoIdTask task = new GenerateSampleCmoIdTask();
-            task.init(sampleIgoId);
-
-            log.info("Getting result of Generate sample cmo id task");
-            Future<Object> result = conn.submitTask(task);
+        log.info(String.format("Starting to generate sample cmo id for sample igo id: %s", sampleIgoId));
 
-            String correctedSampleCmoId = (String) result.get();
+        GenerateSampleCmoIdTask task = new GenerateSampleCmoIdTask(
+                new SampleTypeCorrectedCmoSampleIdGenerator(patientSamplesCache));
+        task.init(sampleIgoId);
 
+        log.info("Getting result of Generate sample cmo id task");
+        return taskResults.defer("getSampleCmoId", conn.submitTaskAsync(task), result -> {
+            String correctedSampleCmoId = (String) result;
             log.info(String.format("Generated CMO Sample ID: %s", correctedSampleCmoId));
             return ResponseEntity.ok(correctedSampleCmoId);
-        } catch (Exception e) {
-            log.error(String.format("Error while generating CMO Sample Id for sample: %s", sampleIgoId), e);
+        }, e -> sampleCmoIdError(sampleIgoId, e));
+    }
 
-            MultiValueMap<String, String> headers = new HttpHeaders();
-            headers.add(Constants.ERRORS, String.format("Error while generating CMO Sample Id for sample: %s. Cause: " +
-                    "%s", sampleIgoId, ExceptionUtils.getRootCauseMessage(e)));
+    private ResponseEntity<String> sampleCmoIdError(String sampleIgoId, Throwable e) {
+        log.error(String.format("Error while generating CMO Sample Id for sample: %s", sampleIgoId), e);
 
-            return new ResponseEntity<>(headers, HttpStatus.OK);
-        }
+        MultiValueMap<String, String> headers = new HttpHeaders();
+        headers.add(Constants.ERRORS, String.format("Error while generating CMO Sample Id for sample: %s. Cause: " +
+                "%s", sampleIgoId, ExceptionUtils.getRootCauseMessage(e)));
+
+        return new ResponseEntity<>(headers, HttpStatus.OK);
     }
 
     /**
@@ -81,7 +93,7 @@ public class GetCorrectedSampleCmoId {
      * @return CMO Sample Id for DMP Samples
      */
     @RequestMapping("/getDmpSampleCmoId")
-    public ResponseEntity<String> getDMPSampleCmoIdByCmoSampleView(
+    public DeferredResult<ResponseEntity<String>> getDMPSampleCmoIdByCmoSampleView(
             @RequestParam String sampleId,
             @RequestParam(required = false) String requestId,
             @RequestParam String patientId,
@@ -103,33 +115,39 @@ public class GetCorrectedSampleCmoId {
             correctedCmoSampleView.setSpecimenType(SpecimenType.fromValue(specimenType));
             correctedCmoSampleView.setNucleidAcid(NucleicAcid.fromValue(nucleidAcid));
             correctedCmoSampleView.setCounter(counter);
+        } catch (Exception e) {
+            return LimsTaskResults.completed(cmoSampleViewError(correctedCmoSampleView, Constants.ERRORS, e));
+        }
 
-            log.info(String.format("Starting to generate sample cmo id for cmo sample: %s", correctedCmoSampleView));
-
-            log.info("Creating Generate sample cmo id task");
-            GenerateSampleCmoIdTask task = new GenerateSampleCmoIdTask();
-            task.init(correctedCmoSampleView);
+        log.info(String.format("Starting to generate sample cmo id for cmo sample: %s", correctedCmoSampleView));
 
-            log.info("Getting result of Generate sample cmo id task");
-            Future<Object> result = conn.submitTask(task);
+        log.info("Creating Generate sample cmo id task");
+        GenerateSampleCmoIdTask task = new GenerateSampleCmoIdTask(
+                new SampleTypeCorrectedCmoSampleIdGenerator(patientSamplesCache));
+        task.init(correctedCmoSampleView);
 
-            String correctedSampleCmoId = (String) result.get();
+        log.info("Getting result of Generate sample cmo id task");
+        return taskResults.defer("getDmpSampleCmoId", conn.submitTaskAsync(task), result -> {
+            String correctedSampleCmoId = (String) result;
             log.info(String.format("Generated CMO Sample ID: %s", correctedSampleCmoId));
 
             String dmpCmoId = String.format("%s%s", correctedSampleCmoId, DMP_SUFFIX);
             log.info(String.format("Formatted DMP CMO Sample ID: %s", dmpCmoId));
 
             return ResponseEntity.ok(dmpCmoId);
-        } catch (Exception e) {
-            log.error(String.format("Error while generating CMO Sample Id for cmo sample view: %s",
-                    correctedCmoSampleView), e);
+        }, e -> cmoSampleViewError(correctedCmoSampleView, Constants.ERRORS, e));
+    }
 
-            MultiValueMap<String, String> headers = new HttpHeaders();
-            headers.add(Constants.ERRORS, String.format("Error while generating CMO Sample Id for sample: %s. Cause: " +
-                    "%s", correctedCmoSampleView, ExceptionUtils.getRootCauseMessage(e)));
+    private ResponseEntity<String> cmoSampleViewError(CorrectedCmoSampleView correctedCmoSampleView,
+                                                      String errorsHeader, Throwable e) {
+        log.error(String.format("Error while generating CMO Sample Id for cmo sample view: %s",
+                correctedCmoSampleView), e);
 
-            return new ResponseEntity<>(headers, HttpStatus.OK);
-        }
+        MultiValueMap<String, String> headers = new HttpHeaders();
+        headers.add(errorsHeader, String.format("Error while generating CMO Sample Id for sample: %s. Cause: " +
+                "%s", correctedCmoSampleView, ExceptionUtils.getRootCauseMessage(e)));
+
+        return new ResponseEntity<>(headers, HttpStatus.OK);
     }
 
     private void validateSampleId(String sampleIgoId) {
@@ -155,7 +173,7 @@ public class GetCorrectedSampleCmoId {
      * @return CMO Sample Id
      */
     @RequestMapping("/getSampleCmoIdFromParams")
-    public ResponseEntity<String> getSampleCmoIdByCmoSampleView(
+    public DeferredResult<ResponseEntity<String>> getSampleCmoIdByCmoSampleView(
             @RequestParam String igoId,
             @RequestParam String userSampleId,
             @RequestParam(required = false) String requestId,
@@ -180,70 +198,87 @@ public class GetCorrectedSampleCmoId {
             correctedCmoSampleView.setSampleType(SampleType.fromString(sampleType));
             correctedCmoSampleView.setCorrectedCmoId(currentCmoSampleId);
             Utils.getOptionalNucleicAcid(nucleidAcid, igoId).ifPresent(correctedCmoSampleView::setNucleidAcid);
+        } catch (Exception e) {
+            return LimsTaskResults.completed(cmoSampleViewError(correctedCmoSampleView, "ERRORS", e));
+        }
 
-            log.info(String.format("Starting to generate sample cmo id for sample: %s", correctedCmoSampleView));
-
-            log.info("Creating Generate sample cmo id task");
-            GenerateSampleCmoIdTask task = new GenerateSampleCmoIdTask();
-            task.init(correctedCmoSampleView);
+        log.info(String.format("Starting to generate sample cmo id for sample: %s", correctedCmoSampleView));
 
-            log.info("Getting result of Generate sample cmo id task");
-            Future<Object> result = conn.submitTask(task);
+        log.info("Creating Generate sample cmo id task");
+        GenerateSampleCmoIdTask task = new GenerateSampleCmoIdTask(
+                new SampleTypeCorrectedCmoSampleIdGenerator(patientSamplesCache));
+        task.init(correctedCmoSampleView);
 
-            String correctedSampleCmoId = (String) result.get();
+        log.info("Getting result of Generate sample cmo id task");
+        return taskResults.defer("getSampleCmoIdFromParams", conn.submitTaskAsync(task), result -> {
+            String correctedSampleCmoId = (String) result;
             log.info(String.format("Generated CMO Sample ID: %s", correctedSampleCmoId));
 
             return ResponseEntity.ok(correctedSampleCmoId);
-        } catch (Exception e) {
-            log.error(String.format("Error while generating CMO Sample Id for cmo sample view: %s",
-                    correctedCmoSampleView), e);
-
-            MultiValueMap<String, String> headers = new HttpHeaders();
-            headers.add("ERRORS", String.format("Error while generating CMO Sample Id for sample: %s. Cause: " +
-                    "%s", correctedCmoSampleView, ExceptionUtils.getRootCauseMessage(e)));
-
-            return new ResponseEntity<>(headers, HttpStatus.OK);
-        }
+        }, e -> cmoSampleViewError(correctedCmoSampleView, "ERRORS", e));
     }
 
     /**
-     * This function generates multiple CMO Sample Ids from an array of input objects.
+     * This function generates multiple CMO Sample Ids from an array of input objects. All ids are generated by one
+     * task which reads the samples of each patient once.
      *
      * @param correctedCmoSampleViews
      * @return Map of Igo id to CMO Sample Id
      */
     @PostMapping("/getBulkSampleCmoIdsFromParams")
-    public ResponseEntity<Map<String, String>> getSampleCmoIdByCmoSampleView(@RequestBody CorrectedCmoSampleView[] correctedCmoSampleViews) {
+    public DeferredResult<ResponseEntity<Map<String, String>>> getSampleCmoIdByCmoSampleView(@RequestBody CorrectedCmoSampleView[] correctedCmoSampleViews) {
         log.info("Starting /getBulkSampleCmoIdsFromParams");
-        Map<String, String> cmoSampleIds = new HashMap<>();
         try {
             validate(correctedCmoSampleViews);
-            SampleTypeCorrectedCmoSampleIdGenerator x = new SampleTypeCorrectedCmoSampleIdGenerator();
-            for (CorrectedCmoSampleView correctedCmoSampleView : correctedCmoSampleViews) {
-                log.info(String.format("Starting to generate sample cmo id for sample: %s", correctedCmoSampleViews.toString()));
-
-                log.info("Creating Generate sample cmo id task");
-                GenerateSampleCmoIdTask task = new GenerateSampleCmoIdTask(x);
-                task.init(correctedCmoSampleView);
+        } catch (Exception e) {
+            return LimsTaskResults.completed(bulkError(correctedCmoSampleViews, e));
+        }
+        log.info(String.format("Starting to generate sample cmo ids for %d samples", correctedCmoSampleViews.length));
+
+        GenerateBulkSampleCmoIdsTask task = new GenerateBulkSampleCmoIdsTask(
+                new SampleTypeCorrectedCmoSampleIdGenerator(patientSamplesCache));
+        task.init(correctedCmoSampleViews);
+        return taskResults.defer("getBulkSampleCmoIdsFromParams", conn.submitTaskAsync(task), result -> {
+            Map<String, String> cmoSampleIds = (Map<String, String>) result;
+            log.info(String.format("Generated CMO Sample IDs: %s", cmoSampleIds));
+            log.info("Completed /getBulkSampleCmoIdsFromParams");
+            return ResponseEntity.ok(cmoSampleIds);
+        }, e -> bulkError(correctedCmoSampleViews, e));
+    }
 
-                log.info("Getting result of Generate sample cmo id task");
-                Future<Object> result = conn.submitTask(task);
+    private ResponseEntity<Map<String, String>> bulkError(CorrectedCmoSampleView[] correctedCmoSampleViews,
+                                                          Throwable e) {
+        log.error(String.format("CMO Sample Id error: %s", Arrays.toString(correctedCmoSampleViews)), e);
 
-                String correctedSampleCmoId = (String) result.get();
-                log.info(String.format("Generated CMO Sample ID: %s", correctedSampleCmoId));
+        MultiValueMap<String, String> headers = new HttpHeaders();
+        headers.add("ERRORS", e.getLocalizedMessage());
 
-                cmoSampleIds.put(correctedCmoSampleView.getId(), correctedSampleCmoId);
-            }
-        } catch (Exception e) {
-            log.error(String.format("CMO Sample Id error: %s", correctedCmoSampleViews.toString()), e);
-
-            MultiValueMap<String, String> headers = new HttpHeaders();
-            headers.add("ERRORS", e.getLocalizedMessage());
+        return new ResponseEntity<>(headers, HttpStatus.OK);
+    }
 
-            return new ResponseEntity<>(headers, HttpStatus.OK);
-        }
-        log.info("Completed /getBulkSampleCmoIdsFromParams");
-        return ResponseEntity.ok(cmoSampleIds);
+    /**
+     * This function loads the samples of all patients of a request into the cache used to count CMO Sample Ids, so
+     * generating the ids of its samples one by one does not query the LIMS for every sample.
+     *
+     * @param requestId
+     * @return number of patients loaded
+     */
+    @PostMapping("/warmSampleCmoIdCache")
+    public DeferredResult<ResponseEntity<Integer>> warmSampleCmoIdCache(@RequestParam String requestId) {
+        log.info("Starting /warmSampleCmoIdCache " + requestId);
+        if (!Whitelists.requestMatches(requestId))
+            return LimsTaskResults.completed(ResponseEntity.badRequest().build());
+
+        WarmPatientCmoSampleViewsTask task = new WarmPatientCmoSampleViewsTask(patientSamplesCache);
+        task.init(requestId);
+        return taskResults.defer("warmSampleCmoIdCache", conn.submitTaskAsync(task),
+                result -> ResponseEntity.ok((Integer) result), e -> {
+                    log.error(String.format("Error while warming CMO sample views of request: %s", requestId), e);
+
+                    MultiValueMap<String, String> headers = new HttpHeaders();
+                    headers.add(Constants.ERRORS, ExceptionUtils.getRootCauseMessage(e));
+                    return new ResponseEntity<>(headers, HttpStatus.OK);
+                });
     }
 
     private void validate(CorrectedCmoSampleView[] correctedCmoSampleViews) {
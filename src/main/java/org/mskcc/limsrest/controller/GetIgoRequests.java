@@ -59,7 +59,10 @@ public class GetIgoRequests {
         }
 
         GetIgoRequestsTask task = new GetIgoRequestsTask(numDays, igoComplete);
-        List<RequestSummary> requests = task.execute(this.conn.getConnection());
+        List<RequestSummary> requests;
+        try (ConnectionLIMS.Lease lease = this.conn.lease()) {
+            requests = task.execute(lease.getConnection());
+        }
         resp.put("status", "Success");
         resp.put("requests", requests);
         return getResponseEntity(resp, HttpStatus.OK);
@@ -4,6 +4,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.interops.GetInterOpsDataTask;
+import org.mskcc.limsrest.service.interops.InterOpsIndex;
 import org.mskcc.util.Constants;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -24,9 +25,11 @@ public class GetInterOpsData {
     private static final Log log = LogFactory.getLog(GetInterOpsData.class);
 
     private final ConnectionPoolLIMS conn;
+    private final InterOpsIndex interOpsIndex;
 
-    public GetInterOpsData(ConnectionPoolLIMS conn) {
+    public GetInterOpsData(ConnectionPoolLIMS conn, InterOpsIndex interOpsIndex) {
         this.conn = conn;
+        this.interOpsIndex = interOpsIndex;
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -37,7 +40,7 @@ public class GetInterOpsData {
         log.info("Starting get /getInterOpsData " + runId);
         try {
             GetInterOpsDataTask task = new GetInterOpsDataTask();
-            task.init(runId);
+            task.init(runId, interOpsIndex);
             Future<Object> result = conn.submitTask(task);
             interOps = (List<Map<String, String>>) result.get();
         } catch (Exception e) {
@@ -25,12 +25,10 @@ import org.apache.commons.logging.LogFactory;
 public class GetPairingInfo {
 
     private final ConnectionPoolLIMS conn;
-    private final GetSetOrReqPairs task;
     private final Log log = LogFactory.getLog(GetPairingInfo.class);
 
-    public GetPairingInfo(ConnectionPoolLIMS conn, GetSetOrReqPairs getPairs){
+    public GetPairingInfo(ConnectionPoolLIMS conn){
         this.conn = conn;
-        this.task = getPairs;
     }
 
     @GetMapping("/getCategoryMapping")
@@ -49,6 +47,7 @@ public class GetPairingInfo {
             return typeToId; 
         }
        log.info("Starting to get pairing info for user " + user);
+       GetSetOrReqPairs task = new GetSetOrReqPairs();
        task.init(requestId, set, mapName);
        if(requestId == null && set == null){
           log.info("Trying to access catergory mapping without specifying project or set");
@@ -82,6 +81,7 @@ public class GetPairingInfo {
                 return typeToId;
             }
             log.info("Starting to get pairing info for user " + user);
+            GetSetOrReqPairs task = new GetSetOrReqPairs();
             task.init(requestId, set);
             if(requestId == null && set == null){
                log.info("Trying to access pairing info without specifying project or set");
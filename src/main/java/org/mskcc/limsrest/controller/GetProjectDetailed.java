@@ -9,36 +9,35 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-
-import java.util.concurrent.Future;
+import org.springframework.web.context.request.async.DeferredResult;
 
 @RestController
 @RequestMapping("/")
 public class GetProjectDetailed {
     private static Log log = LogFactory.getLog(GetProjectDetailed.class);
     private final ConnectionPoolLIMS conn;
-    private final GetProjectDetails task = new GetProjectDetails();
+    private final LimsTaskResults taskResults;
    
-    public GetProjectDetailed(ConnectionPoolLIMS conn){
+    public GetProjectDetailed(ConnectionPoolLIMS conn, LimsTaskResults taskResults){
         this.conn = conn;
+        this.taskResults = taskResults;
     }
 
     @GetMapping("/getProjectDetailed")
-    public ProjectSummary getContent(@RequestParam(value="project") String project) {
+    public DeferredResult<ProjectSummary> getContent(@RequestParam(value="project") String project) {
        if (!Whitelists.requestMatches(project)){
               ProjectSummary eSum = new ProjectSummary();
               eSum.setRestStatus( "FAILURE: project is not using a valid format");
-                return eSum;
+                return LimsTaskResults.completed(eSum);
        }
        log.info("Getting project detailed for " + project);
+       GetProjectDetails task = new GetProjectDetails();
        task.init(project);
-       Future<Object> result = conn.submitTask(task);
-       ProjectSummary ps = new ProjectSummary();
-       try{
-         ps = (ProjectSummary)result.get();
-       } catch(Exception e){
-         ps.setCmoProjectId(e.getMessage());
-       }
-       return ps;
+       return taskResults.defer("getProjectDetailed", conn.submitTaskAsync(task), result -> (ProjectSummary) result,
+               e -> {
+                 ProjectSummary ps = new ProjectSummary();
+                 ps.setCmoProjectId(e.getMessage());
+                 return ps;
+               });
    }
 }
\ No newline at end of file
@@ -6,6 +6,8 @@ import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.GetSampleQc;
 import org.mskcc.limsrest.service.RequestSummary;
+import org.mskcc.limsrest.service.ngsstats.NgsStatsClient;
+import org.mskcc.limsrest.util.SingleFlight;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -21,9 +23,13 @@ import java.util.concurrent.Future;
 public class GetProjectQc {
     private static Log log = LogFactory.getLog(GetProjectQc.class);
     private final ConnectionLIMS conn;
+    private final NgsStatsClient ngsStats;
+    private final SingleFlight singleFlight;
 
-    public GetProjectQc(ConnectionLIMS conn){
+    public GetProjectQc(ConnectionLIMS conn, NgsStatsClient ngsStats, SingleFlight singleFlight){
         this.conn = conn;
+        this.ngsStats = ngsStats;
+        this.singleFlight = singleFlight;
     }
 
     @GetMapping("/getProjectQc")
@@ -40,10 +46,10 @@ public class GetProjectQc {
             }
         }
 
-        GetSampleQc task = new GetSampleQc(project, conn);
         List<RequestSummary> rss = new LinkedList<>();
         try {
-            rss = task.execute();
+            rss = singleFlight.execute(SingleFlight.key("getProjectQc", project),
+                    () -> new GetSampleQc(project, conn, ngsStats).execute());
         } catch(Exception e) {
             RequestSummary rs = new RequestSummary();
             rs.setInvestigator(e.getMessage());
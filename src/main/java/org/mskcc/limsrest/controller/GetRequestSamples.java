@@ -4,6 +4,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.service.GetRequestSamplesTask;
+import org.mskcc.limsrest.service.ngsstats.NgsStatsClient;
+import org.mskcc.limsrest.util.SingleFlight;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -19,9 +21,13 @@ public class GetRequestSamples {
     private final static Log log = LogFactory.getLog(GetRequestSamples.class);
 
     private final ConnectionLIMS conn;
+    private final NgsStatsClient ngsStats;
+    private final SingleFlight singleFlight;
 
-    public GetRequestSamples(ConnectionLIMS conn) {
+    public GetRequestSamples(ConnectionLIMS conn, NgsStatsClient ngsStats, SingleFlight singleFlight) {
         this.conn = conn;
+        this.ngsStats = ngsStats;
+        this.singleFlight = singleFlight;
     }
 
     @GetMapping("/api/getRequestSamples")
@@ -34,8 +40,9 @@ public class GetRequestSamples {
         }
 
         try {
-            GetRequestSamplesTask t = new GetRequestSamplesTask(requestId, conn);
-            GetRequestSamplesTask.RequestSampleList sl = t.execute();
+            GetRequestSamplesTask.RequestSampleList sl = singleFlight.execute(
+                    SingleFlight.key("getRequestSamples", requestId),
+                    () -> new GetRequestSamplesTask(requestId, conn, ngsStats).execute());
             if ("NOT_FOUND".equals(sl.requestId)) {
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, requestId + " Request Not Found");
             }
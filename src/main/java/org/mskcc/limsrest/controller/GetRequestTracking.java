@@ -1,11 +1,10 @@
 package org.mskcc.limsrest.controller;
 
-import com.velox.api.datarecord.IoError;
-import com.velox.api.datarecord.NotFound;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.service.GetRequestTrackingTask;
+import org.mskcc.limsrest.util.SingleFlight;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,7 +14,6 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
 import javax.servlet.http.HttpServletRequest;
-import java.rmi.RemoteException;
 import java.util.Map;
 
 import static org.mskcc.limsrest.util.Utils.getResponseEntity;
@@ -26,9 +24,11 @@ public class GetRequestTracking {
     private final static Log log = LogFactory.getLog(GetRequestTracking.class);
 
     private final ConnectionLIMS conn;
+    private final SingleFlight singleFlight;
 
-    public GetRequestTracking(ConnectionLIMS conn) {
+    public GetRequestTracking(ConnectionLIMS conn, SingleFlight singleFlight) {
         this.conn = conn;
+        this.singleFlight = singleFlight;
     }
 
     @GetMapping("/getRequestTracking")
@@ -42,10 +42,11 @@ public class GetRequestTracking {
         }
 
         try {
-            GetRequestTrackingTask t = new GetRequestTrackingTask(requestId, conn);
-            Map<String, Object> requestTracker = t.execute();
+            Map<String, Object> requestTracker = singleFlight.execute(
+                    SingleFlight.key("getRequestTracking", requestId),
+                    () -> new GetRequestTrackingTask(requestId, conn).execute());
             return getResponseEntity(requestTracker, HttpStatus.OK);
-        } catch (IoError | RemoteException | NotFound e) {
+        } catch (Exception e) {
             log.error(e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
         }
@@ -5,8 +5,12 @@ import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.service.GetSampleManifestTask;
 import org.mskcc.limsrest.service.SampleManifest;
+import org.mskcc.limsrest.service.ngsstats.NgsStatsClient;
 import org.mskcc.limsrest.util.IGOTools;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -16,37 +20,62 @@ import org.springframework.web.server.ResponseStatusException;
 import javax.servlet.http.HttpServletRequest;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 @RestController
 @RequestMapping("/")
 public class GetSampleManifest {
     private static Log log = LogFactory.getLog(GetSampleManifest.class);
     private final ConnectionLIMS conn;
+    private final ExecutorService executor;
+    private final NgsStatsClient ngsStats;
 
-    public GetSampleManifest(ConnectionLIMS conn) {
+    @Value("${lims.manifest.maxSamples:10}")
+    private int maxSamples;
+    @Value("${lims.manifest.sampleTimeoutMillis:300000}")
+    private long sampleTimeoutMillis;
+
+    public GetSampleManifest(ConnectionLIMS conn, @Qualifier("sampleManifestExecutor") ExecutorService executor,
+                             NgsStatsClient ngsStats) {
         this.conn = conn;
+        this.executor = executor;
+        this.ngsStats = ngsStats;
     }
 
     @GetMapping("/api/getSampleManifest")
-    public List<SampleManifest> getContent(@RequestParam(value="igoSampleId") String[] igoIds, HttpServletRequest request) {
+    public ResponseEntity<List<SampleManifest>> getContent(@RequestParam(value="igoSampleId") String[] igoIds, HttpServletRequest request) {
         log.info("/api/getSampleManifest:" + Arrays.toString(igoIds) + " IP:" + request.getRemoteAddr());
 
-        if (igoIds.length > 10) {
-            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Maximum 10 samples per query, you sent:" + igoIds.length);
+        if (igoIds.length > maxSamples) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Maximum " + maxSamples + " samples per query, you sent:" + igoIds.length);
         }
         for (String igoId : igoIds) {
             if (!IGOTools.isValidIGOSampleId(igoId))
                 throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Invalid IGO Sample ID: " + igoId);
         }
 
-        GetSampleManifestTask sampleManifest = new GetSampleManifestTask(igoIds, conn);
+        GetSampleManifestTask sampleManifest = new GetSampleManifestTask(igoIds, conn, ngsStats, executor,
+                sampleTimeoutMillis);
         GetSampleManifestTask.SampleManifestResult result = sampleManifest.execute();
+        return toResponse(igoIds, result);
+    }
+
+    /**
+     * Returns the manifests with 200 if all samples were evaluated. If some failed, all manifests are still returned,
+     * the failed ones empty with their error set, but with a 500 so callers can't mistake them for samples without data.
+     */
+    public static ResponseEntity<List<SampleManifest>> toResponse(String[] igoIds,
+                                                                  GetSampleManifestTask.SampleManifestResult result) {
         if (result == null) {
             log.error("Sample Manifest generation failed for: " + Arrays.toString(igoIds));
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR);
         } else if (result.error == null) {
             log.info("Returning n rows: " + result.smList.size());
-            return result.smList;
+            if (!result.sampleErrors.isEmpty()) {
+                log.error("Sample Manifest generation failed for samples: " + result.sampleErrors);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(result.smList);
+            }
+            return ResponseEntity.ok(result.smList);
         } else {
             log.error("Sample Manifest generation failed with error: " + result.error);
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, result.error);
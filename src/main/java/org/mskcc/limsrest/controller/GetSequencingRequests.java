@@ -70,7 +70,10 @@ public class GetSequencingRequests {
         }
 
         GetSequencingRequestsTask task = new GetSequencingRequestsTask(numDays, isDelivered);
-        List<RequestSummary> requests = task.execute(this.conn.getConnection());
+        List<RequestSummary> requests;
+        try (ConnectionLIMS.Lease lease = this.conn.lease()) {
+            requests = task.execute(lease.getConnection());
+        }
         resp.put("status", "Success");
         resp.put("requests", requests);
         return getResponseEntity(resp, HttpStatus.OK);
@@ -0,0 +1,94 @@
+package org.mskcc.limsrest.controller;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.service.cmoinfo.PatientCmoSampleViewCache;
+import org.mskcc.limsrest.service.cvr.CvrClient;
+import org.mskcc.limsrest.service.hiseq.HiseqRunIndex;
+import org.mskcc.limsrest.service.interops.InterOpsIndex;
+import org.mskcc.limsrest.service.ngsstats.NgsStatsClient;
+import org.mskcc.limsrest.service.oncotree.OncotreeDictionary;
+import org.mskcc.limsrest.service.sampletracker.WESSampleDataStore;
+import org.mskcc.limsrest.service.timeline.ProjectTimelineStore;
+import org.mskcc.limsrest.util.AttachmentSpool;
+import org.mskcc.limsrest.util.DataRecordFieldCache;
+import org.mskcc.limsrest.util.SingleFlight;
+import org.mskcc.limsrest.util.WorkflowStageRefresher;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runtime counters for monitoring LIMS access, e.g. task queue depth and connection wait times.
+ */
+@RestController
+@RequestMapping("/")
+public class GetServiceStats {
+    private static Log log = LogFactory.getLog(GetServiceStats.class);
+    private final ConnectionPoolLIMS conn;
+    private final ConnectionLIMS connection;
+    private final DataRecordFieldCache fieldCache;
+    private final NgsStatsClient ngsStats;
+    private final InterOpsIndex interOpsIndex;
+    private final AttachmentSpool attachmentSpool;
+    private final PatientCmoSampleViewCache patientSamplesCache;
+    private final HiseqRunIndex runIndex;
+    private final ProjectTimelineStore timelineStore;
+    private final LimsTaskResults taskResults;
+    private final SingleFlight singleFlight;
+    private final WESSampleDataStore wesSampleDataStore;
+    private final CvrClient cvrClient;
+    private final OncotreeDictionary oncotree;
+    private final WorkflowStageRefresher workflowStages;
+
+    public GetServiceStats(ConnectionPoolLIMS conn, ConnectionLIMS connection, DataRecordFieldCache fieldCache,
+                           NgsStatsClient ngsStats, InterOpsIndex interOpsIndex, AttachmentSpool attachmentSpool,
+                           PatientCmoSampleViewCache patientSamplesCache, HiseqRunIndex runIndex,
+                           ProjectTimelineStore timelineStore, LimsTaskResults taskResults,
+                           SingleFlight singleFlight, WESSampleDataStore wesSampleDataStore,
+                           CvrClient cvrClient, OncotreeDictionary oncotree,
+                           WorkflowStageRefresher workflowStages) {
+        this.conn = conn;
+        this.connection = connection;
+        this.fieldCache = fieldCache;
+        this.ngsStats = ngsStats;
+        this.interOpsIndex = interOpsIndex;
+        this.attachmentSpool = attachmentSpool;
+        this.patientSamplesCache = patientSamplesCache;
+        this.runIndex = runIndex;
+        this.timelineStore = timelineStore;
+        this.taskResults = taskResults;
+        this.singleFlight = singleFlight;
+        this.wesSampleDataStore = wesSampleDataStore;
+        this.cvrClient = cvrClient;
+        this.oncotree = oncotree;
+        this.workflowStages = workflowStages;
+    }
+
+    @GetMapping("/getServiceStats")
+    public Map<String, Object> getContent() {
+        log.info("Starting get /getServiceStats");
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("limsTaskPool", conn.getStats());
+        stats.put("limsConnection", connection.getStats());
+        stats.put("asyncRequests", taskResults.getStats());
+        stats.put("singleFlight", singleFlight.getStats());
+        stats.put("recordFieldCache", fieldCache.getStats());
+        stats.put("ngsStats", ngsStats.getStats());
+        stats.put("interOpsIndex", interOpsIndex.getStats());
+        stats.put("hiseqRunIndex", runIndex.getStats());
+        stats.put("attachmentSpool", attachmentSpool.getStats());
+        stats.put("patientCmoSampleViews", patientSamplesCache.getStats());
+        stats.put("projectTimelines", timelineStore.getStats());
+        stats.put("wesSampleData", wesSampleDataStore.getStats());
+        stats.put("cvr", cvrClient.getStats());
+        stats.put("oncotree", oncotree.getStats());
+        stats.put("workflowStages", workflowStages.getStats());
+        return stats;
+    }
+}
@@ -4,14 +4,15 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.GetProjectHistory;
+import org.mskcc.limsrest.service.timeline.ProjectTimelineStore;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.LinkedList;
 import java.util.Set;
-import java.util.concurrent.Future;
 
 /**
  * Used on the alba IGO tools website, called about once a month.
@@ -22,29 +23,31 @@ public class GetTimelines {
     private static Log log = LogFactory.getLog(GetTimelines.class);
 
     private final ConnectionPoolLIMS conn;
+    private final ProjectTimelineStore timelineStore;
+    private final LimsTaskResults taskResults;
 
-    public GetTimelines(ConnectionPoolLIMS conn) {
+    public GetTimelines(ConnectionPoolLIMS conn, ProjectTimelineStore timelineStore, LimsTaskResults taskResults) {
         this.conn = conn;
+        this.timelineStore = timelineStore;
+        this.taskResults = taskResults;
     }
 
     @GetMapping("/getTimeline")
-    public LinkedList<GetProjectHistory.HistoricalEvent> getContent(@RequestParam(value = "project") String[] project) {
-        LinkedList<GetProjectHistory.HistoricalEvent> timeline = new LinkedList<>();
+    public DeferredResult<LinkedList<GetProjectHistory.HistoricalEvent>> getContent(@RequestParam(value = "project") String[] project) {
         for (int i = 0; i < project.length; i++) {
             if (!Whitelists.requestMatches(project[i])) {
-                return timeline;
+                return LimsTaskResults.completed(new LinkedList<>());
             }
         }
         log.info("Starting get Timeline " + project[0]);
-        GetProjectHistory task = new GetProjectHistory();
+        GetProjectHistory task = new GetProjectHistory(timelineStore);
         task.init(project);
-        Future<Object> result = conn.submitTask(task);
-        try {
-            timeline = new LinkedList((Set<GetProjectHistory.HistoricalEvent>) result.get());
-        } catch (Exception e) {
+        return taskResults.defer("getTimeline", conn.submitTaskAsync(task), result -> {
+            log.info("Completed timeline");
+            return new LinkedList<>((Set<GetProjectHistory.HistoricalEvent>) result);
+        }, e -> {
             log.error(e.getMessage(), e);
-        }
-        log.info("Completed timeline");
-        return timeline;
+            return new LinkedList<>();
+        });
     }
 }
\ No newline at end of file
@@ -31,7 +31,10 @@ public class GetUndeliveredProjects {
         log.info("/getUndeliveredProjects for projects not delivered");
 
         GetUndeliveredProjectsTask t = new GetUndeliveredProjectsTask();
-        List<RequestSummary> requestTracker = t.execute(this.conn.getConnection());
+        List<RequestSummary> requestTracker;
+        try (ConnectionLIMS.Lease lease = this.conn.lease()) {
+            requestTracker = t.execute(lease.getConnection());
+        }
         return getResponseEntity(requestTracker, HttpStatus.OK);
     }
 }
@@ -1,35 +1,76 @@
 package org.mskcc.limsrest.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.service.GetWESSampleDataTask;
-import org.mskcc.limsrest.service.sampletracker.WESSampleData;
+import org.mskcc.limsrest.service.cvr.CvrClient;
+import org.mskcc.limsrest.service.oncotree.OncotreeDictionary;
+import org.mskcc.limsrest.service.sampletracker.WESSampleDataStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
 
 @RestController
 @RequestMapping("/")
 public class GetWESSampleData {
     private Log log = LogFactory.getLog(GetWESSampleData.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
     private ConnectionLIMS conn;
+    private WESSampleDataStore store;
+    private CvrClient cvrClient;
+    private OncotreeDictionary oncotree;
+    private ExecutorService lookupExecutor;
 
-    public GetWESSampleData(ConnectionLIMS conn) {
+    public GetWESSampleData(ConnectionLIMS conn, WESSampleDataStore store, CvrClient cvrClient,
+                            OncotreeDictionary oncotree, @Qualifier("wesLookupExecutor") ExecutorService lookupExecutor) {
         this.conn = conn;
+        this.store = store;
+        this.cvrClient = cvrClient;
+        this.oncotree = oncotree;
+        this.lookupExecutor = lookupExecutor;
     }
 
+    /**
+     * Streams the JSON array of rows as the trackers are processed so the caller receives data while the sync runs.
+     */
     @RequestMapping("/getWESSampleData")
-    public List<WESSampleData> getContent(@RequestParam(value="timestamp") String timestamp) {
+    public void getContent(@RequestParam(value="timestamp") String timestamp, HttpServletResponse response)
+            throws IOException {
         log.info("Starting /getWESSampleData using timestamp " + timestamp);
-        GetWESSampleDataTask task = new GetWESSampleDataTask(timestamp, conn);
-        try {
-            return task.execute();
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            return null;
+        GetWESSampleDataTask task = new GetWESSampleDataTask(timestamp, conn, store, cvrClient, oncotree,
+                lookupExecutor);
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            json.writeStartArray();
+            try {
+                task.execute(row -> {
+                    objectMapper.writeValue(json, row);
+                    json.flush();
+                });
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+            json.writeEndArray();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Asks CVR again for the metadata of a DMP sample on the next /getWESSampleData.
+     */
+    @RequestMapping("/refreshCvrData")
+    public String refreshCvrData(@RequestParam(value="dmpSampleId") String dmpSampleId) {
+        log.info("Starting /refreshCvrData for " + dmpSampleId);
+        cvrClient.refresh(dmpSampleId);
+        store.invalidateDmpSample(dmpSampleId);
+        return "Refreshed CVR data of " + dmpSampleId;
+    }
+}
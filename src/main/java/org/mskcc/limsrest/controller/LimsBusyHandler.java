@@ -0,0 +1,26 @@
+package org.mskcc.limsrest.controller;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.LimsBusyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Answers LIMS tasks rejected by a full task queue or timed out waiting in it with a 503 and a Retry-After header.
+ */
+@RestControllerAdvice
+public class LimsBusyHandler {
+    private static Log log = LogFactory.getLog(LimsBusyHandler.class);
+
+    @ExceptionHandler(LimsBusyException.class)
+    public ResponseEntity<String> handleBusy(LimsBusyException e) {
+        log.warn(e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+}
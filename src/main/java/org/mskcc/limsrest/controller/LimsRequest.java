@@ -4,6 +4,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.GetRequest;
+import org.mskcc.limsrest.util.DataRecordFieldCache;
 import org.mskcc.limsrest.service.RequestDetailed;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -22,9 +23,11 @@ import java.util.concurrent.Future;
 public class LimsRequest {
     private static Log log = LogFactory.getLog(LimsRequest.class);
     private final ConnectionPoolLIMS conn;
+    private final DataRecordFieldCache fieldCache;
    
-    public LimsRequest(ConnectionPoolLIMS conn){
+    public LimsRequest(ConnectionPoolLIMS conn, DataRecordFieldCache fieldCache){
         this.conn = conn;
+        this.fieldCache = fieldCache;
     }
 
     @RequestMapping(value = "/limsRequest", method = RequestMethod.GET)
@@ -43,7 +46,7 @@ public class LimsRequest {
                 return new ResponseEntity(reqSummary, HttpStatus.BAD_REQUEST);
         }
 
-        GetRequest reader = new GetRequest();
+        GetRequest reader = new GetRequest(fieldCache);
         reader.init(igoUser, request, fieldName);
         Future<Object> result = conn.submitTask(reader);
         try {
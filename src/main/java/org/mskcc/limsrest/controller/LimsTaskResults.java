@@ -0,0 +1,89 @@
+package org.mskcc.limsrest.controller;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.LimsBusyException;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Turns LIMS tasks submitted with ConnectionPoolLIMS.submitTaskAsync into DeferredResults, so a controller hands its
+ * Tomcat thread back while the task waits for a LIMS connection and a slow LIMS can't use up the threads of unrelated
+ * endpoints.
+ * <p>
+ * A task not done after the timeout of its endpoint is cancelled if it hasn't started yet and the client gets a 503
+ * with a Retry-After header.
+ */
+public class LimsTaskResults {
+    private static Log log = LogFactory.getLog(LimsTaskResults.class);
+
+    // endpoint -> timeout in milliseconds
+    private final Function<String, Long> timeoutMillis;
+    private final long retryAfterSeconds;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public LimsTaskResults(Function<String, Long> timeoutMillis, long retryAfterSeconds) {
+        this.timeoutMillis = timeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @param endpoint name of the endpoint without the leading slash, e.g. "getTimeline"
+     * @param onResult converts the result of the task to the response
+     * @param onError  converts an exception thrown by the task or by onResult to the response
+     */
+    public <T> DeferredResult<T> defer(String endpoint, CompletableFuture<Object> task, Function<Object, T> onResult,
+                                       Function<Throwable, T> onError) {
+        long timeout = timeoutMillis.apply(endpoint);
+        DeferredResult<T> result = new DeferredResult<>(timeout);
+        result.onTimeout(() -> {
+            timedOut.incrementAndGet();
+            log.warn(String.format("/%s timed out after %dms", endpoint, timeout));
+            task.cancel(false);
+            result.setErrorResult(new LimsBusyException(String.format("/%s did not complete within %dms.", endpoint,
+                    timeout), retryAfterSeconds));
+        });
+        task.whenComplete((value, e) -> {
+            if (e instanceof CancellationException)
+                return;
+            if (e == null) {
+                try {
+                    result.setResult(onResult.apply(value));
+                    completed.incrementAndGet();
+                    return;
+                } catch (RuntimeException conversionError) {
+                    e = conversionError;
+                }
+            }
+            failed.incrementAndGet();
+            result.setResult(onError.apply(e));
+        });
+        return result;
+    }
+
+    /**
+     * For responses known before any task is submitted, e.g. validation errors.
+     */
+    public static <T> DeferredResult<T> completed(T value) {
+        DeferredResult<T> result = new DeferredResult<>();
+        result.setResult(value);
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        stats.put("timedOut", timedOut.get());
+        return stats;
+    }
+}
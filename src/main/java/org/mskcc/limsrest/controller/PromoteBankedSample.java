@@ -6,6 +6,7 @@ import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.LimsException;
 import org.mskcc.limsrest.service.PromoteBanked;
+import org.mskcc.limsrest.service.cmoinfo.PatientCmoSampleViewCache;
 import org.mskcc.limsrest.util.Constants;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -23,9 +24,11 @@ import java.util.concurrent.Future;
 public class PromoteBankedSample {
     private final static Log log = LogFactory.getLog(PromoteBankedSample.class);
     private final ConnectionPoolLIMS conn;
+    private final PatientCmoSampleViewCache patientSamplesCache;
 
-    public PromoteBankedSample(ConnectionPoolLIMS conn) {
+    public PromoteBankedSample(ConnectionPoolLIMS conn, PatientCmoSampleViewCache patientSamplesCache) {
         this.conn = conn;
+        this.patientSamplesCache = patientSamplesCache;
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -63,6 +66,7 @@ public class PromoteBankedSample {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("serviceId is not using a valid format. " + Whitelists.serviceFormatText());
 
         PromoteBanked task = new PromoteBanked();
+        task.setPatientSamplesCache(patientSamplesCache);
         task.init(bankedId, project, request, service, igoUser, materials, dryrun);
         log.info("Starting promote");
         Future<Object> result = conn.submitTask(task);
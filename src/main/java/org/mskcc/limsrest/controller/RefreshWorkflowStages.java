@@ -0,0 +1,31 @@
+package org.mskcc.limsrest.controller;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.util.WorkflowStageRefresher;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Reloads the LIMS workflow to stage mapping right away, e.g. after a workflow was added or renamed.
+ */
+@RestController
+@RequestMapping("/")
+public class RefreshWorkflowStages {
+    private static Log log = LogFactory.getLog(RefreshWorkflowStages.class);
+    private final WorkflowStageRefresher refresher;
+
+    public RefreshWorkflowStages(WorkflowStageRefresher refresher) {
+        this.refresher = refresher;
+    }
+
+    @GetMapping("/refreshWorkflowStages")
+    public Map<String, Object> getContent() {
+        log.info("Starting /refreshWorkflowStages");
+        refresher.refresh();
+        return refresher.getStats();
+    }
+}
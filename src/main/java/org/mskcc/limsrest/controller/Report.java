@@ -6,6 +6,7 @@ import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.service.GetHiseq;
 import org.mskcc.limsrest.service.GetReadyForIllumina;
 import org.mskcc.limsrest.service.RunSummary;
+import org.mskcc.limsrest.service.hiseq.HiseqRunIndex;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -21,9 +22,11 @@ import java.util.List;
 public class Report {
     private final static Log log = LogFactory.getLog(Report.class);
     private ConnectionLIMS conn;
+    private final HiseqRunIndex runIndex;
    
-    public Report(ConnectionLIMS conn){
+    public Report(ConnectionLIMS conn, HiseqRunIndex runIndex){
         this.conn = conn;
+        this.runIndex = runIndex;
     }
 
     @GetMapping("/getHiseq")
@@ -38,7 +41,7 @@ public class Report {
                 return runSums;
             }
             log.info("Starting get Hiseq for run " + run);
-            task = new GetHiseq(run, conn);
+            task = new GetHiseq(run, conn, runIndex);
         } else if (projs != null) {
             for (int i = 0; i < projs.length; i++) {
                 if (!Whitelists.requestMatches(projs[i])) {
@@ -69,7 +72,7 @@ public class Report {
     @GetMapping("/getHiseqList")
     public List<RunSummary> getContent() {
         log.info("Starting get Hiseq List");
-        GetHiseq task = new GetHiseq("", conn);
+        GetHiseq task = new GetHiseq("", conn, runIndex);
         List<RunSummary> runSums = new LinkedList<>();
         try {
             runSums = task.execute();
@@ -4,6 +4,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.ToggleAutorunnable;
+import org.mskcc.limsrest.util.DataRecordFieldCache;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -22,14 +23,16 @@ import java.util.regex.Pattern;
 public class SetAutorunnable {
     private final static Log log = LogFactory.getLog(SetAutorunnable.class);
     private final ConnectionPoolLIMS conn;
+    private final DataRecordFieldCache fieldCache;
 
-    public SetAutorunnable(ConnectionPoolLIMS conn) {
+    public SetAutorunnable(ConnectionPoolLIMS conn, DataRecordFieldCache fieldCache) {
         this.conn = conn;
+        this.fieldCache = fieldCache;
     }
 
     @GetMapping("/setAllAutorunnable")
     public List<String> getContent() {
-        ToggleAutorunnable task = new ToggleAutorunnable();
+        ToggleAutorunnable task = new ToggleAutorunnable(fieldCache);
         task.init("ALL", "true", null, null);
         log.info("Setting all autorunnable");
         Future<Object> result = conn.submitTask(task);
@@ -50,7 +53,7 @@ public class SetAutorunnable {
                                         @RequestParam(value = "status") String status,
                                         @RequestParam(value = "comment", required = false) String comment,
                                         @RequestParam(value = "igoUser", required = false) String igoUser) {
-        ToggleAutorunnable task = new ToggleAutorunnable();
+        ToggleAutorunnable task = new ToggleAutorunnable(fieldCache);
         log.info("Setting autorunable for " + req + " to value " + status + " with comment " + comment);
         Pattern requestPattern = Pattern.compile("[0-9]{5,7}(_[A-Z]+)?");
         Matcher matcher = requestPattern.matcher(req);
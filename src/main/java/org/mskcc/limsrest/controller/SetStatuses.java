@@ -4,6 +4,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.SetRequestStatus;
+import org.mskcc.limsrest.util.DataRecordFieldCache;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -20,15 +21,17 @@ import java.util.concurrent.Future;
 public class SetStatuses {
     private final static Log log = LogFactory.getLog(SetStatuses.class);
     private final ConnectionPoolLIMS conn;
+    private final DataRecordFieldCache fieldCache;
 
-    public SetStatuses(ConnectionPoolLIMS conn) {
+    public SetStatuses(ConnectionPoolLIMS conn, DataRecordFieldCache fieldCache) {
         this.conn = conn;
+        this.fieldCache = fieldCache;
     }
 
     @GetMapping("/setRequestStatuses")
     public List<String> getContent() {
         log.info("Starting to set request statuses");
-        SetRequestStatus task = new SetRequestStatus();
+        SetRequestStatus task = new SetRequestStatus(fieldCache);
         Future<Object> result = conn.submitTask(task);
         List<String> values = new LinkedList<>();
         try {
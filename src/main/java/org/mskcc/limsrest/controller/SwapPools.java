@@ -16,7 +16,6 @@ import java.util.concurrent.Future;
 public class SwapPools {
     private final static Log log = LogFactory.getLog(SwapPools.class);
     private final ConnectionPoolLIMS conn;
-    private final AddSampleToPool task = new AddSampleToPool();
 
     public SwapPools(ConnectionPoolLIMS conn) {
         this.conn = conn;
@@ -26,6 +25,7 @@ public class SwapPools {
     public String getContent(@RequestParam(value = "sample") String sample, @RequestParam(value = "removePool", defaultValue = "NULL") String removePool, @RequestParam(value = "pool", defaultValue = "NULL") String pool, @RequestParam(value = "igoUser") String igoUser) {
         log.info("Swapping sample " + sample + " from pool " + removePool + " to pool " + pool + " by user " + igoUser);
 
+        AddSampleToPool task = new AddSampleToPool();
         task.init(pool, sample, removePool, igoUser);
         Future<Object> result = conn.submitTask(task);
         try {
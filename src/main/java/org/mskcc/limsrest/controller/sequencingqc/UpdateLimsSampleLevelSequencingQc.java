@@ -5,6 +5,7 @@ import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.service.ngsstats.NgsStatsClient;
 import org.mskcc.limsrest.service.sequencingqc.UpdateLimsSampleLevelSequencingQcTask;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -23,9 +24,11 @@ import java.util.Map;
 public class UpdateLimsSampleLevelSequencingQc {
     private static Log log = LogFactory.getLog(UpdateLimsSampleLevelSequencingQc.class);
     private final ConnectionLIMS conn;
+    private final NgsStatsClient ngsStats;
 
-    public UpdateLimsSampleLevelSequencingQc(ConnectionLIMS conn){
+    public UpdateLimsSampleLevelSequencingQc(ConnectionLIMS conn, NgsStatsClient ngsStats){
         this.conn = conn;
+        this.ngsStats = ngsStats;
     }
 
     @GetMapping("/updateLimsSampleLevelSequencingQc")
@@ -38,7 +41,7 @@ public class UpdateLimsSampleLevelSequencingQc {
             return resp;
         }
 
-        UpdateLimsSampleLevelSequencingQcTask task = new UpdateLimsSampleLevelSequencingQcTask(runId, conn);
+        UpdateLimsSampleLevelSequencingQcTask task = new UpdateLimsSampleLevelSequencingQcTask(runId, conn, ngsStats);
         log.info(String.format("Starting to Add/Update SeqAnalysisSampleQC in LIMS for run: %s", runId));
         try {
             return task.execute();
@@ -24,6 +24,11 @@ public class FindBarcodeSequence extends LimsTask {
         this.barcodeId = barcodeId;
     }
 
+    @Override
+    public Priority getPriority() {
+        return Priority.INTERACTIVE;
+    }
+
     @PreAuthorize("hasRole('READ')")
     @Override
     public Object execute(VeloxConnection conn) {
@@ -0,0 +1,45 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.domain.sample.CorrectedCmoSampleView;
+import org.mskcc.limsrest.service.cmoinfo.SampleTypeCorrectedCmoSampleIdGenerator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the CMO Sample Ids of a whole batch of samples in one task, so the samples of each patient are read from
+ * the LIMS once per batch instead of once per sample.
+ */
+public class GenerateBulkSampleCmoIdsTask extends LimsTask {
+    private final static Log log = LogFactory.getLog(GenerateBulkSampleCmoIdsTask.class);
+
+    private final SampleTypeCorrectedCmoSampleIdGenerator correctedCmoSampleIdGenerator;
+
+    private List<CorrectedCmoSampleView> correctedCmoSampleViews;
+
+    public GenerateBulkSampleCmoIdsTask() {
+        this(new SampleTypeCorrectedCmoSampleIdGenerator());
+    }
+
+    public GenerateBulkSampleCmoIdsTask(SampleTypeCorrectedCmoSampleIdGenerator correctedCmoSampleIdGenerator) {
+        this.correctedCmoSampleIdGenerator = correctedCmoSampleIdGenerator;
+    }
+
+    public void init(CorrectedCmoSampleView[] correctedCmoSampleViews) {
+        this.correctedCmoSampleViews = Arrays.asList(correctedCmoSampleViews);
+    }
+
+    @Override
+    public Map<String, String> execute(VeloxConnection conn) {
+        long start = System.currentTimeMillis();
+        Map<String, String> cmoSampleIds = correctedCmoSampleIdGenerator.generate(correctedCmoSampleViews,
+                dataRecordManager, user);
+        log.info(String.format("Generated %d CMO Sample IDs in %dms", cmoSampleIds.size(),
+                System.currentTimeMillis() - start));
+        return cmoSampleIds;
+    }
+}
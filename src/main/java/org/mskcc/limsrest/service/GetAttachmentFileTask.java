@@ -4,48 +4,46 @@ import com.velox.api.datarecord.DataRecord;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.util.AttachmentSpool;
 import org.springframework.security.access.prepost.PreAuthorize;
 
-import java.util.HashMap;
 import java.util.List;
 
-
+/**
+ * Copies an attachment from the LIMS to the spool and returns it pinned, the caller must release it. Returns null if
+ * there is no attachment with the record ID.
+ */
 public class GetAttachmentFileTask extends LimsTask {
     private static Log log = LogFactory.getLog(GetAttachmentFileTask.class);
     protected String recordId;
+    private AttachmentSpool spool;
 
     public GetAttachmentFileTask() {
     }
 
-    public GetAttachmentFileTask(String recordId) {
+    public GetAttachmentFileTask(String recordId, AttachmentSpool spool) {
         this.recordId = recordId;
+        this.spool = spool;
     }
 
-    public void init(final String recordId) {
+    public void init(final String recordId, AttachmentSpool spool) {
         this.recordId = recordId;
-
+        this.spool = spool;
     }
 
     @PreAuthorize("hasRole('READ')")
     @Override
-    public HashMap<String, Object> execute(VeloxConnection conn) {
-        HashMap<String, Object> file = new HashMap<>();
-
+    public AttachmentSpool.Entry execute(VeloxConnection conn) {
         try {
             List<DataRecord> matched = dataRecordManager.queryDataRecords("Attachment", "RecordId =" + recordId, user);
+            if (matched.isEmpty())
+                return null;
             String fileName = (String) matched.get(0).getDataField("FilePath", user);
-            byte[] data = matched.get(0).getAttachmentData(user);
-            file.put("fileName", fileName);
-            file.put("data", data);
-            return file;
-
+            // the attachment is only held in the heap until it is written to the spool
+            return spool.put(recordId, fileName, matched.get(0).getAttachmentData(user));
         } catch (Throwable e) {
             log.error(e.getMessage(), e);
-            return null;
+            throw new RuntimeException("Failed to read attachment " + recordId + ": " + e.getMessage(), e);
         }
-
-
     }
-
-
 }
\ No newline at end of file
@@ -17,6 +17,11 @@ import java.util.List;
 public class GetBarcodeInfo extends LimsTask {
     private static Log log = LogFactory.getLog(GetBarcodeInfo.class);
 
+    @Override
+    public Priority getPriority() {
+        return Priority.INTERACTIVE;
+    }
+
     @PreAuthorize("hasRole('READ')")
     @Override
     public Object execute(VeloxConnection conn) {
@@ -5,7 +5,6 @@ import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.stereotype.Service;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -17,7 +16,7 @@ import java.util.List;
  * 
  * @author Aaron Gabow, Zheng Zeng
  */
-@Service @Deprecated // code started but not completed or used?
+@Deprecated // code started but not completed or used?
 public class GetBillingReport extends LimsTask {
     private static Log log = LogFactory.getLog(GetBillingReport.class);
 
@@ -56,6 +56,11 @@ public class GetDelivered extends LimsTask {
         units = "w";
     }
 
+    @Override
+    public Priority getPriority() {
+        return Priority.BATCH;
+    }
+
     @PreAuthorize("hasRole('READ')")
     @Override
     public Object execute(VeloxConnection conn) {
@@ -27,8 +27,8 @@ public class GetDeliveriesTask {
     }
 
     public Object execute() {
-        try {
-            VeloxConnection vConn = conn.getConnection();
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            VeloxConnection vConn = lease.getConnection();
             User user = vConn.getUser();
             DataRecordManager dataRecordManager = vConn.getDataRecordManager();
 
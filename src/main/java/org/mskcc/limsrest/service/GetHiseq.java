@@ -3,19 +3,24 @@ package org.mskcc.limsrest.service;
 import com.velox.api.datarecord.DataRecord;
 import com.velox.api.datarecord.DataRecordManager;
 import com.velox.api.user.User;
-import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.service.hiseq.HiseqRunIndex;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A queued task that takes a request id and returns the hiseq run info 
@@ -27,10 +32,12 @@ public class GetHiseq {
     protected String run;
     protected String[] projects;
     private ConnectionLIMS conn;
+    private HiseqRunIndex runIndex;
 
-    public GetHiseq(String run, ConnectionLIMS conn) {
+    public GetHiseq(String run, ConnectionLIMS conn, HiseqRunIndex runIndex) {
         this.run = run;
         this.conn = conn;
+        this.runIndex = runIndex;
     }
 
     public GetHiseq(String[] projects, ConnectionLIMS conn) {
@@ -42,9 +49,12 @@ public class GetHiseq {
 
     @PreAuthorize("hasRole('READ')")
     public List<RunSummary> execute() {
-        VeloxConnection vConn = conn.getConnection();
-        User user = vConn.getUser();
-        DataRecordManager dataRecordManager = vConn.getDataRecordManager();
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            return execute(lease.getUser(), lease.getDataRecordManager());
+        }
+    }
+
+    private List<RunSummary> execute(User user, DataRecordManager dataRecordManager) {
 
         HashSet<String> projectsSearchable = new HashSet<>();
 // RUN Name, Project#, sample, Barcode, Lane #, Lab Head, Investigator, Date (start run), Date (end run), Run type, read length, SampleRef, # reads request_sample, Status of project 
@@ -55,9 +65,10 @@ public class GetHiseq {
             if (run == null && projects == null) {
                 throw new Exception("Unable to get hiseq run information with no hisq run or projects specified");
             }
-            List<DataRecord> runList = null;
+            List<HiseqRunIndex.Run> runList = new ArrayList<>();
+            Map<Long, DataRecord> flowcells = new HashMap<>();
             if (projects != null && projects.length > 0) {
-                runList = new LinkedList<DataRecord>();
+                List<DataRecord> experiments = new LinkedList<DataRecord>();
                 for (int i = 0; i < projects.length; i++) {
                     List<DataRecord> queriedRequests = dataRecordManager.queryDataRecords("Request", "RequestId = '" + projects[i] + "'", user);
                     projectsSearchable.add(projects[i]);
@@ -72,200 +83,77 @@ public class GetHiseq {
                                 List<DataRecord> possibleRun = flowcell.get(0).getParentsOfType("IlluminaSeqExperiment", user);
                                 if (possibleRun.size() > 0) {
                                     log.info("Getting a run");
-                                    if (!runList.contains(possibleRun.get(0))) {
-                                        runList.add(possibleRun.get(0));
+                                    if (!experiments.contains(possibleRun.get(0))) {
+                                        experiments.add(possibleRun.get(0));
                                     }
                                 }
                             }
                         }
                     }
                 }
+                for (DataRecord r : experiments) {
+                    DataRecord[] runFlowcells = r.getChildrenOfType("FlowCell", user);
+                    if (runFlowcells.length == 0) {
+                        continue;
+                    }
+                    String runFolder = r.getStringVal("SequencerRunFolder", user);
+                    runList.add(new HiseqRunIndex.Run(r.getRecordId(), runFolder == null ? "MISSING" : runFolder,
+                            r.getPickListVal("SequencingRunType", user), runFlowcells[0].getRecordId(),
+                            runFlowcells[0].getDateVal("DateCreated", user)));
+                    flowcells.put(runFlowcells[0].getRecordId(), runFlowcells[0]);
+                }
             } else if (run.equals("")) {
-                runList = dataRecordManager.queryDataRecords("IlluminaSeqExperiment", null, user);
+                // list mode is answered from the index alone
+                runList = runIndex.getRuns(dataRecordManager, user);
             } else {
-                runList = dataRecordManager.queryDataRecords("IlluminaSeqExperiment", "SequencerRunFolder like '%" + run + "%'", user);
+                runList = runIndex.findRuns(run, dataRecordManager, user);
+                flowcells = getFlowcells(runList, dataRecordManager, user);
             }
-            for (DataRecord r : runList) {
-                String runType = r.getPickListVal("SequencingRunType", user);
+            for (HiseqRunIndex.Run r : runList) {
+                String runType = r.getRunType();
                 if (projects != null) {
-                    try {
-                        run = r.getStringVal("SequencerRunFolder", user);
-                    } catch (NullPointerException npe) {
-                        run = "MISSING";
-                    }
-
-                }
-                if (r.getChildrenOfType("FlowCell", user).length == 0) {
-                    continue;
+                    run = r.getRunFolder();
                 }
-                DataRecord flowcell = r.getChildrenOfType("FlowCell", user)[0];
-                long dateCreated = flowcell.getDateVal("DateCreated", user);
+                long dateCreated = r.getDateCreated();
                 if (run.equals("")) {
-                    String runId = "ALLRUNS";
-                    try {
-                        String[] runFolderElements = r.getStringVal("SequencerRunFolder", user).split("/");
-                        runId = runFolderElements[runFolderElements.length - 1];
-                    } catch (NullPointerException npe) {
-                    }
-                    RunSummary runSum = new RunSummary(runId, "");
+                    RunSummary runSum = new RunSummary(r.getRunId(), "");
                     runSum.setStartDate(dateCreated);
                     runResults.add(runSum);
                 } else {
+                    DataRecord flowcell = flowcells.get(r.getFlowCellRecordId());
+                    if (flowcell == null) {
+                        continue;
+                    }
                     HashMap<String, RunSummary> sampleId2Summary = new HashMap<>();
                     DataRecord[] lanes = flowcell.getChildrenOfType("FlowCellLane", user);
-                    for (int i = 0; i < lanes.length; i++) {
-                        long laneNum = lanes[i].getLongVal("LaneNum", user);
-
-                        //dfs of all samples to in lane to find sample name, barcode, number of requested reads, and request info
-                        LinkedList<DataRecord> fringe = new LinkedList<>();
-                        for (DataRecord sample : lanes[i].getParentsOfType("Sample", user)) {
-                            fringe.push(sample);
-                        }
-                        DataRecord current = null;
-                        String barcodeId = "";
-                        String barcodeSeq = "";
-                        String recipe = "";
-                        String sampleId = "";
-                        String species = "";
-                        //request level info
-                        String requestId = "";
-                        String labHead = "";
-                        String investigator = "";
-                        Boolean fastqOnly = null;
-                        Short numberSamples = null;
-
-                        RunSummary summary = null;
-                        double numberRequestedReads = 0.0;
-                        while (fringe.size() > 0) {
-                            current = fringe.pop();
-                            Map<String, Object> currentFields = current.getFields(user);
-                            DataRecord[] barcode = current.getChildrenOfType("IndexBarcode", user);
-                            if (barcode.length > 0) {
-                                try {
-                                    sampleId = currentFields.get("OtherSampleId") + "_IGO_" + currentFields.get("SampleId");
-                                    species = (String) currentFields.get("Species");
-                                    barcodeId = barcode[0].getStringVal("IndexId", user);
-                                    barcodeSeq = barcode[0].getStringVal("IndexTag", user);
-                                } catch (NullPointerException npe) {
-                                }
-                            }
-                            if (requestId.equals("")) {
-                                recipe = (String) currentFields.get("Recipe");
-                                List<DataRecord> requestParents = current.getParentsOfType("Request", user);
-                                if (requestParents.size() > 0) {
-                                    try {
-                                        Map<String, Object> requestFields = requestParents.get(0).getFields(user);
-                                        requestId = (String) requestFields.get("RequestId");
-                                        labHead = (String) requestFields.get("LaboratoryHead");
-                                        investigator = (String) requestFields.get("Investigator");
-                                        if (requestFields.containsKey("BICAnalysis") && requestFields.get("BICAnalysis") != null && (Boolean) requestFields.get("BICAnalysis")) {
-                                            fastqOnly = Boolean.FALSE;
-                                        } else {
-                                            fastqOnly = Boolean.TRUE;
-                                        }
-                                        if (requestFields.containsKey("SampleNumber")) {
-                                            numberSamples = (Short) requestFields.get("SampleNumber");
-                                        }
-                                    } catch (NullPointerException npe) {
-                                    }
-
-                                    if (projectsSearchable.size() > 0 && !projectsSearchable.contains(requestId)) {
-                                        sampleId = "";
-                                        barcodeId = "";
-                                        barcodeSeq = "";
-                                        recipe = "";
-                                        species = "";
-                                        requestId = "";
-                                        labHead = "";
-                                        investigator = "";
-                                        numberRequestedReads = 0.0;
-                                        fastqOnly = null;
-                                        numberSamples = null;
-                                        continue;
+                    if (lanes.length > 0) {
+                        List<DataRecord> laneList = Arrays.asList(lanes);
+                        List<Map<String, Object>> laneFields = dataRecordManager.getFieldsForRecords(laneList, user);
+                        List<List<DataRecord>> laneSamples = dataRecordManager.getParentsOfType(laneList, "Sample", user);
+                        // the same pools and libraries are on every lane, each of them is walked once per run
+                        Map<Long, List<SamplePath>> pathsByLaneSample = findSamplePaths(laneSamples, projectsSearchable,
+                                dataRecordManager, user);
+                        for (int i = 0; i < lanes.length; i++) {
+                            long laneNum = ((Number) laneFields.get(i).get("LaneNum")).longValue();
+                            for (DataRecord laneSample : laneSamples.get(i)) {
+                                for (SamplePath path : pathsByLaneSample.get(laneSample.getRecordId())) {
+                                    if (!sampleId2Summary.containsKey(path.sampleId + "_" + run)) {
+                                        sampleId2Summary.put(path.sampleId + "_" + run, new RunSummary(run, path.sampleId));
                                     }
-                                }
-                            }
-                            DataRecord[] seqRequirement = current.getChildrenOfType("SeqRequirement", user);
-                            if (seqRequirement.length > 0) {
-                                try {
-                                    numberRequestedReads = seqRequirement[0].getDoubleVal("RequestedReads", user);
-                                } catch (NullPointerException npe) {
-                                } catch (ClassCastException e) {
-                                    numberRequestedReads = (double) seqRequirement[0].getIntegerVal("RequestedReads", user);
-
-                                }
-                            }
-                            List<DataRecord> parentSamples = current.getParentsOfType("Sample", user);
-                            if (requestId.equals("")) {
-                                List<DataRecord> parentPlates = current.getParentsOfType("Plate", user);
-                                if (parentPlates.size() > 0) {
-                                    List<DataRecord> requestParents = parentPlates.get(0).getParentsOfType("Request", user);
-                                    if (requestParents.size() > 0) {
-                                        try {
-                                            Map<String, Object> requestFields = requestParents.get(0).getFields(user);
-                                            requestId = (String) requestFields.get("RequestId");
-                                            labHead = (String) requestFields.get("LaboratoryHead");
-                                            investigator = (String) requestFields.get("Investigator");
-                                            if (requestFields.containsKey("BICAnalysis") && requestFields.get("BICAnalysis") != null && (Boolean) requestFields.get("BICAnalysis")) {
-                                                fastqOnly = Boolean.FALSE;
-                                            } else {
-                                                fastqOnly = Boolean.TRUE;
-                                            }
-                                            if (requestFields.containsKey("SampleNumber")) {
-                                                numberSamples = (Short) requestFields.get("SampleNumber");
-                                            }
-                                        } catch (NullPointerException npe) {
-                                        }
-                                        if (projectsSearchable.size() > 0 && !projectsSearchable.contains(requestId)) {
-                                            sampleId = "";
-                                            barcodeId = "";
-                                            barcodeSeq = "";
-                                            recipe = "";
-                                            species = "";
-                                            requestId = "";
-                                            labHead = "";
-                                            investigator = "";
-                                            numberRequestedReads = 0.0;
-                                            fastqOnly = null;
-                                            numberSamples = null;
-                                            continue;
-                                        }
-                                    }
-                                }
-                            }
-                            //if we have found our sample-related info we can just grab the record info and populate a summary
-                            if ((!barcodeSeq.equals("") && !requestId.equals("") && numberRequestedReads > 0.00001) || parentSamples.size() == 0) {
-                                if (!sampleId2Summary.containsKey(sampleId + "_" + run)) {
-                                    sampleId2Summary.put(sampleId + "_" + run, new RunSummary(run, sampleId));
-                                }
-                                summary = sampleId2Summary.get(sampleId + "_" + run);
-                                summary.setBarcodeId(barcodeId);
-                                summary.setBarcodeSeq(barcodeSeq);
-                                summary.setNumberRequestedReads((int) numberRequestedReads);
-                                summary.setSpecies(species);
-                                summary.setRecipe(recipe);
-                                summary.addLane(laneNum);
-                                summary.setStartDate(dateCreated);
-                                summary.setRequestId(requestId);
-                                summary.setLabHead(labHead);
-                                summary.setInvestigator(investigator);
-                                summary.setFastqOnly(fastqOnly);
-                                summary.setNumberRequestSamples(numberSamples);
-                                summary.setRunType(runType);
-                                sampleId = "";
-                                barcodeId = "";
-                                barcodeSeq = "";
-                                recipe = "";
-                                species = "";
-                                requestId = "";
-                                labHead = "";
-                                investigator = "";
-                                fastqOnly = null;
-                                numberRequestedReads = 0.0;
-                            } else {
-                                //we can revist records because plates can have multiple sample children
-                                for (DataRecord parentSample : parentSamples) {
-                                    fringe.push(parentSample);
+                                    RunSummary summary = sampleId2Summary.get(path.sampleId + "_" + run);
+                                    summary.setBarcodeId(path.barcodeId);
+                                    summary.setBarcodeSeq(path.barcodeSeq);
+                                    summary.setNumberRequestedReads((int) path.numberRequestedReads);
+                                    summary.setSpecies(path.species);
+                                    summary.setRecipe(path.recipe);
+                                    summary.addLane(laneNum);
+                                    summary.setStartDate(dateCreated);
+                                    summary.setRequestId(path.requestId);
+                                    summary.setLabHead(path.labHead);
+                                    summary.setInvestigator(path.investigator);
+                                    summary.setFastqOnly(path.fastqOnly);
+                                    summary.setNumberRequestSamples(path.numberSamples);
+                                    summary.setRunType(runType);
                                 }
                             }
                         }
@@ -284,4 +172,223 @@ public class GetHiseq {
 
         return runResults;
     }
-}
\ No newline at end of file
+
+    /**
+     * Fetches the flowcells of the runs found in the index with one query.
+     */
+    private Map<Long, DataRecord> getFlowcells(List<HiseqRunIndex.Run> runs, DataRecordManager dataRecordManager,
+                                               User user) throws Exception {
+        Map<Long, DataRecord> flowcells = new HashMap<>();
+        if (runs.isEmpty())
+            return flowcells;
+        List<Object> recordIds = new ArrayList<>();
+        for (HiseqRunIndex.Run r : runs)
+            recordIds.add(r.getFlowCellRecordId());
+        for (DataRecord flowcell : dataRecordManager.queryDataRecords(HiseqRunIndex.FLOWCELL_DATA_TYPE, "RecordId",
+                recordIds, user))
+            flowcells.put(flowcell.getRecordId(), flowcell);
+        return flowcells;
+    }
+
+    /**
+     * Walks up from the samples on the lanes, usually pools, to find sample name, barcode, number of requested reads and
+     * request info. Every sample starts a path which forks at samples with several parents and ends at the first sample
+     * where everything was found or at a sample without parents. All paths are walked together one level of parents at
+     * a time, so a run costs a few list based LIMS calls per level instead of several calls per sample.
+     *
+     * @return the finished paths of each lane sample, by record id
+     */
+    private Map<Long, List<SamplePath>> findSamplePaths(List<List<DataRecord>> laneSamples, Set<String> projectsSearchable,
+                                                        DataRecordManager dataRecordManager, User user) throws Exception {
+        Map<Long, List<SamplePath>> pathsByLaneSample = new HashMap<>();
+        List<SamplePath> fringe = new ArrayList<>();
+        for (List<DataRecord> samples : laneSamples) {
+            for (DataRecord sample : samples) {
+                if (!pathsByLaneSample.containsKey(sample.getRecordId())) {
+                    pathsByLaneSample.put(sample.getRecordId(), new ArrayList<>());
+                    fringe.add(new SamplePath(sample.getRecordId(), sample));
+                }
+            }
+        }
+
+        // samples are loaded once even when they are reached by several paths, e.g. plates with many sample children
+        Map<Long, SampleNode> nodes = new HashMap<>();
+        while (!fringe.isEmpty()) {
+            loadNodes(fringe, nodes, dataRecordManager, user);
+            List<SamplePath> nextFringe = new ArrayList<>();
+            for (SamplePath path : fringe) {
+                SampleNode node = nodes.get(path.current.getRecordId());
+                if (node.barcode != null) {
+                    path.sampleId = node.fields.get("OtherSampleId") + "_IGO_" + node.fields.get("SampleId");
+                    path.species = (String) node.fields.get("Species");
+                    path.barcodeId = (String) node.barcode.get("IndexId");
+                    path.barcodeSeq = (String) node.barcode.get("IndexTag");
+                }
+                if (path.requestId.equals("")) {
+                    path.recipe = (String) node.fields.get("Recipe");
+                    if (node.request != null && !path.setRequest(node.request, projectsSearchable)) {
+                        continue;
+                    }
+                }
+                if (node.requestedReads != null) {
+                    path.numberRequestedReads = node.requestedReads;
+                }
+                if (path.requestId.equals("") && node.plateRequest != null
+                        && !path.setRequest(node.plateRequest, projectsSearchable)) {
+                    continue;
+                }
+                //if we have found our sample-related info the path is done
+                if ((path.barcodeSeq != null && !path.barcodeSeq.equals("") && !path.requestId.equals("")
+                        && path.numberRequestedReads > 0.00001) || node.parents.isEmpty()) {
+                    pathsByLaneSample.get(path.laneSampleRecordId).add(path);
+                } else {
+                    //we can revist records because plates can have multiple sample children
+                    for (DataRecord parentSample : node.parents) {
+                        nextFringe.add(path.forkTo(parentSample));
+                    }
+                }
+            }
+            fringe = nextFringe;
+        }
+        return pathsByLaneSample;
+    }
+
+    /**
+     * Loads the fields and related records of the fringe samples not loaded yet with list based calls.
+     */
+    private void loadNodes(List<SamplePath> fringe, Map<Long, SampleNode> nodes, DataRecordManager dataRecordManager,
+                           User user) throws Exception {
+        Map<Long, DataRecord> toLoad = new LinkedHashMap<>();
+        for (SamplePath path : fringe) {
+            if (!nodes.containsKey(path.current.getRecordId()))
+                toLoad.put(path.current.getRecordId(), path.current);
+        }
+        if (toLoad.isEmpty())
+            return;
+
+        List<DataRecord> samples = new ArrayList<>(toLoad.values());
+        List<Map<String, Object>> fields = dataRecordManager.getFieldsForRecords(samples, user);
+        List<Map<String, Object>> barcodes = getFirstFields(
+                dataRecordManager.getChildrenOfType(samples, "IndexBarcode", user), dataRecordManager, user);
+        List<Map<String, Object>> seqRequirements = getFirstFields(
+                dataRecordManager.getChildrenOfType(samples, "SeqRequirement", user), dataRecordManager, user);
+        List<Map<String, Object>> requests = getFirstFields(
+                dataRecordManager.getParentsOfType(samples, "Request", user), dataRecordManager, user);
+        List<List<DataRecord>> parents = dataRecordManager.getParentsOfType(samples, "Sample", user);
+
+        // samples without a request parent may be on a plate of the request
+        List<List<DataRecord>> plates = dataRecordManager.getParentsOfType(samples, "Plate", user);
+        List<DataRecord> firstPlates = new ArrayList<>();
+        for (List<DataRecord> samplePlates : plates) {
+            if (!samplePlates.isEmpty())
+                firstPlates.add(samplePlates.get(0));
+        }
+        List<Map<String, Object>> plateRequests = firstPlates.isEmpty() ? Collections.emptyList() :
+                getFirstFields(dataRecordManager.getParentsOfType(firstPlates, "Request", user), dataRecordManager, user);
+
+        int nextPlate = 0;
+        for (int i = 0; i < samples.size(); i++) {
+            SampleNode node = new SampleNode();
+            node.fields = fields.get(i);
+            node.barcode = barcodes.get(i);
+            if (seqRequirements.get(i) != null && seqRequirements.get(i).get("RequestedReads") instanceof Number)
+                node.requestedReads = ((Number) seqRequirements.get(i).get("RequestedReads")).doubleValue();
+            node.request = requests.get(i);
+            node.parents = parents.get(i);
+            if (!plates.get(i).isEmpty())
+                node.plateRequest = plateRequests.get(nextPlate++);
+            nodes.put(samples.get(i).getRecordId(), node);
+        }
+    }
+
+    /**
+     * @return the fields of the first record of each list, null for empty lists, fetched with one call
+     */
+    private static List<Map<String, Object>> getFirstFields(List<List<DataRecord>> recordLists,
+                                                            DataRecordManager dataRecordManager, User user)
+            throws Exception {
+        List<DataRecord> firstRecords = new ArrayList<>();
+        for (List<DataRecord> records : recordLists) {
+            if (!records.isEmpty())
+                firstRecords.add(records.get(0));
+        }
+        List<Map<String, Object>> firstFields = firstRecords.isEmpty() ? Collections.emptyList() :
+                dataRecordManager.getFieldsForRecords(firstRecords, user);
+        List<Map<String, Object>> result = new ArrayList<>(recordLists.size());
+        int next = 0;
+        for (List<DataRecord> records : recordLists)
+            result.add(records.isEmpty() ? null : firstFields.get(next++));
+        return result;
+    }
+
+    /**
+     * A sample with the fields and related records the lane sample paths look at.
+     */
+    private static class SampleNode {
+        Map<String, Object> fields;
+        Map<String, Object> barcode;
+        Double requestedReads;
+        Map<String, Object> request;
+        Map<String, Object> plateRequest;
+        List<DataRecord> parents;
+    }
+
+    /**
+     * What was found so far walking up from a lane sample to the current sample.
+     */
+    private static class SamplePath {
+        final long laneSampleRecordId;
+        DataRecord current;
+        String barcodeId = "";
+        String barcodeSeq = "";
+        String recipe = "";
+        String sampleId = "";
+        String species = "";
+        //request level info
+        String requestId = "";
+        String labHead = "";
+        String investigator = "";
+        Boolean fastqOnly = null;
+        Short numberSamples = null;
+        double numberRequestedReads = 0.0;
+
+        SamplePath(long laneSampleRecordId, DataRecord current) {
+            this.laneSampleRecordId = laneSampleRecordId;
+            this.current = current;
+        }
+
+        SamplePath forkTo(DataRecord parent) {
+            SamplePath path = new SamplePath(laneSampleRecordId, parent);
+            path.barcodeId = barcodeId;
+            path.barcodeSeq = barcodeSeq;
+            path.recipe = recipe;
+            path.sampleId = sampleId;
+            path.species = species;
+            path.requestId = requestId;
+            path.labHead = labHead;
+            path.investigator = investigator;
+            path.fastqOnly = fastqOnly;
+            path.numberSamples = numberSamples;
+            path.numberRequestedReads = numberRequestedReads;
+            return path;
+        }
+
+        /**
+         * @return false if the request is not one of the projects searched for, the path is dropped then
+         */
+        boolean setRequest(Map<String, Object> requestFields, Set<String> projectsSearchable) {
+            requestId = requestFields.get("RequestId") == null ? "" : (String) requestFields.get("RequestId");
+            labHead = (String) requestFields.get("LaboratoryHead");
+            investigator = (String) requestFields.get("Investigator");
+            if (requestFields.get("BICAnalysis") != null && (Boolean) requestFields.get("BICAnalysis")) {
+                fastqOnly = Boolean.FALSE;
+            } else {
+                fastqOnly = Boolean.TRUE;
+            }
+            if (requestFields.containsKey("SampleNumber")) {
+                numberSamples = (Short) requestFields.get("SampleNumber");
+            }
+            return projectsSearchable.size() == 0 || projectsSearchable.contains(requestId);
+        }
+    }
+}
\ No newline at end of file
@@ -23,6 +23,11 @@ public class GetIntakeFormDescription extends LimsTask {
         this.request = request;
     }
 
+    @Override
+    public Priority getPriority() {
+        return Priority.INTERACTIVE;
+    }
+
     @PreAuthorize("hasRole('READ')")
     public Object execute(VeloxConnection conn) {
         LinkedList<List<String>> fieldNames = new LinkedList<>();
@@ -20,6 +20,11 @@ public class GetPickList extends LimsTask {
         this.picklist = picklist;
     }
 
+    @Override
+    public Priority getPriority() {
+        return Priority.INTERACTIVE;
+    }
+
     @Override
     public Object execute(VeloxConnection conn) {
         List<String> values = new LinkedList<String>();
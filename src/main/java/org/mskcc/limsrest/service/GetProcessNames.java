@@ -20,6 +20,11 @@ import java.util.List;
 public class GetProcessNames extends LimsTask {
     private static Log log = LogFactory.getLog(GetProcessNames.class);
 
+    @Override
+    public Priority getPriority() {
+        return Priority.INTERACTIVE;
+    }
+
     @PreAuthorize("hasRole('READ')")
     @Override
     public Object execute(VeloxConnection conn) {
@@ -5,7 +5,10 @@ import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Find all samples associated with a project/request 
@@ -25,11 +28,23 @@ public class GetProjectDetails extends LimsTask {
 
         try {
             List<DataRecord> limsRequestList = dataRecordManager.queryDataRecords("Request", "RequestId = '" + project + "'", user);
-            for (DataRecord r : limsRequestList) {
-                annotateRequestDetailed(rd, r);
-                List<DataRecord> parents = r.getParentsOfType("Project", user);
-                if (parents.size() > 0) {
-                    annotateProjectSummary(ps, parents.get(0));
+            if (limsRequestList.isEmpty())
+                return ps;
+            // one call for the fields of all requests, one for their projects and one for the project fields
+            List<Map<String, Object>> requestFields = dataRecordManager.getFieldsForRecords(limsRequestList, user);
+            List<List<DataRecord>> parents = dataRecordManager.getParentsOfType(limsRequestList, "Project", user);
+            List<DataRecord> projects = new ArrayList<>();
+            for (List<DataRecord> requestParents : parents) {
+                if (requestParents.size() > 0)
+                    projects.add(requestParents.get(0));
+            }
+            List<Map<String, Object>> projectFields = projects.isEmpty() ? Collections.emptyList() :
+                    dataRecordManager.getFieldsForRecords(projects, user);
+            int project = 0;
+            for (int i = 0; i < limsRequestList.size(); i++) {
+                annotateRequestDetailed(rd, requestFields.get(i));
+                if (parents.get(i).size() > 0) {
+                    annotateProjectSummary(ps, projectFields.get(project++));
                 }
                 ps.addRequest(rd);
             }
@@ -3,10 +3,10 @@ package org.mskcc.limsrest.service;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.velox.api.datarecord.DataRecord;
-import com.velox.api.datarecord.NotFound;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.service.timeline.ProjectTimelineStore;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.util.Calendar;
@@ -16,6 +16,8 @@ import java.util.TreeSet;
 
 /**
  * A queued task that takes a request id and returns all the start and end date for task based on the creation and last modified date of every sample 
+ * and plate, read from the ProjectTimelineStore which only asks the LIMS for the samples modified since the last call.
+ * Deleted or moved samples can take up to a week, the full rebuild period, to show up.
  * 
  * @author Aaron Gabow
  */
@@ -23,12 +25,22 @@ public class GetProjectHistory extends LimsTask {
     private static Log log = LogFactory.getLog(GetProjectHistory.class);
 
     protected String[] projects;
+    private final ProjectTimelineStore timelineStore;
+
+    public GetProjectHistory(ProjectTimelineStore timelineStore) {
+        this.timelineStore = timelineStore;
+    }
 
     public void init(String[] projects) {
         if (projects != null)
             this.projects = projects.clone();
     }
 
+    @Override
+    public Priority getPriority() {
+        return Priority.BATCH;
+    }
+
     @PreAuthorize("hasRole('READ')")
     @Override
     public Object execute(VeloxConnection conn) {
@@ -66,54 +78,8 @@ public class GetProjectHistory extends LimsTask {
 
                 known.add(new HistoricalEvent(requestStart, requestComplete, project, "Initiated"));
 
-                List<DataRecord> samples = r.getDescendantsOfType("Sample", user);
-                List<DataRecord> plates = r.getDescendantsOfType("Plate", user);
-                samples.addAll(plates);
-                for (DataRecord sample : samples) {
-                    log.info("processing");
-                    long start = sample.getLongVal("DateCreated", user);
-                    long end = 0;
-                    try {
-                        end = sample.getLongVal("DateModified", user);
-                    } catch (NotFound nf) {
-                        end = start; //plates do not have date modified
-                    } catch (NullPointerException npe) {
-                        log.info("Null end for sample");
-                    }
-                    String status = null;
-                    try {
-                        status = sample.getStringVal("ExemplarSampleStatus", user);
-                    } catch (NotFound nf) {
-                        try {
-                            status = sample.getStringVal("ExemplarPlateStatus", user);
-                        } catch (Exception e) {
-                        }
-                    } catch (NullPointerException npe) {
-                    }
-                    if (status == null) {
-                        log.info("Skipping a null status sample");
-                        continue;
-                    }
-                    String requestId = project;
-                    try {
-                        requestId = sample.getStringVal("RequestId", user);
-                    } catch (NullPointerException | NotFound e) {
-                    }
-                    String[] statusElements = status.split(" - ");
-                    if (statusElements[0].equals("Received")) {
-                        end = start;
-                    } else if (!statusElements[0].equals("Completed")) {
-                        log.info("Status not completed:" + status);
-                        end = 0;
-                    }
-                    log.info("End: " + end);
-                    if (statusElements.length > 1) {
-                        HistoricalEvent event = new HistoricalEvent(start, end, requestId, statusElements[1]);
-                        known.add(event);
-                    } else {
-                        HistoricalEvent event = new HistoricalEvent(start, end, requestId, status);
-                        known.add(event);
-                    }
+                for (ProjectTimelineStore.Event e : timelineStore.getEvents(r, project, dataRecordManager, user)) {
+                    known.add(new HistoricalEvent(e.getStart(), e.getEnd(), e.getRequestId(), e.getTaskName()));
                 }
             }
         } catch (Throwable e) {
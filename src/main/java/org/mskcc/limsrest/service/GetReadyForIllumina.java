@@ -3,7 +3,7 @@ package org.mskcc.limsrest.service;
 import com.velox.api.datarecord.*;
 import com.velox.api.user.User;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
-import com.velox.sloan.cmo.recmodels.SampleModel;
+import com.velox.sloan.cmo.recmodels.IndexBarcodeModel;
 import com.velox.sloan.cmo.recmodels.SeqRequirementModel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -15,8 +15,6 @@ import java.rmi.RemoteException;
 import java.rmi.ServerException;
 import java.util.*;
 
-import static org.mskcc.limsrest.util.Utils.getRecordsOfTypeFromParents;
-
 /**
  * A queued task that shows all samples that need planned for Illumina runs. <BR>
  * This endpoint will return the sample level information for individual Library samples and pooled Library samples.<BR>
@@ -35,8 +33,8 @@ public class GetReadyForIllumina {
         List<RunSummary> results = new LinkedList<>();
         // this query has had performance issues when the number of samples is high, track execution time
         long startTime = System.currentTimeMillis();
-        try {
-            VeloxConnection vConn = conn.getConnection();
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            VeloxConnection vConn = lease.getConnection();
             User user = vConn.getUser();
             DataRecordManager dataRecordManager = vConn.getDataRecordManager();
             log.info("Finding all samples with ExemplarSampleStatus = 'Ready for - Pooling of Sample Libraries for Sequencing'");
@@ -44,32 +42,65 @@ public class GetReadyForIllumina {
             log.info("Number of samples to pool: " + samplesToPool.size());
 
             if (samplesToPool.size() > 0){
-                for (DataRecord sample: samplesToPool){
-                    String sampleId = sample.getStringVal("SampleId", user);
-                    List<DataRecord> requestRecords = sample.getAncestorsOfType("Request", user);
-                    String requestName = "";
-                    if (!requestRecords.isEmpty()) {
-                        requestName = requestRecords.get(0).getStringVal("RequestName", user);
+                List<Map<String, Object>> samplesToPoolFields = dataRecordManager.getFieldsForRecords(samplesToPool, user);
+                Map<String, String> requestNames = getRequestNames(samplesToPoolFields, dataRecordManager, user);
+
+                List<DataRecord> pools = new ArrayList<>();
+                for (int i = 0; i < samplesToPool.size(); i++) {
+                    if (isPool(samplesToPoolFields.get(i)))
+                        pools.add(samplesToPool.get(i));
+                }
+                // libraries of all pools are found together, one LIMS call per level of nested pools
+                List<List<LibrarySample>> librariesOfPools =
+                        getNearestParentLibrarySamplesForPools(pools, dataRecordManager, user);
+
+                // index barcodes and sequencing requirements of all libraries, pooled or not, are found together
+                List<DataRecord> libraries = new ArrayList<>();
+                Iterator<List<LibrarySample>> poolLibraries = librariesOfPools.iterator();
+                for (int i = 0; i < samplesToPool.size(); i++) {
+                    if (isPool(samplesToPoolFields.get(i))) {
+                        for (LibrarySample librarySample : poolLibraries.next())
+                            libraries.add(librarySample.record);
+                    } else {
+                        libraries.add(samplesToPool.get(i));
                     }
-                    if (sampleId.toLowerCase().startsWith("pool-")) {
+                }
+                Map<String, List<Map<String, Object>>> libraryChildren = getNearestChildFields(libraries,
+                        Arrays.asList(IndexBarcodeModel.DATA_TYPE_NAME, SeqRequirementModel.DATA_TYPE_NAME),
+                        dataRecordManager, user);
+                Iterator<Map<String, Object>> indexBarcodes =
+                        libraryChildren.get(IndexBarcodeModel.DATA_TYPE_NAME).iterator();
+                Iterator<Map<String, Object>> seqRequirements =
+                        libraryChildren.get(SeqRequirementModel.DATA_TYPE_NAME).iterator();
+
+                poolLibraries = librariesOfPools.iterator();
+                for (int i = 0; i < samplesToPool.size(); i++) {
+                    DataRecord sample = samplesToPool.get(i);
+                    Map<String, Object> sampleFields = samplesToPoolFields.get(i);
+                    String sampleId = (String) sampleFields.get("SampleId");
+                    String requestName = getRequestName(sample, sampleFields, requestNames, user);
+                    if (isPool(sampleFields)) {
                         // if sample is pool then get all the Library samples in the pool which live as parents of the pool.
-                        List<DataRecord> parentLibrarySamplesForPool = getNearestParentLibrarySamplesForPool(sample, user);
-                        for (DataRecord librarySample : parentLibrarySamplesForPool) {
+                        for (LibrarySample librarySample : poolLibraries.next()) {
                             RunSummary summary = new RunSummary("DEFAULT", "DEFAULT");
                             //set some of the pool level fields on the summary object like pool
                             summary.setPool(sampleId); //preset poolID
-                            summary.setConcentration(sample.getDoubleVal("Concentration", user)); //preset Pool Concentration
-                            summary.setStatus(sample.getStringVal("ExemplarSampleStatus", user)); //preset Pool Status
+                            Double poolConcentration = (Double) sampleFields.get("Concentration");
+                            if (poolConcentration != null)
+                                summary.setConcentration(poolConcentration); //preset Pool Concentration
+                            summary.setStatus((String) sampleFields.get("ExemplarSampleStatus")); //preset Pool Status
                             summary.setRequestName(requestName);
-                            if (sample.getValue("Volume", user) == null) //preset pool volume in this if else block
+                            if (sampleFields.get("Volume") == null) //preset pool volume in this if else block
                                 summary.setVolume("null");
                             else
-                                summary.setVolume(sample.getValue("Volume", user).toString());
-                            results.add(createRunSummaryForSampleInPool(librarySample, summary, user)); //pass the summary Object with preset pool level information "createRunSummaryForSampleInPool" method to add sample level information
+                                summary.setVolume(sampleFields.get("Volume").toString());
+                            results.add(createRunSummaryForSampleInPool(librarySample.fields, summary,
+                                    indexBarcodes.next(), seqRequirements.next())); //pass the summary Object with preset pool level information "createRunSummaryForSampleInPool" method to add sample level information
                         }
                     } else {
                         try {
-                            results.add(createRunSummaryForNonPooledSamples(sample, requestName, user));
+                            results.add(createRunSummaryForNonPooledSamples(sampleFields, requestName,
+                                    indexBarcodes.next(), seqRequirements.next()));
                         } catch (IllegalStateException e){
                             // Continue processing remaining data records
                             log.error(e.getMessage());
@@ -85,83 +116,229 @@ public class GetReadyForIllumina {
         return results;
     }
 
+    private static boolean isPool(Map<String, Object> sampleFields) {
+        Object sampleId = sampleFields.get("SampleId");
+        return sampleId != null && sampleId.toString().toLowerCase().startsWith("pool-");
+    }
+
     /**
-     * If the sample is pool, get all the samples of type Library that are present in the pool.
-     * @param pooledSample
-     * @return List of Library samples in the pooled sample.
+     * Looks up the names of the requests of all samples with one query, keyed by RequestId.
+     */
+    private Map<String, String> getRequestNames(List<Map<String, Object>> samplesFields,
+                                                DataRecordManager dataRecordManager, User user)
+            throws IoError, RemoteException, NotFound {
+        Set<String> requestIds = new TreeSet<>();
+        for (Map<String, Object> sampleFields : samplesFields) {
+            Object requestId = sampleFields.get("RequestId");
+            // pools spanning several requests list all of them and are resolved through their ancestors
+            if (requestId != null && !requestId.toString().isEmpty() && !requestId.toString().contains(","))
+                requestIds.add(requestId.toString());
+        }
+        Map<String, String> requestNames = new HashMap<>();
+        if (requestIds.isEmpty())
+            return requestNames;
+
+        StringJoiner query = new StringJoiner(",", "RequestId in (", ")");
+        for (String requestId : requestIds)
+            query.add("'" + requestId + "'");
+        List<DataRecord> requests = dataRecordManager.queryDataRecords("Request", query.toString(), user);
+        if (!requests.isEmpty()) {
+            for (Map<String, Object> requestFields : dataRecordManager.getFieldsForRecords(requests, user)) {
+                Object requestName = requestFields.get("RequestName");
+                requestNames.put((String) requestFields.get("RequestId"), requestName == null ? null : requestName.toString());
+            }
+        }
+        log.info("Resolved names of " + requestNames.size() + " requests for " + samplesFields.size() + " samples");
+        return requestNames;
+    }
+
+    private String getRequestName(DataRecord sample, Map<String, Object> sampleFields, Map<String, String> requestNames,
+                                  User user) throws IoError, RemoteException, NotFound {
+        Object requestId = sampleFields.get("RequestId");
+        if (requestId != null && requestNames.containsKey(requestId.toString()))
+            return requestNames.get(requestId.toString());
+
+        List<DataRecord> requestRecords = sample.getAncestorsOfType("Request", user);
+        if (!requestRecords.isEmpty()) {
+            return requestRecords.get(0).getStringVal("RequestName", user);
+        }
+        return "";
+    }
+
+    /**
+     * If the sample is pool, get all the samples of type Library that are present in the pool. The parents of all pools
+     * are retrieved together, nested pools are expanded one level at a time.
+     * @param pooledSamples
+     * @return List of Library samples for each pooled sample, in the same order.
      * @throws IoError
      * @throws RemoteException
      * @throws NotFound
      */
-    private List<DataRecord> getNearestParentLibrarySamplesForPool(DataRecord pooledSample, User user) throws IoError, RemoteException, NotFound {
-        List<DataRecord> parentLibrarySamplesForPool = new ArrayList<>();
-        Stack<DataRecord> sampleTrackingStack = new Stack<>();
-        sampleTrackingStack.add(pooledSample);
-        while (!sampleTrackingStack.isEmpty()) {
-            List<DataRecord> parentSamples = sampleTrackingStack.pop().getParentsOfType("Sample", user);
-            if (!parentSamples.isEmpty()) {
-                for (DataRecord sample : parentSamples) {
-                    String sampleId = sample.getStringVal("SampleId", user);
-                    log.info("Processing: " + sampleId);
-                    if (sampleId.toLowerCase().startsWith("pool-")) {
-                        sampleTrackingStack.push(sample);
-                    }
-                    else {
-                        parentLibrarySamplesForPool.add(sample);
-                    }
+    private List<List<LibrarySample>> getNearestParentLibrarySamplesForPools(List<DataRecord> pooledSamples,
+                                                                             DataRecordManager dataRecordManager, User user)
+            throws IoError, RemoteException, NotFound, ServerException {
+        List<List<LibrarySample>> parentLibrarySamplesForPools = new ArrayList<>();
+        List<DataRecord> frontier = new ArrayList<>();
+        // index of the pool in pooledSamples each frontier record belongs to
+        List<Integer> frontierPools = new ArrayList<>();
+        for (int i = 0; i < pooledSamples.size(); i++) {
+            parentLibrarySamplesForPools.add(new ArrayList<>());
+            frontier.add(pooledSamples.get(i));
+            frontierPools.add(i);
+        }
+
+        while (!frontier.isEmpty()) {
+            List<List<DataRecord>> parentSamples = dataRecordManager.getParentsOfType(frontier, "Sample", user);
+            List<DataRecord> parents = new ArrayList<>();
+            List<Integer> parentPools = new ArrayList<>();
+            for (int i = 0; i < frontier.size(); i++) {
+                for (DataRecord parent : parentSamples.get(i)) {
+                    parents.add(parent);
+                    parentPools.add(frontierPools.get(i));
+                }
+            }
+            log.info("Processing " + parents.size() + " parent samples of " + frontier.size() + " pools");
+            List<Map<String, Object>> parentFields = parents.isEmpty() ? Collections.emptyList() :
+                    dataRecordManager.getFieldsForRecords(parents, user);
+
+            frontier = new ArrayList<>();
+            frontierPools = new ArrayList<>();
+            for (int i = 0; i < parents.size(); i++) {
+                if (isPool(parentFields.get(i))) {
+                    frontier.add(parents.get(i));
+                    frontierPools.add(parentPools.get(i));
+                } else {
+                    parentLibrarySamplesForPools.get(parentPools.get(i)).add(new LibrarySample(parents.get(i),
+                            parentFields.get(i)));
                 }
             }
         }
-        return parentLibrarySamplesForPool;
+        return parentLibrarySamplesForPools;
+    }
+
+    private static class LibrarySample {
+        final DataRecord record;
+        final Map<String, Object> fields;
+
+        LibrarySample(DataRecord record, Map<String, Object> fields) {
+            this.record = record;
+            this.fields = fields;
+        }
     }
 
     /**
-     * This method is designed to find and return the Sample in hierarchy with a desired child DataType
-     *
-     * @param sample
-     * @param childDataType
-     * @return Sample DataRecord
-     * @throws IoError
-     * @throws RemoteException
+     * Finds for each library the first child of each of @childTypes on the library itself or on its nearest ancestor
+     * with one, following the first parent Sample. All libraries are walked up together, one LIMS call per child type
+     * and one for the parents per level, and the fields of the children found are read with one call per child type.
+     * @return per child type the fields of that child for each library in the same order, null where there is none
      */
-    private DataRecord getParentSampleWithDesiredChildTypeRecord(DataRecord sample, String childDataType, User user) throws IoError, RemoteException, NotFound {
-        if (sample.getChildrenOfType(childDataType, user).length>0){
-            return sample;
+    static Map<String, List<Map<String, Object>>> getNearestChildFields(List<DataRecord> libraries,
+                                                                        List<String> childTypes,
+                                                                        DataRecordManager dataRecordManager, User user)
+            throws IoError, RemoteException, NotFound, ServerException {
+        Map<String, DataRecord[]> children = new LinkedHashMap<>();
+        for (String childType : childTypes)
+            children.put(childType, new DataRecord[libraries.size()]);
+
+        // samples of the current level -> indexes of the libraries still looking above them
+        Map<Long, DataRecord> level = new LinkedHashMap<>();
+        Map<Long, List<Integer>> waiting = new HashMap<>();
+        for (int i = 0; i < libraries.size(); i++) {
+            DataRecord library = libraries.get(i);
+            level.put(library.getRecordId(), library);
+            waiting.computeIfAbsent(library.getRecordId(), k -> new ArrayList<>()).add(i);
         }
-        DataRecord record = null;
-        Stack<DataRecord> sampleTrackingPile = new Stack<>();
-        sampleTrackingPile.push(sample);
-        do {
-            DataRecord startSample = sampleTrackingPile.pop();
-            List<DataRecord> parentRecords = startSample.getParentsOfType("Sample", user);
-            if (!parentRecords.isEmpty() && parentRecords.get(0).getChildrenOfType(childDataType, user).length>0) {
-                record = parentRecords.get(0);
+
+        int depth = 0;
+        while (!level.isEmpty()) {
+            for (Map.Entry<String, DataRecord[]> found : children.entrySet()) {
+                List<DataRecord> samples = new ArrayList<>();
+                for (DataRecord sample : level.values()) {
+                    if (isMissing(waiting.get(sample.getRecordId()), found.getValue()))
+                        samples.add(sample);
+                }
+                if (samples.isEmpty())
+                    continue;
+                List<List<DataRecord>> samplesChildren = dataRecordManager.getChildrenOfType(samples, found.getKey(), user);
+                for (int i = 0; i < samples.size(); i++) {
+                    if (samplesChildren.get(i).isEmpty())
+                        continue;
+                    for (int library : waiting.get(samples.get(i).getRecordId())) {
+                        if (found.getValue()[library] == null)
+                            found.getValue()[library] = samplesChildren.get(i).get(0);
+                    }
+                }
+            }
+
+            List<DataRecord> samples = new ArrayList<>();
+            for (DataRecord sample : level.values()) {
+                List<Integer> sampleLibraries = waiting.get(sample.getRecordId());
+                if (children.values().stream().anyMatch(found -> isMissing(sampleLibraries, found)))
+                    samples.add(sample);
+            }
+            Map<Long, DataRecord> nextLevel = new LinkedHashMap<>();
+            Map<Long, List<Integer>> nextWaiting = new HashMap<>();
+            if (!samples.isEmpty()) {
+                List<List<DataRecord>> parents = dataRecordManager.getParentsOfType(samples, "Sample", user);
+                for (int i = 0; i < samples.size(); i++) {
+                    if (parents.get(i).isEmpty())
+                        continue;
+                    DataRecord parent = parents.get(i).get(0);
+                    nextLevel.put(parent.getRecordId(), parent);
+                    nextWaiting.computeIfAbsent(parent.getRecordId(), k -> new ArrayList<>())
+                            .addAll(waiting.get(samples.get(i).getRecordId()));
+                }
             }
-            if (!parentRecords.isEmpty() && record == null) {
-                sampleTrackingPile.push(parentRecords.get(0));
+            level = nextLevel;
+            waiting = nextWaiting;
+            depth++;
+        }
+        log.info("Resolved " + childTypes + " of " + libraries.size() + " libraries walking up " + depth + " levels");
+
+        Map<String, List<Map<String, Object>>> childFields = new HashMap<>();
+        for (Map.Entry<String, DataRecord[]> found : children.entrySet()) {
+            Map<Long, DataRecord> distinct = new LinkedHashMap<>();
+            for (DataRecord child : found.getValue()) {
+                if (child != null)
+                    distinct.put(child.getRecordId(), child);
             }
-        } while (!sampleTrackingPile.empty());
-        return record;
+            Map<Long, Map<String, Object>> fieldsById = new HashMap<>();
+            if (!distinct.isEmpty()) {
+                List<DataRecord> records = new ArrayList<>(distinct.values());
+                List<Map<String, Object>> fields = dataRecordManager.getFieldsForRecords(records, user);
+                for (int i = 0; i < records.size(); i++)
+                    fieldsById.put(records.get(i).getRecordId(), fields.get(i));
+            }
+            List<Map<String, Object>> libraryFields = new ArrayList<>(libraries.size());
+            for (DataRecord child : found.getValue())
+                libraryFields.add(child == null ? null : fieldsById.get(child.getRecordId()));
+            childFields.put(found.getKey(), libraryFields);
+        }
+        return childFields;
+    }
+
+    private static boolean isMissing(List<Integer> libraries, DataRecord[] found) {
+        for (int library : libraries) {
+            if (found[library] == null)
+                return true;
+        }
+        return false;
     }
 
     /**
      * This method returns the comma separated value of indexId and IndexBarcode for the sample.
      *
-     * @param sample
+     * @param sampleId
+     * @param indexBarcode fields of the IndexBarcode of the sample or its nearest ancestor with one, null if none
      * @return String IndexId value for Sample if found, else returns "" with a warning.
-     * @throws NotFound
-     * @throws RemoteException
-     * @throws IoError
      */
-    private String getSampleLibraryIndexIdAndBarcode(DataRecord sample, User user) throws NotFound, RemoteException, IoError {
-        DataRecord parentSample = getParentSampleWithDesiredChildTypeRecord(sample, "IndexBarcode", user);
-        if (parentSample != null && parentSample.getChildrenOfType("IndexBarcode", user)[0].getValue("IndexId", user) != null) {
-            DataRecord recordWithIndexBarcodeInfo = parentSample.getChildrenOfType("IndexBarcode", user)[0];
-            String indexId = recordWithIndexBarcodeInfo.getStringVal("IndexId", user);
-            String indexBarcode = recordWithIndexBarcodeInfo.getStringVal("IndexTag", user);
-            return indexId + "," + indexBarcode;
+    private String getSampleLibraryIndexIdAndBarcode(String sampleId, Map<String, Object> indexBarcode) {
+        if (indexBarcode != null && indexBarcode.get("IndexId") != null) {
+            String indexId = (String) indexBarcode.get("IndexId");
+            String indexTag = (String) indexBarcode.get("IndexTag");
+            return indexId + "," + indexTag;
         } else {
-            log.info(String.format("IndexId not found for sample '%s'. Please double check.", sample.getStringVal("SampleId", user)));
+            log.info(String.format("IndexId not found for sample '%s'. Please double check.", sampleId));
             return "";
         }
     }
@@ -169,64 +346,61 @@ public class GetReadyForIllumina {
     /**
      * This method returns the Requested Reads value for sample.
      *
-     * @param sample
+     * @param sampleId
+     * @param seqRequirement fields of the SeqRequirement of the sample or its nearest ancestor with one, null if none
      * @return Double value RequestedReads value from SeqRequirement/SeqRequirementPooled record if found, else returns 0.0 with a warning.
-     * @throws IoError
-     * @throws RemoteException
-     * @throws NotFound
-     * @throws ServerException
-     * @throws InvalidValue
      */
-    private Double getRequestedReadsForSample(DataRecord sample, User user) throws IoError, RemoteException, NotFound, ServerException, InvalidValue {
-        DataRecord sampleWithSeqRequirementAsChild = getParentSampleWithDesiredChildTypeRecord(sample, "SeqRequirement", user);
-        if (sampleWithSeqRequirementAsChild !=null && sampleWithSeqRequirementAsChild.getChildrenOfType("SeqRequirement", user)[0].getValue("RequestedReads", user) != null) {
-            DataRecord seqRequirements = sampleWithSeqRequirementAsChild.getChildrenOfType("SeqRequirement", user)[0];
-            return seqRequirements.getDoubleVal("RequestedReads", user);
+    private Double getRequestedReadsForSample(String sampleId, Map<String, Object> seqRequirement) {
+        if (seqRequirement != null && seqRequirement.get("RequestedReads") != null) {
+            return ((Number) seqRequirement.get("RequestedReads")).doubleValue();
         } else {
-            log.error(String.format("Invalid Sequencing Requirements '%s' for sample '%s'. Please double check.", null, sample.getStringVal("SampleId", user)));
+            log.error(String.format("Invalid Sequencing Requirements '%s' for sample '%s'. Please double check.", null, sampleId));
             return 0.0;
         }
     }
 
     /**
      * This method returns the SequencingRunType value for the sample.
-     * @param sample
+     * @param sampleId
+     * @param seqRequirement fields of the SeqRequirement of the sample or its nearest ancestor with one, null if none
      * @return Sequencing Run Type value
-     * @throws IoError
-     * @throws RemoteException
-     * @throws NotFound
      */
-    private String getSequencingRunTypeForSample(DataRecord sample, User user) throws IoError, RemoteException, NotFound {
-        DataRecord sampleWithSeqRequirementAsChild = getParentSampleWithDesiredChildTypeRecord(sample, "SeqRequirement", user);
-        if (sampleWithSeqRequirementAsChild != null && sampleWithSeqRequirementAsChild.getChildrenOfType("SeqRequirement", user)[0].getValue("SequencingRunType", user) != null){
-            DataRecord sequencingRunTypeRecord = sampleWithSeqRequirementAsChild.getChildrenOfType("SeqRequirement", user)[0]; //continue here
-            return sequencingRunTypeRecord.getStringVal("SequencingRunType", user);
+    private String getSequencingRunTypeForSample(String sampleId, Map<String, Object> seqRequirement) {
+        if (seqRequirement != null && seqRequirement.get("SequencingRunType") != null) {
+            return (String) seqRequirement.get("SequencingRunType");
         } else {
-            log.error(String.format("Invalid Sequencing RunType '%s' for sample '%s'. Please double check.", null, sample.getStringVal("SampleId", user)));
+            log.error(String.format("Invalid Sequencing RunType '%s' for sample '%s'. Please double check.", null, sampleId));
             return "";
         }
     }
 
-    private String getRecipeForSample(DataRecord sample, User user) throws NotFound, RemoteException {
-        if (sample.getValue("Recipe", user) !=null){
-            return sample.getValue("Recipe",user).toString();
+    private static void setReads(RunSummary summary, Map<String, Object> seqRequirement) {
+        if (seqRequirement != null) {
+            Object readTotal = seqRequirement.get(SeqRequirementModel.READ_TOTAL);
+            Object remainingReads = seqRequirement.get("RemainingReads");
+            summary.setReadTotal(readTotal != null ? ((Number) readTotal).longValue() : 0);
+            summary.setRemainingReads(remainingReads != null ? ((Number) remainingReads).longValue() : 0);
+        }
+    }
+
+    private String getRecipeForSample(Map<String, Object> sampleFieldValues) {
+        if (sampleFieldValues.get("Recipe") !=null){
+            return sampleFieldValues.get("Recipe").toString();
         }
         return "";
     }
 
     /**
      * This method will create the Summary Object for the sample not part of a pool.
-     * @param unpooledSample
-     * @param user
+     * @param sampleFieldValues
+     * @param requestName
+     * @param indexBarcode
+     * @param seqRequirement
      * @return Run Summary for sample.
-     * @throws NotFound
-     * @throws RemoteException
-     * @throws IoError
-     * @throws InvalidValue
      */
-    private RunSummary createRunSummaryForNonPooledSamples(DataRecord unpooledSample, String requestName, User user)
-            throws NotFound, RemoteException, IoError, InvalidValue {
-        Map<String, Object> sampleFieldValues = unpooledSample.getFields(user);
+    private RunSummary createRunSummaryForNonPooledSamples(Map<String, Object> sampleFieldValues, String requestName,
+                                                           Map<String, Object> indexBarcode,
+                                                           Map<String, Object> seqRequirement) {
         String sampleId = (String) sampleFieldValues.get("SampleId");
         log.info("Creating run summary for " + sampleId);
         RunSummary summary = new RunSummary("DEFAULT", "DEFAULT"); // if sample is not pool, then it is Library sample and work with it.
@@ -247,63 +421,53 @@ public class GetReadyForIllumina {
             summary.setVolume("null");
         else
             summary.setVolume(volume.toString());
-        summary.setRecipe(getRecipeForSample(unpooledSample, user));
+        summary.setRecipe(getRecipeForSample(sampleFieldValues));
         summary.setPlateId((String) sampleFieldValues.getOrDefault("RelatedRecord23", ""));
-        String indexAndBarcode = getSampleLibraryIndexIdAndBarcode(unpooledSample, user);
+        String indexAndBarcode = getSampleLibraryIndexIdAndBarcode(sampleId, indexBarcode);
         if (indexAndBarcode !=null && indexAndBarcode.split(",").length==2){
             summary.setBarcodeId(indexAndBarcode.split(",")[0]);
             summary.setBarcodeSeq(indexAndBarcode.split(",")[1]);
         } else {
             throw new IllegalStateException(String.format("Failed to retrieve barcode ID & Seq from IGO Sample Id: %s. Not adding summary.", sampleId));
         }
-        summary.setReadNum(getRequestedReadsForSample(unpooledSample, user).toString());
-        List<DataRecord> seqReqrmts = getRecordsOfTypeFromParents(unpooledSample, SampleModel.DATA_TYPE_NAME, SeqRequirementModel.DATA_TYPE_NAME, user);
-        if (seqReqrmts.size()>0){
-            DataRecord seqReq = seqReqrmts.get(0);
-            summary.setReadTotal(seqReq.getValue(SeqRequirementModel.READ_TOTAL, user) != null ? seqReq.getLongVal(SeqRequirementModel.READ_TOTAL, user): 0);
-            summary.setRemainingReads(seqReq.getValue("RemainingReads", user) != null ? seqReq.getLongVal("RemainingReads", user) : 0);
-        }
-        summary.setRunType(getSequencingRunTypeForSample(unpooledSample, user));
+        summary.setReadNum(getRequestedReadsForSample(sampleId, seqRequirement).toString());
+        setReads(summary, seqRequirement);
+        summary.setRunType(getSequencingRunTypeForSample(sampleId, seqRequirement));
         return summary;
     }
 
     /**
      * This method adds sample level metadata to summary for samples that are part of the pool. This method expects a summary that has some pool level
      * information added to it.
-     * @param sampleInPool
+     * @param sampleFieldValues
      * @param summary
+     * @param indexBarcode
+     * @param seqRequirement
      * @return Run Summary for sample in pool.
-     * @throws RemoteException
-     * @throws NotFound
-     * @throws IoError
-     * @throws InvalidValue
      */
-    private RunSummary createRunSummaryForSampleInPool(DataRecord sampleInPool, RunSummary summary, User user) throws RemoteException, NotFound, IoError, InvalidValue {
-        Map<String, Object> sampleFieldValues = sampleInPool.getFields(user);
-        summary.setSampleId((String) sampleFieldValues.get("SampleId"));
+    private RunSummary createRunSummaryForSampleInPool(Map<String, Object> sampleFieldValues, RunSummary summary,
+                                                       Map<String, Object> indexBarcode,
+                                                       Map<String, Object> seqRequirement) {
+        String sampleId = (String) sampleFieldValues.get("SampleId");
+        summary.setSampleId(sampleId);
         summary.setOtherSampleId((String) sampleFieldValues.getOrDefault("OtherSampleId", ""));
         summary.setRequestId((String) sampleFieldValues.getOrDefault("RequestId", ""));
         summary.setTubeBarcode((String) sampleFieldValues.getOrDefault("MicronicTubeBarcode", ""));
         summary.setTumor((String) sampleFieldValues.getOrDefault("TumorOrNormal", ""));
         summary.setWellPos(sampleFieldValues.getOrDefault("ColPosition", "") + (String) sampleFieldValues.getOrDefault("RowPosition", ""));
         summary.setConcentrationUnits((String) sampleFieldValues.getOrDefault("ConcentrationUnits", ""));
-        summary.setRecipe(getRecipeForSample(sampleInPool, user));
+        summary.setRecipe(getRecipeForSample(sampleFieldValues));
         Double concentration = (Double) sampleFieldValues.get("Concentration");
         if (concentration != null)
             summary.setAltConcentration(concentration);
         summary.setPlateId((String) sampleFieldValues.getOrDefault("RelatedRecord23", ""));
-        String indexAndBarcode = getSampleLibraryIndexIdAndBarcode(sampleInPool, user);
+        String indexAndBarcode = getSampleLibraryIndexIdAndBarcode(sampleId, indexBarcode);
         if (indexAndBarcode !=null && indexAndBarcode.split(",").length==2)
             summary.setBarcodeId(indexAndBarcode.split(",")[0]);
-        List<DataRecord> seqReqrmts = getRecordsOfTypeFromParents(sampleInPool, SampleModel.DATA_TYPE_NAME, SeqRequirementModel.DATA_TYPE_NAME, user);
-        if (seqReqrmts.size()>0){
-            DataRecord seqReq = seqReqrmts.get(0);
-            summary.setReadTotal(seqReq.getValue(SeqRequirementModel.READ_TOTAL, user) != null ? seqReq.getLongVal(SeqRequirementModel.READ_TOTAL, user): 0);
-            summary.setRemainingReads(seqReq.getValue("RemainingReads", user) != null ? seqReq.getLongVal("RemainingReads", user) : 0);
-        }
+        setReads(summary, seqRequirement);
         summary.setBarcodeSeq(indexAndBarcode.split(",")[1]);
-        summary.setReadNum(getRequestedReadsForSample(sampleInPool, user).toString());
-        summary.setRunType(getSequencingRunTypeForSample(sampleInPool, user));
+        summary.setReadNum(getRequestedReadsForSample(sampleId, seqRequirement).toString());
+        summary.setRunType(getSequencingRunTypeForSample(sampleId, seqRequirement));
         return summary;
     }
 }
\ No newline at end of file
@@ -1,13 +1,16 @@
 
 package org.mskcc.limsrest.service;
 
-import com.velox.api.datarecord.DataRecord;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.mskcc.limsrest.util.DataRecordFieldCache;
 import org.mskcc.limsrest.util.Messages;
 import org.springframework.security.access.prepost.PreAuthorize;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A queued task that takes a list of request id and map of values and returns them 
@@ -18,6 +21,11 @@ public class GetRequest extends LimsTask {
     String igoUser;
     String[] requestIds;
     String[] possibleRequestFields;
+    private final DataRecordFieldCache fieldCache;
+
+    public GetRequest(DataRecordFieldCache fieldCache) {
+        this.fieldCache = fieldCache;
+    }
 
     public void init(String igoUser, String[] requestIds, String[] requestFields) {
         this.igoUser = igoUser;
@@ -31,23 +39,14 @@ public class GetRequest extends LimsTask {
         LinkedList<RequestDetailed> rds = new LinkedList<>();
 
         try {
-            StringBuilder sb = new StringBuilder();
-            sb.append("(");
-            for (String r : requestIds) {
-                sb.append("'");
-                sb.append(r);
-                sb.append("',");
-            }
-            if (sb.length() > 1) {
-                sb.setLength(sb.length() - 1);
-            }
-            sb.append(")");
-            List<DataRecord> matchedRequests = dataRecordManager.queryDataRecords("Request", "RequestId in " + sb.toString(), user);
+            List<Map<String, Object>> matchedRequests = new ArrayList<>();
+            fieldCache.getFields("Request", "RequestId", Arrays.asList(requestIds), dataRecordManager, user)
+                    .values().forEach(matchedRequests::addAll);
             if (matchedRequests.size() == 0) {
-                throw new LimsException("No Request record in the lims matches the ids: " + sb.toString());
+                throw new LimsException("No Request record in the lims matches the ids: " + String.join(",", requestIds));
             }
 
-            for (DataRecord request : matchedRequests) {
+            for (Map<String, Object> request : matchedRequests) {
                 RequestDetailed rd = new RequestDetailed();
                 annotateRequestDetailed(rd, request);
                 rds.push(rd);
@@ -27,30 +27,30 @@ public class GetRequestPermissionsTask {
     }
 
     public GetRequestPermissionsTask.RequestPermissions execute() {
-        try {
-            VeloxConnection vConn = conn.getConnection();
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            VeloxConnection vConn = lease.getConnection();
             User user = vConn.getUser();
             DataRecordManager drm = vConn.getDataRecordManager();
 
+            // read through to the LIMS, not the field cache, so revoked or granted access takes effect right away
             List<DataRecord> requestList = drm.queryDataRecords("Request", "RequestId = '" + this.requestId + "'", user);
             if (requestList.size() != 1) {  // error: request ID not found or more than one found
                 log.error("Request not found:" + requestId);
                 return null;
             }
 
-            DataRecord dataRecord = requestList.get(0);
-            String dataAccessEmails = dataRecord.getStringVal("DataAccessEmails", user);
-            String labHeadEmail = dataRecord.getStringVal("LabHeadEmail", user).toLowerCase();
-
-            Boolean isCmoRequest = Boolean.FALSE;
-            Boolean bicAnalysis = Boolean.FALSE;
-            String analysisType = "";
-            try {
-                isCmoRequest = dataRecord.getBooleanVal("IsCmoRequest", user);
-                bicAnalysis = dataRecord.getBooleanVal("BICAnalysis", user);
-                analysisType = dataRecord.getStringVal("AnalysisType", user);
-            } catch (NullPointerException e) {
+            Map<String, Object> requestFields = drm.getFieldsForRecords(requestList, user).get(0);
+            String dataAccessEmails = (String) requestFields.get("DataAccessEmails");
+            String labHeadEmail = ((String) requestFields.get("LabHeadEmail")).toLowerCase();
+
+            Boolean isCmoRequest = (Boolean) requestFields.get("IsCmoRequest");
+            Boolean bicAnalysis = (Boolean) requestFields.get("BICAnalysis");
+            String analysisType = (String) requestFields.get("AnalysisType");
+            if (isCmoRequest == null || bicAnalysis == null || analysisType == null) {
                 log.warn("Correct invalid null valid in database for request: " + requestId);
+                isCmoRequest = Boolean.TRUE.equals(isCmoRequest);
+                bicAnalysis = Boolean.TRUE.equals(bicAnalysis);
+                analysisType = analysisType == null ? "" : analysisType;
             }
 
             Boolean isBicRequest = isBicRequest(analysisType, bicAnalysis);
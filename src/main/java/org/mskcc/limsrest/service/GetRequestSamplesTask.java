@@ -10,10 +10,7 @@ import com.velox.sloan.cmo.recmodels.SampleModel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestTemplate;
+import org.mskcc.limsrest.service.ngsstats.NgsStatsClient;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -26,16 +23,18 @@ public class GetRequestSamplesTask {
     private static Log log = LogFactory.getLog(GetRequestSamplesTask.class);
 
     private ConnectionLIMS conn;
+    private NgsStatsClient ngsStats;
     private String requestId;
 
-    public GetRequestSamplesTask(String requestId, ConnectionLIMS conn) {
+    public GetRequestSamplesTask(String requestId, ConnectionLIMS conn, NgsStatsClient ngsStats) {
         this.requestId = requestId;
         this.conn = conn;
+        this.ngsStats = ngsStats;
     }
 
     public GetRequestSamplesTask.RequestSampleList execute() {
-        try {
-            VeloxConnection vConn = conn.getConnection();
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            VeloxConnection vConn = lease.getConnection();
             User user = vConn.getUser();
             DataRecordManager drm = vConn.getDataRecordManager();
 
@@ -81,7 +80,7 @@ public class GetRequestSamplesTask {
 
             if (isIMPACTOrHEMEPACT(recipe)) {
                 log.info("Adding pooled normals for recipe: " + recipe);
-                rsl.pooledNormals = findPooledNormals(requestId);
+                rsl.pooledNormals = findPooledNormals(requestId, ngsStats);
             }
             String requestName = requestDataRecord.getStringVal(RequestModel.REQUEST_NAME, user);
             if (requestName != null && requestName.toUpperCase().contains("RNASEQ")) {
@@ -177,20 +176,11 @@ public class GetRequestSamplesTask {
     /*
     Finds all pooled normals included on any run for a given request.
      */
-    public static List<String> findPooledNormals(String request) {
-        // TODO
-        String url = "http://delphi.mskcc.org:8080/ngs-stats/rundone/getpoolednormals/" + request;
-        log.info("Finding pooled normal fastqs in fastq DB for: " + url);
+    public static List<String> findPooledNormals(String request, NgsStatsClient ngsStats) {
+        log.info("Finding pooled normal fastqs in fastq DB for: " + request);
 
         try {
-            RestTemplate restTemplate = new RestTemplate();
-            ResponseEntity<List<ArchivedFastq>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    null,
-                    new ParameterizedTypeReference<List<ArchivedFastq>>() {
-                    });
-            List<ArchivedFastq> fastqList = response.getBody();
+            List<ArchivedFastq> fastqList = ngsStats.getPooledNormals(request);
             List<String> fastqPaths = new ArrayList<>();
             for (ArchivedFastq fastq : fastqList) {
                 fastqPaths.add(fastq.getFastq());
@@ -5,7 +5,6 @@ import com.velox.api.datarecord.DataRecordManager;
 import com.velox.api.datarecord.IoError;
 import com.velox.api.datarecord.NotFound;
 import com.velox.api.user.User;
-import com.velox.sapioutils.client.standalone.VeloxConnection;
 import com.velox.sloan.cmo.recmodels.BankedSampleModel;
 import com.velox.sloan.cmo.recmodels.RequestModel;
 import com.velox.sloan.cmo.recmodels.SampleModel;
@@ -51,18 +50,21 @@ public class GetRequestTrackingTask {
     private ConnectionLIMS conn;
     private String requestId;
     private User user;
+    private SampleTreeLoader treeLoader;
 
     public GetRequestTrackingTask(String requestId, ConnectionLIMS conn) {
         this.requestId = requestId;
         this.conn = conn;
-        this.user = conn.getConnection().getUser();
     }
 
     public Map<String, Object> execute() throws IoError, RemoteException, NotFound {
-        VeloxConnection vConn = conn.getConnection();
-        User user = vConn.getUser();
-        DataRecordManager drm = vConn.getDataRecordManager();
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            this.user = lease.getUser();
+            return execute(this.user, lease.getDataRecordManager());
+        }
+    }
 
+    private Map<String, Object> execute(User user, DataRecordManager drm) throws IoError, RemoteException, NotFound {
         String serviceId = getBankedSampleServiceId(this.requestId, user, drm);
         Request request = new Request(this.requestId);
 
@@ -83,7 +85,7 @@ public class GetRequestTrackingTask {
         }
         DataRecord requestRecord = requestRecordList.get(0);
 
-        List<ProjectSample> projectSamples = getProjectSamplesFromDataRecord(requestRecord, user);
+        List<ProjectSample> projectSamples = getProjectSamplesFromDataRecord(requestRecord, user, drm);
         request.setSamples(projectSamples);
 
         Map<String, Object> metaData = getMetaDataFromRecord(requestRecord, this.requestId, serviceId, projectSamples, user);
@@ -167,18 +169,24 @@ public class GetRequestTrackingTask {
 
     /**
      * Traverse the tree of each "Sample" DataType child of the input @requestRecord. This tree is converted into
-     * a ProjectSample data model that represents the tree
+     * a ProjectSample data model that represents the tree. The trees of all samples are loaded together one level at a
+     * time before they are evaluated, see SampleTreeLoader
      *
      * @param requestRecord - DataRecord of the request being tracked
      * @param user
+     * @param drm
      * @return
      * @throws IoError
      * @throws RemoteException
      */
-    private List<ProjectSample> getProjectSamplesFromDataRecord(DataRecord requestRecord, User user) throws IoError, RemoteException {
+    private List<ProjectSample> getProjectSamplesFromDataRecord(DataRecord requestRecord, User user,
+                                                                DataRecordManager drm) throws IoError, RemoteException {
         // Immediate samples of record represent physical samples. LIMS creates children of these in the workflow
         DataRecord[] samples = requestRecord.getChildrenOfType(SampleModel.DATA_TYPE_NAME, user);
 
+        this.treeLoader = new SampleTreeLoader(drm, user);
+        this.treeLoader.load(Arrays.asList(samples), record -> isWorkflowSampleInProject(record, this.requestId, user));
+
         // Create the tree of each ProjectSample aggregating per-sample status/stage information
         List<ProjectSample> projectSamples = new ArrayList<>();
         for (DataRecord sampleRecord : samples) {
@@ -192,7 +200,8 @@ public class GetRequestTrackingTask {
 
     /**
      * Populates an input @tree (or subtree) representing a Project Sample using recursive depth-first search, DFS. Will
-     * gather the ExemplarSampleStatus of each Sample DataRecord in the workflow to determine the Stages in the workflow
+     * gather the ExemplarSampleStatus of each Sample DataRecord in the workflow to determine the Stages in the workflow.
+     * Children are taken from the preloaded @treeLoader where available
      * <p>
      * Implementation Notes:
      *  SAMPLES (WorkflowSample)
@@ -247,10 +256,13 @@ public class GetRequestTrackingTask {
         }
 
         // Search each child of the input
-        DataRecord[] children = new DataRecord[0];
-        try {
-            children = root.getRecord().getChildrenOfType(SampleModel.DATA_TYPE_NAME, tree.getUser());
-        } catch (IoError | RemoteException e) { /* Expected - No more children of the sample */ }
+        DataRecord[] children = this.treeLoader == null ? null : this.treeLoader.getSampleChildren(root.getRecord());
+        if (children == null) {
+            children = new DataRecord[0];
+            try {
+                children = root.getRecord().getChildrenOfType(SampleModel.DATA_TYPE_NAME, tree.getUser());
+            } catch (IoError | RemoteException e) { /* Expected - No more children of the sample */ }
+        }
 
         if (children.length == 0) {
             tree.updateTreeOnLeafStatus(root);
@@ -263,7 +275,7 @@ public class GetRequestTrackingTask {
             List<WorkflowSample> workflowChildren = new ArrayList<>();
             for (DataRecord record : children) {
                 if (isWorkflowSampleInProject(record, this.requestId, this.user)) {
-                    WorkflowSample sample = new WorkflowSample(record, this.conn);
+                    WorkflowSample sample = new WorkflowSample(record, this.conn, this.treeLoader);
 
                     // Children are related to the same Qc Records as their parents.
                     sample.addSeqAnalysisQcRecords(root.getSeqAnalysisQcRecords());
@@ -343,14 +355,17 @@ public class GetRequestTrackingTask {
      */
     private ProjectSampleTree createProjectSampleTree(DataRecord requestRecord, DataRecord record, User user) {
         // Initialize input
-        WorkflowSample root = new WorkflowSample(record, this.conn);
+        WorkflowSample root = new WorkflowSample(record, this.conn, this.treeLoader);
         ProjectSampleTree rootTree = new ProjectSampleTree(root, user);
         rootTree.addSample(root);
 
         // Evaluate overall QcStatus of ProjectSample from all descending SeqAnalysisSampleQC entries b/c the rule is
         // simple - if there is an IGO-Complete SeqAnalysisSampleQC record, the projectSample is IgoComplete
         try {
-            List<DataRecord> sampleQcRecords = record.getDescendantsOfType(SeqAnalysisSampleQCModel.DATA_TYPE_NAME, this.user);
+            List<DataRecord> sampleQcRecords = this.treeLoader == null ? null : this.treeLoader.getDescendantQcRecords(record);
+            if (sampleQcRecords == null) {
+                sampleQcRecords = record.getDescendantsOfType(SeqAnalysisSampleQCModel.DATA_TYPE_NAME, this.user);
+            }
             if (sampleQcRecords.size() > 0) {
                 String qcStatus = getDataQcStatus(sampleQcRecords, this.user);
                 rootTree.setDataQcStatus(qcStatus);
@@ -369,7 +384,10 @@ public class GetRequestTrackingTask {
         String sampleName = getRecordStringValue(record, Sample.OTHER_SAMPLE_ID, user);
         rootTree.setSampleName(sampleName);
         rootTree.setInvestigatorSampleId(investigatorSampleName);
-        DataRecord[] sampleCmoInfochildren = getChildrenofDataRecord(record, CmoSampleInfo.DATA_TYPE_NAME, user);
+        DataRecord[] sampleCmoInfochildren = this.treeLoader == null ? null : this.treeLoader.getCmoInfoChildren(record);
+        if (sampleCmoInfochildren == null) {
+            sampleCmoInfochildren = getChildrenofDataRecord(record, CmoSampleInfo.DATA_TYPE_NAME, user);
+        }
         if(sampleCmoInfochildren.length == 1){
             DataRecord sampleCmoInfoChild = sampleCmoInfochildren[0];
             String correctedCmoId = getRecordStringValue(sampleCmoInfoChild, CmoSampleInfo.USER_SAMPLE_ID, user);
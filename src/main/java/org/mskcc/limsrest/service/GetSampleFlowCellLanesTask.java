@@ -3,7 +3,6 @@ package org.mskcc.limsrest.service;
 import com.velox.api.datarecord.DataRecord;
 import com.velox.api.datarecord.DataRecordManager;
 import com.velox.api.user.User;
-import com.velox.sapioutils.client.standalone.VeloxConnection;
 import com.velox.sloan.cmo.recmodels.FlowCellLaneModel;
 import com.velox.sloan.cmo.recmodels.RequestModel;
 import com.velox.sloan.cmo.recmodels.SampleModel;
@@ -35,9 +34,12 @@ public class GetSampleFlowCellLanesTask {
     }
 
     public List<Map<String, Object>> execute() {
-        VeloxConnection vConn = this.conn.getConnection();
-        User user = vConn.getUser();
-        DataRecordManager dataRecordManager = vConn.getDataRecordManager();
+        try (ConnectionLIMS.Lease lease = this.conn.lease()) {
+            return execute(lease.getUser(), lease.getDataRecordManager());
+        }
+    }
+
+    private List<Map<String, Object>> execute(User user, DataRecordManager dataRecordManager) {
         String joinedProjects = String.join("','", this.projectList);
         String capture = String.format("('%s')", joinedProjects);             // e.g. ('P1', 'P2')
         log.info("Projects: " + capture);
@@ -5,23 +5,21 @@ import com.velox.api.datarecord.DataRecordManager;
 import com.velox.api.datarecord.IoError;
 import com.velox.api.datarecord.NotFound;
 import com.velox.api.user.User;
-import com.velox.sapioutils.client.standalone.VeloxConnection;
 import com.velox.sloan.cmo.recmodels.KAPALibPlateSetupProtocol1Model;
 import com.velox.sloan.cmo.recmodels.SampleModel;
 import com.velox.sloan.cmo.recmodels.SeqAnalysisSampleQCModel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.service.ngsstats.NgsStatsClient;
 import org.mskcc.limsrest.util.IGOTools;
 import org.mskcc.limsrest.util.Utils;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestTemplate;
 
 import java.rmi.RemoteException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Traverse the LIMS & ngs_stats database to find all sample level metadata required for CMO pipelines.<BR>
@@ -32,17 +30,36 @@ public class GetSampleManifestTask {
     private static Log log = LogFactory.getLog(GetSampleManifestTask.class);
 
     private ConnectionLIMS conn;
+    private NgsStatsClient ngsStats;
 
     protected String [] igoIds;
 
-    public GetSampleManifestTask(String [] igoIds, ConnectionLIMS conn) {
+    private ExecutorService executor;
+    private long sampleTimeoutMillis;
+
+    public GetSampleManifestTask(String [] igoIds, ConnectionLIMS conn, NgsStatsClient ngsStats) {
         this.igoIds = igoIds;
         this.conn = conn;
+        this.ngsStats = ngsStats;
+    }
+
+    /**
+     * Evaluates the samples in parallel on the @executor, each on its own LIMS session. A sample that fails or runs
+     * longer than @sampleTimeoutMillis gets an empty manifest with its error set and an entry in
+     * SampleManifestResult.sampleErrors instead of failing the whole batch.
+     */
+    public GetSampleManifestTask(String [] igoIds, ConnectionLIMS conn, NgsStatsClient ngsStats,
+                                 ExecutorService executor, long sampleTimeoutMillis) {
+        this(igoIds, conn, ngsStats);
+        this.executor = executor;
+        this.sampleTimeoutMillis = sampleTimeoutMillis;
     }
 
     public static class SampleManifestResult {
         public List<SampleManifest> smList;
         public String error = null;
+        // igoId -> error for samples returned with an empty, failed manifest in parallel mode
+        public Map<String, String> sampleErrors = new LinkedHashMap<>();
 
         public SampleManifestResult(List<SampleManifest> smList, String error) {
             this.smList = smList;
@@ -67,13 +84,14 @@ public class GetSampleManifestTask {
     }
 
     public SampleManifestResult execute() {
-        long startTime = System.currentTimeMillis();
+        if (executor != null)
+            return executeParallel();
 
-        VeloxConnection vConn = conn.getConnection();
-        User user = vConn.getUser();
-        DataRecordManager dataRecordManager = vConn.getDataRecordManager();
+        long startTime = System.currentTimeMillis();
 
-        try {
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            User user = lease.getUser();
+            DataRecordManager dataRecordManager = lease.getDataRecordManager();
             List<SampleManifest> smList = new ArrayList<>();
             for (String igoId : igoIds) {
                 smList.add(getSampleManifest(igoId, user, dataRecordManager));
@@ -87,6 +105,79 @@ public class GetSampleManifestTask {
         }
     }
 
+    private SampleManifestResult executeParallel() {
+        long startTime = System.currentTimeMillis();
+
+        List<Future<SampleManifest>> futures = new ArrayList<>();
+        List<AtomicLong> sampleStartTimes = new ArrayList<>();
+        try {
+            for (String igoId : igoIds) {
+                AtomicLong sampleStart = new AtomicLong();
+                sampleStartTimes.add(sampleStart);
+                futures.add(executor.submit(() -> {
+                    sampleStart.set(System.currentTimeMillis());
+                    try (ConnectionLIMS.Lease lease = conn.lease()) {
+                        return getSampleManifest(igoId, lease.getUser(), lease.getDataRecordManager());
+                    }
+                }));
+            }
+        } catch (RejectedExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            log.error("Sample manifest workers are shut down: " + e.getMessage());
+            return null;
+        }
+
+        // collect in request order so the output matches the input igoIds
+        SampleManifestResult result = new SampleManifestResult(new ArrayList<>(), null);
+        for (int i = 0; i < igoIds.length; i++) {
+            String igoId = igoIds[i];
+            try {
+                result.smList.add(awaitSample(futures.get(i), sampleStartTimes.get(i)));
+            } catch (TimeoutException e) {
+                futures.get(i).cancel(true);
+                log.error("Sample manifest timed out after " + sampleTimeoutMillis + "ms for: " + igoId);
+                result.sampleErrors.put(igoId, "Timed out after " + sampleTimeoutMillis + "ms");
+                result.smList.add(failedManifest(igoId, result.sampleErrors.get(igoId)));
+            } catch (ExecutionException e) {
+                log.error("Sample manifest failed for: " + igoId, e.getCause());
+                result.sampleErrors.put(igoId, String.valueOf(e.getCause().getMessage()));
+                result.smList.add(failedManifest(igoId, result.sampleErrors.get(igoId)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                return null;
+            }
+        }
+        log.info("Manifest generation time(ms):" + (System.currentTimeMillis() - startTime) + " for " +
+                igoIds.length + " samples, failed:" + result.sampleErrors.size());
+        return result;
+    }
+
+    /**
+     * Waits for a sample, timing it from when a worker picked it up rather than from when it was queued.
+     */
+    private SampleManifest awaitSample(Future<SampleManifest> future, AtomicLong sampleStart)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        while (true) {
+            long started = sampleStart.get();
+            long wait = started == 0 ? sampleTimeoutMillis : started + sampleTimeoutMillis - System.currentTimeMillis();
+            try {
+                return future.get(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                started = sampleStart.get();
+                if (started != 0 && System.currentTimeMillis() - started >= sampleTimeoutMillis)
+                    throw e;
+            }
+        }
+    }
+
+    private static SampleManifest failedManifest(String igoId, String error) {
+        SampleManifest sampleManifest = new SampleManifest();
+        sampleManifest.setIgoId(igoId);
+        sampleManifest.setError(error);
+        return sampleManifest;
+    }
+
     /**
      * 06260_G_128 Currently Failing because archive has 06260_G_128_1_1
      * @param igoId
@@ -281,10 +372,10 @@ public class GetSampleManifestTask {
                             runsMap.get(flowCellId).addLane(laneNum);
                         } else { // lookup fastq paths for this run, currently making extra queries for 06260_N_9 KIM & others
                             //06938_J_86 was demuxed by lane on 2017-06-16 16:49:08
-                            List<String> fastqs = FastQPathFinder.search(runId, origSampleName, sampleManifest.getIgoId(), true, runPassedQC);
+                            List<String> fastqs = FastQPathFinder.search(runId, origSampleName, sampleManifest.getIgoId(), true, runPassedQC, ngsStats);
                             if (fastqs == null && aliquot.getLongVal("DateCreated", user) < 1455132132000L) { // try search again with pre-Jan 2016 naming convention, 06184_4
                                 log.info("Searching fastq database again for pre-Jan. 2016 sample.");
-                                fastqs = FastQPathFinder.search(runId, origSampleName, null, false, runPassedQC);
+                                fastqs = FastQPathFinder.search(runId, origSampleName, null, false, runPassedQC, ngsStats);
                             }
 
                             if (fastqs != null) {
@@ -378,7 +469,7 @@ public class GetSampleManifestTask {
         if (runPassedQC.contains("JAX_0004_BH5GJYBBXX")) {
             String runID = "JAX_0004";
             SampleManifest.Run r = new SampleManifest.Run("", runID, "H5GJYBBXX", "", "2015-11-30");
-            r.fastqs = FastQPathFinder.search(runID, origSampleName, sampleManifest.getIgoId(), false, runPassedQC);
+            r.fastqs = FastQPathFinder.search(runID, origSampleName, sampleManifest.getIgoId(), false, runPassedQC, ngsStats);
             if (r.fastqs != null) {
                 library.runs.add(r);
             }
@@ -446,7 +537,7 @@ public class GetSampleManifestTask {
     }
 
     protected SampleManifest fastqsOnlyManifest(SampleManifest sampleManifest, Set<String> runFailedQC) {
-        List<SampleManifest.Run> runs = FastQPathFinder.searchForFastqs(sampleManifest.getIgoId(), runFailedQC);
+        List<SampleManifest.Run> runs = FastQPathFinder.searchForFastqs(sampleManifest.getIgoId(), runFailedQC, ngsStats);
 
         SampleManifest.Library library = new SampleManifest.Library();
         library.runs = runs;
@@ -572,17 +663,11 @@ public class GetSampleManifestTask {
      */
     public static class FastQPathFinder {
 
-        public static List<SampleManifest.Run> searchForFastqs(String igoId, Set<String> runFailedQC) {
-            String url = "http://delphi.mskcc.org:8080/ngs-stats/rundone/fastqsbyigoid/" + igoId;
+        public static List<SampleManifest.Run> searchForFastqs(String igoId, Set<String> runFailedQC,
+                                                               NgsStatsClient ngsStats) {
             log.info("Finding fastqs for igoID: " + igoId);
             try {
-                RestTemplate restTemplate = new RestTemplate();
-                ResponseEntity<List<ArchivedFastq>> response = restTemplate.exchange(
-                        url,
-                        HttpMethod.GET,
-                        null,
-                        new ParameterizedTypeReference<List<ArchivedFastq>>() {});
-                List<ArchivedFastq> fastqList = response.getBody();
+                List<ArchivedFastq> fastqList = ngsStats.getFastqsByIgoId(igoId);
                 if (fastqList == null) {
                     log.info("NO fastqs found for Igo ID: " + igoId);
                     return null;
@@ -623,31 +708,25 @@ public class GetSampleManifestTask {
             }
         }
 
-        // TODO url to properties & make interface for FastQPathFinder
+        // TODO make interface for FastQPathFinder
         public static List<String> search(String run,
                                           String sampleName, String igoId,
                                           boolean returnOnlyTwo,
-                                          Set<String> runPassedQC) {
+                                          Set<String> runPassedQC,
+                                          NgsStatsClient ngsStats) {
             String sample_IGO_igoid;
             if (igoId == null)
                 sample_IGO_igoid = sampleName;
             else
                 sample_IGO_igoid = sampleName + "_IGO_" + IGOTools.baseIgoSampleId(igoId);
 
-            String url = "http://delphi.mskcc.org:8080/ngs-stats/rundone/search/most/recent/fastqpath/" + run + "/" + sample_IGO_igoid;
-            log.info("Finding fastqs in fastq DB for: " + url);
+            log.info("Finding fastqs in fastq DB for: " + run + "/" + sample_IGO_igoid);
 
             try {
                 // some fingerprinting samples like 08390_D_73 excluded here by searching for fastqs and failing to
                 // find any
 
-                RestTemplate restTemplate = new RestTemplate();
-                ResponseEntity<List<ArchivedFastq>> response = restTemplate.exchange(
-                        url,
-                        HttpMethod.GET,
-                        null,
-                        new ParameterizedTypeReference<List<ArchivedFastq>>() {});
-                List<ArchivedFastq> fastqList = response.getBody();
+                List<ArchivedFastq> fastqList = ngsStats.getMostRecentFastqPaths(run, sample_IGO_igoid);
                 if (fastqList == null) {
                     log.info("NO fastqs found for run: " + run);
                     return null;
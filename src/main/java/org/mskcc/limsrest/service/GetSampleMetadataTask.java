@@ -10,7 +10,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.controller.GetSampleMetadata;
+import org.mskcc.limsrest.service.oncotree.OncotreeDictionary;
 import org.mskcc.limsrest.service.samplemetadata.SampleMetadata;
+import org.mskcc.limsrest.util.SampleStageResolver;
 
 import java.util.*;
 import static org.mskcc.limsrest.util.Utils.*;
@@ -21,22 +23,25 @@ public class GetSampleMetadataTask {
     private String timestamp;
     private String projectId;
     private ConnectionLIMS conn;
+    private OncotreeDictionary oncotree;
     private User user;
     private String baitSet = "";
 
-    public GetSampleMetadataTask(String timestamp, String projectId, ConnectionLIMS conn) {
+    public GetSampleMetadataTask(String timestamp, String projectId, ConnectionLIMS conn, OncotreeDictionary oncotree) {
         this.timestamp = timestamp;
         this.projectId = projectId;
         this.conn = conn;
+        this.oncotree = oncotree;
     }
 
     public List<SampleMetadata> execute() {
         long start = System.currentTimeMillis();
         List<SampleMetadata> sampleMetadata = new ArrayList<>();
-        try {
-            VeloxConnection vConn = conn.getConnection();
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            VeloxConnection vConn = lease.getConnection();
             user = vConn.getUser();
             DataRecordManager dataRecordManager = vConn.getDataRecordManager();
+            SampleStageResolver stageResolver = new SampleStageResolver(conn, dataRecordManager, user);
             log.info(timestamp);
             log.info(" Starting GetSampleMetadata task using timestamp: " + timestamp + " and projectId: " + projectId);
             List<DataRecord> requests;
@@ -59,6 +64,7 @@ public class GetSampleMetadataTask {
                     String recipe = (String) getValueFromDataRecord(req, "RequestName", "String", user);
                     DataRecord[] samples = req.getChildrenOfType("Sample", user);
                     log.info(String.format("Number of samples  in request %s: %d", requestId, samples.length));
+                    stageResolver.load(Arrays.asList(samples));
                     for (DataRecord sample : samples) {
                         baitSet = ""; // set baitset to empty before the search for each sample begins.
                         DataRecord cmoInfoRec = getRelatedCmoInfoRec(sample);
@@ -76,7 +82,7 @@ public class GetSampleMetadataTask {
                         String tumorType = (String) getFieldValueForSample(sample, cmoInfoRec, "TumorType", "TumorType", "String");
                         String parentTumorType = "";
                         if (!StringUtils.isBlank(tumorType) && !StringUtils.isBlank(tumorOrNormal) && tumorOrNormal.toLowerCase().equals("tumor")) {
-                            parentTumorType = getOncotreeTumorType(tumorType);
+                            parentTumorType = oncotree.getMainType(tumorType);
                         }
                         log.info("parent tumor type: " + parentTumorType);
                         String specimenType = (String) getFieldValueForSample(sample, cmoInfoRec, "SpecimenType", "SpecimenType", "String");
@@ -89,7 +95,7 @@ public class GetSampleMetadataTask {
                         String fastqPath = "";
                         String ancestorSample = getOriginSampleId(sample, user);
                         boolean doNotUse = false;
-                        String sampleStatus = getMostAdvancedLimsStage(sample, requestId, this.conn);
+                        String sampleStatus = stageResolver.getMostAdvancedLimsStage(sample, requestId);
                         SampleMetadata metadata = new SampleMetadata(mrn, cmoPatientId, cmoSampleId, igoId, investigatorSampleId, species,
                                 sex, tumorOrNormal, sampleType, preservation, tumorType, parentTumorType,
                                 specimenType, sampleOrigin, tissueSource, tissueLocation, recipe,
@@ -8,13 +8,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.service.assignedprocess.QcStatus;
+import org.mskcc.limsrest.service.ngsstats.NgsStatsClient;
 import org.mskcc.limsrest.util.Messages;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.web.client.RestTemplate;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -28,20 +24,19 @@ public class GetSampleQc {
     private static Log log = LogFactory.getLog(GetSampleQc.class);
     protected String[] projectList;
     private ConnectionLIMS conn;
+    private NgsStatsClient ngsStats;
 
-    @Value("${delphiRestUrl}")
-    private String delphiRestUrl;
-
-    public GetSampleQc(String[] project, ConnectionLIMS conn) {
+    public GetSampleQc(String[] project, ConnectionLIMS conn, NgsStatsClient ngsStats) {
         this.projectList = project;
         this.conn = conn;
+        this.ngsStats = ngsStats;
     }
 
     @PreAuthorize("hasRole('READ')")
     public List<RequestSummary> execute() {
         List<RequestSummary> rss = new LinkedList<>();
-        try {
-            VeloxConnection vConn = conn.getConnection();
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            VeloxConnection vConn = lease.getConnection();
             User user = vConn.getUser();
             DataRecordManager dataRecordManager = vConn.getDataRecordManager();
 
@@ -222,13 +217,7 @@ public class GetSampleQc {
 
         for (String run : runSet) {
             // TODO planned refactor of this endpoint code along with LimsHelperScripts.CreateSampleQc
-            String url = delphiRestUrl + "ngs-stats/picardstats-controls/run/" + run;
-            RestTemplate restTemplate = new RestTemplate();
-            ResponseEntity<List<QCSiteStats>> statsResponse =
-                    restTemplate.exchange(url,
-                            HttpMethod.GET, null, new ParameterizedTypeReference<List<QCSiteStats>>() {
-                            });
-            List<QCSiteStats> stats = statsResponse.getBody();
+            List<QCSiteStats> stats = ngsStats.getPooledNormalStats(run);
             if (stats == null) {
                 log.info("No pooled normals found for run: " + run);
                 return;
@@ -378,4 +367,4 @@ public class GetSampleQc {
             ss.addCmoId("Annotation failed:" + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
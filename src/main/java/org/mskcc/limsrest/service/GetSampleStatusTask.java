@@ -9,6 +9,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.controller.GetSampleStatus;
+import org.mskcc.limsrest.util.SampleStageResolver;
 
 import java.util.*;
 
@@ -36,8 +37,8 @@ public class GetSampleStatusTask {
         long start = System.currentTimeMillis();
         String status = null;
         String requestId = null;
-        try {
-            VeloxConnection vConn = conn.getConnection();
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            VeloxConnection vConn = lease.getConnection();
             User user = vConn.getUser();
             dataRecordManager = vConn.getDataRecordManager();
             log.info("Starting GetSampleStatus task using IGO ID " + igoId);
@@ -46,7 +47,7 @@ public class GetSampleStatusTask {
             if (samples.size()==1){
                 DataRecord sample = samples.get(0);
                 requestId = (String)getValueFromDataRecord(sample, "RequestId", "String", user);
-                status = getMostAdvancedLimsStage(samples.get(0), requestId, this.conn);
+                status = new SampleStageResolver(conn, dataRecordManager, user).getMostAdvancedLimsStage(sample, requestId);
             }
             log.info("request id: " + requestId);
         } catch (Throwable e) {
@@ -21,6 +21,11 @@ import static org.mskcc.limsrest.util.Utils.*;
 public class GetUndeliveredProjectsTask extends LimsTask {
     private static Log log = LogFactory.getLog(GetUndeliveredProjectsTask.class);
 
+    @Override
+    public Priority getPriority() {
+        return Priority.BATCH;
+    }
+
     @PreAuthorize("hasRole('READ')")
     @Override
     public List<RequestSummary> execute(VeloxConnection conn) {
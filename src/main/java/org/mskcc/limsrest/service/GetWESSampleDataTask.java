@@ -6,7 +6,6 @@ import com.velox.api.datarecord.IoError;
 import com.velox.api.datarecord.NotFound;
 import com.velox.api.servermanager.PickListManager;
 import com.velox.api.user.User;
-import com.velox.api.util.ServerException;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
 import com.velox.sloan.cmo.recmodels.RequestModel;
 import com.velox.sloan.cmo.recmodels.SampleCMOInfoRecordsModel;
@@ -16,21 +15,23 @@ import org.apache.commons.logging.LogFactory;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.service.cvr.CvrClient;
+import org.mskcc.limsrest.service.oncotree.OncotreeDictionary;
 import org.mskcc.limsrest.service.sampletracker.WESSampleData;
+import org.mskcc.limsrest.service.sampletracker.WESSampleDataStore;
+import org.mskcc.limsrest.util.SampleStageResolver;
 
-import javax.net.ssl.*;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.rmi.RemoteException;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.X509Certificate;
+import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static org.apache.commons.lang3.exception.ExceptionUtils.getStackTrace;
 import static org.mskcc.limsrest.util.Utils.*;
@@ -50,164 +51,252 @@ public class GetWESSampleDataTask {
     private final List<String> NEXTSEQ_MACHINE_NAMES = Collections.singletonList("SCOTT");
 
     private Log log = LogFactory.getLog(GetWESSampleDataTask.class);
+    // records committed after a later change was checked are still picked up
+    private static final long WATERMARK_OVERLAP_MILLIS = 10 * 60 * 1000L;
+    private static final int QUERY_CHUNK_SIZE = 500;
+
     private String timestamp;
     private ConnectionLIMS conn;
+    private WESSampleDataStore store;
+    private CvrClient cvrClient;
+    private OncotreeDictionary oncotree;
+    private ExecutorService lookupExecutor;
     private User user;
     DataRecordManager dataRecordManager;
+    private SampleStageResolver stageResolver;
 
     private List<String> VALID_RECIPES;
     private List<String> VALID_REQUEST_TYPES;
 
-    public GetWESSampleDataTask(String timestamp, ConnectionLIMS conn) {
+    /**
+     * @param store          rows of the trackers built by earlier calls
+     * @param lookupExecutor bounded pool running the CVR and consent calls
+     */
+    public GetWESSampleDataTask(String timestamp, ConnectionLIMS conn, WESSampleDataStore store, CvrClient cvrClient,
+                                OncotreeDictionary oncotree, ExecutorService lookupExecutor) {
         this.timestamp = timestamp;
         this.conn = conn;
+        this.store = store;
+        this.cvrClient = cvrClient;
+        this.oncotree = oncotree;
+        this.lookupExecutor = lookupExecutor;
+    }
+
+    /**
+     * Receives the rows as they are produced.
+     */
+    @FunctionalInterface
+    public interface RowWriter {
+        void write(WESSampleData row) throws IOException;
     }
 
     public List<WESSampleData> execute() {
-        long start = System.currentTimeMillis();
         List<WESSampleData> resultList = new ArrayList<>();
-        try {
-            VeloxConnection vConn = conn.getConnection();
-            user = vConn.getUser();
-            dataRecordManager = vConn.getDataRecordManager();
-            PickListManager pickListManager = vConn.getDataMgmtServer().getPickListManager(user);
-            VALID_RECIPES = pickListManager.getPickListConfig("Whole-Exome Recipes for Sample Tracker").getEntryList();
-            log.info(VALID_RECIPES);
-            VALID_REQUEST_TYPES = pickListManager.getPickListConfig("Whole-Exome Request Types").getEntryList();
-            log.info(" Starting GetWesSample task using timestamp " + timestamp);
-            List<DataRecord> dmpTrackerRecords = new ArrayList<>();
-            try {
-                dmpTrackerRecords = dataRecordManager.queryDataRecords("DMPSampleTracker", "i_SampleTypeTumororNormal='Tumor' AND DateCreated > " + Long.parseLong(timestamp) + " AND i_SampleDownstreamApplication LIKE '%Exome%' COLLATE utf8_general_ci", user);
-//                dmpTrackerRecords = dataRecordManager.queryDataRecords("DMPSampleTracker", "i_SampleTypeTumororNormal='Tumor' AND DateCreated > " + Long.parseLong(timestamp) + " AND i_SampleDownstreamApplication LIKE '%Exome%' AND i_StudySampleIdentifierInvesti LIKE 'P-0002976-T01-WES%' COLLATE utf8_general_ci", user);
-                //dmpTrackerRecords = dataRecordManager.queryDataRecords("DMPSampleTracker", "i_StudySampleIdentifierInvesti IN ('P-0013536-T02-WES','P-0025596-T01-WES','P-0028625-T01-WES') AND i_SampleTypeTumororNormal='Tumor'" + " AND i_SampleDownstreamApplication LIKE '%Exome%' COLLATE utf8_general_ci", user);
-                log.info("Num dmpTracker Records: " + dmpTrackerRecords.size());
-            } catch (Throwable e) {
-                log.error(e.getMessage(), e);
-                return null;
-            }
-            JSONObject consentAList = getConsentStatusDataValues("parta");
-            JSONObject consentCList = getConsentStatusDataValues("partc");
-            if (!dmpTrackerRecords.isEmpty()) {
-                int totalProcessed = 0;
-                for (DataRecord dmpTrackRec : dmpTrackerRecords) {
-                    List<DataRecord> sampleCmoInfoRecs = new ArrayList<>();
-                    if (dmpTrackRec.getValue("i_StudySampleIdentifierInvesti", user) != null) {
-                        sampleCmoInfoRecs = dataRecordManager.queryDataRecords("SampleCMOInfoRecords", "UserSampleID = '" + dmpTrackRec.getStringVal("i_StudySampleIdentifierInvesti", user) + "'", user);
-                        log.info("sample cmo info query end");
+        execute(resultList::add);
+        return resultList;
+    }
+
+    /**
+     * Writes the rows of the WES tumor DMPSampleTracker records created after the timestamp in the order of the
+     * trackers. Trackers whose inputs didn't change since they were last built are written from the store, the CVR
+     * lookups of the others run on the lookup executor while their LIMS records are read.
+     *
+     * @throws UncheckedIOException when @out fails, e.g. the caller went away. Trackers built so far are kept.
+     */
+    public void execute(RowWriter out) {
+        long start = System.currentTimeMillis();
+        int written = 0;
+        synchronized (store) {
+            try (ConnectionLIMS.Lease lease = conn.lease()) {
+                VeloxConnection vConn = lease.getConnection();
+                user = vConn.getUser();
+                dataRecordManager = vConn.getDataRecordManager();
+                stageResolver = new SampleStageResolver(conn, dataRecordManager, user);
+                CompletableFuture<JSONObject> consentAList = lookup(() -> getConsentStatusDataValues("parta"));
+                CompletableFuture<JSONObject> consentCList = lookup(() -> getConsentStatusDataValues("partc"));
+                PickListManager pickListManager = vConn.getDataMgmtServer().getPickListManager(user);
+                VALID_RECIPES = pickListManager.getPickListConfig("Whole-Exome Recipes for Sample Tracker").getEntryList();
+                log.info(VALID_RECIPES);
+                VALID_REQUEST_TYPES = pickListManager.getPickListConfig("Whole-Exome Request Types").getEntryList();
+                log.info(" Starting GetWesSample task using timestamp " + timestamp);
+                List<DataRecord> dmpTrackerRecords;
+                try {
+                    dmpTrackerRecords = dataRecordManager.queryDataRecords("DMPSampleTracker", "i_SampleTypeTumororNormal='Tumor' AND DateCreated > " + Long.parseLong(timestamp) + " AND i_SampleDownstreamApplication LIKE '%Exome%' COLLATE utf8_general_ci", user);
+                    log.info("Num dmpTracker Records: " + dmpTrackerRecords.size());
+                } catch (Throwable e) {
+                    log.error(e.getMessage(), e);
+                    return;
+                }
+                if (dmpTrackerRecords.isEmpty())
+                    return;
+
+                List<Map<String, Object>> trackerFields = dataRecordManager.getFieldsForRecords(dmpTrackerRecords, user);
+                List<Long> trackerRecordIds = new ArrayList<>();
+                for (DataRecord dmpTrackRec : dmpTrackerRecords)
+                    trackerRecordIds.add(dmpTrackRec.getRecordId());
+                long watermark = store.getWatermark(trackerRecordIds);
+                WESSampleDataStore.Changes changes = watermark < 0 ? WESSampleDataStore.Changes.NONE :
+                        queryChangesSince(watermark - WATERMARK_OVERLAP_MILLIS);
+                store.recordChanges(changes);
+
+                List<List<WESSampleData>> storedRows = new ArrayList<>();
+                int rebuilt = 0;
+                Set<String> userSampleIds = new HashSet<>();
+                Map<String, CvrLookup> cvrLookups = new HashMap<>();
+                for (int i = 0; i < dmpTrackerRecords.size(); i++) {
+                    Map<String, Object> fields = trackerFields.get(i);
+                    List<WESSampleData> rows = store.reuse(trackerRecordIds.get(i), fields.hashCode(), changes, start);
+                    storedRows.add(rows);
+                    if (rows == null) {
+                        rebuilt++;
+                        if (fields.get("i_StudySampleIdentifierInvesti") != null)
+                            userSampleIds.add((String) fields.get("i_StudySampleIdentifierInvesti"));
+                        cvrLookups.computeIfAbsent(getDmpSampleId(fields), this::cvrLookup);
                     }
-                    if (sampleCmoInfoRecs.size() > 0) {
-                        for (DataRecord cmoInfoRec : sampleCmoInfoRecs) {
-                            List<DataRecord> parentSamps = cmoInfoRec.getParentsOfType("Sample", user);
-                            if (parentSamps.isEmpty()){
-                                log.info(String.format("%s record with recordid %d not linked to any parent Sample.", SampleCMOInfoRecordsModel.DATA_TYPE_NAME, cmoInfoRec.getRecordId()));
-                            }
-                            List<DataRecord> allSamplesSharingCmoInfoRec = !parentSamps.isEmpty() ? getChildSamplesWithRequestAsParent(parentSamps.get(0)): new ArrayList<>();
-                            log.info("Total Wes Samples for shared CmoInfo Rec: " + allSamplesSharingCmoInfoRec.size());
-                            if (allSamplesSharingCmoInfoRec.size()>0){
-                                for (DataRecord sample: allSamplesSharingCmoInfoRec){
-                                    log.info("processing sample: " + sample.getStringVal("SampleId", user)+ ", recipe: "+ sample.getStringVal("Recipe", user));
-                                    DataRecord request = getRelatedRequest(sample);
-                                    if (isValidRecipeToProcess(sample)) {
-                                        String sampleId = sample.getStringVal("SampleId", user);
-                                        log.info("DMP Record with related IGO Samples.");
-                                        log.info("Sample ID: " + sampleId);
-                                        String userSampleId = dmpTrackRec.getStringVal("i_StudySampleIdentifierInvesti", user);
-                                        log.info("User Sample ID:" + userSampleId);
-                                        String userSampleidHistorical = (String) getValueFromDataRecord(dmpTrackRec, "InvestigatorSampleIdHistorical", "String", user);
-                                        String altId = (String) getValueFromDataRecord(sample, "AltId", "String", user);
-                                        log.info("AltId: " + altId);
-                                        String duplicateSample = (String) getValueFromDataRecord(dmpTrackRec, "DuplicateSample", "String", user);
-                                        String wesSampleid = (String) getValueFromDataRecord(dmpTrackRec, "WesId", "String", user);
-                                        String cmoSampleId = cmoInfoRec.getStringVal("CorrectedCMOID", user);
-                                        String cmoPatientId = cmoInfoRec.getStringVal("CmoPatientId", user);
-                                        String dmpSampleId = dmpTrackRec.getStringVal("i_DMPSampleID", user);
-                                        JSONObject cvrData = getCvrData(dmpSampleId);
-                                        String dmpPatientId = getCvrDataValue(cvrData, "dmp_patient_lbl");
-                                        String mrn = getCvrDataValue(cvrData, "mrn");
-                                        String sex = getCvrDataValue(cvrData, "gender");
-                                        String sampleClass = getCvrDataValue(cvrData, "sample_type");
-                                        String tumorType = getCvrDataValue(cvrData, "tumor_type");
-                                        String parentalTumorType = getOncotreeTumorType(tumorType);
-                                        String tissueSite = getCvrDataValue(cvrData, "primary_site");
-                                        String sourceDnaType = (String) getValueFromDataRecord(dmpTrackRec, "i_SpecimenType", "String", user);
-                                        String molAccessionNum = getCvrDataValue(cvrData, "molecular_accession_num");
-                                        String dateDmpRequest = (String) getValueFromDataRecord(dmpTrackRec, "i_DateSubmittedtoDMP", "Date", user);
-                                        String dmpRequestId = dmpTrackRec.getStringVal("i_RequestReference", user);
-                                        String igoRequestId = (String) getValueFromDataRecord(request, "RequestId", "String", user);
-                                        String collectionYear = (String) getValueFromDataRecord(cmoInfoRec, "CollectionYear", "String", user);
-                                        String dateIgoReceived = (String) getValueFromDataRecord(request, "ReceivedDate", "Date", user);
-                                        String igoCompleteDate = (String) getValueFromDataRecord(request, "CompletedDate", "Date", user);
-                                        String applicationRequested = (String) getValueFromDataRecord(request, "RequestName", "String", user);
-                                        String sequencerType = getSequencerTypeUsed(sample);
-                                        String projectTitle = (String) getValueFromDataRecord(dmpTrackRec, "i_Studyname", "String", user);
-                                        String labHead = (String) getValueFromDataRecord(request, "LaboratoryHead", "String", user);
-                                        String ccFund = (String) getValueFromDataRecord(dmpTrackRec, "i_FundCostCenter", "String", user);
-                                        String scientificPi = (String)getValueFromDataRecord(dmpTrackRec, "i_PrimaryInvestigator", "String", user);
-                                        Boolean consentPartAStatus = getConsentStatus(consentAList, dmpPatientId);
-                                        Boolean consentPartCStatus = getConsentStatus(consentCList, dmpPatientId);
-                                        String sampleStatus = getMostAdvancedLimsStage(sample, igoRequestId, conn);
-                                        log.info("sample status: " + sampleStatus);
-                                        List<DataRecord> seqQcRecords = getChildDataRecordsOfType(sample, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, user);
-                                        String baitsetUsed = getBaitSet(sample, seqQcRecords, user);
-                                        log.info("baitset: " + baitsetUsed);
-                                        String accessLevel = "";
-                                        String sequencingSite = "";
-                                        String piRequestDate = "";
-                                        String tempoPipelineQcStatus = (String) getValueFromDataRecord(dmpTrackRec, "TempoPipelineStatus", "String", user);
-                                        log.info("Tempo Pipeline Status: " + tempoPipelineQcStatus);
-                                        String tempoOutputDeliveryDate =(String) getValueFromDataRecord(dmpTrackRec, "TempoOutputDeliveryDate", "Date", user);
-                                        String dataCustodian = (String) getValueFromDataRecord(dmpTrackRec, "DataCustodian", "String", user);
-                                        String tissueType = "";
-                                        String limsSampleRecordId = String.valueOf(sample.getLongVal("RecordId", user));
-                                        String limsTrackerRecordId = String.valueOf(dmpTrackRec.getLongVal("RecordId", user));
-                                        log.info("Lims Tracker Rec ID: " + limsTrackerRecordId);
-                                        resultList.add(new WESSampleData(sampleId, userSampleId, userSampleidHistorical, altId, duplicateSample, wesSampleid,
-                                                cmoSampleId, cmoPatientId, dmpSampleId, dmpPatientId, mrn, sex, sampleClass, tumorType,
-                                                parentalTumorType, tissueSite, sourceDnaType, molAccessionNum, collectionYear, dateDmpRequest,
-                                                dmpRequestId, igoRequestId, dateIgoReceived, igoCompleteDate, applicationRequested, baitsetUsed,
-                                                sequencerType, projectTitle, labHead, ccFund, scientificPi, consentPartAStatus, consentPartCStatus,
-                                                sampleStatus, accessLevel, sequencingSite, piRequestDate, tempoPipelineQcStatus,
-                                                tempoOutputDeliveryDate, dataCustodian, tissueType, limsSampleRecordId,
-                                                limsTrackerRecordId));
-                                    }
-                                }
-                            } else {
-                                WESSampleData nonIgoTrackingRecord = createNonIgoTrackingRecord(dmpTrackRec, consentAList, consentCList);
-                                resultList.add(nonIgoTrackingRecord);
-                            }
+                }
+                log.info(String.format("Rebuilding %d of %d DMPTracker records.", rebuilt, dmpTrackerRecords.size()));
+                Map<String, List<DataRecord>> cmoInfoRecords = queryCmoInfoRecords(userSampleIds);
+                JSONObject consentA = consentAList.join();
+                JSONObject consentC = consentCList.join();
+
+                int totalProcessed = 0;
+                for (int i = 0; i < dmpTrackerRecords.size(); i++) {
+                    List<WESSampleData> rows = storedRows.get(i);
+                    if (rows != null) {
+                        // the consent lists are fetched on every call anyway
+                        for (WESSampleData row : rows) {
+                            row.setConsentPartAStatus(getConsentStatus(consentA, row.getDmpPatientId()));
+                            row.setConsentPartCStatus(getConsentStatus(consentC, row.getDmpPatientId()));
                         }
                     } else {
-                        WESSampleData nonIgoTrackingRecord = createNonIgoTrackingRecord(dmpTrackRec, consentAList, consentCList);
-                        resultList.add(nonIgoTrackingRecord);
+                        Map<String, Object> fields = trackerFields.get(i);
+                        Set<Long> dependencies = new HashSet<>();
+                        rows = buildRows(dmpTrackerRecords.get(i), fields, cmoInfoRecords,
+                                cvrLookups.get(getDmpSampleId(fields)), consentA, consentC, dependencies);
+                        store.put(trackerRecordIds.get(i), fields.hashCode(),
+                                (String) fields.get("i_StudySampleIdentifierInvesti"), dependencies, rows, start);
+                    }
+                    for (WESSampleData row : rows) {
+                        write(out, row);
+                        written++;
                     }
                     totalProcessed ++;
                     log.info("Total DMPTracker records processed: " + totalProcessed);
                 }
+            } catch (UncheckedIOException e) {
+                throw e;
+            } catch (Exception e) {
+                log.info(String.format("%s while running GetWESSampleDataTask with timestamp %s:\n%s", e.getClass().getSimpleName(), timestamp, getStackTrace(e)));
             }
-            log.info("Results found: " + resultList.size() + " Elapsed time (ms): " + (System.currentTimeMillis() - start));
-            return resultList;
-        } catch (RemoteException e) {
-            log.info(String.format("RemoteException while running GetWESSampleDataTask with timestamp %s:\n%s", timestamp, getStackTrace(e)));
-        }
-        catch (NoSuchAlgorithmException e) {
-            log.info(String.format("NoSuchAlgorithmException while running GetWESSampleDataTask with timestamp %s:\n%s", timestamp, getStackTrace(e)));
-        } catch (KeyManagementException e) {
-            log.info(String.format("KeyManagementException while running GetWESSampleDataTask with timestamp %s:\n%s", timestamp, getStackTrace(e)));
         }
-        catch (MalformedURLException e) {
-            log.info(String.format("MalformedURLException while running GetWESSampleDataTask with timestamp %s:\n%s", timestamp, getStackTrace(e)));
-        }
-        catch (NotFound notFound) {
-            log.info(String.format("NotFound while running GetWESSampleDataTask with timestamp %s:\n%s", timestamp, getStackTrace(notFound)));;
-        }
-        catch (IOException e) {
-            log.info(String.format("IOException while running GetWESSampleDataTask with timestamp %s:\n%s", timestamp, getStackTrace(e)));
+        log.info("Results found: " + written + " Elapsed time (ms): " + (System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Builds the rows of a DMPSampleTracker record, one per WES sample sharing its SampleCMOInfoRecords or a single
+     * row when the sample was not processed in IGO.
+     *
+     * @param dependencies receives the record IDs of all LIMS records read
+     */
+    private List<WESSampleData> buildRows(DataRecord dmpTrackRec, Map<String, Object> trackerFields,
+                                          Map<String, List<DataRecord>> cmoInfoRecords, CvrLookup cvr,
+                                          JSONObject consentAList, JSONObject consentCList,
+                                          Set<Long> dependencies) throws Exception {
+        dependencies.add(dmpTrackRec.getRecordId());
+        List<WESSampleData> resultList = new ArrayList<>();
+        List<DataRecord> sampleCmoInfoRecs = new ArrayList<>();
+        Object userSampleIdValue = trackerFields.get("i_StudySampleIdentifierInvesti");
+        if (userSampleIdValue != null) {
+            sampleCmoInfoRecs = cmoInfoRecords.getOrDefault(cmoInfoKey(userSampleIdValue.toString()),
+                    Collections.emptyList());
         }
-        catch (IoError ioError) {
-            log.info(String.format("ioError while running GetWESSampleDataTask with timestamp %s:\n%s", timestamp, getStackTrace(ioError)));
+        if (sampleCmoInfoRecs.isEmpty()) {
+            resultList.add(createNonIgoTrackingRecord(dmpTrackRec, trackerFields, cvr, consentAList, consentCList));
+            return resultList;
         }
-        catch (ServerException e) {
-            log.info(String.format("ServerException while running GetWESSampleDataTask with timestamp %s:\n%s", timestamp, getStackTrace(e)));
+        for (DataRecord cmoInfoRec : sampleCmoInfoRecs) {
+            dependencies.add(cmoInfoRec.getRecordId());
+            List<DataRecord> parentSamps = cmoInfoRec.getParentsOfType("Sample", user);
+            if (parentSamps.isEmpty()){
+                log.info(String.format("%s record with recordid %d not linked to any parent Sample.", SampleCMOInfoRecordsModel.DATA_TYPE_NAME, cmoInfoRec.getRecordId()));
+            }
+            List<DataRecord> allSamplesSharingCmoInfoRec = !parentSamps.isEmpty() ? getChildSamplesWithRequestAsParent(parentSamps.get(0), dependencies): new ArrayList<>();
+            log.info("Total Wes Samples for shared CmoInfo Rec: " + allSamplesSharingCmoInfoRec.size());
+            if (allSamplesSharingCmoInfoRec.isEmpty()) {
+                resultList.add(createNonIgoTrackingRecord(dmpTrackRec, trackerFields, cvr, consentAList, consentCList));
+                continue;
+            }
+            stageResolver.load(allSamplesSharingCmoInfoRec);
+            for (DataRecord sample: allSamplesSharingCmoInfoRec){
+                log.info("processing sample: " + sample.getStringVal("SampleId", user)+ ", recipe: "+ sample.getStringVal("Recipe", user));
+                DataRecord request = getRelatedRequest(sample);
+                if (request != null) {
+                    dependencies.add(request.getRecordId());
+                }
+                if (isValidRecipeToProcess(sample)) {
+                    String sampleId = sample.getStringVal("SampleId", user);
+                    log.info("DMP Record with related IGO Samples.");
+                    log.info("Sample ID: " + sampleId);
+                    String userSampleId = (String) trackerFields.get("i_StudySampleIdentifierInvesti");
+                    log.info("User Sample ID:" + userSampleId);
+                    String userSampleidHistorical = stringField(trackerFields, "InvestigatorSampleIdHistorical");
+                    String altId = (String) getValueFromDataRecord(sample, "AltId", "String", user);
+                    log.info("AltId: " + altId);
+                    String duplicateSample = stringField(trackerFields, "DuplicateSample");
+                    String wesSampleid = stringField(trackerFields, "WesId");
+                    String cmoSampleId = cmoInfoRec.getStringVal("CorrectedCMOID", user);
+                    String cmoPatientId = cmoInfoRec.getStringVal("CmoPatientId", user);
+                    String dmpSampleId = (String) trackerFields.get("i_DMPSampleID");
+                    JSONObject cvrData = cvr.cvrData.join();
+                    String dmpPatientId = getCvrDataValue(cvrData, "dmp_patient_lbl");
+                    String mrn = getCvrDataValue(cvrData, "mrn");
+                    String sex = getCvrDataValue(cvrData, "gender");
+                    String sampleClass = getCvrDataValue(cvrData, "sample_type");
+                    String tumorType = getCvrDataValue(cvrData, "tumor_type");
+                    String parentalTumorType = cvr.parentalTumorType.join();
+                    String tissueSite = getCvrDataValue(cvrData, "primary_site");
+                    String sourceDnaType = stringField(trackerFields, "i_SpecimenType");
+                    String molAccessionNum = getCvrDataValue(cvrData, "molecular_accession_num");
+                    String dateDmpRequest = dateField(trackerFields, "i_DateSubmittedtoDMP");
+                    String dmpRequestId = (String) trackerFields.get("i_RequestReference");
+                    String igoRequestId = (String) getValueFromDataRecord(request, "RequestId", "String", user);
+                    String collectionYear = (String) getValueFromDataRecord(cmoInfoRec, "CollectionYear", "String", user);
+                    String dateIgoReceived = (String) getValueFromDataRecord(request, "ReceivedDate", "Date", user);
+                    String igoCompleteDate = (String) getValueFromDataRecord(request, "CompletedDate", "Date", user);
+                    String applicationRequested = (String) getValueFromDataRecord(request, "RequestName", "String", user);
+                    String sequencerType = getSequencerTypeUsed(sample, dependencies);
+                    String projectTitle = stringField(trackerFields, "i_Studyname");
+                    String labHead = (String) getValueFromDataRecord(request, "LaboratoryHead", "String", user);
+                    String ccFund = stringField(trackerFields, "i_FundCostCenter");
+                    String scientificPi = stringField(trackerFields, "i_PrimaryInvestigator");
+                    Boolean consentPartAStatus = getConsentStatus(consentAList, dmpPatientId);
+                    Boolean consentPartCStatus = getConsentStatus(consentCList, dmpPatientId);
+                    String sampleStatus = stageResolver.getMostAdvancedLimsStage(sample, igoRequestId);
+                    log.info("sample status: " + sampleStatus);
+                    List<DataRecord> seqQcRecords = getChildDataRecordsOfType(sample, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, user);
+                    String baitsetUsed = getBaitSet(sample, seqQcRecords, user);
+                    log.info("baitset: " + baitsetUsed);
+                    String accessLevel = "";
+                    String sequencingSite = "";
+                    String piRequestDate = "";
+                    String tempoPipelineQcStatus = stringField(trackerFields, "TempoPipelineStatus");
+                    log.info("Tempo Pipeline Status: " + tempoPipelineQcStatus);
+                    String tempoOutputDeliveryDate = dateField(trackerFields, "TempoOutputDeliveryDate");
+                    String dataCustodian = stringField(trackerFields, "DataCustodian");
+                    String tissueType = "";
+                    String limsSampleRecordId = String.valueOf(sample.getRecordId());
+                    String limsTrackerRecordId = String.valueOf(dmpTrackRec.getRecordId());
+                    log.info("Lims Tracker Rec ID: " + limsTrackerRecordId);
+                    resultList.add(new WESSampleData(sampleId, userSampleId, userSampleidHistorical, altId, duplicateSample, wesSampleid,
+                            cmoSampleId, cmoPatientId, dmpSampleId, dmpPatientId, mrn, sex, sampleClass, tumorType,
+                            parentalTumorType, tissueSite, sourceDnaType, molAccessionNum, collectionYear, dateDmpRequest,
+                            dmpRequestId, igoRequestId, dateIgoReceived, igoCompleteDate, applicationRequested, baitsetUsed,
+                            sequencerType, projectTitle, labHead, ccFund, scientificPi, consentPartAStatus, consentPartCStatus,
+                            sampleStatus, accessLevel, sequencingSite, piRequestDate, tempoPipelineQcStatus,
+                            tempoOutputDeliveryDate, dataCustodian, tissueType, limsSampleRecordId,
+                            limsTrackerRecordId));
+                }
+            }
         }
         return resultList;
     }
@@ -216,55 +305,50 @@ public class GetWESSampleDataTask {
      * Create the WESSampleData record for entries in DMPSampleTracker that are not processed in IGO.
      *
      * @param dmpTrackRec
+     * @param trackerFields
+     * @param cvr
      * @param consentAList
      * @param consentCList
      * @return WESSampleData
-     * @throws NotFound
-     * @throws IOException
-     * @throws KeyManagementException
-     * @throws NoSuchAlgorithmException
      */
-    private WESSampleData createNonIgoTrackingRecord(DataRecord dmpTrackRec, JSONObject consentAList, JSONObject consentCList) throws NotFound, IOException, KeyManagementException, NoSuchAlgorithmException {
+    private WESSampleData createNonIgoTrackingRecord(DataRecord dmpTrackRec, Map<String, Object> trackerFields, CvrLookup cvr, JSONObject consentAList, JSONObject consentCList) {
         String sampleId = "";
         log.info("DMP Record without related IGO Samples.");
         log.info("Sample ID: " + sampleId);
-        String userSampleId = dmpTrackRec.getStringVal("i_StudySampleIdentifierInvesti", user);
+        String userSampleId = (String) trackerFields.get("i_StudySampleIdentifierInvesti");
         log.info("User Sample ID:" + userSampleId);
-        String userSampleidHistorical = (String) getValueFromDataRecord(dmpTrackRec, "InvestigatorSampleIdHistorical", "String", user);
+        String userSampleidHistorical = stringField(trackerFields, "InvestigatorSampleIdHistorical");
         String altId = "";
         log.info("AltId: " + altId);
-        String duplicateSample = (String) getValueFromDataRecord(dmpTrackRec,"DuplicateSample", "String", user);
-        String wesSampleid = (String) getValueFromDataRecord(dmpTrackRec,"WesId", "String", user);
+        String duplicateSample = stringField(trackerFields, "DuplicateSample");
+        String wesSampleid = stringField(trackerFields, "WesId");
         String cmoSampleId = "";
         String cmoPatientId = "";
-        String dmpSampleId = (String) getValueFromDataRecord(dmpTrackRec,"i_DMPSampleID", "String", user);;
-        if (dmpTrackRec.getValue("i_DMPSampleID", user) != null) {
-            dmpSampleId = dmpTrackRec.getStringVal("i_DMPSampleID", user);
-        }
-        JSONObject cvrData = getCvrData(dmpSampleId);
+        String dmpSampleId = getDmpSampleId(trackerFields);
+        JSONObject cvrData = cvr.cvrData.join();
         String dmpPatientId = getCvrDataValue(cvrData, "dmp_patient_lbl");
         String mrn = getCvrDataValue(cvrData, "mrn");
         String sex = getCvrDataValue(cvrData, "gender");
         String sampleClass = getCvrDataValue(cvrData, "sample_type");
         String tumorType = getCvrDataValue(cvrData, "tumor_type");
-        String parentalTumorType = getOncotreeTumorType(tumorType);
+        String parentalTumorType = cvr.parentalTumorType.join();
         String tissueSite = getCvrDataValue(cvrData, "primary_site");
-        String sourceDnaType = (String) getValueFromDataRecord(dmpTrackRec, "i_SpecimenType", "String", user);
+        String sourceDnaType = stringField(trackerFields, "i_SpecimenType");
         String molAccessionNum = getCvrDataValue(cvrData, "molecular_accession_num");
-        String dateDmpRequest = (String) getValueFromDataRecord(dmpTrackRec, "i_DateSubmittedtoDMP", "Date", user);
-        String dmpRequestId = dmpTrackRec.getStringVal("i_RequestReference", user);
+        String dateDmpRequest = dateField(trackerFields, "i_DateSubmittedtoDMP");
+        String dmpRequestId = (String) trackerFields.get("i_RequestReference");
         String igoRequestId = "";
         String collectionYear = "";
         String dateIgoReceived = "";
         String igoCompleteDate = "";
-        String applicationRequested = (String) getValueFromDataRecord(dmpTrackRec, "i_SampleDownstreamApplication", "String", user);
+        String applicationRequested = stringField(trackerFields, "i_SampleDownstreamApplication");
         String baitsetUsed = "";
         log.info("baitset: " + baitsetUsed);
         String sequencerType = "";
-        String projectTitle = (String) getValueFromDataRecord(dmpTrackRec, "i_Studyname", "String", user);
-        String labHead = (String) getValueFromDataRecord(dmpTrackRec, "i_PrimaryInvestigator", "String", user);
-        String ccFund = (String) getValueFromDataRecord(dmpTrackRec, "i_FundCostCenter", "String", user);
-        String scientificPi = (String)getValueFromDataRecord(dmpTrackRec, "i_PrimaryInvestigator", "String", user);
+        String projectTitle = stringField(trackerFields, "i_Studyname");
+        String labHead = stringField(trackerFields, "i_PrimaryInvestigator");
+        String ccFund = stringField(trackerFields, "i_FundCostCenter");
+        String scientificPi = stringField(trackerFields, "i_PrimaryInvestigator");
         Boolean consentPartAStatus = getConsentStatus(consentAList, dmpPatientId);
         Boolean consentPartCStatus = getConsentStatus(consentCList, dmpPatientId);
         String sampleStatus = "";
@@ -272,13 +356,13 @@ public class GetWESSampleDataTask {
         String accessLevel = "";
         String sequencingSite = "";
         String piRequestDate = "";
-        String tempoPipelineQcStatus = (String) getValueFromDataRecord(dmpTrackRec, "TempoPipelineStatus", "String", user);
+        String tempoPipelineQcStatus = stringField(trackerFields, "TempoPipelineStatus");
         log.info("Tempo Pipeline Status: " + tempoPipelineQcStatus);
-        String tempoOutputDeliveryDate =(String) getValueFromDataRecord(dmpTrackRec, "TempoOutputDeliveryDate", "Date", user);
-        String dataCustodian = (String) getValueFromDataRecord(dmpTrackRec, "DataCustodian", "String", user);
+        String tempoOutputDeliveryDate = dateField(trackerFields, "TempoOutputDeliveryDate");
+        String dataCustodian = stringField(trackerFields, "DataCustodian");
         String tissueType = "";
         String limsSampleRecordId = "";
-        String limsTrackerRecordId = String.valueOf(dmpTrackRec.getLongVal("RecordId", user));
+        String limsTrackerRecordId = String.valueOf(dmpTrackRec.getRecordId());
         log.info("Lims Tracker Rec ID: " + limsTrackerRecordId);
         return new WESSampleData(sampleId, userSampleId, userSampleidHistorical, altId, duplicateSample, wesSampleid,
                 cmoSampleId, cmoPatientId, dmpSampleId, dmpPatientId, mrn, sex, sampleClass, tumorType,
@@ -290,17 +374,147 @@ public class GetWESSampleDataTask {
                 limsTrackerRecordId);
     }
 
+    /**
+     * Records modified since @since, with the parent samples of modified samples and QC records so new children
+     * count as a change of the sample they were created from.
+     */
+    private WESSampleDataStore.Changes queryChangesSince(long since) throws Exception {
+        String modifiedSince = "DateModified > " + since;
+        Set<Long> recordIds = new HashSet<>();
+        for (String dataType : Arrays.asList("Sample", SeqAnalysisSampleQCModel.DATA_TYPE_NAME)) {
+            List<DataRecord> modified = dataRecordManager.queryDataRecords(dataType, modifiedSince, user);
+            if (modified.isEmpty())
+                continue;
+            for (DataRecord record : modified)
+                recordIds.add(record.getRecordId());
+            for (List<DataRecord> parents : dataRecordManager.getParentsOfType(modified, "Sample", user)) {
+                for (DataRecord parent : parents)
+                    recordIds.add(parent.getRecordId());
+            }
+        }
+        for (DataRecord request : dataRecordManager.queryDataRecords("Request", modifiedSince, user))
+            recordIds.add(request.getRecordId());
+
+        Set<String> userSampleIds = new HashSet<>();
+        List<DataRecord> cmoInfoRecs = dataRecordManager.queryDataRecords(SampleCMOInfoRecordsModel.DATA_TYPE_NAME,
+                modifiedSince, user);
+        if (!cmoInfoRecs.isEmpty()) {
+            for (DataRecord cmoInfoRec : cmoInfoRecs)
+                recordIds.add(cmoInfoRec.getRecordId());
+            for (Map<String, Object> fields : dataRecordManager.getFieldsForRecords(cmoInfoRecs, user)) {
+                if (fields.get("UserSampleID") != null)
+                    userSampleIds.add(fields.get("UserSampleID").toString());
+            }
+        }
+        log.info(String.format("%d records modified since %d.", recordIds.size(), since));
+        return new WESSampleDataStore.Changes(recordIds, userSampleIds);
+    }
+
+    /**
+     * SampleCMOInfoRecords of the investigator sample IDs in one query per QUERY_CHUNK_SIZE IDs instead of one per
+     * tracker, keyed by {@link #cmoInfoKey(String)}.
+     */
+    private Map<String, List<DataRecord>> queryCmoInfoRecords(Collection<String> userSampleIds) throws Exception {
+        Map<String, List<DataRecord>> byUserSampleId = new HashMap<>();
+        List<String> ids = new ArrayList<>(userSampleIds);
+        for (int from = 0; from < ids.size(); from += QUERY_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(from + QUERY_CHUNK_SIZE, ids.size()));
+            StringJoiner in = new StringJoiner("','", "UserSampleID IN ('", "')");
+            for (String id : chunk)
+                in.add(id.replace("'", "''"));
+            List<DataRecord> records = dataRecordManager.queryDataRecords(SampleCMOInfoRecordsModel.DATA_TYPE_NAME,
+                    in.toString(), user);
+            if (records.isEmpty())
+                continue;
+            List<Map<String, Object>> fields = dataRecordManager.getFieldsForRecords(records, user);
+            for (int i = 0; i < records.size(); i++) {
+                Object userSampleId = fields.get(i).get("UserSampleID");
+                if (userSampleId != null)
+                    byUserSampleId.computeIfAbsent(cmoInfoKey(userSampleId.toString()), k -> new ArrayList<>())
+                            .add(records.get(i));
+            }
+        }
+        log.info("sample cmo info query end");
+        return byUserSampleId;
+    }
+
+    // the LIMS compares UserSampleID case insensitive
+    private static String cmoInfoKey(String userSampleId) {
+        return userSampleId.trim().toLowerCase();
+    }
+
+    private static String getDmpSampleId(Map<String, Object> trackerFields) {
+        return stringField(trackerFields, "i_DMPSampleID");
+    }
+
+    // the values getValueFromDataRecord returns, read from the fields of the record
+    private static String stringField(Map<String, Object> fields, String fieldName) {
+        Object value = fields.get(fieldName);
+        return value == null ? "" : value.toString();
+    }
+
+    private static String dateField(Map<String, Object> fields, String fieldName) {
+        Object value = fields.get(fieldName);
+        return value instanceof Long ? new SimpleDateFormat("MM-dd-yyyy").format(new Date((Long) value)) : "";
+    }
+
+    private static void write(RowWriter out, WESSampleData row) {
+        try {
+            out.write(row);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * CVR data of a DMP sample, resolved on the lookup executor, and the oncotree main type of its tumor type.
+     */
+    private static class CvrLookup {
+        final CompletableFuture<JSONObject> cvrData;
+        final CompletableFuture<String> parentalTumorType;
+
+        CvrLookup(CompletableFuture<JSONObject> cvrData, CompletableFuture<String> parentalTumorType) {
+            this.cvrData = cvrData;
+            this.parentalTumorType = parentalTumorType;
+        }
+    }
+
+    private CvrLookup cvrLookup(String dmpSampleId) {
+        CompletableFuture<JSONObject> cvrData = lookup(() -> cvrClient.getSampleMetadata(dmpSampleId)).exceptionally(e -> {
+            log.error(String.format("Error occured while querying CVR end point for DMP Sample ID %s\n%s", dmpSampleId, e.getMessage()));
+            return new JSONObject();
+        });
+        CompletableFuture<String> parentalTumorType =
+                cvrData.thenApply(data -> oncotree.getMainType(getCvrDataValue(data, "tumor_type")));
+        return new CvrLookup(cvrData, parentalTumorType);
+    }
+
+    private <T> CompletableFuture<T> lookup(Callable<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, lookupExecutor);
+    }
+
     /**
      * Method to get all the child Samples directly under request as child and having a valid Whole Exome recipe.
      * @param sample
+     * @param dependencies receives the record IDs of the sample and its descendants
      * @return
      * @throws NotFound
      * @throws RemoteException
      * @throws IoError
      */
-    private List<DataRecord> getChildSamplesWithRequestAsParent(DataRecord sample) throws NotFound, RemoteException, IoError {
+    private List<DataRecord> getChildSamplesWithRequestAsParent(DataRecord sample, Set<Long> dependencies) throws NotFound, RemoteException, IoError {
         List<DataRecord> descendantSamples = sample.getDescendantsOfType("Sample", user);
         log.info("Total Descendant Samples: " + descendantSamples.size());
+        dependencies.add(sample.getRecordId());
+        for (DataRecord descendant : descendantSamples) {
+            dependencies.add(descendant.getRecordId());
+        }
         List<DataRecord> sampleList = new ArrayList<>();
         if (sample.getParentsOfType("Request", user).size()>0){
             sampleList.add(sample);
@@ -399,60 +613,6 @@ public class GetWESSampleDataTask {
         return false;
     }
 
-    /**
-     * Method to get data from cvr endpoint using dmpSampleId.
-     *
-     * @param dmpSampleId
-     * @return JSONObject
-     * @throws NoSuchAlgorithmException
-     * @throws KeyManagementException
-     * @throws IOException
-     */
-    private JSONObject getCvrData(String dmpSampleId) throws NoSuchAlgorithmException, KeyManagementException, IOException {
-        TrustManager[] trustAllCerts = new TrustManager[]{new X509TrustManager() {
-            public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-                return null;
-            }
-
-            public void checkClientTrusted(X509Certificate[] certs, String authType) {
-            }
-
-            public void checkServerTrusted(X509Certificate[] certs, String authType) {
-            }
-        }
-        };
-        // Install the all-trusting trust manager
-        SSLContext sc = SSLContext.getInstance("SSL");
-        sc.init(null, trustAllCerts, new java.security.SecureRandom());
-        HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
-
-        // Create all-trusting host name verifier
-        HostnameVerifier allHostsValid = new HostnameVerifier() {
-            public boolean verify(String hostname, SSLSession session) {
-                return true;
-            }
-        };
-        StringBuilder response = new StringBuilder();
-        JSONObject cvrResponseData = new JSONObject();
-        // Install the all-trusting host verifier
-        try {
-            HttpsURLConnection.setDefaultHostnameVerifier(allHostsValid);
-            URL url = new URL("https://draco.mskcc.org:9898/get_cmo_metadata/" + dmpSampleId);
-            log.info(url.toString());
-            URLConnection con = url.openConnection();
-            BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-            in.close();
-            cvrResponseData = new JSONObject(response.toString());
-        } catch (Exception e) {
-            log.error(String.format("Error occured while querying CVR end point for DMP Sample ID %s\n%s", dmpSampleId, Arrays.toString(e.getStackTrace())));
-        }
-        return cvrResponseData;
-    }
-
     /**
      * Get value from CVR data using Json Key.
      *
@@ -473,15 +633,17 @@ public class GetWESSampleDataTask {
      * Get the sequencer types that were used to process the samples.
      *
      * @param sample
+     * @param dependencies receives the record IDs of the SeqAnalysisSampleQC records
      * @return String
      * @throws RemoteException
      * @throws NotFound
      */
-    private String getSequencerTypeUsed(DataRecord sample) throws RemoteException, NotFound {
+    private String getSequencerTypeUsed(DataRecord sample, Set<Long> dependencies) throws RemoteException, NotFound {
         List<DataRecord> sampleLevelSeqQcRecs = sample.getDescendantsOfType("SeqAnalysisSampleQC", user);
         Set<String> sequencerTypes = new HashSet<>();
         if (sampleLevelSeqQcRecs.size() > 0) {
             for (DataRecord record : sampleLevelSeqQcRecs) {
+                dependencies.add(record.getRecordId());
                 if (record.getValue("SequencerRunFolder", user) != null) {
                     sequencerTypes.add(getSequencerType(record.getStringVal("SequencerRunFolder", user).split("_")[0]));
                 }
@@ -13,6 +13,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.assignedprocess.QcStatus;
+import org.mskcc.limsrest.util.FieldMapping;
 import org.mskcc.limsrest.util.Messages;
 
 import java.io.PrintWriter;
@@ -21,8 +22,6 @@ import java.rmi.RemoteException;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
-import static org.mskcc.limsrest.util.Utils.runAndCatchNpe;
-
 /**
  * This is the base class for tasks that run through the connection queue.
  * Preferred way to interact with the lims to avoid collisions on the bicapi user
@@ -42,130 +41,147 @@ public abstract class LimsTask implements VeloxExecutable<Object>, Callable<Obje
     public LimsTask() {
     }
 
+    /**
+     * Scheduling class of a task in the ConnectionPoolLIMS queue.
+     */
+    public enum Priority {
+        INTERACTIVE, NORMAL, BATCH
+    }
+
+    /**
+     * Short lookups behind UI calls return INTERACTIVE so they don't wait behind long sweeps, which return BATCH.
+     */
+    public Priority getPriority() {
+        return Priority.NORMAL;
+    }
+
     public void setConnectionPool(ConnectionPoolLIMS p) {
         this.p = p;
     }
 
+    /**
+     * Runs the task on a pooled session. The session stays logged in for the next task unless the LIMS call failed.
+     */
     @Override
     public Object call() throws Exception {
-        VeloxConnection velox_conn = p.getConnection();
-        velox_conn.open();
+        VeloxConnection velox_conn = p.borrowConnection();
+        boolean healthy = true;
         try {
-            if (velox_conn.isConnected()) {
-                user = velox_conn.getUser();
-                dataRecordManager = velox_conn.getDataRecordManager();
-                dataMgmtServer = velox_conn.getDataMgmtServer();
-                managerContext = new VeloxStandaloneManagerContext(user, dataMgmtServer);
-            } else {
-                log.error("the lims task has a null connection");
-            }
+            p.ensureLoggedIn(velox_conn);
+            user = velox_conn.getUser();
+            dataRecordManager = velox_conn.getDataRecordManager();
+            dataMgmtServer = velox_conn.getDataMgmtServer();
+            managerContext = new VeloxStandaloneManagerContext(user, dataMgmtServer);
             return VeloxStandalone.run(velox_conn, this);
+        } catch (Exception e) {
+            healthy = !ConnectionPoolLIMS.isConnectionFailure(e);
+            throw e;
         } finally {
-            velox_conn.close();
+            p.returnConnection(velox_conn, healthy);
         }
     }
 
+    static final FieldMapping<RequestDetailed> REQUEST_DETAILED_FIELDS = new FieldMapping<RequestDetailed>()
+            .string("PlatformApplication", RequestDetailed::setApplications)
+            .string("ReadMe", RequestDetailed::setBicReadme)
+            .string("ClinicalCorrelativeType", RequestDetailed::setClinicalCorrelative)
+            .string("CostCenter", RequestDetailed::setCostCenter)
+            .string("FundNum", RequestDetailed::setFundNumber)
+            .string("ContactName", RequestDetailed::setContactName)
+            .string("DataAnalyst", RequestDetailed::setDataAnalyst)
+            .string("DataAnalystEmail", RequestDetailed::setDataAnalystEmail)
+            .string("DataDeliveryType", RequestDetailed::setDataDeliveryType)
+            .string("ContactName", RequestDetailed::setCmoContactName)
+            .fields((rd, fields) -> rd.setCmoPiName(fields.get("PIFirstName") + " " + fields.get("PILastName")))
+            .string("PIemail", RequestDetailed::setCmoPiEmail)
+            .string("CMOProjectID", RequestDetailed::setCmoProjectId)
+            .string("RequestId", RequestDetailed::setRequestId)
+            .string("FaxNum", RequestDetailed::setFaxNumber)
+            .string("MailTo", RequestDetailed::setMailTo)
+            .string("DataAccessEmails", RequestDetailed::setDataAccessEmails)
+            .string("QcAccessEmails", RequestDetailed::setQcAccessEmails)
+            .string("Investigator", RequestDetailed::setInvestigator)
+            .string("IRBandWaiverComments", RequestDetailed::setIrbWaiverComments)
+            .string("LaboratoryHead", RequestDetailed::setPi)
+            .string("ProjectNotes", RequestDetailed::setProjectNotes)
+            .string("ProcessingType", RequestDetailed::setGroup)
+            .string("GroupLeader", RequestDetailed::setGroupLeader)
+            .string("Investigatoremail", RequestDetailed::setInvestigatorEmail)
+            .string("IRBandWaiverNumber", RequestDetailed::setIrbId)
+            .string("IRBVerifier", RequestDetailed::setIrbVerifier)
+            .string("LabHeadEmail", RequestDetailed::setPiEmail)
+            .string("ProjectManager", RequestDetailed::setProjectManager)
+            .string("RequestDescription", RequestDetailed::setRequestDescription)
+            .string("RequestDetail", RequestDetailed::setRequestDetails)
+            .string("RoomNum", RequestDetailed::setRoom)
+            .string("RequestType", RequestDetailed::setRequestType)
+            .string("SampleType", RequestDetailed::setSampleType)
+            .string("Status", RequestDetailed::setStatus)
+            .string("FurthestSample", RequestDetailed::setFurthestSample)
+            .string("TelephoneNum", RequestDetailed::setTelephoneNum)
+            .string("TATFromInProcessing", RequestDetailed::setTatFromProcessing)
+            .string("TATFromReceiving", RequestDetailed::setTatFromReceiving)
+            .string("ServicesRequested", RequestDetailed::setServicesRequested)
+            .string("ProjectId", RequestDetailed::setStudyId)
+            .string("PICommunication", RequestDetailed::setCommunicationNotes)
+            .longValue("CompletedDate", RequestDetailed::setCompletedDate)
+            .longValue("SampleDeliveryDate", RequestDetailed::setDeliveryDate)
+            .longValue("PartiallyReceivedDate", RequestDetailed::setPartialReceivedDate)
+            .longValue("ReceivedDate", RequestDetailed::setReceivedDate)
+            .longValue("InformaticsReceipt", RequestDetailed::setPortalDate)
+            .longValue("PortalDate", RequestDetailed::setPortalUploadDate)
+            .longValue("DateSentInvestigator", RequestDetailed::setInvestigatorDate)
+            .longValue("InProcessDate", RequestDetailed::setInprocessDate)
+            .longValue("RequestStartDate", RequestDetailed::setIlabsRequestDate)
+            .longValue("DateIRBandWaiverCheckout", RequestDetailed::setIrbDate)
+            .longValue("RequestDate", RequestDetailed::setSamplesReceivedDate)
+            .bool("BicAutorunnable", RequestDetailed::setAutorunnable)
+            .bool("FASTQ", RequestDetailed::setFastqRequested)
+            .bool("BICAnalysis", RequestDetailed::setAnalysisRequested)
+            .string("AnalysisType", RequestDetailed::setAnalysisType)
+            .bool("HighPriority", RequestDetailed::setHighPriority);
+
+    static final FieldMapping<ProjectSummary> PROJECT_SUMMARY_FIELDS = new FieldMapping<ProjectSummary>()
+            .string("CMOProjectID", ProjectSummary::setCmoProjectId)
+            .string("CMOProposalTitle", ProjectSummary::setCmoProposalTitle)
+            .string("CMOStudyType", ProjectSummary::setCmoStudyType)
+            .string("CMOStudyName", ProjectSummary::setStudyName)
+            .string("CMOFinalProjectTitle", ProjectSummary::setCmoFinalProjectTitle)
+            .string("CMOProjectBrief", ProjectSummary::setCmoProjectBrief)
+            .string("ProjectDesc", ProjectSummary::setProjectDesc)
+            .string("ProjectName", ProjectSummary::setProjectName)
+            .string("ProjectNotes", ProjectSummary::setProjectNotes)
+            .string("Leader", ProjectSummary::setGroupLeader)
+            .string("ProjectId", ProjectSummary::setProjectId)
+            .longValue("CMOMeetingDiscussion", ProjectSummary::setCmoMeetingDiscussionDate);
+
     public void annotateRequestDetailed(RequestDetailed requestDetailed, DataRecord request) {
         try {
-            Map<String, Object> requestFields = request.getFields(user);
-
-            runAndCatchNpe(() -> requestDetailed.setApplications((String) requestFields.get
-                    ("PlatformApplication")));
-
-            runAndCatchNpe(() -> requestDetailed.setBicReadme((String) requestFields.get("ReadMe")));
-
-            runAndCatchNpe(() -> requestDetailed.setClinicalCorrelative((String) requestFields.get
-                    ("ClinicalCorrelativeType")));
-
-            runAndCatchNpe(() -> requestDetailed.setCostCenter((String) requestFields.get("CostCenter")));
-
-            runAndCatchNpe(() -> requestDetailed.setFundNumber((String) requestFields.get("FundNum")));
-
-            runAndCatchNpe(() -> requestDetailed.setContactName((String) requestFields.get("ContactName")));
-
-            runAndCatchNpe(() -> requestDetailed.setDataAnalyst((String) requestFields.get("DataAnalyst")));
-
-            runAndCatchNpe(() -> requestDetailed.setDataAnalystEmail((String) requestFields.get("DataAnalystEmail")));
-
-            runAndCatchNpe(() -> requestDetailed.setDataDeliveryType((String) requestFields.get("DataDeliveryType")));
-            runAndCatchNpe(() -> requestDetailed.setCmoContactName((String) requestFields.get("ContactName")));
-            runAndCatchNpe(() -> requestDetailed.setCmoPiName(requestFields.get("PIFirstName") + " " +
-                    requestFields.get("PILastName")));
-            runAndCatchNpe(() -> requestDetailed.setCmoPiEmail((String) requestFields.get("PIemail")));
-            runAndCatchNpe(() -> requestDetailed.setCmoProjectId((String) requestFields.get("CMOProjectID")));
-            runAndCatchNpe(() -> requestDetailed.setRequestId((String) requestFields.get("RequestId")));
-            runAndCatchNpe(() -> requestDetailed.setFaxNumber((String) requestFields.get("FaxNum")));
-            runAndCatchNpe(() -> requestDetailed.setMailTo((String) requestFields.get("MailTo")));
-            runAndCatchNpe(() -> requestDetailed.setDataAccessEmails((String) requestFields.get("DataAccessEmails")));
-            runAndCatchNpe(() -> requestDetailed.setQcAccessEmails((String) requestFields.get("QcAccessEmails")));
-            runAndCatchNpe(() -> requestDetailed.setInvestigator((String) requestFields.get("Investigator")));
-            runAndCatchNpe(() -> requestDetailed.setIrbWaiverComments((String) requestFields.get
-                    ("IRBandWaiverComments")));
-            runAndCatchNpe(() -> requestDetailed.setPi((String) requestFields.get("LaboratoryHead")));
-            runAndCatchNpe(() -> requestDetailed.setProjectNotes((String) requestFields.get("ProjectNotes")));
-            runAndCatchNpe(() -> requestDetailed.setGroup((String) requestFields.get("ProcessingType")));
-            runAndCatchNpe(() -> requestDetailed.setGroupLeader((String) requestFields.get("GroupLeader")));
-            runAndCatchNpe(() -> requestDetailed.setInvestigatorEmail((String) requestFields.get("Investigatoremail")));
-            runAndCatchNpe(() -> requestDetailed.setIrbId((String) requestFields.get("IRBandWaiverNumber")));
-            runAndCatchNpe(() -> requestDetailed.setIrbVerifier((String) requestFields.get("IRBVerifier")));
-            runAndCatchNpe(() -> requestDetailed.setPiEmail((String) requestFields.get("LabHeadEmail")));
-            runAndCatchNpe(() -> requestDetailed.setProjectManager((String) requestFields.get("ProjectManager")));
-            runAndCatchNpe(() -> requestDetailed.setRequestDescription((String) requestFields.get
-                    ("RequestDescription")));
-            runAndCatchNpe(() -> requestDetailed.setRequestDetails((String) requestFields.get("RequestDetail")));
-            runAndCatchNpe(() -> requestDetailed.setRoom((String) requestFields.get("RoomNum")));
-            runAndCatchNpe(() -> requestDetailed.setRequestType((String) requestFields.get("RequestType")));
-            runAndCatchNpe(() -> requestDetailed.setSampleType((String) requestFields.get("SampleType")));
-            runAndCatchNpe(() -> requestDetailed.setStatus((String) requestFields.get("Status")));
-            runAndCatchNpe(() -> requestDetailed.setFurthestSample((String) requestFields.get("FurthestSample")));
-            runAndCatchNpe(() -> requestDetailed.setTelephoneNum((String) requestFields.get("TelephoneNum")));
-            runAndCatchNpe(() -> requestDetailed.setTatFromProcessing((String) requestFields.get
-                    ("TATFromInProcessing")));
-            runAndCatchNpe(() -> requestDetailed.setTatFromReceiving((String) requestFields.get("TATFromReceiving")));
-            runAndCatchNpe(() -> requestDetailed.setServicesRequested((String) requestFields.get("ServicesRequested")));
-            runAndCatchNpe(() -> requestDetailed.setStudyId((String) requestFields.get("ProjectId")));
-            runAndCatchNpe(() -> requestDetailed.setCommunicationNotes((String) requestFields.get("PICommunication")));
-            runAndCatchNpe(() -> requestDetailed.setCompletedDate((long) requestFields.get("CompletedDate")));
-            runAndCatchNpe(() -> requestDetailed.setDeliveryDate((long) requestFields.get("SampleDeliveryDate")));
-            runAndCatchNpe(() -> requestDetailed.setPartialReceivedDate((long) requestFields.get
-                    ("PartiallyReceivedDate")));
-            runAndCatchNpe(() -> requestDetailed.setReceivedDate((long) requestFields.get("ReceivedDate")));
-            runAndCatchNpe(() -> requestDetailed.setPortalDate((long) requestFields.get("InformaticsReceipt")));
-            runAndCatchNpe(() -> requestDetailed.setPortalUploadDate((long) requestFields.get("PortalDate")));
-            runAndCatchNpe(() -> requestDetailed.setInvestigatorDate((long) requestFields.get("DateSentInvestigator")));
-            runAndCatchNpe(() -> requestDetailed.setInprocessDate((long) requestFields.get("InProcessDate")));
-            runAndCatchNpe(() -> requestDetailed.setIlabsRequestDate((long) requestFields.get("RequestStartDate")));
-            runAndCatchNpe(() -> requestDetailed.setIrbDate((long) requestFields.get("DateIRBandWaiverCheckout")));
-            runAndCatchNpe(() -> requestDetailed.setSamplesReceivedDate((long) requestFields.get("RequestDate")));
-            runAndCatchNpe(() -> requestDetailed.setAutorunnable((Boolean) requestFields.get("BicAutorunnable")));
-            runAndCatchNpe(() -> requestDetailed.setFastqRequested((Boolean) requestFields.get("FASTQ")));
-            runAndCatchNpe(() -> requestDetailed.setAnalysisRequested((Boolean) requestFields.get("BICAnalysis")));
-            runAndCatchNpe(() -> requestDetailed.setAnalysisType((String) requestFields.get("AnalysisType")));
-            runAndCatchNpe(() -> requestDetailed.setHighPriority((Boolean) requestFields.get("HighPriority")));
+            annotateRequestDetailed(requestDetailed, request.getFields(user));
         } catch (Throwable e) {
             requestDetailed.setInvestigator("Annotation failed: " + e.getMessage());
         }
+    }
 
+    public void annotateRequestDetailed(RequestDetailed requestDetailed, Map<String, Object> requestFields) {
+        try {
+            REQUEST_DETAILED_FIELDS.apply(requestDetailed, requestFields);
+        } catch (Throwable e) {
+            requestDetailed.setInvestigator("Annotation failed: " + e.getMessage());
+        }
     }
 
     public void annotateProjectSummary(ProjectSummary projectSummary, DataRecord project) {
         try {
-            Map<String, Object> projectFields = project.getFields(user);
-
-            runAndCatchNpe(() -> projectSummary.setCmoProjectId((String) projectFields.get("CMOProjectID")));
-            runAndCatchNpe(() -> projectSummary.setCmoProposalTitle((String) projectFields.get("CMOProposalTitle")));
-            runAndCatchNpe(() -> projectSummary.setCmoStudyType((String) projectFields.get("CMOStudyType")));
-            runAndCatchNpe(() -> projectSummary.setStudyName((String) projectFields.get("CMOStudyName")));
-            runAndCatchNpe(() -> projectSummary.setCmoFinalProjectTitle((String) projectFields.get
-                    ("CMOFinalProjectTitle")));
-            runAndCatchNpe(() -> projectSummary.setCmoProjectBrief((String) projectFields.get("CMOProjectBrief")));
-            runAndCatchNpe(() -> projectSummary.setProjectDesc((String) projectFields.get("ProjectDesc")));
-            runAndCatchNpe(() -> projectSummary.setProjectName((String) projectFields.get("ProjectName")));
-            runAndCatchNpe(() -> projectSummary.setProjectNotes((String) projectFields.get("ProjectNotes")));
-            runAndCatchNpe(() -> projectSummary.setGroupLeader((String) projectFields.get("Leader")));
-            runAndCatchNpe(() -> projectSummary.setProjectId((String) projectFields.get("ProjectId")));
-            runAndCatchNpe(() -> projectSummary.setCmoMeetingDiscussionDate((Long) projectFields.get
-                    ("CMOMeetingDiscussion")));
+            annotateProjectSummary(projectSummary, project.getFields(user));
+        } catch (Throwable e) {
+            projectSummary.setCmoProjectId("Annotation failed: " + e.getMessage());
+        }
+    }
+
+    public void annotateProjectSummary(ProjectSummary projectSummary, Map<String, Object> projectFields) {
+        try {
+            PROJECT_SUMMARY_FIELDS.apply(projectSummary, projectFields);
         } catch (Throwable e) {
             projectSummary.setCmoProjectId("Annotation failed: " + e.getMessage());
         }
@@ -188,4 +204,4 @@ public abstract class LimsTask implements VeloxExecutable<Object>, Callable<Obje
         }
         return false;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
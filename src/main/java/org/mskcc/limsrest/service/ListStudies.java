@@ -5,8 +5,7 @@ import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Find all studies/projects and list them 
@@ -26,23 +25,30 @@ public class ListStudies extends LimsTask {
         LinkedList<ProjectSummary> allProjects = new LinkedList<>();
         try {
             List<DataRecord> limsProjectList = dataRecordManager.queryDataRecords("Project", null, user);
-            for (DataRecord p : limsProjectList) {
-                ProjectSummary ps = new ProjectSummary(p.getStringVal("ProjectId", user));
-                annotateProjectSummary(ps, p);
-                DataRecord[] requests = p.getChildrenOfType("Request", user);
-                for (int i = 0; i < requests.length; i++) {
-                    try {
-                        String pm = "";
-                        try {
-                            pm = requests[i].getStringVal("ProjectManager", user);
-                        } catch (NullPointerException npe) {
-                        }
-                        if (!cmoOnly || (cmoOnly && (!pm.equals("") && !pm.equals("NO PM")))) {
-                            RequestSummary rs = new RequestSummary(requests[i].getStringVal("RequestId", user));
-                            rs.setRecordId(requests[i].getRecordId());
-                            ps.addRequestSummary(rs);
-                        }
-                    } catch (NullPointerException npe) {
+            if (limsProjectList.isEmpty())
+                return allProjects;
+            // fields of all projects, their requests and the request fields in three calls instead of per record
+            List<Map<String, Object>> projectFields = dataRecordManager.getFieldsForRecords(limsProjectList, user);
+            List<List<DataRecord>> projectRequests = dataRecordManager.getChildrenOfType(limsProjectList, "Request",
+                    user);
+            List<DataRecord> requests = new ArrayList<>();
+            for (List<DataRecord> children : projectRequests)
+                requests.addAll(children);
+            List<Map<String, Object>> requestFields = requests.isEmpty() ? Collections.emptyList() :
+                    dataRecordManager.getFieldsForRecords(requests, user);
+
+            int request = 0;
+            for (int p = 0; p < limsProjectList.size(); p++) {
+                Map<String, Object> fields = projectFields.get(p);
+                ProjectSummary ps = new ProjectSummary((String) fields.get("ProjectId"));
+                annotateProjectSummary(ps, fields);
+                for (DataRecord r : projectRequests.get(p)) {
+                    Map<String, Object> rFields = requestFields.get(request++);
+                    String pm = (String) rFields.get("ProjectManager");
+                    if (!cmoOnly || (pm != null && !pm.equals("") && !pm.equals("NO PM"))) {
+                        RequestSummary rs = new RequestSummary((String) rFields.get("RequestId"));
+                        rs.setRecordId(r.getRecordId());
+                        ps.addRequestSummary(rs);
                     }
                 }
                 allProjects.add(ps);
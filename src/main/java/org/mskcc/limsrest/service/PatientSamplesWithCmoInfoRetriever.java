@@ -15,8 +15,8 @@ import org.mskcc.util.CommonUtils;
 import org.mskcc.util.VeloxConstants;
 
 import java.rmi.RemoteException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * PatientSamplesWithCmoInfoRetriever retrieves all samples for given patient from LIMS
@@ -61,6 +61,97 @@ public class PatientSamplesWithCmoInfoRetriever {
         }
     }
 
+    /**
+     * Retrieves the samples of all given patients at once: one query for their cmo info records, then bulk calls for
+     * the parent samples, their fields and their cmo info records instead of a round trip per record.
+     *
+     * @return samples by patient id, patients without samples in the LIMS map to an empty list
+     */
+    public Map<String, List<CorrectedCmoSampleView>> retrieveAll(Collection<String> patientIds,
+                                                                 DataRecordManager dataRecordManager, User user)
+            throws LimsException {
+        // CmoPatientId is compared case insensitively by the LIMS database
+        Map<String, List<CorrectedCmoSampleView>> patientToViews = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (String patientId : patientIds) {
+            CommonUtils.requireNonNullNorEmpty(patientId, "Patient id cannot be empty");
+            patientToViews.put(patientId, new ArrayList<>());
+        }
+        if (patientToViews.isEmpty())
+            return patientToViews;
+
+        LOGGER.info("Retrieving samples needed for CMO Sample Id counter for patients:" + patientToViews.keySet());
+        List<String> samplePatientIds = new ArrayList<>();
+        List<Map<String, Object>> sampleFields = new ArrayList<>();
+        List<List<Map<String, Object>>> sampleInfoFields = new ArrayList<>();
+        try {
+            loadSamples(patientToViews.keySet(), dataRecordManager, user, samplePatientIds, sampleFields,
+                    sampleInfoFields);
+        } catch (LimsException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new LimsException(String.format("Unable to retrieve samples for patients: %s. Cause: %s",
+                    patientToViews.keySet(), e.getMessage()), e);
+        }
+
+        StringBuilder error = new StringBuilder();
+        for (int i = 0; i < sampleFields.size(); i++) {
+            try {
+                Sample sample = sampleRecordToSampleConverter.convert(sampleFields.get(i), sampleInfoFields.get(i));
+                patientToViews.get(samplePatientIds.get(i)).add(sampleToCorrectedCmoIdConverter.convert(sample));
+            } catch (Exception e) {
+                error.append(e.getMessage()).append(", ");
+            }
+        }
+
+        if (error.length() > 0)
+            throw new RuntimeException(error.toString());
+
+        LOGGER.info(String.format("Found %d samples for %d patients", sampleFields.size(), patientToViews.size()));
+        return patientToViews;
+    }
+
+    private void loadSamples(Set<String> patientIds, DataRecordManager dataRecordManager, User user,
+                             List<String> samplePatientIds, List<Map<String, Object>> sampleFields,
+                             List<List<Map<String, Object>>> sampleInfoFields) throws Exception {
+        String query = patientIds.stream()
+                .map(p -> "'" + p + "'")
+                .collect(Collectors.joining(",", "CmoPatientId in (", ")"));
+        List<DataRecord> infoRecords = dataRecordManager.queryDataRecords(VeloxConstants.SAMPLE_CMO_INFO_RECORDS,
+                query, user);
+        if (infoRecords.isEmpty())
+            return;
+
+        List<Map<String, Object>> infoFields = dataRecordManager.getFieldsForRecords(infoRecords, user);
+        List<List<DataRecord>> parents = dataRecordManager.getParentsOfType(infoRecords, VeloxConstants.SAMPLE, user);
+        List<DataRecord> samples = new ArrayList<>();
+        for (int i = 0; i < infoRecords.size(); i++) {
+            String patientId = (String) infoFields.get(i).get("CmoPatientId");
+            if (parents.get(i).size() == 0) {
+                String msg = String.format("No parent sample found for cmo info record for sample: %s for patient: %s",
+                        infoFields.get(i).get(VeloxConstants.SAMPLE_ID), patientId);
+                throw new LimsException(msg);
+            }
+            samples.add(parents.get(i).get(0));
+            samplePatientIds.add(patientId);
+        }
+
+        sampleFields.addAll(dataRecordManager.getFieldsForRecords(samples, user));
+
+        List<List<DataRecord>> children = dataRecordManager.getChildrenOfType(samples,
+                VeloxConstants.SAMPLE_CMO_INFO_RECORDS, user);
+        List<DataRecord> allChildren = new ArrayList<>();
+        for (List<DataRecord> sampleChildren : children)
+            allChildren.addAll(sampleChildren);
+        List<Map<String, Object>> childFields = allChildren.isEmpty() ? Collections.emptyList() :
+                dataRecordManager.getFieldsForRecords(allChildren, user);
+
+        int next = 0;
+        for (List<DataRecord> sampleChildren : children) {
+            sampleInfoFields.add(childFields.subList(next, next + sampleChildren.size()));
+            next += sampleChildren.size();
+        }
+    }
+
     private List<DataRecord> getSampleRecords(String patientId, DataRecordManager dataRecordManager, User user)
             throws NotFound, IoError, RemoteException, LimsException {
         List<DataRecord> sampleInfoRecords = dataRecordManager.queryDataRecords(
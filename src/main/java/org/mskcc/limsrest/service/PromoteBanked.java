@@ -12,6 +12,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.domain.sample.*;
+import org.mskcc.limsrest.service.cmoinfo.PatientCmoSampleViewCache;
 import org.mskcc.limsrest.service.cmoinfo.SampleTypeCorrectedCmoSampleIdGenerator;
 import org.mskcc.limsrest.service.cmoinfo.converter.BankedSampleToCorrectedCmoSampleIdConverter;
 import org.mskcc.limsrest.service.cmoinfo.converter.CorrectedCmoIdConverter;
@@ -54,6 +55,8 @@ public class PromoteBanked extends LimsTask {
     private final CorrectedCmoIdConverter<BankedSample> bankedSampleToCorrectedCmoSampleIdConverter = new BankedSampleToCorrectedCmoSampleIdConverter();
     //@Autowired
     private SampleTypeCorrectedCmoSampleIdGenerator correctedCmoSampleIdGenerator = new SampleTypeCorrectedCmoSampleIdGenerator();
+    private PatientCmoSampleViewCache patientSamplesCache;
+    private final Set<String> promotedPatientIds = new HashSet<>();
     private final BankedSampleToSampleConverter bankedSampleToSampleConverter = new BankedSampleToSampleConverter();
 
     String[] bankedIds;
@@ -76,6 +79,13 @@ public class PromoteBanked extends LimsTask {
     public PromoteBanked() {
     }
 
+    /**
+     * Patients of promoted samples are dropped from the cache after the promotion is stored.
+     */
+    public void setPatientSamplesCache(PatientCmoSampleViewCache patientSamplesCache) {
+        this.patientSamplesCache = patientSamplesCache;
+    }
+
     public void init(String[] bankedIds, String projectId, String requestId, String serviceId, String igoUser, String materials, boolean dryrun) {
         this.bankedIds = bankedIds;
         this.projectId = projectId;
@@ -257,6 +267,8 @@ public class PromoteBanked extends LimsTask {
                 }
                 log.info(igoUser + "  promoted the banked samples " + sb.toString());
                 dataRecordManager.storeAndCommit(igoUser + "  promoted the banked samples " + sb.toString() + "into " + requestId, user);
+                if (patientSamplesCache != null)
+                    promotedPatientIds.forEach(patientSamplesCache::invalidate);
             } catch (Exception e) {
                 log.error(e);
 
@@ -520,6 +532,7 @@ public class PromoteBanked extends LimsTask {
 
             if (shouldGenerateCmoId(bankedSample)) {
                 CorrectedCmoSampleView sampleView = createFrom(bankedSample);
+                promotedPatientIds.add(bankedSample.getCMOPatientId());
                 String cmoSampleId = correctedCmoSampleIdGenerator.generate(sampleView, requestId, dataRecordManager, user);
                 log.info(String.format("Generated CMO Sample id for banked sample with id: %s (%s) is: %s", bankedSample
                         .getUserSampleID(), bankedSample.getOtherSampleId(), cmoSampleId));
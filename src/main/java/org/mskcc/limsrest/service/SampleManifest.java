@@ -1,6 +1,7 @@
 package org.mskcc.limsrest.service;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -40,6 +41,9 @@ public class SampleManifest {
 
     private List<Library> libraries = new ArrayList<>();
 
+    // set when the sample could not be evaluated, the rest of its manifest is then empty
+    private String error;
+
     public enum QcReportType {
         DNA, RNA, LIBRARY;
     }
@@ -223,6 +227,15 @@ public class SampleManifest {
         this.igoId = igoId;
     }
 
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
     public String getCmoPatientId() {
         return cmoPatientId;
     }
@@ -5,10 +5,12 @@ import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.service.interops.InterOpsIndex;
 import org.mskcc.limsrest.util.Messages;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -17,10 +19,13 @@ import java.util.stream.Collectors;
 public class SetOrCreateInteropData extends LimsTask {
 
     List<Map<String, Object>> data;
+    private InterOpsIndex index;
+    private Map<Long, String> written = new HashMap<>(); // record ID -> run name
     private static Log log = LogFactory.getLog(SetOrCreateInteropData.class);
 
-    public void init(List<Map<String, Object>> data) {
+    public void init(List<Map<String, Object>> data, InterOpsIndex index) {
         this.data = data;
+        this.index = index;
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -32,6 +37,7 @@ public class SetOrCreateInteropData extends LimsTask {
                 .filter(Optional::isPresent).map(Optional::get)
                 .collect(Collectors.toList());
             dataRecordManager.storeAndCommit(user.getUsername() + " added " + recordIds.size() + " interop records", user);
+            written.forEach((recordId, runName) -> index.add(runName, recordId));
             log.info("interops inserted: " + recordIds.size());
             return StringUtils.join(recordIds, ",");
         } catch (Exception e) {
@@ -50,6 +56,9 @@ public class SetOrCreateInteropData extends LimsTask {
             DataRecord interopRecord = matchedInterop.size() < 1 ?
                     dataRecordManager.addDataRecord("InterOpsDatum", user) : matchedInterop.get(0);
             interopRecord.setFields(fields, user);
+            Object runName = fields.get(InterOpsIndex.RUN_NAME);
+            if (runName != null)
+                written.put(interopRecord.getRecordId(), runName.toString());
             return Optional.of(interopRecord.getRecordId());
         } catch (Exception e) {
             log.error(e.getMessage());
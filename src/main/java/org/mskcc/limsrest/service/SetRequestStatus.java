@@ -4,6 +4,7 @@ import com.velox.api.datarecord.DataRecord;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.util.DataRecordFieldCache;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.io.PrintWriter;
@@ -22,6 +23,11 @@ import java.util.Map;
  */
 public class SetRequestStatus extends LimsTask {
     private static Log log = LogFactory.getLog(SetRequestStatus.class);
+    private final DataRecordFieldCache fieldCache;
+
+    public SetRequestStatus(DataRecordFieldCache fieldCache) {
+        this.fieldCache = fieldCache;
+    }
 
     @PreAuthorize("hasRole('ADMIN')")
     @Override
@@ -147,6 +153,7 @@ public class SetRequestStatus extends LimsTask {
                 }
                 r.setDataField("FurthestSample", breakdown.toString(), user);
                 dataRecordManager.storeAndCommit("Status updated by bicapi using SetRequestStatus", user);
+                fieldCache.invalidate("Request", "RequestId", requestName);
                 results.add(requestName + ":" + breakdown.toString());
             }
         } catch (Throwable e) {
@@ -2,6 +2,7 @@ package org.mskcc.limsrest.service;
 
 import com.velox.api.datarecord.DataRecord;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.mskcc.limsrest.util.DataRecordFieldCache;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.io.PrintWriter;
@@ -19,6 +20,11 @@ public class ToggleAutorunnable extends LimsTask {
   String status;
   String comment;
   String igoUser;
+  private final DataRecordFieldCache fieldCache;
+
+  public ToggleAutorunnable(DataRecordFieldCache fieldCache) {
+   this.fieldCache = fieldCache;
+  }
 
   public void init(String requestId, String status, String comment, String igoUser){
    this.requestId = requestId;
@@ -27,6 +33,11 @@ public class ToggleAutorunnable extends LimsTask {
    this.igoUser = igoUser;
 }
 
+@Override
+public Priority getPriority() {
+    return Priority.BATCH;
+}
+
 @PreAuthorize("hasRole('ADMIN')")
 @Override
  public Object execute(VeloxConnection conn){
@@ -65,6 +76,11 @@ public class ToggleAutorunnable extends LimsTask {
        extraInfo = "User: " + igoUser + " ";
     }
     dataRecordManager.storeAndCommit(extraInfo +  "BicAutorunnable updated to " + status + " for request " + requestId , user);
+    if(requestId.equals("ALL")){
+      fieldCache.invalidateAll("Request");
+    } else {
+      fieldCache.invalidate("Request", "RequestId", requestId);
+    }
   } catch (Throwable e) {
           StringWriter sw = new StringWriter();
           PrintWriter pw = new PrintWriter(sw);
@@ -65,6 +65,11 @@ public class ToggleSampleQcStatus extends LimsTask {
         }
     }
 
+    @Override
+    public Priority getPriority() {
+        return Priority.INTERACTIVE;
+    }
+
     @PreAuthorize("hasRole('USER')")
     @Override
     public Object execute(VeloxConnection conn) {
@@ -0,0 +1,41 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.mskcc.limsrest.service.cmoinfo.PatientCmoSampleViewCache;
+import org.mskcc.limsrest.service.cmoinfo.converter.SampleToCorrectedCmoIdConverter;
+import org.mskcc.limsrest.service.converter.SampleRecordToSampleConverter;
+
+/**
+ * Loads the samples of all patients of a request into the PatientCmoSampleViewCache before intake generates the
+ * CMO Sample Ids of its samples.
+ */
+public class WarmPatientCmoSampleViewsTask extends LimsTask {
+    private final PatientCmoSampleViewCache patientSamplesCache;
+    private final PatientSamplesWithCmoInfoRetriever patientSamplesRetriever =
+            new PatientSamplesWithCmoInfoRetriever(new SampleToCorrectedCmoIdConverter(),
+                    new SampleRecordToSampleConverter());
+
+    private String requestId;
+
+    public WarmPatientCmoSampleViewsTask(PatientCmoSampleViewCache patientSamplesCache) {
+        this.patientSamplesCache = patientSamplesCache;
+    }
+
+    public void init(String requestId) {
+        this.requestId = requestId;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.BATCH;
+    }
+
+    @Override
+    public Integer execute(VeloxConnection conn) {
+        try {
+            return patientSamplesCache.warmRequest(requestId, patientSamplesRetriever, dataRecordManager, user);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
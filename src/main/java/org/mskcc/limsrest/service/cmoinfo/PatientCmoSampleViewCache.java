@@ -0,0 +1,173 @@
+package org.mskcc.limsrest.service.cmoinfo;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.domain.sample.CmoSampleInfo;
+import org.mskcc.domain.sample.CorrectedCmoSampleView;
+import org.mskcc.limsrest.service.LimsException;
+import org.mskcc.limsrest.service.PatientSamplesWithCmoInfoRetriever;
+import org.mskcc.util.VeloxConstants;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of the samples of a patient used to count CMO Sample Ids, keyed by CMO patient id.
+ * <p>
+ * Only samples stored in the LIMS are cached, ids returned by the generation endpoints are not saved and never
+ * written to the cache. Entries expire after ttlMillis to pick up samples written by other LIMS clients and the
+ * least recently used patients are dropped once maxEntries is reached. Tasks that store samples for a patient must
+ * invalidate it.
+ */
+public class PatientCmoSampleViewCache {
+    private static Log log = LogFactory.getLog(PatientCmoSampleViewCache.class);
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    // bumped by every invalidation so a load that overlaps a write is not cached
+    private long generation = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PatientCmoSampleViewCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > PatientCmoSampleViewCache.this.maxEntries) {
+                    evicted.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a modifiable copy of the samples of the patient, retrieving them from the LIMS on a miss.
+     */
+    public List<CorrectedCmoSampleView> get(String patientId, PatientSamplesWithCmoInfoRetriever retriever,
+                                            DataRecordManager dataRecordManager, User user) throws LimsException {
+        return getAll(Collections.singletonList(patientId), retriever, dataRecordManager, user).get(patientId);
+    }
+
+    /**
+     * Returns modifiable copies of the samples of all patients, the missing ones are retrieved from the LIMS together.
+     */
+    public Map<String, List<CorrectedCmoSampleView>> getAll(Collection<String> patientIds,
+                                                            PatientSamplesWithCmoInfoRetriever retriever,
+                                                            DataRecordManager dataRecordManager, User user)
+            throws LimsException {
+        Map<String, List<CorrectedCmoSampleView>> patientToViews = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        long loadGeneration;
+        synchronized (this) {
+            for (String patientId : patientIds) {
+                List<CorrectedCmoSampleView> views = getValid(patientId);
+                if (views != null) {
+                    hits.incrementAndGet();
+                    patientToViews.put(patientId, new ArrayList<>(views));
+                } else if (missing.add(patientId)) {
+                    misses.incrementAndGet();
+                }
+            }
+            loadGeneration = generation;
+        }
+        if (missing.isEmpty())
+            return patientToViews;
+
+        Map<String, List<CorrectedCmoSampleView>> loaded = retriever.retrieveAll(missing, dataRecordManager, user);
+        synchronized (this) {
+            for (String patientId : missing) {
+                List<CorrectedCmoSampleView> views = loaded.getOrDefault(patientId, Collections.emptyList());
+                patientToViews.put(patientId, new ArrayList<>(views));
+                if (loadGeneration == generation && maxEntries > 0)
+                    entries.put(key(patientId), new Entry(new ArrayList<>(views), System.currentTimeMillis()));
+            }
+        }
+        return patientToViews;
+    }
+
+    /**
+     * Loads the patients of all samples of a request, e.g. before its samples get their CMO Sample Ids one by one.
+     *
+     * @return number of patients of the request
+     */
+    public int warmRequest(String requestId, PatientSamplesWithCmoInfoRetriever retriever,
+                           DataRecordManager dataRecordManager, User user) throws Exception {
+        List<DataRecord> infoRecords = dataRecordManager.queryDataRecords(VeloxConstants.SAMPLE_CMO_INFO_RECORDS,
+                CmoSampleInfo.REQUEST_ID + " = '" + requestId + "'", user);
+        Set<String> patientIds = new LinkedHashSet<>();
+        if (!infoRecords.isEmpty()) {
+            for (Map<String, Object> fields : dataRecordManager.getFieldsForRecords(infoRecords, user)) {
+                Object patientId = fields.get(CmoSampleInfo.CMO_PATIENT_ID);
+                if (patientId != null && !patientId.toString().isEmpty())
+                    patientIds.add(patientId.toString());
+            }
+        }
+        getAll(patientIds, retriever, dataRecordManager, user);
+        log.info(String.format("Warmed CMO sample views of %d patients for request %s", patientIds.size(), requestId));
+        return patientIds.size();
+    }
+
+    public synchronized void invalidate(String patientId) {
+        generation++;
+        invalidations.incrementAndGet();
+        entries.remove(key(patientId));
+    }
+
+    public Map<String, Object> getStats() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("expired", expired.get());
+        stats.put("evicted", evicted.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private List<CorrectedCmoSampleView> getValid(String patientId) {
+        String key = key(patientId);
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return null;
+        if (System.currentTimeMillis() - entry.loadedAt >= ttlMillis) {
+            entries.remove(key);
+            expired.incrementAndGet();
+            return null;
+        }
+        return entry.views;
+    }
+
+    // CmoPatientId is compared case insensitively by the LIMS database
+    private static String key(String patientId) {
+        return patientId.toUpperCase();
+    }
+
+    private static class Entry {
+        final List<CorrectedCmoSampleView> views;
+        final long loadedAt;
+
+        Entry(List<CorrectedCmoSampleView> views, long loadedAt) {
+            this.views = views;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -45,8 +45,18 @@ public class SampleTypeCorrectedCmoSampleIdGenerator implements CorrectedCmoSamp
                     new FormattedCmoSampleIdRetriever(new CellLineCmoSampleIdResolver(), new CellLineCmoSampleIdFormatter()));
     protected PatientSamplesWithCmoInfoRetriever patientSamplesRetriever = new PatientSamplesWithCmoInfoRetriever(new SampleToCorrectedCmoIdConverter(), new SampleRecordToSampleConverter());
     private Map<String, List<CorrectedCmoSampleView>> generatedSamples = new HashMap<>();
+    private final PatientCmoSampleViewCache patientSamplesCache;
 
     public SampleTypeCorrectedCmoSampleIdGenerator() {
+        this(null);
+    }
+
+    /**
+     * @param patientSamplesCache samples of patients shared between generators, null to query the LIMS on every call.
+     *                            Generated ids are not written to it since this class does not store them.
+     */
+    public SampleTypeCorrectedCmoSampleIdGenerator(PatientCmoSampleViewCache patientSamplesCache) {
+        this.patientSamplesCache = patientSamplesCache;
     }
 
     @Override
@@ -59,7 +69,9 @@ public class SampleTypeCorrectedCmoSampleIdGenerator implements CorrectedCmoSamp
                 CommonUtils.requireNonNullNorEmpty(patientId, String.format("Patient id is not set for sample: %s", correctedCmoSampleView.getId()));
 
                 // get all samples for that patient in the LIMS
-                List<CorrectedCmoSampleView> cmoSampleViews = patientSamplesRetriever.retrieve(patientId, dataRecordManager, user);
+                List<CorrectedCmoSampleView> cmoSampleViews = patientSamplesCache == null ?
+                        patientSamplesRetriever.retrieve(patientId, dataRecordManager, user) :
+                        patientSamplesCache.get(patientId, patientSamplesRetriever, dataRecordManager, user);
                 // add to that list all samples where patient ID was just generated but not yet saved to LIMS DB
                 List<CorrectedCmoSampleView> generated = generatedSamples.get(patientId);
                 if (generated != null)
@@ -87,6 +99,72 @@ public class SampleTypeCorrectedCmoSampleIdGenerator implements CorrectedCmoSamp
         }
     }
 
+    /**
+     * Generates CMO Sample Ids for a batch of samples. The samples of all their patients are retrieved from the LIMS
+     * once, samples of the same patient are then counted in input order against what is in the LIMS plus what was
+     * generated earlier in the batch.
+     *
+     * @return Map of Igo id to CMO Sample Id in input order
+     */
+    public Map<String, String> generate(List<CorrectedCmoSampleView> correctedCmoSampleViews,
+                                        DataRecordManager dataRecordManager, User user) {
+        LOGGER.info(String.format("Generating cmo ids for %d views", correctedCmoSampleViews.size()));
+
+        Map<String, String> cmoSampleIds = new LinkedHashMap<>();
+        synchronized (SampleTypeCorrectedCmoSampleIdGenerator.class) {
+            Map<String, List<CorrectedCmoSampleView>> patientToViews;
+            try {
+                Set<String> patientIds = new LinkedHashSet<>();
+                for (CorrectedCmoSampleView view : correctedCmoSampleViews) {
+                    CommonUtils.requireNonNullNorEmpty(view.getPatientId(), String.format("Patient id is not set " +
+                            "for sample: %s", view.getId()));
+                    patientIds.add(view.getPatientId());
+                }
+                patientToViews = patientSamplesCache == null ?
+                        patientSamplesRetriever.retrieveAll(patientIds, dataRecordManager, user) :
+                        patientSamplesCache.getAll(patientIds, patientSamplesRetriever, dataRecordManager, user);
+            } catch (Exception e) {
+                for (CorrectedCmoSampleView view : correctedCmoSampleViews)
+                    notifyAboutCorrectedCmoIdFailure(view, view.getRequestId(), e);
+                throw new RuntimeException(e);
+            }
+
+            Map<String, String> assignedIds = new HashMap<>();
+            for (CorrectedCmoSampleView correctedCmoSampleView : correctedCmoSampleViews) {
+                try {
+                    String patientId = correctedCmoSampleView.getPatientId();
+                    List<CorrectedCmoSampleView> cmoSampleViews = patientToViews.computeIfAbsent(patientId,
+                            p -> new ArrayList<>());
+                    List<CorrectedCmoSampleView> filteredViews = getFilteredCmoViews(correctedCmoSampleView,
+                            cmoSampleViews);
+
+                    CmoSampleIdRetriever idRetriever =
+                            cmoSampleIdRetrieverFactory.getCmoSampleIdRetriever(correctedCmoSampleView);
+                    String cmoSampleId = idRetriever.retrieve(correctedCmoSampleView, filteredViews,
+                            correctedCmoSampleView.getRequestId());
+
+                    if (shouldOverrideCmoId(correctedCmoSampleView, cmoSampleId))
+                        correctedCmoSampleView.setCorrectedCmoId(cmoSampleId);
+
+                    String cmoId = correctedCmoSampleView.getCorrectedCmoId();
+                    String assignedTo = assignedIds.putIfAbsent(cmoId, correctedCmoSampleView.getId());
+                    if (assignedTo != null && !assignedTo.equals(correctedCmoSampleView.getId()))
+                        throw new RuntimeException(String.format("CMO Sample Id %s generated for both %s and %s",
+                                cmoId, assignedTo, correctedCmoSampleView.getId()));
+
+                    // later samples of the patient are counted against this one, it replaces any stored version
+                    cmoSampleViews.removeIf(v -> Objects.equals(v.getId(), correctedCmoSampleView.getId()));
+                    cmoSampleViews.add(correctedCmoSampleView);
+                    cmoSampleIds.put(correctedCmoSampleView.getId(), cmoId);
+                } catch (Exception e) {
+                    notifyAboutCorrectedCmoIdFailure(correctedCmoSampleView, correctedCmoSampleView.getRequestId(), e);
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        return cmoSampleIds;
+    }
+
     protected static boolean shouldOverrideCmoId(CorrectedCmoSampleView correctedCmoSampleView, String cmoSampleId) {
         return StringUtils.isEmpty(correctedCmoSampleView.getCorrectedCmoId()) ||
                 !isSame(correctedCmoSampleView.getCorrectedCmoId(), cmoSampleId);
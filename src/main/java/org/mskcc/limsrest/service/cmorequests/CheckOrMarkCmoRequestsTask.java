@@ -62,9 +62,14 @@ public class CheckOrMarkCmoRequestsTask {
     }
 
     public String execute() {
-        DataMgmtServer dataMgmtServer = conn.getConnection().getDataMgmtServer();
-        dataRecordManager = conn.getConnection().getDataRecordManager();
-        user = conn.getConnection().getUser();
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            dataRecordManager = lease.getDataRecordManager();
+            user = lease.getUser();
+            return checkOrMarkCmoRequests(lease.getDataMgmtServer());
+        }
+    }
+
+    private String checkOrMarkCmoRequests(DataMgmtServer dataMgmtServer) {
         try {
             cmoRecipes = Arrays.asList(dataMgmtServer.getPickListManager(user).getPickListConfig("CMO Request Recipes").getEntryList()
                     .toString()
@@ -11,6 +11,8 @@ import org.mskcc.limsrest.service.PatientSamplesWithCmoInfoRetriever;
 import org.mskcc.util.VeloxConstants;
 
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public class SampleRecordToSampleConverter {
@@ -18,27 +20,33 @@ public class SampleRecordToSampleConverter {
 
     public Sample convert(DataRecord sampleRecord, User user) throws RemoteException, IoError {
         Map<String, Object> fields = sampleRecord.getFields(user);
-        String sampleId = (String) fields.get(VeloxConstants.SAMPLE_ID);
 
         DataRecord[] sampleInfoRecords = sampleRecord.getChildrenOfType(VeloxConstants.SAMPLE_CMO_INFO_RECORDS, user);
+        List<Map<String, Object>> sampleInfoFields = new ArrayList<>();
+        for (DataRecord sampleInfoRecord : sampleInfoRecords)
+            sampleInfoFields.add(sampleInfoRecord.getFields(user));
+
+        return convert(fields, sampleInfoFields);
+    }
 
-        if (sampleInfoRecords.length == 0)
+    /**
+     * Converts a sample whose fields and SampleCMOInfoRecords children were already loaded, e.g. in bulk.
+     */
+    public Sample convert(Map<String, Object> fields, List<Map<String, Object>> sampleInfoFields) {
+        String sampleId = (String) fields.get(VeloxConstants.SAMPLE_ID);
+
+        if (sampleInfoFields.size() == 0)
             throw new RuntimeException(String.format("Sample Cmo Info not present for sample: %s", sampleId));
-        if (sampleInfoRecords.length > 1)
+        if (sampleInfoFields.size() > 1)
             throw new RuntimeException(String.format("Multiple Sample Cmo Info records found for sample: %s",
                     sampleId));
 
         Sample sample = new Sample(sampleId);
-        sample.setCmoSampleInfo(getCmoSampleInfo(sampleInfoRecords[0], user));
+        sample.setCmoSampleInfo(new CmoSampleInfo(sampleInfoFields.get(0)));
         sample.setFields(fields);
 
         LOGGER.debug(String.format("Retrieved sample: %s", sample.getFields()));
 
         return sample;
     }
-
-    private CmoSampleInfo getCmoSampleInfo(DataRecord sampleInfoRecord, User user) throws RemoteException {
-        Map<String, Object> cmoInfoFields = sampleInfoRecord.getFields(user);
-        return new CmoSampleInfo(cmoInfoFields);
-    }
 }
@@ -0,0 +1,185 @@
+package org.mskcc.limsrest.service.cvr;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.ssl.SSLContexts;
+import org.json.JSONObject;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client for the CVR metadata service, e.g. "https://draco.mskcc.org:9898/get_cmo_metadata/P-0002976-T01-WES".
+ * <p>
+ * Requests go through one pool of at most maxConnections keep-alive connections, the service certificate is not
+ * verified. Metadata is cached on disk by DMP sample ID for cacheTtlMillis so it survives restarts, call
+ * {@link #refresh(String)} when CVR has new data for a sample. Concurrent lookups of the same sample share one request.
+ */
+public class CvrClient {
+    private static Log log = LogFactory.getLog(CvrClient.class);
+
+    private final String baseUrl;
+    private final File cacheDirectory;
+    private final long cacheTtlMillis;
+
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+    private final Map<String, CompletableFuture<JSONObject>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * @param baseUrl e.g. "https://draco.mskcc.org:9898/"
+     */
+    public CvrClient(String baseUrl, File cacheDirectory, int maxConnections, int connectTimeoutMillis,
+                     int readTimeoutMillis, long cacheTtlMillis) throws IOException, GeneralSecurityException {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.cacheDirectory = cacheDirectory;
+        this.cacheTtlMillis = cacheTtlMillis;
+        Files.createDirectories(cacheDirectory.toPath());
+
+        // the service has a self-signed certificate
+        SSLConnectionSocketFactory trustAll = new SSLConnectionSocketFactory(
+                SSLContexts.custom().loadTrustMaterial(null, (chain, authType) -> true).build(),
+                NoopHostnameVerifier.INSTANCE);
+        Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", trustAll)
+                .build();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactories);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setConnectionRequestTimeout(readTimeoutMillis)
+                .setSocketTimeout(readTimeoutMillis)
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictIdleConnections(60, TimeUnit.SECONDS)
+                .build();
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        log.info(String.format("Caching CVR metadata in %s for %dms.", cacheDirectory, cacheTtlMillis));
+    }
+
+    /**
+     * Metadata of a DMP sample, e.g. "mrn", "gender", "tumor_type" or "molecular_accession_num".
+     *
+     * @return an empty object when the service doesn't know the sample or can't be reached
+     */
+    public JSONObject getSampleMetadata(String dmpSampleId) {
+        JSONObject cached = readCache(dmpSampleId);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return cached;
+        }
+        CompletableFuture<JSONObject> mine = new CompletableFuture<>();
+        CompletableFuture<JSONObject> flight = inFlight.putIfAbsent(dmpSampleId, mine);
+        if (flight != null) {
+            coalesced.incrementAndGet();
+            return new JSONObject(flight.join().toString());
+        }
+        JSONObject metadata = new JSONObject();
+        try {
+            metadata = fetch(dmpSampleId);
+            writeCache(dmpSampleId, metadata);
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            log.error(String.format("Error occured while querying CVR end point for DMP Sample ID %s\n%s",
+                    dmpSampleId, e.getMessage()));
+        } finally {
+            inFlight.remove(dmpSampleId, mine);
+            mine.complete(metadata);
+        }
+        return metadata;
+    }
+
+    /**
+     * Drops the cached metadata of a DMP sample, the next lookup asks the service again.
+     */
+    public void refresh(String dmpSampleId) {
+        try {
+            Files.deleteIfExists(file(dmpSampleId).toPath());
+        } catch (IOException e) {
+            log.warn("Failed to drop cached CVR metadata of " + dmpSampleId + ": " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        String[] files = cacheDirectory.list();
+        stats.put("cacheEntries", files == null ? 0 : files.length);
+        stats.put("cacheTtlMillis", cacheTtlMillis);
+        stats.put("cacheHits", cacheHits.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("requests", requests.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.warn("Failed to close CVR client: " + e.getMessage());
+        }
+    }
+
+    private JSONObject fetch(String dmpSampleId) {
+        requests.incrementAndGet();
+        String url = baseUrl + "get_cmo_metadata/" + dmpSampleId;
+        log.info(url);
+        String body = restTemplate.getForObject(url, String.class);
+        return new JSONObject(body);
+    }
+
+    private File file(String dmpSampleId) {
+        return new File(cacheDirectory, "cvr-" + dmpSampleId.replaceAll("[^A-Za-z0-9_-]", "_") + ".json");
+    }
+
+    private JSONObject readCache(String dmpSampleId) {
+        File file = file(dmpSampleId);
+        if (!file.exists() || System.currentTimeMillis() - file.lastModified() >= cacheTtlMillis)
+            return null;
+        try {
+            return new JSONObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            log.warn("Reloading unreadable CVR metadata " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeCache(String dmpSampleId, JSONObject metadata) throws IOException {
+        Path tmp = Files.createTempFile(cacheDirectory.toPath(), "cvr-", ".tmp");
+        Files.write(tmp, metadata.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file(dmpSampleId).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -23,8 +23,8 @@ public class GenerateBankedSamplesFromDMP extends LimsTask {
     private static final Log LOGGER = LogFactory.getLog(GenerateBankedSamplesFromDMP.class);
 
     private static final String TRACKING_ID_REGEX = "[a-zA-Z0-9_-]+";
-    private final ExternalToBankedSampleConverter externalToBankedSampleConverter =
-            new DMPSampleToCMOBankedSampleConverter(new OncotreeTumorTypeRetriever());
+    protected TumorTypeRetriever tumorTypeRetriever;
+    private ExternalToBankedSampleConverter externalToBankedSampleConverter;
     //TODO set string normally
     protected DMPSamplesRetriever dmpSamplesRetriever = new WebServiceDMPSamplesRetriever("http://plvpathhydra1.mskcc.org:8001/");
     protected RecordSaver recordSaver = new BankedSampleSaver();
@@ -44,11 +44,19 @@ public class GenerateBankedSamplesFromDMP extends LimsTask {
     public void setRecordSaver(RecordSaver recordSaver) {
         this.recordSaver = recordSaver;
     }
+    public void setTumorTypeRetriever(TumorTypeRetriever tumorTypeRetriever) {
+        this.tumorTypeRetriever = tumorTypeRetriever;
+    }
 
     public void setDate(LocalDate date) {
         this.date = date;
     }
 
+    @Override
+    public Priority getPriority() {
+        return Priority.BATCH;
+    }
+
     @Override
     public String execute(VeloxConnection conn) {
         try {
@@ -57,6 +65,9 @@ public class GenerateBankedSamplesFromDMP extends LimsTask {
 
             LOGGER.info(String.format("Tracking ids retrieved for date: %s %s", date, cmoTrackingIds));
 
+            // the tumor types of each run, the retriever may have refreshed them since the last one
+            externalToBankedSampleConverter = new DMPSampleToCMOBankedSampleConverter(tumorTypeRetriever);
+
             long transactionId = LocalDateTime.now().toInstant(ZoneOffset.ofTotalSeconds(0)).getEpochSecond();
 
             int trackingIdCounter = 0;
@@ -0,0 +1,197 @@
+package org.mskcc.limsrest.service.hiseq;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.*;
+
+/**
+ * In memory index of the sequencing runs, one entry per IlluminaSeqExperiment with its first FlowCell, so
+ * /getHiseqList doesn't scan the whole IlluminaSeqExperiment table and ask every run for its flowcells.
+ * <p>
+ * The index is seeded on first use from all FlowCell records, later refreshes only query flowcells with
+ * "DateCreated > last seen" at most every refreshMillis. Flowcells not yet linked to a run are retried on every refresh.
+ * Run folders changed or runs deleted in the LIMS are picked up by a full rebuild every fullRefreshMillis.
+ */
+public class HiseqRunIndex {
+    private static Log log = LogFactory.getLog(HiseqRunIndex.class);
+
+    public static final String RUN_DATA_TYPE = "IlluminaSeqExperiment";
+    public static final String FLOWCELL_DATA_TYPE = "FlowCell";
+    // flowcells committed after a later one was indexed are still picked up
+    static final long WATERMARK_OVERLAP_MILLIS = 10 * 60 * 1000L;
+
+    private final long refreshMillis;
+    private final long fullRefreshMillis;
+
+    // IlluminaSeqExperiment record ID -> run
+    private final Map<Long, Run> byRunRecordId = new TreeMap<>();
+    private final Set<Long> indexedFlowCells = new HashSet<>();
+    private final Set<Long> pendingFlowCells = new TreeSet<>();
+    private boolean built = false;
+    private long maxDateCreated = 0;
+    private long lastRefresh = 0;
+    private long lastFullRefresh = 0;
+
+    public HiseqRunIndex(long refreshMillis, long fullRefreshMillis) {
+        this.refreshMillis = refreshMillis;
+        this.fullRefreshMillis = fullRefreshMillis;
+    }
+
+    /**
+     * Returns all runs with a flowcell in the order they were created in the LIMS.
+     */
+    public synchronized List<Run> getRuns(DataRecordManager drm, User user) throws Exception {
+        refreshIfStale(drm, user);
+        return new ArrayList<>(byRunRecordId.values());
+    }
+
+    /**
+     * Returns the runs whose run folder contains @run ignoring case, the same matches as a LIKE '%run%' query.
+     */
+    public synchronized List<Run> findRuns(String run, DataRecordManager drm, User user) throws Exception {
+        refreshIfStale(drm, user);
+        String match = run.toLowerCase();
+        List<Run> runs = new ArrayList<>();
+        for (Run r : byRunRecordId.values()) {
+            if (r.getRunFolder() != null && r.getRunFolder().toLowerCase().contains(match))
+                runs.add(r);
+        }
+        return runs;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("built", built);
+        stats.put("runs", byRunRecordId.size());
+        stats.put("pendingFlowCells", pendingFlowCells.size());
+        stats.put("maxDateCreated", maxDateCreated);
+        stats.put("lastRefresh", lastRefresh);
+        stats.put("lastFullRefresh", lastFullRefresh);
+        return stats;
+    }
+
+    private void refreshIfStale(DataRecordManager drm, User user) throws Exception {
+        long now = System.currentTimeMillis();
+        if (!built || now - lastFullRefresh >= fullRefreshMillis) {
+            byRunRecordId.clear();
+            indexedFlowCells.clear();
+            pendingFlowCells.clear();
+            maxDateCreated = 0;
+            refresh(null, drm, user);
+            lastFullRefresh = lastRefresh;
+        } else if (now - lastRefresh >= refreshMillis) {
+            String where = "DateCreated > " + (maxDateCreated - WATERMARK_OVERLAP_MILLIS);
+            if (!pendingFlowCells.isEmpty()) {
+                StringJoiner ids = new StringJoiner(",", " OR RecordId in (", ")");
+                pendingFlowCells.forEach(id -> ids.add(id.toString()));
+                where += ids.toString();
+            }
+            refresh(where, drm, user);
+        }
+    }
+
+    private void refresh(String where, DataRecordManager drm, User user) throws Exception {
+        long start = System.currentTimeMillis();
+        List<DataRecord> flowCells = new ArrayList<>();
+        for (DataRecord flowCell : drm.queryDataRecords(FLOWCELL_DATA_TYPE, where, user)) {
+            if (!indexedFlowCells.contains(flowCell.getRecordId()))
+                flowCells.add(flowCell);
+        }
+        if (!flowCells.isEmpty()) {
+            List<Map<String, Object>> flowCellFields = drm.getFieldsForRecords(flowCells, user);
+            List<List<DataRecord>> runParents = drm.getParentsOfType(flowCells, RUN_DATA_TYPE, user);
+
+            List<DataRecord> runs = new ArrayList<>();
+            for (List<DataRecord> parents : runParents) {
+                if (!parents.isEmpty())
+                    runs.add(parents.get(0));
+            }
+            List<Map<String, Object>> runFields = runs.isEmpty() ? Collections.emptyList() :
+                    drm.getFieldsForRecords(runs, user);
+
+            int runIndex = 0;
+            for (int i = 0; i < flowCells.size(); i++) {
+                long flowCellRecordId = flowCells.get(i).getRecordId();
+                Object dateCreated = flowCellFields.get(i).get("DateCreated");
+                if (dateCreated instanceof Long)
+                    maxDateCreated = Math.max(maxDateCreated, (Long) dateCreated);
+                if (runParents.get(i).isEmpty()) {
+                    pendingFlowCells.add(flowCellRecordId);
+                    continue;
+                }
+                DataRecord run = runs.get(runIndex);
+                Map<String, Object> fields = runFields.get(runIndex++);
+                pendingFlowCells.remove(flowCellRecordId);
+                indexedFlowCells.add(flowCellRecordId);
+                index(new Run(run.getRecordId(), (String) fields.get("SequencerRunFolder"),
+                        (String) fields.get("SequencingRunType"), flowCellRecordId,
+                        dateCreated instanceof Long ? (Long) dateCreated : 0L));
+            }
+        }
+        if (!built || !flowCells.isEmpty())
+            log.info(String.format("Indexed %d %s records in %dms, %d runs total.", flowCells.size(),
+                    FLOWCELL_DATA_TYPE, System.currentTimeMillis() - start, byRunRecordId.size()));
+        built = true;
+        lastRefresh = System.currentTimeMillis();
+    }
+
+    private void index(Run run) {
+        // a run keeps the flowcell its children list starts with, the one created first
+        Run indexed = byRunRecordId.get(run.getRunRecordId());
+        if (indexed == null || run.getFlowCellRecordId() < indexed.getFlowCellRecordId())
+            byRunRecordId.put(run.getRunRecordId(), run);
+    }
+
+    public static class Run {
+        private final long runRecordId;
+        private final String runFolder;
+        private final String runType;
+        private final long flowCellRecordId;
+        private final long dateCreated;
+
+        public Run(long runRecordId, String runFolder, String runType, long flowCellRecordId, long dateCreated) {
+            this.runRecordId = runRecordId;
+            this.runFolder = runFolder;
+            this.runType = runType;
+            this.flowCellRecordId = flowCellRecordId;
+            this.dateCreated = dateCreated;
+        }
+
+        public long getRunRecordId() {
+            return runRecordId;
+        }
+
+        public String getRunFolder() {
+            return runFolder;
+        }
+
+        /**
+         * "/ifs/pitt/PITT_0214_AHVHVFBBXX" -> "PITT_0214_AHVHVFBBXX", "ALLRUNS" without a run folder
+         */
+        public String getRunId() {
+            if (runFolder == null)
+                return "ALLRUNS";
+            String[] runFolderElements = runFolder.split("/");
+            return runFolderElements[runFolderElements.length - 1];
+        }
+
+        public String getRunType() {
+            return runType;
+        }
+
+        public long getFlowCellRecordId() {
+            return flowCellRecordId;
+        }
+
+        /**
+         * DateCreated of the flowcell, reported as the start date of the run
+         */
+        public long getDateCreated() {
+            return dateCreated;
+        }
+    }
+}
@@ -15,25 +15,29 @@ public class GetInterOpsDataTask extends LimsTask {
     private static final Log log = LogFactory.getLog(GetInterOpsDataTask.class);
 
     private String runId;
+    private InterOpsIndex index;
 
-    public void init(String runId) {
+    public void init(String runId, InterOpsIndex index) {
         this.runId = runId;
+        this.index = index;
     }
 
     @Override
     public Object execute(VeloxConnection conn) {
         List<Map<String, String>> interOps = new ArrayList<>();
         try {
-            List<DataRecord> interOpsRecords = dataRecordManager.queryDataRecords("InterOpsDatum","i_Runwithnumberprefixremoved LIKE'%" + runId + "%'" , user);
-
             /*
             This end point receives Flowcell ID. It will return all the values under column 'i_Runwithnumberprefixremoved'
-            which contain the Flowcell ID received. We cannot do LIKE query operations through LIMS API, therefore we will have to
-            loop through all the records in the target DataType 'InterOpsDatum' to find records containing 'Flowcell ID'.
+            which contain the Flowcell ID received. The index resolves those to record IDs so only the matching records
+            are read, with one bulk call for their fields.
              */
+            List<Object> recordIds = new ArrayList<>(index.getRecordIds(runId, dataRecordManager, user));
+            if (recordIds.isEmpty())
+                return interOps;
+            List<DataRecord> interOpsRecords = dataRecordManager.queryDataRecords(InterOpsIndex.DATA_TYPE, "RecordId",
+                    recordIds, user);
 
-            for (DataRecord  record: interOpsRecords) {
-                Map<String, Object> fields = record.getFields(user);
+            for (Map<String, Object> fields : dataRecordManager.getFieldsForRecords(interOpsRecords, user)) {
                 Map<String, String> fieldsMap = new HashMap<>();
                 fields.forEach((k, v) -> fieldsMap.put(k, toString(v)));
 
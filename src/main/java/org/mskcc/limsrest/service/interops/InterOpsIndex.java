@@ -0,0 +1,124 @@
+package org.mskcc.limsrest.service.interops;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.*;
+
+/**
+ * In memory index from run name to the record IDs of its InterOpsDatum records, so /getInterOpsData doesn't scan
+ * the whole InterOpsDatum table with a LIKE query.
+ * <p>
+ * The index is built on first use. Records written through /addInteropData are added directly. Records added any
+ * other way are picked up by an incremental "RecordId > last seen" query at most every refreshMillis. Run names
+ * edited or records deleted in the LIMS are picked up by a full rebuild every fullRefreshMillis.
+ */
+public class InterOpsIndex {
+    private static Log log = LogFactory.getLog(InterOpsIndex.class);
+
+    public static final String DATA_TYPE = "InterOpsDatum";
+    public static final String RUN_NAME = "i_Runwithnumberprefixremoved";
+
+    private final long refreshMillis;
+    private final long fullRefreshMillis;
+
+    // lower case run name, e.g. "pitt_0214_ahvhvfbbxx" -> record IDs
+    private final Map<String, Set<Long>> byRunName = new HashMap<>();
+    // record ID -> lower case run name, so a record whose run name changed is moved rather than indexed twice
+    private final Map<Long, String> runNames = new HashMap<>();
+    private boolean built = false;
+    private long maxRecordId = 0;
+    private long lastRefresh = 0;
+    private long lastFullRefresh = 0;
+
+    public InterOpsIndex(long refreshMillis, long fullRefreshMillis) {
+        this.refreshMillis = refreshMillis;
+        this.fullRefreshMillis = fullRefreshMillis;
+    }
+
+    /**
+     * Returns the record IDs of all InterOpsDatum records whose run name contains the @runId, usually a flowcell ID,
+     * ignoring case. These are the same matches as the LIKE '%runId%' query this replaces, scanning the run names in
+     * memory instead of all records.
+     */
+    public synchronized List<Long> getRecordIds(String runId, DataRecordManager drm, User user) throws Exception {
+        refreshIfStale(drm, user);
+
+        String match = runId.toLowerCase();
+        Set<Long> matches = new TreeSet<>();
+        for (Map.Entry<String, Set<Long>> entry : byRunName.entrySet()) {
+            if (entry.getKey().contains(match))
+                matches.addAll(entry.getValue());
+        }
+        return new ArrayList<>(matches);
+    }
+
+    /**
+     * Adds a record written by this service so it is found without waiting for the next refresh.
+     */
+    public synchronized void add(String runName, long recordId) {
+        if (!built || runName == null)
+            return;
+        index(runName, recordId);
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("built", built);
+        stats.put("runs", byRunName.size());
+        stats.put("records", runNames.size());
+        stats.put("maxRecordId", maxRecordId);
+        stats.put("lastRefresh", lastRefresh);
+        stats.put("lastFullRefresh", lastFullRefresh);
+        return stats;
+    }
+
+    private void refreshIfStale(DataRecordManager drm, User user) throws Exception {
+        long now = System.currentTimeMillis();
+        if (!built || now - lastFullRefresh >= fullRefreshMillis) {
+            byRunName.clear();
+            runNames.clear();
+            maxRecordId = 0;
+            refresh(drm, user);
+            lastFullRefresh = lastRefresh;
+        } else if (now - lastRefresh >= refreshMillis) {
+            refresh(drm, user);
+        }
+    }
+
+    private void refresh(DataRecordManager drm, User user) throws Exception {
+        long start = System.currentTimeMillis();
+        List<DataRecord> records = drm.queryDataRecords(DATA_TYPE, "RecordId > " + maxRecordId, user);
+        if (!records.isEmpty()) {
+            List<Map<String, Object>> fields = drm.getFieldsForRecords(records, user);
+            for (int i = 0; i < records.size(); i++) {
+                long recordId = records.get(i).getRecordId();
+                Object runName = fields.get(i).get(RUN_NAME);
+                if (runName != null)
+                    index(runName.toString(), recordId);
+                // only advanced here, records added directly may have skipped over records written by others
+                maxRecordId = Math.max(maxRecordId, recordId);
+            }
+        }
+        if (!built || !records.isEmpty())
+            log.info(String.format("Indexed %d %s records in %dms, %d runs total.", records.size(), DATA_TYPE,
+                    System.currentTimeMillis() - start, byRunName.size()));
+        built = true;
+        lastRefresh = System.currentTimeMillis();
+    }
+
+    private void index(String runName, long recordId) {
+        String key = runName.toLowerCase();
+        String previous = runNames.put(recordId, key);
+        if (previous != null && !previous.equals(key)) {
+            Set<Long> ids = byRunName.get(previous);
+            ids.remove(recordId);
+            if (ids.isEmpty())
+                byRunName.remove(previous);
+        }
+        byRunName.computeIfAbsent(key, k -> new TreeSet<>()).add(recordId);
+    }
+}
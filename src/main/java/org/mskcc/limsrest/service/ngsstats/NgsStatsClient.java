@@ -0,0 +1,216 @@
+package org.mskcc.limsrest.service.ngsstats;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.mskcc.limsrest.service.ArchivedFastq;
+import org.mskcc.limsrest.service.QCSiteStats;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client for the ngs-stats service on delphi shared by all tasks.
+ * <p>
+ * Requests go through one pool of keep-alive connections. Connection errors and 5xx responses are retried with
+ * exponential backoff. Fastq path and pooled normal stats responses are cached for cacheTtlMillis; call
+ * {@link #invalidateRun(String)} and {@link #invalidateIgoId(String)} when ngs-stats has new data for a run.
+ */
+public class NgsStatsClient {
+    private static Log log = LogFactory.getLog(NgsStatsClient.class);
+
+    private static final ParameterizedTypeReference<List<ArchivedFastq>> FASTQ_LIST =
+            new ParameterizedTypeReference<List<ArchivedFastq>>() {};
+    private static final ParameterizedTypeReference<List<QCSiteStats>> QC_SITE_STATS_LIST =
+            new ParameterizedTypeReference<List<QCSiteStats>>() {};
+
+    private final String baseUrl;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+    private final long cacheTtlMillis;
+    private final int cacheMaxEntries;
+
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+    private final LinkedHashMap<String, CacheEntry> cache;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    /**
+     * @param baseUrl e.g. "http://delphi.mskcc.org:8080/"
+     */
+    public NgsStatsClient(String baseUrl, int maxConnections, int connectTimeoutMillis, int readTimeoutMillis,
+                          int maxRetries, long retryBackoffMillis, long cacheTtlMillis, int cacheMaxEntries) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.maxRetries = maxRetries;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.cacheTtlMillis = cacheTtlMillis;
+        this.cacheMaxEntries = cacheMaxEntries;
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setConnectionRequestTimeout(connectTimeoutMillis)
+                .setSocketTimeout(readTimeoutMillis)
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .disableAutomaticRetries()
+                .evictIdleConnections(60, TimeUnit.SECONDS)
+                .build();
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > NgsStatsClient.this.cacheMaxEntries;
+            }
+        };
+    }
+
+    /**
+     * All archived fastqs of a sample, e.g. "06302_W_1".
+     */
+    public List<ArchivedFastq> getFastqsByIgoId(String igoId) {
+        return getCached("ngs-stats/rundone/fastqsbyigoid/" + igoId, FASTQ_LIST, igoId, null);
+    }
+
+    /**
+     * Fastqs of the most recent demux of a sample on a run.
+     *
+     * @param sampleName sample directory name, e.g. "P-0034230-N01-WES_IGO_10673_1"
+     */
+    public List<ArchivedFastq> getMostRecentFastqPaths(String run, String sampleName) {
+        return getCached("ngs-stats/rundone/search/most/recent/fastqpath/" + run + "/" + sampleName, FASTQ_LIST,
+                null, run);
+    }
+
+    public List<ArchivedFastq> getPooledNormals(String request) {
+        return get("ngs-stats/rundone/getpoolednormals/" + request, FASTQ_LIST);
+    }
+
+    public List<QCSiteStats> getPooledNormalStats(String run) {
+        return getCached("ngs-stats/picardstats-controls/run/" + run, QC_SITE_STATS_LIST, null, run);
+    }
+
+    /**
+     * Picard stats of every sample on a run as JSON, always read fresh.
+     */
+    public String getRunStats(String run) {
+        return get("ngs-stats/picardstats/run/" + run, new ParameterizedTypeReference<String>() {});
+    }
+
+    public String getRunStatsUrl(String run) {
+        return baseUrl + "ngs-stats/picardstats/run/" + run;
+    }
+
+    /**
+     * Drops cached responses for a run, e.g. "PITT_0214_AHVHVFBBXX". Runs match on prefix either way so demux
+     * suffixes like "_A1" are included.
+     */
+    public synchronized void invalidateRun(String run) {
+        cache.values().removeIf(e -> e.run != null && (e.run.startsWith(run) || run.startsWith(e.run)));
+    }
+
+    public synchronized void invalidateIgoId(String igoId) {
+        cache.values().removeIf(e -> igoId.equals(e.igoId));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("cacheEntries", cache.size());
+        }
+        stats.put("cacheHits", cacheHits.get());
+        stats.put("cacheMisses", cacheMisses.get());
+        stats.put("requests", requests.get());
+        stats.put("retries", retries.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.warn("Failed to close ngs-stats client: " + e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getCached(String path, ParameterizedTypeReference<T> type, String igoId, String run) {
+        synchronized (this) {
+            CacheEntry entry = cache.get(path);
+            if (entry != null && System.currentTimeMillis() - entry.loadedAt < cacheTtlMillis) {
+                cacheHits.incrementAndGet();
+                return (T) entry.value;
+            }
+        }
+        cacheMisses.incrementAndGet();
+        T value = get(path, type);
+        if (value != null) {
+            synchronized (this) {
+                cache.put(path, new CacheEntry(value, igoId, run));
+            }
+        }
+        return value;
+    }
+
+    private <T> T get(String path, ParameterizedTypeReference<T> type) {
+        String url = baseUrl + path;
+        for (int attempt = 0; ; attempt++) {
+            requests.incrementAndGet();
+            try {
+                return restTemplate.exchange(url, HttpMethod.GET, null, type).getBody();
+            } catch (ResourceAccessException | HttpServerErrorException e) {
+                if (attempt >= maxRetries) {
+                    failures.incrementAndGet();
+                    throw e;
+                }
+                long backoff = retryBackoffMillis << attempt;
+                log.warn(String.format("ngs-stats request failed, retrying in %dms: %s %s", backoff, url,
+                        e.getMessage()));
+                retries.incrementAndGet();
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static class CacheEntry {
+        final Object value;
+        final String igoId;
+        final String run;
+        final long loadedAt = System.currentTimeMillis();
+
+        CacheEntry(Object value, String igoId, String run) {
+            this.value = value;
+            this.igoId = igoId;
+            this.run = run;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package org.mskcc.limsrest.service.oncotree;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.mskcc.limsrest.service.dmp.TumorType;
+import org.mskcc.limsrest.service.dmp.TumorTypeRetriever;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory copy of the oncotree tumor types so tumor type resolution of WES tracker rows, sample metadata and DMP
+ * banked samples doesn't call oncotree for every sample.
+ * <p>
+ * Two lists are kept: the full oncotree list ("api/tumorTypes" of oncotreeUrl, ONCOTREE_URL in production) indexed by
+ * code and name to resolve main types, and the DMP tumor types of dmpTumorTypesUrl (oncotreeRestUrl) used to convert
+ * DMP samples. Both are loaded when the
+ * dictionary starts and reloaded every refreshMillis in the background, lookups always read the last complete load.
+ * Every successful load is saved to snapshotDirectory. When a list can't be loaded at start the saved snapshot is
+ * used, or the snapshot bundled on the classpath at /oncotree/tumor_types.json and /oncotree/dmp_tumor_types.json.
+ */
+public class OncotreeDictionary implements TumorTypeRetriever {
+    private static Log log = LogFactory.getLog(OncotreeDictionary.class);
+
+    public static final String ONCOTREE_URL = "http://oncotree.mskcc.org/";
+    static final String ONCOTREE_SNAPSHOT = "tumor_types.json";
+    static final String DMP_SNAPSHOT = "dmp_tumor_types.json";
+
+    private final String oncotreeUrl;
+    private final String dmpTumorTypesUrl;
+    private final File snapshotDirectory;
+    private final long refreshMillis;
+    private final RestTemplate restTemplate;
+    private final ScheduledExecutorService refresher;
+
+    private volatile Index index = new Index(Collections.emptyList());
+    private volatile Set<TumorType> dmpTumorTypes = Collections.emptySet();
+    private volatile String source = "none";
+
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private volatile long loadedAt = 0;
+
+    /**
+     * @param oncotreeUrl      e.g. "http://oncotree.mskcc.org/"
+     * @param dmpTumorTypesUrl e.g. "http://draco.mskcc.org:9666/tumor_types"
+     */
+    public OncotreeDictionary(String oncotreeUrl, String dmpTumorTypesUrl, File snapshotDirectory, long refreshMillis,
+                              int timeoutMillis) throws IOException {
+        this.oncotreeUrl = oncotreeUrl.endsWith("/") ? oncotreeUrl : oncotreeUrl + "/";
+        this.dmpTumorTypesUrl = dmpTumorTypesUrl;
+        this.snapshotDirectory = snapshotDirectory;
+        this.refreshMillis = refreshMillis;
+        Files.createDirectories(snapshotDirectory.toPath());
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeoutMillis);
+        requestFactory.setReadTimeout(timeoutMillis);
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "oncotree-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Loads both lists and schedules their refresh.
+     */
+    public OncotreeDictionary start() {
+        refresh(true);
+        refresher.scheduleWithFixedDelay(() -> refresh(false), refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Main type of a tumor type entered in the LIMS or CVR, which is either a name or a code, e.g. "Breast Cancer" or
+     * "THAP". Names are matched ignoring case and punctuation, first exactly, then the shortest name starting with it,
+     * then the shortest name containing it, before codes are matched exactly. Only the part before a "/" is used.
+     *
+     * @return "" when nothing matches
+     */
+    public String getMainType(String tumorType) {
+        if (tumorType == null)
+            return "";
+        return index.getMainType(tumorType.split("/")[0]);
+    }
+
+    public OncotreeType findByCode(String code) {
+        return code == null ? null : index.byCode.get(code.trim().toUpperCase());
+    }
+
+    public OncotreeType findByName(String name) {
+        return name == null ? null : index.findByName(normalize(name));
+    }
+
+    /**
+     * The DMP tumor types, from memory.
+     */
+    @Override
+    public Set<TumorType> retrieve() {
+        return dmpTumorTypes;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tumorTypes", index.byCode.size());
+        stats.put("dmpTumorTypes", dmpTumorTypes.size());
+        stats.put("source", source);
+        stats.put("loadedAt", loadedAt);
+        stats.put("refreshMillis", refreshMillis);
+        stats.put("loads", loads.get());
+        stats.put("loadFailures", loadFailures.get());
+        stats.put("cachedLookups", index.mainTypes.size());
+        return stats;
+    }
+
+    void refresh(boolean starting) {
+        String loadedSource = "oncotree";
+        String tumorTypes = load(oncotreeUrl + "api/tumorTypes", ONCOTREE_SNAPSHOT);
+        String dmp = load(dmpTumorTypesUrl, DMP_SNAPSHOT);
+        if (starting) {
+            if (tumorTypes == null || dmp == null)
+                loadedSource = "snapshot";
+            if (tumorTypes == null)
+                tumorTypes = readSnapshot(ONCOTREE_SNAPSHOT);
+            if (dmp == null)
+                dmp = readSnapshot(DMP_SNAPSHOT);
+        }
+        try {
+            if (tumorTypes != null)
+                index = new Index(parseTumorTypes(tumorTypes));
+            if (dmp != null)
+                dmpTumorTypes = parseDmpTumorTypes(dmp);
+            if (tumorTypes != null || dmp != null) {
+                source = loadedSource;
+                loadedAt = System.currentTimeMillis();
+            }
+        } catch (RuntimeException e) {
+            loadFailures.incrementAndGet();
+            log.error("Keeping the last oncotree tumor types, failed to parse: " + e.getMessage());
+        }
+        log.info(String.format("Oncotree dictionary has %d tumor types and %d DMP tumor types from %s.",
+                index.byCode.size(), dmpTumorTypes.size(), source));
+    }
+
+    // the response body, saved as snapshot, or null when the service can't be reached
+    private String load(String url, String snapshot) {
+        loads.incrementAndGet();
+        try {
+            String body = restTemplate.getForObject(url, String.class);
+            if (body == null)
+                throw new IOException("empty response");
+            Path tmp = Files.createTempFile(snapshotDirectory.toPath(), "oncotree-", ".tmp");
+            Files.write(tmp, body.getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, new File(snapshotDirectory, snapshot).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return body;
+        } catch (Exception e) {
+            loadFailures.incrementAndGet();
+            log.warn(String.format("Failed to load tumor types from %s: %s", url, e.getMessage()));
+            return null;
+        }
+    }
+
+    private String readSnapshot(String snapshot) {
+        File file = new File(snapshotDirectory, snapshot);
+        try {
+            if (file.exists())
+                return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            try (InputStream bundled = OncotreeDictionary.class.getResourceAsStream("/oncotree/" + snapshot)) {
+                if (bundled != null) {
+                    Scanner scanner = new Scanner(bundled, StandardCharsets.UTF_8.name()).useDelimiter("\\A");
+                    return scanner.hasNext() ? scanner.next() : "";
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read tumor types snapshot " + snapshot + ": " + e.getMessage());
+        }
+        log.error("No tumor types snapshot " + snapshot + " available.");
+        return null;
+    }
+
+    static List<OncotreeType> parseTumorTypes(String json) {
+        List<OncotreeType> tumorTypes = new ArrayList<>();
+        JSONArray array = new JSONArray(json);
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject tumorType = array.getJSONObject(i);
+            // older oncotree versions return the main type as an object
+            Object mainType = tumorType.opt("mainType");
+            if (mainType instanceof JSONObject)
+                mainType = ((JSONObject) mainType).opt("name");
+            tumorTypes.add(new OncotreeType(tumorType.optString("code", null), tumorType.optString("name", null),
+                    mainType == null || mainType == JSONObject.NULL ? "" : mainType.toString(),
+                    tumorType.optString("tissue", null)));
+        }
+        return tumorTypes;
+    }
+
+    static Set<TumorType> parseDmpTumorTypes(String json) {
+        Set<TumorType> tumorTypes = new HashSet<>();
+        JSONArray results = new JSONObject(json).getJSONArray("results");
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject tumorType = results.getJSONObject(i);
+            tumorTypes.add(new TumorType(tumorType.optString("code", null), tumorType.optString("tissue_type", null),
+                    tumorType.optString("tumor_type", null)));
+        }
+        return Collections.unmodifiableSet(tumorTypes);
+    }
+
+    // "Breast  Cancer, NOS" -> "breast cancer nos"
+    static String normalize(String name) {
+        return name.toLowerCase().replaceAll("[^a-z0-9]+", " ").trim();
+    }
+
+    /**
+     * One load of the oncotree list, replaced as a whole on refresh.
+     */
+    private static class Index {
+        final Map<String, OncotreeType> byCode = new HashMap<>();
+        final Map<String, OncotreeType> byName = new HashMap<>();
+        final TreeMap<String, OncotreeType> sortedNames = new TreeMap<>();
+        // shortest names first so a partial name resolves to the most general type
+        final List<String> namesByLength;
+        // resolved main types of this load, including misses
+        final Map<String, String> mainTypes = new ConcurrentHashMap<>();
+
+        Index(List<OncotreeType> tumorTypes) {
+            for (OncotreeType tumorType : tumorTypes) {
+                if (tumorType.getCode() != null)
+                    byCode.putIfAbsent(tumorType.getCode().trim().toUpperCase(), tumorType);
+                // tissue nodes, e.g. "Breast", have no main type and would hide the tumor types named after them
+                if (tumorType.getName() != null && !tumorType.getMainType().isEmpty()) {
+                    String name = normalize(tumorType.getName());
+                    byName.putIfAbsent(name, tumorType);
+                    sortedNames.putIfAbsent(name, tumorType);
+                }
+            }
+            namesByLength = new ArrayList<>(byName.keySet());
+            namesByLength.sort(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()));
+        }
+
+        String getMainType(String tumorType) {
+            return mainTypes.computeIfAbsent(tumorType, t -> {
+                OncotreeType match = findByName(normalize(t));
+                if (match == null || match.getMainType().isEmpty())
+                    match = byCode.get(t.trim().toUpperCase());
+                return match == null ? "" : match.getMainType();
+            });
+        }
+
+        OncotreeType findByName(String name) {
+            if (name.isEmpty())
+                return null;
+            OncotreeType exact = byName.get(name);
+            if (exact != null)
+                return exact;
+            String prefix = null;
+            for (String candidate : sortedNames.subMap(name, name + Character.MAX_VALUE).keySet()) {
+                if (prefix == null || candidate.length() < prefix.length())
+                    prefix = candidate;
+            }
+            if (prefix != null)
+                return sortedNames.get(prefix);
+            for (String candidate : namesByLength) {
+                if (candidate.contains(name))
+                    return byName.get(candidate);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.mskcc.limsrest.service.oncotree;
+
+/**
+ * One node of the oncotree, e.g. code "THAP", name "Anaplastic Thyroid Cancer", main type "Thyroid Cancer".
+ */
+public class OncotreeType {
+    private final String code;
+    private final String name;
+    private final String mainType;
+    private final String tissue;
+
+    public OncotreeType(String code, String name, String mainType, String tissue) {
+        this.code = code;
+        this.name = name;
+        this.mainType = mainType;
+        this.tissue = tissue;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getMainType() {
+        return mainType;
+    }
+
+    public String getTissue() {
+        return tissue;
+    }
+
+    @Override
+    public String toString() {
+        return "OncotreeType{" +
+                "code='" + code + '\'' +
+                ", name='" + name + '\'' +
+                ", mainType='" + mainType + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,131 @@
+package org.mskcc.limsrest.service.requesttracker;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import com.velox.sloan.cmo.recmodels.SampleModel;
+import com.velox.sloan.cmo.recmodels.SeqAnalysisSampleQCModel;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.domain.sample.CmoSampleInfo;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Loads the Sample trees of a request breadth first, fetching the children of every sample at one depth of the tree
+ * with a single LIMS call instead of one call per sample.
+ * <p>
+ * Lookups return null for records that were not loaded, e.g. if a bulk call failed, so callers can fall back to
+ * fetching the record's children themselves.
+ */
+public class SampleTreeLoader {
+    private static Log log = LogFactory.getLog(SampleTreeLoader.class);
+
+    private final DataRecordManager drm;
+    private final User user;
+
+    private final Map<Long, DataRecord[]> sampleChildren = new HashMap<>();
+    private final Map<Long, DataRecord[]> qcChildren = new HashMap<>();
+    private final Map<Long, DataRecord[]> cmoInfoChildren = new HashMap<>();
+    private final Map<Long, List<DataRecord>> descendantQcRecords = new HashMap<>();
+    private int levels = 0;
+
+    public SampleTreeLoader(DataRecordManager drm, User user) {
+        this.drm = drm;
+        this.user = user;
+    }
+
+    /**
+     * Loads the trees descending from the @roots. Only Sample children accepted by @traverse have their own children
+     * loaded.
+     *
+     * @param roots    - Sample DataRecords directly under the request
+     * @param traverse - Whether a child sample is part of the tree, e.g. belongs to the same project
+     */
+    public void load(List<DataRecord> roots, Predicate<DataRecord> traverse) {
+        long start = System.currentTimeMillis();
+        putAll(cmoInfoChildren, roots, getChildren(roots, CmoSampleInfo.DATA_TYPE_NAME));
+        loadDescendantQcRecords(roots);
+
+        Set<Long> visited = new HashSet<>();
+        List<DataRecord> level = new ArrayList<>(roots);
+        while (!level.isEmpty()) {
+            levels++;
+            List<List<DataRecord>> children = getChildren(level, SampleModel.DATA_TYPE_NAME);
+            List<List<DataRecord>> qcs = getChildren(level, SeqAnalysisSampleQCModel.DATA_TYPE_NAME);
+            putAll(sampleChildren, level, children);
+            putAll(qcChildren, level, qcs);
+
+            // Samples w/ SeqAnalysisSampleQC children also need all descending QC records - See WorkflowSample
+            List<DataRecord> withQc = new ArrayList<>();
+            List<DataRecord> next = new ArrayList<>();
+            for (int i = 0; i < level.size(); i++) {
+                if (qcs != null && !qcs.get(i).isEmpty() && !descendantQcRecords.containsKey(level.get(i).getRecordId()))
+                    withQc.add(level.get(i));
+                if (children == null)
+                    continue;
+                for (DataRecord child : children.get(i)) {
+                    if (traverse.test(child) && visited.add(child.getRecordId()))
+                        next.add(child);
+                }
+            }
+            loadDescendantQcRecords(withQc);
+            level = next;
+        }
+        log.info(String.format("Loaded %d sample trees, %d levels, in %dms", roots.size(), levels,
+                System.currentTimeMillis() - start));
+    }
+
+    public DataRecord[] getSampleChildren(DataRecord record) {
+        return sampleChildren.get(record.getRecordId());
+    }
+
+    public DataRecord[] getQcChildren(DataRecord record) {
+        return qcChildren.get(record.getRecordId());
+    }
+
+    public DataRecord[] getCmoInfoChildren(DataRecord record) {
+        return cmoInfoChildren.get(record.getRecordId());
+    }
+
+    public List<DataRecord> getDescendantQcRecords(DataRecord record) {
+        return descendantQcRecords.get(record.getRecordId());
+    }
+
+    private void loadDescendantQcRecords(List<DataRecord> records) {
+        if (records.isEmpty())
+            return;
+        try {
+            List<List<DataRecord>> descendants = drm.getDescendantsOfType(records,
+                    SeqAnalysisSampleQCModel.DATA_TYPE_NAME, user);
+            for (int i = 0; i < records.size(); i++) {
+                descendantQcRecords.put(records.get(i).getRecordId(), descendants.get(i));
+            }
+        } catch (Exception e) {
+            log.error(String.format("Failed to load descending %s records of %d samples: %s",
+                    SeqAnalysisSampleQCModel.DATA_TYPE_NAME, records.size(), e.getMessage()));
+        }
+    }
+
+    private List<List<DataRecord>> getChildren(List<DataRecord> records, String childDataType) {
+        if (records.isEmpty())
+            return Collections.emptyList();
+        try {
+            return drm.getChildrenOfType(records, childDataType, user);
+        } catch (Exception e) {
+            log.error(String.format("Failed to load %s children of %d samples: %s", childDataType, records.size(),
+                    e.getMessage()));
+            return null;
+        }
+    }
+
+    private static void putAll(Map<Long, DataRecord[]> index, List<DataRecord> records,
+                               List<List<DataRecord>> children) {
+        if (children == null)
+            return;
+        for (int i = 0; i < records.size(); i++) {
+            index.put(records.get(i).getRecordId(), children.get(i).toArray(new DataRecord[0]));
+        }
+    }
+}
@@ -44,8 +44,16 @@ public class WorkflowSample extends StatusTracker {
     // SeqAnalysisSampleQC DataRecords the WorkflowSample is associated with
     private List<DataRecord> seqAnalysisQcRecords;
     private User user;
+    private SampleTreeLoader treeLoader;
 
     public WorkflowSample(DataRecord record, ConnectionLIMS conn) {
+        this(record, conn, null);
+    }
+
+    /**
+     * @param treeLoader - Preloaded children of the sample's tree, null to query the LIMS for this sample
+     */
+    public WorkflowSample(DataRecord record, ConnectionLIMS conn, SampleTreeLoader treeLoader) {
         // Workflow samples don't have a size - they are the extension of the root ProjectSample
         setSize(0);
 
@@ -59,6 +67,8 @@ public class WorkflowSample extends StatusTracker {
 
         this.complete = Boolean.FALSE;
 
+        this.treeLoader = treeLoader;
+
         enrichSample(conn);
     }
 
@@ -104,7 +114,10 @@ public class WorkflowSample extends StatusTracker {
         this.sourceSampleId = getRecordStringValue(this.record, SampleModel.SOURCE_LIMS_ID, this.user);
         String stageName = STAGE_AWAITING_PROCESSING;
 
-        DataRecord[] sampleQcRecords = getChildrenofDataRecord(this.record, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, this.user);
+        DataRecord[] sampleQcRecords = this.treeLoader == null ? null : this.treeLoader.getQcChildren(this.record);
+        if (sampleQcRecords == null) {
+            sampleQcRecords = getChildrenofDataRecord(this.record, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, this.user);
+        }
         if (sampleQcRecords.length > 0) {
             // Check immediate children (cheaper) prior to checking for all descendants (more expensive)
             try {
@@ -129,7 +142,10 @@ public class WorkflowSample extends StatusTracker {
                  * In other words, we can't evaluate on the immediate SeqAnalysisSampleQCModel children of a Workflow
                  * sample
                  */
-                List<DataRecord> allDescendingQcSamples = this.record.getDescendantsOfType(SeqAnalysisSampleQCModel.DATA_TYPE_NAME, this.user);
+                List<DataRecord> allDescendingQcSamples = this.treeLoader == null ? null : this.treeLoader.getDescendantQcRecords(this.record);
+                if (allDescendingQcSamples == null) {
+                    allDescendingQcSamples = this.record.getDescendantsOfType(SeqAnalysisSampleQCModel.DATA_TYPE_NAME, this.user);
+                }
                 addSeqAnalysisQcRecords(allDescendingQcSamples);
             } catch (RemoteException e) {
                 log.error(String.format("Unable to retrieve sampleQcRecords from %d", record.getRecordId()));
@@ -0,0 +1,128 @@
+package org.mskcc.limsrest.service.sampletracker;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory rows of /getWESSampleData, one entry per DMPSampleTracker record, so the nightly pull only recomputes
+ * trackers whose inputs changed instead of walking the LIMS, CVR and oncotree for every tracker again.
+ * <p>
+ * An entry keeps a fingerprint of the tracker fields and the record IDs of all LIMS records read to build it. It is
+ * reused while the fingerprint is unchanged and none of those records, nor a SampleCMOInfoRecords of the tracker's
+ * investigator sample ID, was modified since the entry was last checked. CVR and oncotree answers can't be watched,
+ * entries are rebuilt once older than fullRefreshMillis.
+ * <p>
+ * Entries are stored as soon as a tracker is built, a sync aborted by the caller resumes with the remaining trackers.
+ */
+public class WESSampleDataStore {
+    private static Log log = LogFactory.getLog(WESSampleDataStore.class);
+
+    private final long fullRefreshMillis;
+    // DMPSampleTracker record ID -> rows
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong rebuilt = new AtomicLong();
+    private final AtomicLong changedRecords = new AtomicLong();
+
+    public WESSampleDataStore(long fullRefreshMillis) {
+        this.fullRefreshMillis = fullRefreshMillis;
+        log.info(String.format("Keeping WES sample tracker rows, rebuilt after %dms.", fullRefreshMillis));
+    }
+
+    /**
+     * LIMS records modified since the trackers were last checked.
+     */
+    public static class Changes {
+        public static final Changes NONE = new Changes(Collections.emptySet(), Collections.emptySet());
+
+        private final Set<Long> recordIds;
+        private final Set<String> userSampleIds;
+
+        /**
+         * @param recordIds     modified records and the parents of modified records, a new child changes its parent
+         * @param userSampleIds UserSampleID of the modified SampleCMOInfoRecords
+         */
+        public Changes(Set<Long> recordIds, Set<String> userSampleIds) {
+            this.recordIds = recordIds;
+            this.userSampleIds = userSampleIds;
+        }
+    }
+
+    /**
+     * Returns the oldest time the cached trackers among @trackerRecordIds were checked, the watermark changes must be
+     * queried from, or -1 when none of them is cached.
+     */
+    public long getWatermark(Collection<Long> trackerRecordIds) {
+        long watermark = -1;
+        for (Long trackerRecordId : trackerRecordIds) {
+            Entry entry = entries.get(trackerRecordId);
+            if (entry != null && (watermark < 0 || entry.checkedAt < watermark))
+                watermark = entry.checkedAt;
+        }
+        return watermark;
+    }
+
+    /**
+     * Returns the stored rows of the tracker and marks them checked at @syncStart, or null when it must be rebuilt.
+     */
+    public List<WESSampleData> reuse(long trackerRecordId, int fingerprint, Changes changes, long syncStart) {
+        Entry entry = entries.get(trackerRecordId);
+        if (entry == null || entry.fingerprint != fingerprint || syncStart - entry.builtAt >= fullRefreshMillis ||
+                changes.userSampleIds.contains(entry.userSampleId) ||
+                !Collections.disjoint(entry.dependencies, changes.recordIds))
+            return null;
+        entry.checkedAt = syncStart;
+        reused.incrementAndGet();
+        return entry.rows;
+    }
+
+    public void put(long trackerRecordId, int fingerprint, String userSampleId, Set<Long> dependencies,
+                    List<WESSampleData> rows, long syncStart) {
+        entries.put(trackerRecordId, new Entry(fingerprint, userSampleId, dependencies, rows, syncStart));
+        rebuilt.incrementAndGet();
+    }
+
+    /**
+     * Drops the trackers with rows of a DMP sample, e.g. after its CVR metadata was refreshed.
+     */
+    public void invalidateDmpSample(String dmpSampleId) {
+        entries.values().removeIf(entry -> entry.rows.stream().anyMatch(row -> dmpSampleId.equals(row.getDmpSampleId())));
+    }
+
+    public void recordChanges(Changes changes) {
+        changedRecords.addAndGet(changes.recordIds.size());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trackers", entries.size());
+        stats.put("fullRefreshMillis", fullRefreshMillis);
+        stats.put("reused", reused.get());
+        stats.put("rebuilt", rebuilt.get());
+        stats.put("changedRecords", changedRecords.get());
+        return stats;
+    }
+
+    private static class Entry {
+        final int fingerprint;
+        final String userSampleId;
+        final Set<Long> dependencies;
+        final List<WESSampleData> rows;
+        final long builtAt;
+        volatile long checkedAt;
+
+        Entry(int fingerprint, String userSampleId, Set<Long> dependencies, List<WESSampleData> rows, long builtAt) {
+            this.fingerprint = fingerprint;
+            this.userSampleId = userSampleId;
+            this.dependencies = dependencies;
+            this.rows = rows;
+            this.builtAt = builtAt;
+            this.checkedAt = builtAt;
+        }
+    }
+}
@@ -6,26 +6,19 @@ import com.velox.api.datarecord.IoError;
 import com.velox.api.datarecord.NotFound;
 import com.velox.api.user.User;
 import com.velox.api.util.ServerException;
-import com.velox.sapioutils.client.standalone.VeloxConnection;
 import com.velox.sloan.cmo.recmodels.IlluminaSeqExperimentModel;
 import com.velox.sloan.cmo.recmodels.IndexBarcodeModel;
 import com.velox.sloan.cmo.recmodels.SampleModel;
 import com.velox.sloan.cmo.recmodels.SeqAnalysisSampleQCModel;
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.json.JSONObject;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.service.ngsstats.NgsStatsClient;
 import org.mskcc.limsrest.util.BasicMail;
 import static org.mskcc.limsrest.util.Utils.*;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.rmi.RemoteException;
 import java.util.*;
 
@@ -40,28 +33,32 @@ public class UpdateLimsSampleLevelSequencingQcTask {
     private final String CONTROL_IDENTIFIER = "CTRL";
 
     DataRecordManager dataRecordManager;
-    String appPropertyFile = "/app.properties";
     String inital_qc_status = "Under-Review";
     private ConnectionLIMS conn;
+    private NgsStatsClient ngsStats;
     User user;
 
     private String runId;
 
-    public UpdateLimsSampleLevelSequencingQcTask(String runId, ConnectionLIMS conn) {
+    public UpdateLimsSampleLevelSequencingQcTask(String runId, ConnectionLIMS conn, NgsStatsClient ngsStats) {
         this.runId = runId;
         this.conn = conn;
+        this.ngsStats = ngsStats;
     }
 
     public Map<String, String> execute() {
-        VeloxConnection vConn = conn.getConnection();
-        user = vConn.getUser();
-        dataRecordManager = vConn.getDataRecordManager();
-        user = conn.getConnection().getUser();
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            user = lease.getUser();
+            dataRecordManager = lease.getDataRecordManager();
+            return updateSequencingQc();
+        }
+    }
 
+    private Map<String, String> updateSequencingQc() {
         //get stats from ngs-stats db.
         JSONObject data = getStatsFromDb();
         if (data.keySet().size() == 0) {
-            log.error(String.format("Found no NGS-STATS for run with run id %s using url %s", runId, getStatsUrl()));
+            log.error(String.format("Found no NGS-STATS for run with run id %s using url %s", runId, ngsStats.getRunStatsUrl(runId)));
         }
         //get all the Library samples that are present on the run
         List<DataRecord> relatedLibrarySamples = getRelatedLibrarySamples(runId);
@@ -73,6 +70,8 @@ public class UpdateLimsSampleLevelSequencingQcTask {
             Map<String, Object> qcDataVals = getQcValues(data.getJSONObject(key));
             String sampleName = String.valueOf(qcDataVals.get("OtherSampleId"));
             String sampleId = String.valueOf(qcDataVals.get("SampleId"));
+            // the run may add fastqs for the sample
+            ngsStats.invalidateIgoId(sampleId);
             // first find the library sample that is parent of Pool Sample that went on Sequencer.
             DataRecord librarySample = getLibrarySample(relatedLibrarySamples, sampleId);
             if (librarySample == null) {
@@ -144,53 +143,17 @@ public class UpdateLimsSampleLevelSequencingQcTask {
     }
 
     /**
-     * Method to get url to get stats from run-stats db.
-     *
-     * @return
-     */
-    private String getStatsUrl() {
-        Properties properties = new Properties();
-        String delphiRestUrl;
-        try {
-            properties.load(new FileReader(getResourceFile(appPropertyFile).replaceAll("%23", "#")));
-            delphiRestUrl = properties.getProperty("delphiRestUrl");
-        } catch (IOException e) {
-            log.error(String.format("Error while parsing properties file:\n%s,%s", ExceptionUtils.getRootCauseMessage(e), ExceptionUtils.getStackTrace(e)));
-            return null;
-        }
-        return StringUtils.join(delphiRestUrl, "ngs-stats/picardstats/run/", this.runId);
-    }
-
-    /**
-     * Method to get path to property file.
-     * @param propertyFile
-     * @return
-     */
-    private String getResourceFile(String propertyFile) {
-        return UpdateLimsSampleLevelSequencingQcTask.class.getResource(propertyFile).getPath();
-    }
-
-    /**
-     * get run Stats from ngs-stats database.
+     * get run Stats from ngs-stats database. Cached ngs-stats responses for the run are dropped first since the run is
+     * being ingested.
      *
      * @return
      */
     private JSONObject getStatsFromDb() {
-        HttpURLConnection con;
-        String url = getStatsUrl();
-        StringBuilder response = new StringBuilder();
+        String url = ngsStats.getRunStatsUrl(runId);
         try {
-            assert url != null;
-            con = (HttpURLConnection) new URL(url).openConnection();
-            con.setRequestMethod("GET");
-            BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-            in.close();
-            con.disconnect();
-            return new JSONObject(response.toString());
+            ngsStats.invalidateRun(runId);
+            String response = ngsStats.getRunStats(runId);
+            return response == null ? new JSONObject() : new JSONObject(response);
         } catch (Exception e) {
             log.info(String.format("Error while querying ngs-stats endpoint using url %s.\n%s:%s", url, ExceptionUtils.getMessage(e), ExceptionUtils.getStackTrace(e)));
             return new JSONObject();
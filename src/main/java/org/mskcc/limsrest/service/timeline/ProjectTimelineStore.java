@@ -0,0 +1,313 @@
+package org.mskcc.limsrest.service.timeline;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * On-disk store of the timeline events of every request asked for by /getTimeline, one event per Sample and Plate
+ * record of the request, so a timeline call doesn't walk all descendants of long running projects again.
+ * <p>
+ * A request is materialized from its descendants the first time it's asked for. Later calls only query the samples
+ * with "DateModified > watermark" that either carry the request ID or are known descendants of the request, e.g. pools
+ * with another RequestId, plus the new child samples of those, and replace their events. Status changes made through
+ * the LIMS or this service all bump DateModified. Samples deleted or moved to another request, and new descendants
+ * under a sample that was not modified, only show up once the request is rebuilt from its descendants after its file
+ * is older than fullRefreshMillis. Each request is locked on its own so building a large project doesn't hold up
+ * timelines of other requests.
+ */
+public class ProjectTimelineStore {
+    private static Log log = LogFactory.getLog(ProjectTimelineStore.class);
+
+    public static final String SAMPLE_DATA_TYPE = "Sample";
+    public static final String PLATE_DATA_TYPE = "Plate";
+    // samples committed after a later modification was stored are still picked up
+    static final long WATERMARK_OVERLAP_MILLIS = 10 * 60 * 1000L;
+    // record IDs per "RecordId in (...)" query
+    static final int MAX_IDS_PER_QUERY = 1000;
+
+    private final File directory;
+    private final long fullRefreshMillis;
+    // timeline file name -> lock of its request
+    private final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
+
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong changedRecords = new AtomicLong();
+
+    public ProjectTimelineStore(File directory, long fullRefreshMillis) throws IOException {
+        this.directory = directory;
+        this.fullRefreshMillis = fullRefreshMillis;
+        Files.createDirectories(directory.toPath());
+        log.info(String.format("Storing project timelines in %s, rebuilt after %dms.", directory, fullRefreshMillis));
+    }
+
+    /**
+     * Returns the events of the samples and plates of the request, brought up to date with the LIMS.
+     */
+    public List<Event> getEvents(DataRecord request, String requestId, DataRecordManager drm, User user)
+            throws Exception {
+        synchronized (locks.computeIfAbsent(file(requestId).getName(), k -> new Object())) {
+            return getEventsLocked(request, requestId, drm, user);
+        }
+    }
+
+    private List<Event> getEventsLocked(DataRecord request, String requestId, DataRecordManager drm, User user)
+            throws Exception {
+        Timeline timeline = read(requestId);
+        if (timeline == null || System.currentTimeMillis() - timeline.builtAt >= fullRefreshMillis) {
+            timeline = new Timeline(System.currentTimeMillis(), 0);
+            List<DataRecord> samples = request.getDescendantsOfType(SAMPLE_DATA_TYPE, user);
+            List<DataRecord> plates = request.getDescendantsOfType(PLATE_DATA_TYPE, user);
+            apply(timeline, requestId, samples, plates, drm, user);
+            builds.incrementAndGet();
+            write(requestId, timeline);
+        } else {
+            List<DataRecord> samples = querySamplesModifiedSince(timeline, requestId, drm, user);
+            if (!samples.isEmpty()) {
+                Set<DataRecord> plates = new LinkedHashSet<>();
+                for (List<DataRecord> parents : drm.getParentsOfType(samples, PLATE_DATA_TYPE, user))
+                    plates.addAll(parents);
+                apply(timeline, requestId, samples, new ArrayList<>(plates), drm, user);
+                write(requestId, timeline);
+            }
+            refreshes.incrementAndGet();
+        }
+        return new ArrayList<>(timeline.events.values());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        String[] files = directory.list();
+        stats.put("requests", files == null ? 0 : files.length);
+        stats.put("fullRefreshMillis", fullRefreshMillis);
+        stats.put("builds", builds.get());
+        stats.put("refreshes", refreshes.get());
+        stats.put("changedRecords", changedRecords.get());
+        return stats;
+    }
+
+    private List<DataRecord> querySamplesModifiedSince(Timeline timeline, String requestId, DataRecordManager drm,
+                                                      User user) throws Exception {
+        long since = timeline.watermark - WATERMARK_OVERLAP_MILLIS;
+        Map<Long, DataRecord> samples = new LinkedHashMap<>();
+        for (DataRecord sample : queryRequestSamplesModifiedSince(since, requestId, drm, user))
+            samples.put(sample.getRecordId(), sample);
+
+        // descendants whose RequestId doesn't name the request
+        List<Long> sampleIds = new ArrayList<>(timeline.sampleIds);
+        for (int from = 0; from < sampleIds.size(); from += MAX_IDS_PER_QUERY) {
+            StringJoiner ids = new StringJoiner(",", "RecordId in (", ") AND DateModified > " + since);
+            sampleIds.subList(from, Math.min(sampleIds.size(), from + MAX_IDS_PER_QUERY))
+                    .forEach(id -> ids.add(id.toString()));
+            for (DataRecord sample : drm.queryDataRecords(SAMPLE_DATA_TYPE, ids.toString(), user))
+                samples.putIfAbsent(sample.getRecordId(), sample);
+        }
+
+        // aliquots created by the step that modified their parent
+        if (!samples.isEmpty()) {
+            for (List<DataRecord> children : drm.getChildrenOfType(new ArrayList<>(samples.values()),
+                    SAMPLE_DATA_TYPE, user)) {
+                for (DataRecord child : children) {
+                    if (!timeline.sampleIds.contains(child.getRecordId()))
+                        samples.putIfAbsent(child.getRecordId(), child);
+                }
+            }
+        }
+        return new ArrayList<>(samples.values());
+    }
+
+    // the pools of a request have all their request IDs, e.g. "06000_B,06000_C"
+    private List<DataRecord> queryRequestSamplesModifiedSince(long since, String requestId, DataRecordManager drm,
+                                                             User user) throws Exception {
+        List<DataRecord> candidates = drm.queryDataRecords(SAMPLE_DATA_TYPE, "RequestId like '%" + requestId +
+                "%' AND DateModified > " + since, user);
+        if (candidates.isEmpty())
+            return candidates;
+        List<DataRecord> samples = new ArrayList<>();
+        List<Map<String, Object>> fields = drm.getFieldsForRecords(candidates, user);
+        for (int i = 0; i < candidates.size(); i++) {
+            Object sampleRequestIds = fields.get(i).get("RequestId");
+            if (sampleRequestIds == null)
+                continue;
+            for (String id : sampleRequestIds.toString().split(",")) {
+                if (id.trim().equals(requestId)) {
+                    samples.add(candidates.get(i));
+                    break;
+                }
+            }
+        }
+        return samples;
+    }
+
+    private void apply(Timeline timeline, String requestId, List<DataRecord> samples, List<DataRecord> plates,
+                       DataRecordManager drm, User user) throws Exception {
+        if (!samples.isEmpty()) {
+            List<Map<String, Object>> fields = drm.getFieldsForRecords(samples, user);
+            for (int i = 0; i < samples.size(); i++) {
+                Map<String, Object> sampleFields = fields.get(i);
+                Object dateModified = sampleFields.get("DateModified");
+                if (dateModified instanceof Long)
+                    timeline.watermark = Math.max(timeline.watermark, (Long) dateModified);
+                timeline.sampleIds.add(samples.get(i).getRecordId());
+                timeline.put(samples.get(i).getRecordId(), toEvent(sampleFields, "ExemplarSampleStatus", requestId,
+                        false));
+            }
+        }
+        if (!plates.isEmpty()) {
+            List<Map<String, Object>> fields = drm.getFieldsForRecords(plates, user);
+            for (int i = 0; i < plates.size(); i++)
+                timeline.put(plates.get(i).getRecordId(), toEvent(fields.get(i), "ExemplarPlateStatus", requestId,
+                        true));
+        }
+        changedRecords.addAndGet(samples.size() + plates.size());
+    }
+
+    /**
+     * Sample events end when the sample was last modified once their status is "Completed - ...", received samples
+     * end when they start and all others are still open. Plates do not have a date modified.
+     *
+     * @return null for records without a status
+     */
+    static Event toEvent(Map<String, Object> fields, String statusField, String defaultRequestId, boolean plate) {
+        Object status = fields.get(statusField);
+        Object dateCreated = fields.get("DateCreated");
+        if (status == null || !(dateCreated instanceof Long))
+            return null;
+        long start = (Long) dateCreated;
+        long end = start;
+        if (!plate) {
+            Object dateModified = fields.get("DateModified");
+            end = dateModified instanceof Long ? (Long) dateModified : 0;
+        }
+        String[] statusElements = status.toString().split(" - ");
+        if (statusElements[0].equals("Received")) {
+            end = start;
+        } else if (!statusElements[0].equals("Completed")) {
+            end = 0;
+        }
+        Object requestId = fields.get("RequestId");
+        return new Event(start, end, requestId == null ? defaultRequestId : requestId.toString(),
+                statusElements.length > 1 ? statusElements[1] : status.toString());
+    }
+
+    private File file(String requestId) {
+        return new File(directory, "timeline-" + requestId.replaceAll("[^A-Za-z0-9_-]", "_") + ".tsv");
+    }
+
+    /**
+     * File format: "builtAt\twatermark\tsampleRecordIds" followed by one "recordId\tstart\tend\trequestId\ttaskName"
+     * line per event, the sample record IDs of the request are comma separated.
+     */
+    private Timeline read(String requestId) throws IOException {
+        File file = file(requestId);
+        if (!file.exists())
+            return null;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String[] header = reader.readLine().split("\t", -1);
+            Timeline timeline = new Timeline(Long.parseLong(header[0]), Long.parseLong(header[1]));
+            for (String sampleId : header[2].split(",")) {
+                if (!sampleId.isEmpty())
+                    timeline.sampleIds.add(Long.parseLong(sampleId));
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] columns = line.split("\t", 5);
+                timeline.events.put(Long.parseLong(columns[0]), new Event(Long.parseLong(columns[1]),
+                        Long.parseLong(columns[2]), columns[3], columns[4]));
+            }
+            return timeline;
+        } catch (RuntimeException e) {
+            log.warn("Rebuilding unreadable timeline " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(String requestId, Timeline timeline) throws IOException {
+        Path tmp = Files.createTempFile(directory.toPath(), "timeline-", ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            StringJoiner sampleIds = new StringJoiner(",");
+            timeline.sampleIds.forEach(id -> sampleIds.add(id.toString()));
+            writer.write(timeline.builtAt + "\t" + timeline.watermark + "\t" + sampleIds + "\n");
+            for (Map.Entry<Long, Event> e : timeline.events.entrySet()) {
+                Event event = e.getValue();
+                writer.write(e.getKey() + "\t" + event.start + "\t" + event.end + "\t" + clean(event.requestId) +
+                        "\t" + clean(event.taskName) + "\n");
+            }
+        }
+        Files.move(tmp, file(requestId).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String clean(String value) {
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static class Timeline {
+        final long builtAt;
+        long watermark;
+        // record ID -> event
+        final Map<Long, Event> events = new TreeMap<>();
+        // record IDs of all samples of the request, also those without an event
+        final Set<Long> sampleIds = new TreeSet<>();
+
+        Timeline(long builtAt, long watermark) {
+            this.builtAt = builtAt;
+            this.watermark = watermark;
+        }
+
+        void put(long recordId, Event event) {
+            if (event == null)
+                events.remove(recordId);
+            else
+                events.put(recordId, event);
+        }
+    }
+
+    public static class Event {
+        private final long start;
+        private final long end;
+        private final String requestId;
+        private final String taskName;
+
+        public Event(long start, long end, String requestId, String taskName) {
+            this.start = start;
+            this.end = end;
+            this.requestId = requestId;
+            this.taskName = taskName;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * 0 while the task is not completed
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        public String getRequestId() {
+            return requestId;
+        }
+
+        public String getTaskName() {
+            return taskName;
+        }
+    }
+}
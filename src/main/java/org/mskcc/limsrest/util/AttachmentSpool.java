@@ -0,0 +1,169 @@
+package org.mskcc.limsrest.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded on-disk spool of LIMS attachments so /getAttachmentFile can stream them from a file instead of holding
+ * them in the heap, and so attachments that are requested often don't have to be read from the LIMS again.
+ * <p>
+ * The least recently used files are deleted once the spool holds more than maxBytes. Entries returned by get and put
+ * are pinned until the caller releases them, pinned entries are never evicted and files replaced or removed while
+ * pinned are only deleted on their last release, so a response streaming a file can't lose it half way. The spool
+ * directory is emptied on startup since the files left by a previous run aren't indexed.
+ */
+public class AttachmentSpool {
+    private static Log log = LogFactory.getLog(AttachmentSpool.class);
+
+    private final File directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    public AttachmentSpool(File directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory.toPath());
+        File[] leftOver = directory.listFiles();
+        if (leftOver != null) {
+            for (File f : leftOver) {
+                if (!f.delete())
+                    log.warn("Failed to delete spooled attachment " + f);
+            }
+        }
+        log.info(String.format("Spooling attachments to %s, up to %d bytes.", directory, maxBytes));
+    }
+
+    /**
+     * Returns the spooled attachment with this record ID pinned, or null if it has to be read from the LIMS.
+     * The caller must {@link #release} it once done reading the file.
+     */
+    public synchronized Entry get(String recordId) {
+        Entry entry = entries.get(recordId);
+        if (entry != null && entry.file.exists()) {
+            hits.incrementAndGet();
+            entry.pins++;
+            return entry;
+        }
+        if (entry != null)
+            remove(recordId);
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Writes the attachment to the spool and returns it pinned, the caller must {@link #release} it once done reading
+     * the file. The caller should drop its reference to @data right after so only the file is left.
+     */
+    public Entry put(String recordId, String fileName, byte[] data) throws IOException {
+        // a new file per put, a previous version of the attachment may still be streamed
+        Path file = Files.createTempFile(directory.toPath(), "attachment-" + recordId + "-", "");
+        Files.write(file, data);
+
+        synchronized (this) {
+            remove(recordId);
+            Entry entry = new Entry(fileName, file.toFile(), data.length);
+            entry.pins++;
+            entries.put(recordId, entry);
+            totalBytes += entry.length;
+            evict();
+            return entry;
+        }
+    }
+
+    /**
+     * Unpins an entry returned by get or put, deleting its file if it was replaced or removed in the meantime.
+     */
+    public synchronized void release(Entry entry) {
+        if (entry.pins <= 0)
+            throw new IllegalStateException("Spooled attachment " + entry.file + " is not pinned");
+        entry.pins--;
+        if (entry.pins == 0) {
+            if (entry.removed)
+                delete(entry);
+            else
+                evict();
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("files", entries.size());
+        stats.put("bytes", totalBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evicted", evicted.get());
+        stats.put("pinned", entries.values().stream().filter(e -> e.pins > 0).count());
+        return stats;
+    }
+
+    // only evicts unpinned entries, the spool may stay over maxBytes until the pinned ones are released
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next();
+            if (eldest.pins > 0)
+                continue;
+            it.remove();
+            totalBytes -= eldest.length;
+            evicted.incrementAndGet();
+            delete(eldest);
+        }
+    }
+
+    private void remove(String recordId) {
+        Entry entry = entries.remove(recordId);
+        if (entry != null) {
+            totalBytes -= entry.length;
+            entry.removed = true;
+            if (entry.pins == 0)
+                delete(entry);
+        }
+    }
+
+    private static void delete(Entry entry) {
+        if (entry.file.exists() && !entry.file.delete())
+            log.warn("Failed to delete spooled attachment " + entry.file);
+    }
+
+    public static class Entry {
+        private final String fileName;
+        private final File file;
+        private final long length;
+        // guarded by the spool
+        private int pins = 0;
+        private boolean removed = false;
+
+        Entry(String fileName, File file, long length) {
+            this.fileName = fileName;
+            this.file = file;
+            this.length = length;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getLength() {
+            return length;
+        }
+    }
+}
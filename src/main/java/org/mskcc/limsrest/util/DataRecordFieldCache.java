@@ -0,0 +1,194 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of the fields of records found by a single key field, e.g. the Request with RequestId '06302_A'.
+ * <p>
+ * Entries are read-only copies of the field maps, expire after ttlMillis and the least recently used entries are
+ * dropped once maxEntries is reached. Tasks that write to a cached data type must invalidate it so readers never see
+ * their own stale writes.
+ */
+public class DataRecordFieldCache {
+    private static Log log = LogFactory.getLog(DataRecordFieldCache.class);
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    // bumped by every invalidation so a load that overlaps a write is not cached
+    private long generation = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public DataRecordFieldCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > DataRecordFieldCache.this.maxEntries) {
+                    evicted.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the fields of all records of dataType where keyField = value, querying the LIMS on a miss.
+     * The returned list and maps are read-only.
+     */
+    public List<Map<String, Object>> getFields(String dataType, String keyField, String value,
+                                               DataRecordManager dataRecordManager, User user) throws Exception {
+        String key = key(dataType, keyField, value);
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (System.currentTimeMillis() - entry.loadedAt < ttlMillis) {
+                    hits.incrementAndGet();
+                    return entry.fields;
+                }
+                entries.remove(key);
+                expired.incrementAndGet();
+            }
+            loadGeneration = generation;
+        }
+        misses.incrementAndGet();
+
+        List<DataRecord> records = dataRecordManager.queryDataRecords(dataType, keyField + " = '" + value + "'", user);
+        List<Map<String, Object>> fields = new ArrayList<>(records.size());
+        if (!records.isEmpty()) {
+            for (Map<String, Object> recordFields : dataRecordManager.getFieldsForRecords(records, user)) {
+                fields.add(Collections.unmodifiableMap(new HashMap<>(recordFields)));
+            }
+        }
+        fields = Collections.unmodifiableList(fields);
+
+        synchronized (this) {
+            if (loadGeneration == generation && maxEntries > 0)
+                entries.put(key, new Entry(fields, System.currentTimeMillis()));
+        }
+        return fields;
+    }
+
+    /**
+     * Returns the fields of the records of dataType for each of @values of keyField, in the order of @values, querying
+     * the LIMS once with an IN clause for all values that miss.
+     */
+    public Map<String, List<Map<String, Object>>> getFields(String dataType, String keyField, Collection<String> values,
+                                                            DataRecordManager dataRecordManager, User user)
+            throws Exception {
+        Map<String, List<Map<String, Object>>> result = new LinkedHashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        long loadGeneration;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (String value : values) {
+                String key = key(dataType, keyField, value);
+                Entry entry = entries.get(key);
+                if (entry != null && now - entry.loadedAt < ttlMillis) {
+                    hits.incrementAndGet();
+                    result.put(value, entry.fields);
+                    continue;
+                }
+                if (entry != null) {
+                    entries.remove(key);
+                    expired.incrementAndGet();
+                }
+                result.put(value, null);
+                missing.add(value);
+            }
+            loadGeneration = generation;
+        }
+        if (missing.isEmpty())
+            return result;
+        misses.addAndGet(missing.size());
+
+        StringJoiner in = new StringJoiner("','", keyField + " IN ('", "')");
+        missing.forEach(in::add);
+        List<DataRecord> records = dataRecordManager.queryDataRecords(dataType, in.toString(), user);
+        // the LIMS matches key values case insensitively
+        Map<String, List<Map<String, Object>>> loaded = new HashMap<>();
+        if (!records.isEmpty()) {
+            for (Map<String, Object> recordFields : dataRecordManager.getFieldsForRecords(records, user)) {
+                String value = String.valueOf(recordFields.get(keyField)).toLowerCase();
+                loaded.computeIfAbsent(value, v -> new ArrayList<>())
+                        .add(Collections.unmodifiableMap(new HashMap<>(recordFields)));
+            }
+        }
+
+        long loadedAt = System.currentTimeMillis();
+        synchronized (this) {
+            for (String value : missing) {
+                List<Map<String, Object>> fields = Collections.unmodifiableList(
+                        loaded.getOrDefault(value.toLowerCase(), Collections.emptyList()));
+                result.put(value, fields);
+                if (loadGeneration == generation && maxEntries > 0)
+                    entries.put(key(dataType, keyField, value), new Entry(fields, loadedAt));
+            }
+        }
+        return result;
+    }
+
+    public synchronized void invalidate(String dataType, String keyField, String value) {
+        generation++;
+        invalidations.incrementAndGet();
+        entries.remove(key(dataType, keyField, value));
+    }
+
+    /**
+     * Drops every entry of a data type, for writes that touch records by something other than their key field.
+     */
+    public synchronized void invalidateAll(String dataType) {
+        generation++;
+        invalidations.incrementAndGet();
+        String prefix = dataType + "|";
+        entries.keySet().removeIf(k -> k.startsWith(prefix));
+        log.info("Invalidated cached " + dataType + " records.");
+    }
+
+    public Map<String, Object> getStats() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("entries", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlMillis", ttlMillis);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("expired", expired.get());
+        stats.put("evicted", evicted.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private static String key(String dataType, String keyField, String value) {
+        return dataType + "|" + keyField + "|" + value;
+    }
+
+    private static class Entry {
+        final List<Map<String, Object>> fields;
+        final long loadedAt;
+
+        Entry(List<Map<String, Object>> fields, long loadedAt) {
+            this.fields = fields;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.mskcc.limsrest.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Declarative copy of LIMS record fields to the setters of a response object, e.g.
+ * <pre>
+ *     static final FieldMapping&lt;RequestDetailed&gt; MAPPING = new FieldMapping&lt;RequestDetailed&gt;()
+ *             .string("RequestId", RequestDetailed::setRequestId)
+ *             .longValue("ReceivedDate", RequestDetailed::setReceivedDate);
+ * </pre>
+ * A mapping is built once and applied to the field maps of any number of records. Null fields are skipped so the
+ * setter keeps its default and setters that parse their argument never see null. A field holding another type than
+ * mapped throws a ClassCastException.
+ */
+public class FieldMapping<T> {
+    private final List<Entry<T>> entries = new ArrayList<>();
+
+    @FunctionalInterface
+    public interface LongSetter<T> {
+        void set(T target, long value);
+    }
+
+    @FunctionalInterface
+    public interface BooleanSetter<T> {
+        void set(T target, boolean value);
+    }
+
+    public FieldMapping<T> string(String field, BiConsumer<T, String> setter) {
+        return add(new Entry<>(Type.STRING, field, setter, null, null, null));
+    }
+
+    public FieldMapping<T> longValue(String field, LongSetter<T> setter) {
+        return add(new Entry<>(Type.LONG, field, null, setter, null, null));
+    }
+
+    public FieldMapping<T> bool(String field, BooleanSetter<T> setter) {
+        return add(new Entry<>(Type.BOOLEAN, field, null, null, setter, null));
+    }
+
+    /**
+     * For values built from several fields, @setter gets the field map of the record.
+     */
+    public FieldMapping<T> fields(BiConsumer<T, Map<String, Object>> setter) {
+        return add(new Entry<>(Type.FIELDS, null, null, null, null, setter));
+    }
+
+    public void apply(T target, Map<String, Object> fields) {
+        for (Entry<T> entry : entries) {
+            switch (entry.type) {
+                case STRING:
+                    Object stringValue = fields.get(entry.field);
+                    if (stringValue != null)
+                        entry.stringSetter.accept(target, (String) stringValue);
+                    break;
+                case LONG:
+                    Object longValue = fields.get(entry.field);
+                    if (longValue != null)
+                        entry.longSetter.set(target, (Long) longValue);
+                    break;
+                case BOOLEAN:
+                    Object booleanValue = fields.get(entry.field);
+                    if (booleanValue != null)
+                        entry.booleanSetter.set(target, (Boolean) booleanValue);
+                    break;
+                case FIELDS:
+                    entry.fieldsSetter.accept(target, fields);
+                    break;
+            }
+        }
+    }
+
+    private FieldMapping<T> add(Entry<T> entry) {
+        entries.add(entry);
+        return this;
+    }
+
+    private enum Type {
+        STRING, LONG, BOOLEAN, FIELDS
+    }
+
+    private static class Entry<T> {
+        final Type type;
+        final String field;
+        final BiConsumer<T, String> stringSetter;
+        final LongSetter<T> longSetter;
+        final BooleanSetter<T> booleanSetter;
+        final BiConsumer<T, Map<String, Object>> fieldsSetter;
+
+        Entry(Type type, String field, BiConsumer<T, String> stringSetter, LongSetter<T> longSetter,
+              BooleanSetter<T> booleanSetter, BiConsumer<T, Map<String, Object>> fieldsSetter) {
+            this.type = type;
+            this.field = field;
+            this.stringSetter = stringSetter;
+            this.longSetter = longSetter;
+            this.booleanSetter = booleanSetter;
+            this.fieldsSetter = fieldsSetter;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.mskcc.limsrest.util;
 
+import java.util.Objects;
+
 /**
  * Lims Stage for a ProjectSample composed of a Sample DataRecord's "ExemplarSampleType" & "ExemplarSampleStatus"
  */
@@ -32,4 +34,17 @@ public class LimsStage {
         String status = getStatusString();
         return String.format("%s - %s", this.stageName, status);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LimsStage limsStage = (LimsStage) o;
+        return Objects.equals(stageName, limsStage.stageName) && Objects.equals(isComplete, limsStage.isComplete);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(stageName, isComplete);
+    }
 }
@@ -0,0 +1,313 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import com.velox.sloan.cmo.recmodels.SampleModel;
+import com.velox.sloan.cmo.recmodels.SeqAnalysisSampleQCModel;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.service.assignedprocess.QcStatus;
+
+import java.util.*;
+
+import static org.mskcc.limsrest.util.StatusTrackerConfig.*;
+import static org.mskcc.limsrest.util.Utils.getSampleTypeOrder;
+import static org.mskcc.limsrest.util.Utils.isCompleteStatus;
+
+/**
+ * Resolves the most advanced LIMS stage of samples from their descendant Sample trees, for the lifetime of one task.
+ * <p>
+ * The trees are loaded breadth first, the fields, Sample children and SeqAnalysisSampleQC children of all samples at
+ * one depth with one LIMS call each, and only descend into samples of the requests being resolved. Stages are computed
+ * from memory and kept, samples sharing aliquots or looked up again are not walked twice. Not thread safe.
+ */
+public class SampleStageResolver {
+    private static Log log = LogFactory.getLog(SampleStageResolver.class);
+
+    private static final String FAILED_STATUS_TEXT = "failed";
+
+    private final ConnectionLIMS conn;
+    private final DataRecordManager drm;
+    private final User user;
+
+    // Sample record ID -> loaded sample
+    private final Map<Long, Node> nodes = new HashMap<>();
+    // lower case request IDs whose samples have their children loaded
+    private final Set<String> requestIds = new HashSet<>();
+    // "<record ID>:<request ID>" -> most advanced status
+    private final Map<String, String> statuses = new HashMap<>();
+    private final Map<String, String> stages = new HashMap<>();
+
+    public SampleStageResolver(ConnectionLIMS conn, DataRecordManager drm, User user) {
+        this.conn = conn;
+        this.drm = drm;
+        this.user = user;
+    }
+
+    /**
+     * Loads the trees of @samples ahead of their lookups, one call per tree depth for all of them.
+     */
+    public void load(Collection<DataRecord> samples) {
+        load(samples, null);
+    }
+
+    /**
+     * Returns the Lims Stage corresponding to the most advanced status of the sample and its descendants in @requestId,
+     * or the status itself if it is a failed one.
+     */
+    // TODO - how to handle "Ready For" <- should be the one that proceeds it (eventually)
+    public String getMostAdvancedLimsStage(DataRecord sample, String requestId) {
+        String key = key(sample, requestId);
+        String stage = stages.get(key);
+        if (stage == null) {
+            String status = getMostAdvancedSampleStatus(sample, requestId);
+            if (status.toLowerCase().contains(FAILED_STATUS_TEXT))
+                stage = status;
+            else
+                stage = getLimsStageFromStatus(conn, status).toString();
+            stages.put(key, stage);
+        }
+        return stage;
+    }
+
+    /**
+     * Returns the latest complete status among the sample and its descendants in @requestId, preferring the status of
+     * later sample types, or the sequencing analysis result once a sample was sequenced. Falls back to the status of
+     * the sample, "unknown" if the sample can't be read.
+     */
+    public String getMostAdvancedSampleStatus(DataRecord sample, String requestId) {
+        String key = key(sample, requestId);
+        String status = statuses.get(key);
+        if (status == null) {
+            Node node = nodes.get(sample.getRecordId());
+            if (node == null || !node.isLoaded() || !isLoadedRequest(requestId)) {
+                load(Collections.singletonList(sample), requestId);
+                node = nodes.get(sample.getRecordId());
+            }
+            status = node == null ? "unknown" : computeStatus(node, requestId);
+            statuses.put(key, status);
+        }
+        return status;
+    }
+
+    private String computeStatus(Node sample, String requestId) {
+        String sampleStatus = sample.status.isEmpty() ? STAGE_AWAITING_PROCESSING : sample.status;
+        int statusOrder = -1;
+        long recordId = 0;
+        Deque<Node> sampleStack = new ArrayDeque<>();
+        sampleStack.push(sample);
+        while (!sampleStack.isEmpty()) {
+            Node current = sampleStack.pop();
+            if (!current.isLoaded()) {
+                log.error(String.format("Error while getting status for sample '%s'.", sample.sampleId));
+                return "unknown";
+            }
+            if (isSequencingComplete(current)) {
+                List<Map<String, Object>> seqQcRecords = getDescendantQcRecords(current);
+                if (seqQcRecords.stream().anyMatch(qc -> hasQcStatus(qc, QcStatus.PASSED) && isIgoComplete(qc))) {
+                    // Return the Completed-Sequencing status, NOT the sample status as it could be unrelated to sequencing
+                    return String.format("%s%s", WORKFLOW_STATUS_COMPLETED, STAGE_SEQUENCING_ANALYSIS);
+                }
+                // Samples are sometimes failed without IgoComplete, e.g. when there is no data to deliver
+                if (seqQcRecords.stream().anyMatch(qc -> hasQcStatus(qc, QcStatus.FAILED))) {
+                    return String.format("%s%s", WORKFLOW_STATUS_FAILED, STAGE_SEQUENCING_ANALYSIS);
+                }
+            }
+            int currentStatusOrder = getSampleTypeOrder(current.type.toLowerCase());
+            if (current.recordId > recordId && currentStatusOrder >= statusOrder && isCompleteStatus(current.status)) {
+                sampleStatus = current.status;
+                recordId = current.recordId;
+                statusOrder = currentStatusOrder;
+            }
+            for (Node child : current.children) {
+                if (requestId != null && requestId.equalsIgnoreCase(child.requestId))
+                    sampleStack.push(child);
+            }
+        }
+        return sampleStatus;
+    }
+
+    // the first SeqAnalysisSampleQC child is IGO complete or failed
+    private static boolean isSequencingComplete(Node sample) {
+        if (sample.qcRecords.isEmpty())
+            return false;
+        Map<String, Object> qc = sample.qcRecords.get(0);
+        return isIgoComplete(qc) || hasQcStatus(qc, QcStatus.FAILED);
+    }
+
+    // SeqAnalysisSampleQC records of the sample and its descendants in the sample's request
+    private List<Map<String, Object>> getDescendantQcRecords(Node sample) {
+        List<Map<String, Object>> records = new ArrayList<>();
+        Deque<Node> sampleStack = new ArrayDeque<>();
+        sampleStack.push(sample);
+        while (!sampleStack.isEmpty()) {
+            Node current = sampleStack.pop();
+            records.addAll(current.qcRecords);
+            for (Node child : current.children) {
+                if (child.isLoaded() && sample.requestId != null && sample.requestId.equals(child.requestId))
+                    sampleStack.push(child);
+            }
+        }
+        return records;
+    }
+
+    // See StatusTrackerConfig::isQcStatusIgoComplete
+    private static boolean isIgoComplete(Map<String, Object> qc) {
+        return Boolean.TRUE.equals(qc.get(SeqAnalysisSampleQCModel.PASSED_QC)) &&
+                QcStatus.PASSED.getText().equals(qc.get(SeqAnalysisSampleQCModel.SEQ_QCSTATUS));
+    }
+
+    private static boolean hasQcStatus(Map<String, Object> qc, QcStatus qcStatus) {
+        Object status = qc.get(SeqAnalysisSampleQCModel.SEQ_QCSTATUS);
+        return status != null && status.toString().equalsIgnoreCase(qcStatus.toString());
+    }
+
+    private boolean isLoadedRequest(String requestId) {
+        return requestId == null || requestIds.contains(requestId.toLowerCase());
+    }
+
+    /**
+     * Loads the fields of @samples and their descendants level by level. Children are loaded for @samples and the
+     * samples of the loaded requests, which are the requests of @samples and @requestId.
+     */
+    private void load(Collection<DataRecord> samples, String requestId) {
+        long start = System.currentTimeMillis();
+        if (requestId != null)
+            requestIds.add(requestId.toLowerCase());
+        List<DataRecord> records = new ArrayList<>(samples);
+        loadFields(records);
+        List<Node> level = new ArrayList<>();
+        for (DataRecord record : records) {
+            Node node = nodes.get(record.getRecordId());
+            if (node != null) {
+                level.add(node);
+                if (node.requestId != null)
+                    requestIds.add(node.requestId.toLowerCase());
+            }
+        }
+        int levels = 0;
+        boolean roots = true;
+        Set<Long> visited = new HashSet<>();
+        while (!level.isEmpty()) {
+            levels++;
+            List<Node> expand = new ArrayList<>();
+            List<Node> next = new ArrayList<>();
+            for (Node node : level) {
+                if (!visited.add(node.recordId))
+                    continue;
+                if (!roots && (node.requestId == null || !requestIds.contains(node.requestId.toLowerCase())))
+                    continue;
+                // trees loaded before are walked in memory for samples of requests loaded since
+                if (node.isLoaded())
+                    next.addAll(node.children);
+                else
+                    expand.add(node);
+            }
+            next.addAll(loadChildren(expand));
+            level = next;
+            roots = false;
+        }
+        log.info(String.format("Loaded sample trees of %d samples, %d levels, in %dms", samples.size(), levels,
+                System.currentTimeMillis() - start));
+    }
+
+    private void loadFields(List<DataRecord> records) {
+        List<DataRecord> missing = new ArrayList<>();
+        Set<Long> missingIds = new HashSet<>();
+        for (DataRecord record : records) {
+            if (!nodes.containsKey(record.getRecordId()) && missingIds.add(record.getRecordId()))
+                missing.add(record);
+        }
+        if (missing.isEmpty())
+            return;
+        try {
+            List<Map<String, Object>> fields = drm.getFieldsForRecords(missing, user);
+            for (int i = 0; i < missing.size(); i++) {
+                nodes.put(missing.get(i).getRecordId(), new Node(missing.get(i), fields.get(i)));
+            }
+        } catch (Exception e) {
+            log.error(String.format("Failed to load fields of %d samples: %s", missing.size(), e.getMessage()));
+        }
+    }
+
+    // returns the child samples of @samples
+    private List<Node> loadChildren(List<Node> samples) {
+        if (samples.isEmpty())
+            return Collections.emptyList();
+        List<DataRecord> records = new ArrayList<>();
+        for (Node sample : samples)
+            records.add(sample.record);
+        List<Node> next = new ArrayList<>();
+        try {
+            List<List<DataRecord>> children = drm.getChildrenOfType(records, SampleModel.DATA_TYPE_NAME, user);
+            List<List<DataRecord>> qcs = drm.getChildrenOfType(records, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, user);
+            List<DataRecord> allChildren = new ArrayList<>();
+            children.forEach(allChildren::addAll);
+            loadFields(allChildren);
+            List<DataRecord> allQcs = new ArrayList<>();
+            qcs.forEach(allQcs::addAll);
+            List<Map<String, Object>> qcFields = allQcs.isEmpty() ? Collections.emptyList() :
+                    drm.getFieldsForRecords(allQcs, user);
+
+            int qcIndex = 0;
+            for (int i = 0; i < samples.size(); i++) {
+                List<Node> childNodes = new ArrayList<>();
+                for (DataRecord child : children.get(i)) {
+                    Node childNode = nodes.get(child.getRecordId());
+                    if (childNode != null)
+                        childNodes.add(childNode);
+                }
+                int qcCount = qcs.get(i).size();
+                samples.get(i).setChildren(childNodes, new ArrayList<>(qcFields.subList(qcIndex, qcIndex + qcCount)));
+                qcIndex += qcCount;
+                next.addAll(childNodes);
+            }
+        } catch (Exception e) {
+            log.error(String.format("Failed to load children of %d samples: %s", samples.size(), e.getMessage()));
+            return Collections.emptyList();
+        }
+        return next;
+    }
+
+    private static String key(DataRecord sample, String requestId) {
+        return sample.getRecordId() + ":" + requestId;
+    }
+
+    private static String string(Map<String, Object> fields, String field) {
+        Object value = fields.get(field);
+        return value == null ? "" : value.toString();
+    }
+
+    private static class Node {
+        final DataRecord record;
+        final long recordId;
+        final String sampleId;
+        final String requestId;
+        final String type;
+        final String status;
+        // null until loaded
+        List<Node> children;
+        List<Map<String, Object>> qcRecords;
+
+        Node(DataRecord record, Map<String, Object> fields) {
+            this.record = record;
+            this.recordId = record.getRecordId();
+            this.sampleId = string(fields, SampleModel.SAMPLE_ID);
+            Object requestId = fields.get(SampleModel.REQUEST_ID);
+            this.requestId = requestId == null ? null : requestId.toString();
+            this.type = string(fields, SampleModel.EXEMPLAR_SAMPLE_TYPE);
+            this.status = string(fields, SampleModel.EXEMPLAR_SAMPLE_STATUS);
+        }
+
+        boolean isLoaded() {
+            return children != null;
+        }
+
+        void setChildren(List<Node> children, List<Map<String, Object>> qcRecords) {
+            this.children = children;
+            this.qcRecords = qcRecords;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.mskcc.limsrest.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces identical reads running at the same time, e.g. every dashboard refreshing /getRequestTracking of a request
+ * just delivered. The first caller of a key runs the load, callers arriving while it runs wait for and share its
+ * result instead of walking the LIMS again. A successful result is also handed out for reuseMillis after it completed.
+ * <p>
+ * Results are shared between callers, so they must not be modified after they are returned.
+ */
+public class SingleFlight {
+    private final long reuseMillis;
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    public SingleFlight(long reuseMillis) {
+        this.reuseMillis = reuseMillis;
+    }
+
+    @FunctionalInterface
+    public interface Loader<T, E extends Exception> {
+        T load() throws E;
+    }
+
+    /**
+     * Key of an endpoint call, parameters are trimmed and kept in order since the responses follow it.
+     */
+    public static String key(String endpoint, String... params) {
+        StringJoiner key = new StringJoiner("|", endpoint + "?", "");
+        for (String param : params)
+            key.add(param == null ? "" : param.trim());
+        return key.toString();
+    }
+
+    /**
+     * Returns the result of the load of @key in flight or completed within reuseMillis, otherwise runs @loader on
+     * the calling thread. Exceptions of the load are thrown to every caller sharing it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T, E extends Exception> T execute(String key, Loader<T, E> loader) throws E {
+        long now = System.currentTimeMillis();
+        Flight mine = new Flight();
+        Flight flight = flights.compute(key, (k, current) -> current == null || current.isExpired(now) ? mine : current);
+        if (flight != mine) {
+            if (flight.future.isDone())
+                reused.incrementAndGet();
+            else
+                coalesced.incrementAndGet();
+            try {
+                return (T) flight.future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for " + key, e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                if (cause instanceof Error)
+                    throw (Error) cause;
+                throw (E) cause;
+            }
+        }
+
+        loads.incrementAndGet();
+        boolean loaded = false;
+        try {
+            T result = loader.load();
+            loaded = true;
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.fail(e);
+            throw e;
+        } catch (Exception e) {
+            mine.fail(e);
+            throw (E) e;
+        } finally {
+            if (!loaded || reuseMillis <= 0)
+                flights.remove(key, mine);
+            removeExpired();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("reuseMillis", reuseMillis);
+        stats.put("flights", flights.size());
+        stats.put("loads", loads.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("reused", reused.get());
+        return stats;
+    }
+
+    private void removeExpired() {
+        long now = System.currentTimeMillis();
+        flights.values().removeIf(flight -> flight.isExpired(now));
+    }
+
+    private class Flight {
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        volatile long completedAt = Long.MAX_VALUE;
+
+        void complete(Object result) {
+            completedAt = System.currentTimeMillis();
+            future.complete(result);
+        }
+
+        void fail(Throwable e) {
+            completedAt = 0;
+            future.completeExceptionally(e);
+        }
+
+        boolean isExpired(long now) {
+            return future.isDone() && (future.isCompletedExceptionally() || now - completedAt >= reuseMillis);
+        }
+    }
+}
@@ -220,24 +220,61 @@ public class StatusTrackerConfig {
     private static final Log LOGGER = LogFactory.getLog(StatusTrackerConfig.class);
     // This flag is used to indicate if a a stage is complete when that workflow has been completed
     private static final String IS_COMPLETE_FIELD = "LIMS_COMPLETE_STATUS";
-    // Many Workflows -> One Stage. Maps workflows to the stage they belong to
-    private static final Map<String, LimsStage> workflowNameToStageMap = new HashMap<>();
+    // Many Workflows -> One Stage. Maps workflows to the stage they belong to, replaced as a whole on refresh
+    private static volatile WorkflowStages workflowStages = new WorkflowStages(Collections.emptyMap(), 0, 0);
+    private static final Object REFRESH_LOCK = new Object();
 
     /**
-     * Retrieving the workflowList, workflow names, & categories requires DB access and only needs to be done once. This
-     * ensures that the population is only done once. When called for the first time, the workflow map is computed from
-     * the input connection to the DB.
+     * Immutable mapping of the LIMS workflows to their stages. The version is bumped whenever a refresh finds added,
+     * removed or changed workflows.
+     */
+    public static class WorkflowStages {
+        private final Map<String, LimsStage> stages;
+        private final long version;
+        private final long refreshedAt;
+
+        WorkflowStages(Map<String, LimsStage> stages, long version, long refreshedAt) {
+            this.stages = Collections.unmodifiableMap(stages);
+            this.version = version;
+            this.refreshedAt = refreshedAt;
+        }
+
+        public LimsStage get(String workflowName) {
+            return stages.get(workflowName);
+        }
+
+        public int size() {
+            return stages.size();
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getRefreshedAt() {
+            return refreshedAt;
+        }
+    }
+
+    public static WorkflowStages getWorkflowStages() {
+        return workflowStages;
+    }
+
+    /**
+     * Reloads the workflows from the LIMS and swaps in the new mapping. Lookups are not blocked, they keep reading the
+     * previous mapping until the new one is complete. If the workflows can't be read the previous mapping is kept.
      *
      * @param conn
-     * @return
+     * @return the current mapping
      */
-    private static synchronized Map<String, LimsStage> computeIfAbsentWorkflowMap(ConnectionLIMS conn) {
-        if (workflowNameToStageMap.size() == 0) {
-            VeloxConnection vConn = conn.getConnection();
-            User user = vConn.getUser();
-
-            Set<String> validStages = new HashSet<>(Arrays.asList(STAGE_ORDER));
-            try {
+    public static WorkflowStages refreshWorkflowStages(ConnectionLIMS conn) {
+        synchronized (REFRESH_LOCK) {
+            WorkflowStages current = workflowStages;
+            Map<String, LimsStage> stages = new HashMap<>();
+            try (ConnectionLIMS.Lease lease = conn.lease()) {
+                VeloxConnection vConn = lease.getConnection();
+                User user = vConn.getUser();
+                Set<String> validStages = new HashSet<>(Arrays.asList(STAGE_ORDER));
                 List<Workflow> workflowList = vConn.getDataMgmtServer().getWorkflowManager(user).getLatestWorkflowList(user);
 
                 // Create the mapping of the workflow name to its corresponding stage, stored in category
@@ -254,13 +291,36 @@ public class StatusTrackerConfig {
                         LOGGER.error(String.format("%s is not recognized as a valid stage. Please amend or remove", stageName));
                     }
 
-                    workflowNameToStageMap.put(wkflwName, stage);
+                    stages.put(wkflwName, stage);
                 }
-            } catch (RemoteException | ServerException e) {
-                LOGGER.error("Could not fetch Lims Stage Name - Unable to get dataManagement Server");
+            } catch (RemoteException | ServerException | RuntimeException e) {
+                LOGGER.error("Could not fetch Lims Stage Name - Unable to get dataManagement Server: " + e.getMessage());
+                return current;
             }
+
+            long version = current.version;
+            if (!stages.equals(current.stages)) {
+                version++;
+                Set<String> changed = new TreeSet<>(stages.keySet());
+                changed.addAll(current.stages.keySet());
+                changed.removeIf(name -> Objects.equals(stages.get(name), current.stages.get(name)));
+                LOGGER.info(String.format("Workflow stages version %d, %d workflows, changed: %s", version,
+                        stages.size(), changed));
+            }
+            workflowStages = new WorkflowStages(stages, version, System.currentTimeMillis());
+            return workflowStages;
+        }
+    }
+
+    // loads the mapping on first use if the scheduled refresh hasn't run yet
+    private static WorkflowStages computeIfAbsentWorkflowStages(ConnectionLIMS conn) {
+        WorkflowStages stages = workflowStages;
+        if (stages.version > 0)
+            return stages;
+        synchronized (REFRESH_LOCK) {
+            stages = workflowStages;
+            return stages.version > 0 ? stages : refreshWorkflowStages(conn);
         }
-        return workflowNameToStageMap;
     }
 
     /**
@@ -293,9 +353,9 @@ public class StatusTrackerConfig {
      */
     public static LimsStage getLimsStageFromStatus(ConnectionLIMS conn, String status) {
         String workflowName = getWorkflowNameFromStatus(status);
-        Map<String, LimsStage> workflowMap = computeIfAbsentWorkflowMap(conn);
-        if (workflowMap.containsKey(workflowName)) {
-            return workflowMap.get(workflowName);
+        LimsStage stage = computeIfAbsentWorkflowStages(conn).get(workflowName);
+        if (stage != null) {
+            return stage;
         }
         LOGGER.warn(String.format("Stage (Short Description) for Exemplar status not found: %s", status));
         return new LimsStage(STAGE_AWAITING_PROCESSING, false);
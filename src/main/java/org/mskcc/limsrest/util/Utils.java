@@ -10,26 +10,16 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.mskcc.domain.sample.NucleicAcid;
-import org.mskcc.limsrest.ConnectionLIMS;
-import org.mskcc.limsrest.service.assignedprocess.QcStatus;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.rmi.RemoteException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static org.mskcc.limsrest.util.StatusTrackerConfig.*;
-
 public class Utils {
     private final static Log LOGGER = LogFactory.getLog(Utils.class);
     private final static List<String> TISSUE_SAMPLE_TYPES = Arrays.asList("cells", "plasma", "blood", "tissue", "buffy coat", "blocks/slides", "ffpe sample", "other", "tissue sample");
@@ -37,7 +27,6 @@ public class Utils {
     private final static List<String> LIBRARY_SAMPLE_TYPES = Arrays.asList("dna library", "cdna library", "gdna library");
     private final static List<String> CAPTURE_SAMPLE_TYPES = Collections.singletonList("capture library");
     private final static List<String> POOLED_SAMPLE_TYPES = Collections.singletonList("pooled library");
-    private final static String FAILED_STATUS_TEXT = "failed";
     private final static String IGO_ID_WITHOUT_ALPHABETS_PATTERN = "^[0-9]+_[0-9]+.*$";  // sample id without alphabets
     private final static String IGO_ID_WITH_ALPHABETS_PATTERN = "^[0-9]+_[A-Z]+_[0-9]+.*$";  // sample id without alphabets
 
@@ -72,78 +61,6 @@ public class Utils {
         return resp;
     }
 
-    /**
-     * Method to check if Sequencing for a sample is Passed Complete based on presence of SeqAnalysisSampleQC as child record
-     * and status of SeqAnalysisSampleQC as Passed on any record and IgoComplete set to True.
-     * @param qcRecords
-     * @param user
-     * @return
-     */
-    private static boolean isSequencingPassedComplete(List<DataRecord>qcRecords, User user){
-        try{
-            for (DataRecord rec: qcRecords){
-                Object qcStatus = rec.getValue(SeqAnalysisSampleQCModel.SEQ_QCSTATUS, user);
-                if (qcStatus != null && qcStatus.toString().equalsIgnoreCase(QcStatus.PASSED.toString()) && isQcStatusIgoComplete(rec, user)) {
-                    return true;
-                }
-            }
-        }catch (Exception e){
-            String msg = String.format("%s -> Error while checking Sequencing QC status equals 'Passed'", ExceptionUtils.getRootCause(e), ExceptionUtils.getStackTrace(e));
-            LOGGER.error(msg);
-        }
-        return false;
-    }
-
-    /**
-     * Method to check if Sequencing for a sample is Failed Complete based on presence of SeqAnalysisSampleQC as child record
-     * and status of SeqAnalysisSampleQC as Failed on any record and IgoComplete set to True.
-     * @param qcRecords
-     * @param user
-     * @return
-     */
-    private static boolean isSequencingFailedComplete(List<DataRecord>qcRecords, User user){
-        try{
-            for (DataRecord rec: qcRecords){
-                Object qcStatus = rec.getValue(SeqAnalysisSampleQCModel.SEQ_QCSTATUS, user);
-                if (qcStatus != null && qcStatus.toString().equalsIgnoreCase(QcStatus.FAILED.toString()) && isQcStatusIgoComplete(rec, user)) {
-                    return true;
-                }
-            }
-            // check if the status is actually failed but igoComplete is not marked true. Sometimes, sample is marked failed
-            // but igoComplete is not checked. It is possible that we do not mark IgoComplete because there is not data to
-            // deliver to the user.
-            for (DataRecord rec: qcRecords){
-                Object qcStatus = rec.getValue(SeqAnalysisSampleQCModel.SEQ_QCSTATUS, user);
-                if (qcStatus != null && qcStatus.toString().equalsIgnoreCase(QcStatus.FAILED.toString())) {
-                    return true;
-                }
-            }
-        }catch (Exception e){
-            String msg = String.format("%s -> Error while checking Sequencing QC status equals 'Passed'", ExceptionUtils.getRootCause(e), ExceptionUtils.getStackTrace(e));
-            LOGGER.error(msg);
-        }
-        return false;
-    }
-
-    /**
-     * Method to check if Sequencing for a sample is complete based on presence of SeqAnalysisSampleQC as child record
-     * and status of SeqAnalysisSampleQC as Passed.
-     *
-     * @param sample
-     * @return
-     */
-    private static Boolean isSequencingComplete(DataRecord sample, User user){
-        DataRecord[] qcRecord = getChildrenofDataRecord(sample, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, user);
-        if (qcRecord.length == 0) {
-            return false;
-        }
-        DataRecord record = qcRecord[0];
-        Boolean isComplete = isQcStatusIgoComplete(record, user);
-        String sequencingStatus = getRecordStringValue(qcRecord[0], SeqAnalysisSampleQCModel.SEQ_QCSTATUS, user);
-        Boolean isFailed = sequencingStatus.equalsIgnoreCase(QcStatus.FAILED.toString());
-        return isComplete || isFailed;
-    }
-
     /**
      * Method to get BaitSet used for a sample.
      *
@@ -445,103 +362,6 @@ public class Utils {
     }
 
 
-    /**
-     * Method to get Main Tumor Type using Tumor Type Name eg: Breast Cancer or Pancreatic cancer etc.
-     *
-     * @param url
-     * @return String
-     */
-    private static String getOncotreeTumorTypeUsingName(URL url) {
-        HttpURLConnection con = null;
-        StringBuilder response = new StringBuilder();
-        JSONArray oncotreeResponseData = null;
-        try {
-            con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("GET");
-            BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-            in.close();
-            con.disconnect();
-            oncotreeResponseData = new JSONArray(response.toString());
-            if (oncotreeResponseData.length() > 0) {
-                JSONObject jsonObject = oncotreeResponseData.getJSONObject(0);
-                Object mainType = jsonObject.get("mainType");
-                return mainType != null ? mainType.toString() : "";
-            }
-        } catch (Exception e) {
-            LOGGER.info(String.format("Error while querying oncotree api for name search using url %s. Will attempt to search using oncotree api for code search:\n%s", url, e.getMessage()));
-            return "";
-        }
-        return "";
-    }
-
-    /**
-     * Method to get Main Tumor Type using TumorType CODE or abbreviation eg: BRCA for Breast Cancer and PAAD for
-     * Pancreatic cancer etc.
-     *
-     * @param url
-     * @param tumorType
-     * @return String
-     */
-    private static String getOncotreeTumorTypeUsingCode(URL url, String tumorType) {
-        HttpURLConnection con = null;
-        StringBuilder response = new StringBuilder();
-        JSONArray oncotreeResponseData = null;
-        try {
-            con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("GET");
-            BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-            in.close();
-            con.disconnect();
-            oncotreeResponseData = new JSONArray(response.toString());
-            if (oncotreeResponseData.length() > 0) {
-                for (Object rec : oncotreeResponseData) {
-                    Object code = ((JSONObject) rec).get("code");
-                    if (code != null && tumorType.toLowerCase().equals(code.toString().trim().toLowerCase())) {
-                        Object mainType = ((JSONObject) rec).get("mainType");
-                        return mainType != null ? mainType.toString() : "";
-                    }
-                }
-            }
-        } catch (Exception e) {
-            LOGGER.info(String.format("Error while querying oncotree api using code search using url %s. Cannot find Main tumor type.\n%s", url, e.getMessage()));
-            return "";
-        }
-        return "";
-    }
-
-    /**
-     * Get MainCancerType from oncotree
-     *
-     * @param tumorType
-     * @return String
-     */
-    public static String getOncotreeTumorType(String tumorType) {
-        String mainTumorType = "";
-        try {
-            // In LIMS tumor types entry is not controlled. Sometimes tumor type as tumor name is entered and other times tumor type code is entered.
-            // First query oncotree using api for name search
-            URL url = new URL("http://oncotree.mskcc.org/api/tumorTypes/search/name/" + tumorType.split("/")[0].replace(" ", "%20") + "?exactMatch=false");
-            mainTumorType = getOncotreeTumorTypeUsingName(url);
-            // If name search returns nothing, then query oncotree using api for code search
-            if (StringUtils.isBlank(mainTumorType)) {
-                URL url2 = new URL("http://oncotree.mskcc.org/api/tumorTypes/search/code/" + tumorType.split("/")[0].replace(" ", "%20") + "?exactMatch=true");
-                mainTumorType = getOncotreeTumorTypeUsingCode(url2, tumorType);
-            }
-        } catch (Exception e) {
-            LOGGER.error(String.format("Error occured while querying oncotree end point for Tumor Type %s\n%s", tumorType, e.getMessage()));
-            return "";
-        }
-        return mainTumorType;
-    }
-
     /**
      * Method to get origin Sample ID for a sample.
      *
@@ -575,89 +395,6 @@ public class Utils {
         return sampleId;
     }
 
-    /**
-     * Returns the Lims Stage corresponding to the most advacned stage of the DataRecord
-     *
-     * @param sample
-     * @param requestId
-     * @param conn
-     * @return
-     */
-    // TODO - how to handle "Ready For" <- should be the one that proceeds it (eventually)
-    public static String getMostAdvancedLimsStage(DataRecord sample, String requestId, ConnectionLIMS conn) {
-        User user = conn.getConnection().getUser();
-        String mostAdvancedSampleStatus = getMostAdvancedSampleStatus(sample, requestId, user);
-        if (mostAdvancedSampleStatus.toLowerCase().contains(FAILED_STATUS_TEXT) && mostAdvancedSampleStatus.contains(STAGE_SEQUENCING_ANALYSIS)) {
-            return mostAdvancedSampleStatus;
-        }
-        if (mostAdvancedSampleStatus.toLowerCase().contains(FAILED_STATUS_TEXT)) {
-            return mostAdvancedSampleStatus;
-        }
-        LimsStage stage = getLimsStageFromStatus(conn, mostAdvancedSampleStatus);
-        return stage.toString();
-    }
-
-    /**
-     * Method to get latest sample status.
-     *
-     * @param sample
-     * @param requestId
-     * @return
-     */
-    private static String getMostAdvancedSampleStatus(DataRecord sample, String requestId, User user) {
-        String sampleId = "";
-        String sampleStatus = STAGE_AWAITING_PROCESSING;        // Default stage
-        String currentSampleType = "";
-        String currentSampleStatus = "";
-        try {
-            String pendingStatus = getRecordStringValue(sample, SampleModel.EXEMPLAR_SAMPLE_STATUS, user);
-            if (!pendingStatus.isEmpty()) {
-                sampleStatus = pendingStatus;
-            }
-            sampleId = sample.getStringVal("SampleId", user);
-            int statusOrder = -1;
-            long recordId = 0;
-            Stack<DataRecord> sampleStack = new Stack<>();
-            sampleStack.add(sample);
-            do {
-                DataRecord current = sampleStack.pop();
-                currentSampleType = (String) getValueFromDataRecord(current, "ExemplarSampleType", "String", user);
-                currentSampleStatus = (String) getValueFromDataRecord(current, "ExemplarSampleStatus", "String", user);
-                int currentStatusOrder = getSampleTypeOrder(currentSampleType.toLowerCase());
-                long currentRecordId = current.getRecordId();
-                if (isSequencingComplete(current, user)) {
-                    // Check if Sample has failed Sequencing analysis
-                    List<DataRecord> seqQcRecords =  getChildDataRecordsOfType(current, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, user);
-                    if (isSequencingPassedComplete(seqQcRecords, user)){
-                        // Return the Completed-Sequencing status, NOT currentSampleStatus as this could not unrelated to sequencing
-                        return String.format("%s%s", WORKFLOW_STATUS_COMPLETED, STAGE_SEQUENCING_ANALYSIS);
-                    }
-                    if (isSequencingFailedComplete(seqQcRecords, user)){
-                        return String.format("%s%s", WORKFLOW_STATUS_FAILED, STAGE_SEQUENCING_ANALYSIS);
-                    }
-                }
-                if (currentRecordId > recordId && currentStatusOrder >= statusOrder && isCompleteStatus(currentSampleStatus)) {
-                    sampleStatus = currentSampleStatus;
-                    recordId = currentRecordId;
-                    statusOrder = currentStatusOrder;
-                    LOGGER.info("current status: " + sampleStatus);
-                }
-                DataRecord[] childSamples = current.getChildrenOfType("Sample", user);
-                for (DataRecord sam : childSamples) {
-                    String childRequestId = sam.getStringVal("RequestId", user);
-                    if (requestId.equalsIgnoreCase(childRequestId)) {
-                        sampleStack.push(sam);
-                    }
-                }
-            } while (sampleStack.size() > 0);
-        } catch (Exception e) {
-            System.out.println("Status error: " + e);
-            LOGGER.error(String.format("Error while getting status for sample '%s'.", sampleId));
-            return "unknown";
-        }
-        return sampleStatus;
-    }
-
     /**
      * Method to check if the sample status is equivalent to "completed sequencing".
      *
@@ -0,0 +1,71 @@
+package org.mskcc.limsrest.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.ConnectionLIMS;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reloads the workflow to stage mapping of {@link StatusTrackerConfig} every refreshMillis so added or renamed LIMS
+ * workflows are picked up without a restart.
+ */
+public class WorkflowStageRefresher {
+    private static Log log = LogFactory.getLog(WorkflowStageRefresher.class);
+
+    private final ConnectionLIMS conn;
+    private final long refreshMillis;
+    private final ScheduledExecutorService refresher;
+
+    private final AtomicLong refreshes = new AtomicLong();
+
+    public WorkflowStageRefresher(ConnectionLIMS conn, long refreshMillis) {
+        this.conn = conn;
+        this.refreshMillis = refreshMillis;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "workflow-stage-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Loads the mapping in the background now and then every refreshMillis.
+     */
+    public WorkflowStageRefresher start() {
+        refresher.scheduleWithFixedDelay(this::refresh, 0, refreshMillis, TimeUnit.MILLISECONDS);
+        log.info(String.format("Refreshing workflow stages every %dms.", refreshMillis));
+        return this;
+    }
+
+    public StatusTrackerConfig.WorkflowStages refresh() {
+        refreshes.incrementAndGet();
+        try {
+            return StatusTrackerConfig.refreshWorkflowStages(conn);
+        } catch (Exception e) {
+            // keeps the schedule alive
+            log.error("Failed to refresh workflow stages: " + e.getMessage(), e);
+            return StatusTrackerConfig.getWorkflowStages();
+        }
+    }
+
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    public Map<String, Object> getStats() {
+        StatusTrackerConfig.WorkflowStages stages = StatusTrackerConfig.getWorkflowStages();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workflows", stages.size());
+        stats.put("version", stages.getVersion());
+        stats.put("refreshedAt", stages.getRefreshedAt());
+        stats.put("refreshMillis", refreshMillis);
+        stats.put("refreshes", refreshes.get());
+        return stats;
+    }
+}
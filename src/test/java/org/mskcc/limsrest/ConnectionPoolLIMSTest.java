@@ -0,0 +1,125 @@
+package org.mskcc.limsrest;
+
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mskcc.limsrest.service.LimsTask;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ConnectionPoolLIMSTest {
+    private ConnectionPoolLIMS pool;
+
+    @Before
+    public void setup() {
+        pool = new ConnectionPoolLIMS("localhost", 1088, "guid", new String[][]{{"user1", "pass1"}, {"user2", "pass2"}},
+                1, 2, 100, 60000);
+    }
+
+    @After
+    public void tearDown() {
+        pool.cleanup();
+    }
+
+    @Test
+    public void borrowConnection_whenAllConnectionsInUse_timesOut() throws Exception {
+        pool.borrowConnection();
+        pool.borrowConnection();
+        try {
+            pool.borrowConnection();
+            fail("Expected borrow to time out");
+        } catch (TimeoutException e) {
+            assertEquals(1L, pool.getStats().get("borrowTimeouts"));
+        }
+    }
+
+    @Test
+    public void returnConnection_isReusedByNextBorrow() throws Exception {
+        VeloxConnection first = pool.borrowConnection();
+        pool.returnConnection(first);
+
+        assertSame(first, pool.borrowConnection());
+        assertEquals(1, pool.getStats().get("connections"));
+    }
+
+    @Test
+    public void returnConnection_whenUnhealthy_isReplacedOnNextBorrow() throws Exception {
+        VeloxConnection first = pool.borrowConnection();
+        pool.returnConnection(first, false);
+
+        assertNotSame(first, pool.borrowConnection());
+        assertEquals(1L, pool.getStats().get("discardedConnections"));
+    }
+
+    @Test
+    public void isConnectionFailure_onlyForRemoteErrors() {
+        assertTrue(ConnectionPoolLIMS.isConnectionFailure(new RuntimeException(new RemoteException("lost"))));
+        assertFalse(ConnectionPoolLIMS.isConnectionFailure(new IllegalArgumentException("bad request id")));
+    }
+
+    @Test
+    public void submitTaskAsync_whenQueueIsFull_rejectsAndSkipsCancelledTasks() throws Exception {
+        ConnectionPoolLIMS bounded = new ConnectionPoolLIMS("localhost", 1088, "guid",
+                new String[][]{{"user1", "pass1"}}, 0, 1, 100, 60000, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean queuedRan = new AtomicBoolean();
+        try {
+            CompletableFuture<Object> running = bounded.submitTaskAsync(new FakeTask(() -> {
+                started.countDown();
+                release.await();
+                return "done";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Object> queued = bounded.submitTaskAsync(new FakeTask(() -> queuedRan.getAndSet(true)));
+            try {
+                bounded.submitTaskAsync(new FakeTask(() -> "rejected"));
+                fail("Expected the full queue to reject the task");
+            } catch (LimsBusyException e) {
+                assertEquals(30, e.getRetryAfterSeconds());
+            }
+
+            queued.cancel(false);
+            release.countDown();
+
+            assertEquals("done", running.get(5, TimeUnit.SECONDS));
+            assertEquals(1L, bounded.getStats().get("rejectedTasks"));
+            // the cancelled task is dropped from the queue without running
+            assertEquals("next", bounded.submitTaskAsync(new FakeTask(() -> "next")).get(5, TimeUnit.SECONDS));
+            assertFalse(queuedRan.get());
+        } finally {
+            release.countDown();
+            bounded.cleanup();
+        }
+    }
+
+    /**
+     * Runs without a LIMS connection.
+     */
+    private static class FakeTask extends LimsTask {
+        private final Callable<Object> body;
+
+        FakeTask(Callable<Object> body) {
+            this.body = body;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            return body.call();
+        }
+
+        @Override
+        public Object execute(VeloxConnection conn) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.mskcc.limsrest;
+
+import org.junit.Test;
+import org.mskcc.limsrest.service.LimsTask;
+
+import static org.junit.Assert.*;
+
+public class LimsTaskQueueTest {
+    @Test
+    public void poll_takesInteractiveBeforeNormalBeforeBatch() {
+        LimsTaskQueue queue = new LimsTaskQueue(10, 1, 60000);
+        LimsTaskQueue.Task batch = task(LimsTask.Priority.BATCH);
+        LimsTaskQueue.Task normal = task(LimsTask.Priority.NORMAL);
+        LimsTaskQueue.Task interactive = task(LimsTask.Priority.INTERACTIVE);
+        queue.offer(batch);
+        queue.offer(normal);
+        queue.offer(interactive);
+
+        assertSame(interactive, queue.poll());
+        assertSame(normal, queue.poll());
+        assertSame(batch, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void poll_keepsBatchTasksQueuedWhileMaxBatchWorkersRun() {
+        LimsTaskQueue queue = new LimsTaskQueue(10, 1, 60000);
+        LimsTaskQueue.Task first = task(LimsTask.Priority.BATCH);
+        LimsTaskQueue.Task second = task(LimsTask.Priority.BATCH);
+        queue.offer(first);
+        queue.offer(second);
+
+        assertSame(first, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(1, queue.size());
+
+        queue.afterExecute(first);
+        assertSame(second, queue.poll());
+    }
+
+    @Test
+    public void poll_takesTasksWaitingLongerThanMaxWaitFirst() throws Exception {
+        LimsTaskQueue queue = new LimsTaskQueue(10, 1, 0);
+        LimsTaskQueue.Task batch = task(LimsTask.Priority.BATCH);
+        queue.offer(batch);
+        Thread.sleep(5);
+        queue.offer(task(LimsTask.Priority.INTERACTIVE));
+
+        assertSame(batch, queue.poll());
+        assertEquals(1L, queue.getStats().get("promotedAfterMaxWait"));
+    }
+
+    @Test
+    public void offer_whenFull_isRefused() {
+        LimsTaskQueue queue = new LimsTaskQueue(1, 1, 60000);
+
+        assertTrue(queue.offer(task(LimsTask.Priority.NORMAL)));
+        assertFalse(queue.offer(task(LimsTask.Priority.INTERACTIVE)));
+    }
+
+    private static LimsTaskQueue.Task task(LimsTask.Priority priority) {
+        return new LimsTaskQueue.Task(() -> null, priority);
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.Test;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.dmp.DefaultTodayDateParser;
 import org.mskcc.limsrest.service.dmp.GenerateBankedSamplesFromDMP;
+import org.mskcc.limsrest.service.oncotree.OncotreeDictionary;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -25,7 +26,7 @@ public class CreateBankedSamplesFromDMPTest {
 
     @Before
     public void setUp() throws Exception {
-        createBankedSamplesFromDMP = new CreateBankedSamplesFromDMP(conn);
+        createBankedSamplesFromDMP = new CreateBankedSamplesFromDMP(conn, mock(OncotreeDictionary.class));
     }
 
     @Test
@@ -4,6 +4,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.GenerateSampleCmoIdTask;
+import org.mskcc.limsrest.service.cmoinfo.PatientCmoSampleViewCache;
 import org.mskcc.limsrest.util.Constants;
 import org.springframework.http.ResponseEntity;
 
@@ -18,13 +19,14 @@ public class GetCorrectedSampleCmoIdTest {
 
     @Before
     public void setUp() throws Exception {
-        getCorrectedSampleCmoId = new GetCorrectedSampleCmoId(mock(ConnectionPoolLIMS.class));
+        getCorrectedSampleCmoId = new GetCorrectedSampleCmoId(mock(ConnectionPoolLIMS.class),
+                new PatientCmoSampleViewCache(10, 60000), new LimsTaskResults(endpoint -> 60000L, 30));
     }
 
     @Test
     public void whenSampleIgoIdIsInIncorrectFormat_shouldThrowAnException() throws Exception {
-        ResponseEntity<String> responseEntity = getCorrectedSampleCmoId.getSampleCmoIdByIgoId("I will crash your " +
-                "system. BUAHAHAHAHA");
+        ResponseEntity<String> responseEntity = (ResponseEntity<String>) getCorrectedSampleCmoId
+                .getSampleCmoIdByIgoId("I will crash your system. BUAHAHAHAHA").getResult();
 
         List<String> strings = responseEntity.getHeaders().get(Constants.ERRORS);
         assertThat(strings.size(), is(1));
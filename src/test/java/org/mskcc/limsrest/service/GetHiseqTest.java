@@ -0,0 +1,113 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.junit.Before;
+import org.junit.Test;
+import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.service.hiseq.HiseqRunIndex;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class GetHiseqTest {
+    private final User user = mock(User.class);
+    private final Map<Long, Map<String, Object>> fields = new HashMap<>();
+    // "parents:Sample:3" -> records
+    private final Map<String, List<DataRecord>> related = new HashMap<>();
+    private final List<Long> loadedRecordIds = new ArrayList<>();
+    private DataRecordManager drm;
+    private DataRecord flowcell;
+
+    @Before
+    public void setUp() throws Exception {
+        drm = mock(DataRecordManager.class, invocation -> {
+            Object[] args = invocation.getArguments();
+            switch (invocation.getMethod().getName()) {
+                case "getFieldsForRecords":
+                    List<Map<String, Object>> recordFields = new ArrayList<>();
+                    for (DataRecord record : (List<DataRecord>) args[0]) {
+                        loadedRecordIds.add(record.getRecordId());
+                        recordFields.add(fields.get(record.getRecordId()));
+                    }
+                    return recordFields;
+                case "getParentsOfType":
+                    return related((List<DataRecord>) args[0], "parents:" + args[1]);
+                case "getChildrenOfType":
+                    return related((List<DataRecord>) args[0], "children:" + args[1]);
+                case "queryDataRecords":
+                    return Collections.singletonList(flowcell);
+                default:
+                    return null;
+            }
+        });
+
+        // flowcell with 2 lanes, both with the same pool of one library
+        flowcell = record(10L);
+        DataRecord lane1 = record(11L, "LaneNum", 1L);
+        DataRecord lane2 = record(12L, "LaneNum", 2L);
+        when(flowcell.getChildrenOfType("FlowCellLane", user)).thenReturn(new DataRecord[]{lane1, lane2});
+        DataRecord pool = record(20L, "SampleId", "Pool-06302_A-Tube1");
+        DataRecord library = record(21L, "SampleId", "06302_A_1_1", "OtherSampleId", "S1", "Species", "Human",
+                "Recipe", "WholeExomeSequencing");
+        DataRecord request = record(30L, "RequestId", "06302_A", "LaboratoryHead", "Lab Head", "Investigator", "Inv",
+                "SampleNumber", (short) 1);
+        link("parents:Sample", lane1, pool);
+        link("parents:Sample", lane2, pool);
+        link("parents:Sample", pool, library);
+        link("children:IndexBarcode", library, record(22L, "IndexId", "DUAL_1", "IndexTag", "ACGT"));
+        link("children:SeqRequirement", library, record(23L, "RequestedReads", 30.0));
+        link("parents:Request", library, request);
+    }
+
+    @Test
+    public void execute_forRun_findsSampleOfPoolOnAllLanesLoadingItOnce() {
+        HiseqRunIndex runIndex = new HiseqRunIndex(60000, 86400000) {
+            @Override
+            public synchronized List<Run> findRuns(String run, DataRecordManager drm, User user) {
+                return Collections.singletonList(new Run(1L, "PITT_0214_AHVHVFBBXX", "PE100", 10L, 2000L));
+            }
+        };
+        ConnectionLIMS conn = mock(ConnectionLIMS.class);
+        ConnectionLIMS.Lease lease = mock(ConnectionLIMS.Lease.class);
+        when(conn.lease()).thenReturn(lease);
+        when(lease.getUser()).thenReturn(user);
+        when(lease.getDataRecordManager()).thenReturn(drm);
+
+        List<RunSummary> summaries = new GetHiseq("PITT_0214", conn, runIndex).execute();
+
+        assertEquals(1, summaries.size());
+        RunSummary summary = summaries.get(0);
+        assertEquals("S1_IGO_06302_A_1_1", summary.getSampleId());
+        assertEquals("ACGT", summary.getBarcodeSeq());
+        assertEquals("06302_A", summary.getRequestId());
+        assertEquals(30, summary.getNumberRequestedReads());
+        assertEquals(Arrays.asList(1L, 2L), summary.getLanes().stream().sorted().collect(Collectors.toList()));
+        assertEquals(1, Collections.frequency(loadedRecordIds, 21L));
+    }
+
+    private List<List<DataRecord>> related(List<DataRecord> records, String relation) {
+        List<List<DataRecord>> result = new ArrayList<>();
+        for (DataRecord record : records)
+            result.add(related.getOrDefault(relation + ":" + record.getRecordId(), Collections.emptyList()));
+        return result;
+    }
+
+    private void link(String relation, DataRecord from, DataRecord to) {
+        related.computeIfAbsent(relation + ":" + from.getRecordId(), k -> new ArrayList<>()).add(to);
+    }
+
+    private DataRecord record(long recordId, Object... keysAndValues) {
+        DataRecord record = mock(DataRecord.class);
+        when(record.getRecordId()).thenReturn(recordId);
+        Map<String, Object> recordFields = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2)
+            recordFields.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        fields.put(recordId, recordFields);
+        return record;
+    }
+}
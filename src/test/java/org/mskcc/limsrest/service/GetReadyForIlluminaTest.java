@@ -0,0 +1,78 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.stubbing.Answer;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class GetReadyForIlluminaTest {
+    private final DataRecordManager drmMock = mock(DataRecordManager.class);
+    private final User userMock = mock(User.class);
+    private final Map<DataRecord, Map<String, Object>> fields = new HashMap<>();
+    private final Map<DataRecord, List<DataRecord>> parents = new HashMap<>();
+    private final Map<DataRecord, List<DataRecord>> indexBarcodes = new HashMap<>();
+    private final Map<DataRecord, List<DataRecord>> seqRequirements = new HashMap<>();
+
+    private final DataRecord dna = record(1L, "SampleId", "06302_A_1");
+    private final DataRecord library1 = record(2L, "SampleId", "06302_A_1_1");
+    private final DataRecord library2 = record(3L, "SampleId", "06302_A_1_2");
+    private final DataRecord orphan = record(4L, "SampleId", "06302_A_2_1");
+    private final DataRecord indexBarcode = record(10L, "IndexId", "DMP1");
+    private final DataRecord seqRequirement = record(11L, "RequestedReads", 30.0);
+
+    @Before
+    public void setUp() throws Exception {
+        parents.put(library1, Collections.singletonList(dna));
+        parents.put(library2, Collections.singletonList(dna));
+        indexBarcodes.put(library1, Collections.singletonList(indexBarcode));
+        seqRequirements.put(dna, Collections.singletonList(seqRequirement));
+        when(drmMock.getFieldsForRecords(anyListOf(DataRecord.class), eq(userMock))).thenAnswer(
+                invocation -> records(invocation.getArguments()[0]).stream().map(fields::get).collect(Collectors.toList()));
+        when(drmMock.getParentsOfType(anyListOf(DataRecord.class), eq("Sample"), eq(userMock))).thenAnswer(related(parents));
+        when(drmMock.getChildrenOfType(anyListOf(DataRecord.class), eq("IndexBarcode"), eq(userMock)))
+                .thenAnswer(related(indexBarcodes));
+        when(drmMock.getChildrenOfType(anyListOf(DataRecord.class), eq("SeqRequirement"), eq(userMock)))
+                .thenAnswer(related(seqRequirements));
+    }
+
+    @Test
+    public void getNearestChildFields_walksAllLibrariesUpTogether() throws Exception {
+        Map<String, List<Map<String, Object>>> children = GetReadyForIllumina.getNearestChildFields(
+                Arrays.asList(library1, library2, orphan), Arrays.asList("IndexBarcode", "SeqRequirement"),
+                drmMock, userMock);
+
+        assertEquals(Arrays.asList(fields.get(indexBarcode), null, null), children.get("IndexBarcode"));
+        assertEquals(Arrays.asList(fields.get(seqRequirement), fields.get(seqRequirement), null),
+                children.get("SeqRequirement"));
+        // one call per level, not per library
+        verify(drmMock, times(2)).getParentsOfType(anyListOf(DataRecord.class), eq("Sample"), eq(userMock));
+        verify(drmMock, times(2)).getChildrenOfType(anyListOf(DataRecord.class), eq("SeqRequirement"), eq(userMock));
+        verify(drmMock, times(2)).getFieldsForRecords(anyListOf(DataRecord.class), eq(userMock));
+    }
+
+    private DataRecord record(long recordId, String field, Object value) {
+        DataRecord record = mock(DataRecord.class);
+        when(record.getRecordId()).thenReturn(recordId);
+        fields.put(record, Collections.singletonMap(field, value));
+        return record;
+    }
+
+    private static Answer<List<List<DataRecord>>> related(Map<DataRecord, List<DataRecord>> related) {
+        return invocation -> records(invocation.getArguments()[0]).stream()
+                .map(record -> related.getOrDefault(record, Collections.emptyList()))
+                .collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<DataRecord> records(Object argument) {
+        return (List<DataRecord>) argument;
+    }
+}
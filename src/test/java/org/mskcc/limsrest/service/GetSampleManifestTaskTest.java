@@ -1,16 +1,62 @@
 package org.mskcc.limsrest.service;
 
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
 import org.junit.Test;
+import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.controller.GetSampleManifest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class GetSampleManifestTaskTest {
 
+    @Test
+    public void executeParallel_keepsOrderAndIsolatesFailedSamples() {
+        ConnectionLIMS conn = mock(ConnectionLIMS.class);
+        when(conn.lease()).thenReturn(mock(ConnectionLIMS.Lease.class));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        String[] igoIds = {"06302_A_1", "06302_A_2", "06302_A_3"};
+
+        GetSampleManifestTask task = new GetSampleManifestTask(igoIds, conn, null, executor, 10000) {
+            @Override
+            protected SampleManifest getSampleManifest(String igoId, User user, DataRecordManager dataRecordManager)
+                    throws Exception {
+                if (igoId.endsWith("_2"))
+                    throw new IllegalStateException("failed");
+                if (igoId.endsWith("_1"))
+                    Thread.sleep(100);
+                SampleManifest sampleManifest = new SampleManifest();
+                sampleManifest.setIgoId(igoId);
+                return sampleManifest;
+            }
+        };
+        GetSampleManifestTask.SampleManifestResult result = task.execute();
+        executor.shutdownNow();
+
+        assertEquals(3, result.smList.size());
+        for (int i = 0; i < igoIds.length; i++)
+            assertEquals(igoIds[i], result.smList.get(i).getIgoId());
+        assertEquals("failed", result.sampleErrors.get("06302_A_2"));
+        assertEquals(1, result.sampleErrors.size());
+        assertEquals("failed", result.smList.get(1).getError());
+        assertNull(result.smList.get(0).getError());
+
+        ResponseEntity<List<SampleManifest>> response = GetSampleManifest.toResponse(igoIds, result);
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        assertEquals(result.smList, response.getBody());
+    }
+
     @Test
     public void filterMultipleDemuxes() {
         List<ArchivedFastq> passedQCList = new ArrayList<>();
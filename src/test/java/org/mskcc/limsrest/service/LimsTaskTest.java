@@ -0,0 +1,74 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.user.User;
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class LimsTaskTest {
+    @Test
+    public void annotateRequestDetailed_mapsFieldsAndKeepsDefaultsForNulls() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("RequestId", "06000_B");
+        fields.put("PIFirstName", "Ada");
+        fields.put("PILastName", "Lovelace");
+        fields.put("BicAutorunnable", true);
+        RequestDetailed requestDetailed = new RequestDetailed("06000_B");
+
+        task().annotateRequestDetailed(requestDetailed, fields);
+
+        assertEquals("06000_B", requestDetailed.getRequestId());
+        assertEquals("Ada Lovelace", requestDetailed.getCmoPiName());
+        assertTrue(requestDetailed.getAutorunnable());
+        // null dates and flags keep their defaults
+        assertEquals(0L, requestDetailed.getCompletedDate());
+        assertFalse(requestDetailed.getFastqRequested());
+    }
+
+    @Test
+    public void annotateRequestDetailed_withNullEmails_mapsLaterFields() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("MailTo", null);
+        fields.put("DataAccessEmails", null);
+        fields.put("QcAccessEmails", null);
+        fields.put("Investigator", "Grace Hopper");
+        fields.put("ReceivedDate", 1500000000000L);
+        fields.put("HighPriority", true);
+        RequestDetailed requestDetailed = new RequestDetailed("06000_B");
+
+        task().annotateRequestDetailed(requestDetailed, fields);
+
+        assertEquals("Grace Hopper", requestDetailed.getInvestigator());
+        assertEquals(1500000000000L, requestDetailed.getReceivedDate());
+        assertTrue(requestDetailed.getHighPriority());
+    }
+
+    @Test
+    public void annotateRequestDetailed_reportsFieldsOfUnexpectedType() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("CompletedDate", "yesterday");
+        RequestDetailed requestDetailed = new RequestDetailed("06000_B");
+
+        task().annotateRequestDetailed(requestDetailed, fields);
+
+        assertTrue(requestDetailed.getInvestigator().startsWith("Annotation failed: "));
+    }
+
+    private LimsTask task() {
+        LimsTask task = new LimsTask() {
+            @Override
+            public Object execute(VeloxConnection conn) {
+                return null;
+            }
+        };
+        task.user = mock(User.class);
+        return task;
+    }
+}
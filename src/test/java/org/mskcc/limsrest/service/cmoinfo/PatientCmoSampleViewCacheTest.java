@@ -0,0 +1,87 @@
+package org.mskcc.limsrest.service.cmoinfo;
+
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.junit.Test;
+import org.mskcc.domain.sample.CorrectedCmoSampleView;
+import org.mskcc.limsrest.service.PatientSamplesWithCmoInfoRetriever;
+
+import java.util.*;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class PatientCmoSampleViewCacheTest {
+    private final PatientSamplesWithCmoInfoRetriever retriever = mock(PatientSamplesWithCmoInfoRetriever.class);
+    private final DataRecordManager drm = mock(DataRecordManager.class);
+    private final User user = mock(User.class);
+
+    @Test
+    public void get_secondCall_doesNotQueryLims() throws Exception {
+        when(retriever.retrieveAll(any(), any(), any())).thenReturn(patientSamples("C-1235", view("1", "C-1235-X001-d")));
+        PatientCmoSampleViewCache cache = new PatientCmoSampleViewCache(10, 60000);
+
+        cache.get("C-1235", retriever, drm, user);
+        List<CorrectedCmoSampleView> views = cache.get("C-1235", retriever, drm, user);
+
+        assertThat(views.size(), is(1));
+        verify(retriever, times(1)).retrieveAll(any(), eq(drm), eq(user));
+    }
+
+    @Test
+    public void get_returnsCopyThatCallersCanChange() throws Exception {
+        when(retriever.retrieveAll(any(), any(), any())).thenReturn(patientSamples("C-1235", view("1", "C-1235-X001-d")));
+        PatientCmoSampleViewCache cache = new PatientCmoSampleViewCache(10, 60000);
+
+        cache.get("C-1235", retriever, drm, user).add(view("2", "C-1235-X002-d"));
+        List<CorrectedCmoSampleView> views = cache.get("C-1235", retriever, drm, user);
+
+        assertThat(views.size(), is(1));
+        assertThat(views.get(0).getCorrectedCmoId(), is("C-1235-X001-d"));
+    }
+
+    @Test
+    public void get_afterInvalidateOrTtl_queriesLimsAgain() throws Exception {
+        when(retriever.retrieveAll(any(), any(), any())).thenAnswer(i -> patientSamples("C-1235"));
+        PatientCmoSampleViewCache cache = new PatientCmoSampleViewCache(10, 60000);
+        PatientCmoSampleViewCache expiring = new PatientCmoSampleViewCache(10, 0);
+
+        cache.get("C-1235", retriever, drm, user);
+        cache.invalidate("C-1235");
+        cache.get("C-1235", retriever, drm, user);
+        expiring.get("C-1235", retriever, drm, user);
+        expiring.get("C-1235", retriever, drm, user);
+
+        verify(retriever, times(4)).retrieveAll(any(), eq(drm), eq(user));
+    }
+
+    @Test
+    public void getAll_retrievesOnlyMissingPatients() throws Exception {
+        when(retriever.retrieveAll(any(), any(), any())).thenAnswer(i -> patientSamples("C-1235"))
+                .thenAnswer(i -> patientSamples("C-6789"));
+        PatientCmoSampleViewCache cache = new PatientCmoSampleViewCache(10, 60000);
+        cache.get("C-1235", retriever, drm, user);
+
+        Map<String, List<CorrectedCmoSampleView>> views = cache.getAll(Arrays.asList("C-1235", "C-6789"), retriever,
+                drm, user);
+
+        assertThat(views.keySet(), is(new HashSet<>(Arrays.asList("C-1235", "C-6789"))));
+        verify(retriever).retrieveAll(eq(Collections.singleton("C-6789")), eq(drm), eq(user));
+    }
+
+    private static Map<String, List<CorrectedCmoSampleView>> patientSamples(String patientId,
+                                                                            CorrectedCmoSampleView... views) {
+        Map<String, List<CorrectedCmoSampleView>> patientSamples = new HashMap<>();
+        patientSamples.put(patientId, new ArrayList<>(Arrays.asList(views)));
+        return patientSamples;
+    }
+
+    private static CorrectedCmoSampleView view(String id, String correctedCmoId) {
+        CorrectedCmoSampleView view = new CorrectedCmoSampleView(id);
+        view.setCorrectedCmoId(correctedCmoId);
+        return view;
+    }
+}
@@ -18,9 +18,7 @@ import org.mskcc.limsrest.service.cmoinfo.patientsample.PatientCmoSampleIdFormat
 import org.mskcc.limsrest.service.cmoinfo.patientsample.PatientCmoSampleIdResolver;
 import org.mskcc.limsrest.service.cmoinfo.retriever.*;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.*;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
@@ -180,6 +178,36 @@ public class SampleTypeCorrectedCmoSampleViewGeneratorTest {
         assertThat(cmoId2, is("C-1235-G002-d"));
     }
 
+    @Test
+    public void whenBulkGeneratingSamplesOfSamePatient_shouldCountEachAgainstStoredAndEarlierOnes() throws Exception {
+        String requestId = "5432_P";
+        Map<String, List<CorrectedCmoSampleView>> patientSamples = new HashMap<>();
+        patientSamples.put("C-1235", new ArrayList<>(Arrays.asList(getSample("C-1235-X001-d", "1234_A"))));
+        when(samplesRetriever.retrieveAll(any(), any(), any())).thenReturn(patientSamples);
+        sampleTypeCorrectedCmoSampleIdGenerator.patientSamplesRetriever = samplesRetriever;
+        CorrectedCmoSampleView sample1 = getSample("4324_1", "C-1235", SpecimenType.XENOGRAFT, NucleicAcid.DNA);
+        CorrectedCmoSampleView sample2 = getSample("4324_2", "C-6789", SpecimenType.XENOGRAFT, NucleicAcid.DNA);
+        CorrectedCmoSampleView sample3 = getSample("4324_3", "C-1235", SpecimenType.XENOGRAFT, NucleicAcid.DNA);
+        for (CorrectedCmoSampleView sample : Arrays.asList(sample1, sample2, sample3))
+            sample.setRequestId(requestId);
+
+        Map<String, String> cmoIds = sampleTypeCorrectedCmoSampleIdGenerator.generate(Arrays.asList(sample1, sample2,
+                sample3), drm, user);
+
+        assertThat(new ArrayList<>(cmoIds.keySet()), is(Arrays.asList("4324_1", "4324_2", "4324_3")));
+        assertThat(cmoIds.get("4324_1"), is("C-1235-X002-d"));
+        assertThat(cmoIds.get("4324_2"), is("C-6789-X001-d"));
+        assertThat(cmoIds.get("4324_3"), is("C-1235-X003-d"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void whenBulkGeneratingSampleWithoutPatientId_shouldThrowException() throws Exception {
+        sampleTypeCorrectedCmoSampleIdGenerator.patientSamplesRetriever = samplesRetriever;
+        CorrectedCmoSampleView sample = getSample("4324_1", "", SpecimenType.XENOGRAFT, NucleicAcid.DNA);
+
+        sampleTypeCorrectedCmoSampleIdGenerator.generate(Collections.singletonList(sample), drm, user);
+    }
+
     private CorrectedCmoSampleView getSample(String correctedId, String reqId) {
         CorrectedCmoSampleView sample = new CorrectedCmoSampleView("5656");
         sample.setCorrectedCmoId(correctedId);
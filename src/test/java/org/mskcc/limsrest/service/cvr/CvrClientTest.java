@@ -0,0 +1,119 @@
+package org.mskcc.limsrest.service.cvr;
+
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class CvrClientTest {
+    private static final String METADATA = "{\"dmp_patient_lbl\":\"P-0002976\",\"mrn\":\"00000001\",\"gender\":\"Female\"," +
+            "\"tumor_type\":\"Breast Cancer\"}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean holdResponses = false;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.createContext("/get_cmo_metadata/", exchange -> {
+            requests.incrementAndGet();
+            try {
+                if (holdResponses)
+                    release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = METADATA.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void getSampleMetadata_isCachedOnDiskUntilRefreshed() throws Exception {
+        CvrClient client = client(60000);
+        assertEquals("00000001", client.getSampleMetadata("P-0002976-T01-WES").getString("mrn"));
+        client.close();
+
+        // a new client reads the metadata from disk
+        CvrClient restarted = client(60000);
+        assertEquals("Breast Cancer", restarted.getSampleMetadata("P-0002976-T01-WES").getString("tumor_type"));
+        assertEquals(1, requests.get());
+
+        restarted.refresh("P-0002976-T01-WES");
+        restarted.getSampleMetadata("P-0002976-T01-WES");
+        assertEquals(2, requests.get());
+        restarted.close();
+    }
+
+    @Test
+    public void getSampleMetadata_whenExpired_requestsAgain() throws Exception {
+        CvrClient client = client(0);
+
+        client.getSampleMetadata("P-0002976-T01-WES");
+        client.getSampleMetadata("P-0002976-T01-WES");
+
+        assertEquals(2, requests.get());
+        client.close();
+    }
+
+    @Test
+    public void getSampleMetadata_concurrentLookupsShareOneRequest() throws Exception {
+        CvrClient client = client(60000);
+        holdResponses = true;
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        Future<JSONObject> first = callers.submit(() -> client.getSampleMetadata("P-0002976-T01-WES"));
+        while (requests.get() == 0)
+            Thread.sleep(5);
+        Future<JSONObject> second = callers.submit(() -> client.getSampleMetadata("P-0002976-T01-WES"));
+        Thread.sleep(100);
+        release.countDown();
+
+        assertEquals("P-0002976", first.get(5, TimeUnit.SECONDS).getString("dmp_patient_lbl"));
+        assertEquals("P-0002976", second.get(5, TimeUnit.SECONDS).getString("dmp_patient_lbl"));
+        assertEquals(1, requests.get());
+        callers.shutdownNow();
+        client.close();
+    }
+
+    @Test
+    public void getSampleMetadata_whenServiceFails_returnsEmptyMetadata() throws Exception {
+        CvrClient client = new CvrClient("http://localhost:1/", folder.newFolder(), 2, 1000, 1000, 60000);
+
+        assertEquals(0, client.getSampleMetadata("P-0002976-T01-WES").length());
+        assertEquals(1L, client.getStats().get("failures"));
+        client.close();
+    }
+
+    private CvrClient client(long cacheTtlMillis) throws Exception {
+        return new CvrClient(baseUrl, folder.getRoot(), 2, 1000, 5000, cacheTtlMillis);
+    }
+}
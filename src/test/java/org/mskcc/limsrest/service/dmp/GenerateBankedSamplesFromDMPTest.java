@@ -33,6 +33,7 @@ public class GenerateBankedSamplesFromDMPTest {
     public void setUp() throws Exception {
         recordSaverSpy = new RecordSaverSpy();
         generateBankedSamplesFromDMP = new GenerateBankedSamplesFromDMP();
+        generateBankedSamplesFromDMP.tumorTypeRetriever = tumorTypeRetriever;
         generateBankedSamplesFromDMP.dmpSamplesRetriever = dmpSamplesRetriever;
         generateBankedSamplesFromDMP.limsDataRetriever = limsDataRetriever;
         generateBankedSamplesFromDMP.recordSaver = recordSaverSpy;
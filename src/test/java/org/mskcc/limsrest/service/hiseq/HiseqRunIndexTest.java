@@ -0,0 +1,88 @@
+package org.mskcc.limsrest.service.hiseq;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class HiseqRunIndexTest {
+    private final DataRecordManager drmMock = mock(DataRecordManager.class);
+    private final User userMock = mock(User.class);
+
+    @Test
+    public void getRuns_seedsFromFlowcellsOnce() throws Exception {
+        DataRecord flowcell = record(10L);
+        DataRecord run = record(1L);
+        when(drmMock.queryDataRecords(HiseqRunIndex.FLOWCELL_DATA_TYPE, null, userMock))
+                .thenReturn(Collections.singletonList(flowcell));
+        stubFlowcells(Collections.singletonList(flowcell), Collections.singletonList(2000L),
+                Collections.singletonList(run), "/ifs/pitt/PITT_0214_AHVHVFBBXX");
+        HiseqRunIndex index = new HiseqRunIndex(60000, 86400000);
+
+        List<HiseqRunIndex.Run> runs = index.getRuns(drmMock, userMock);
+        List<HiseqRunIndex.Run> found = index.findRuns("ahvhvfbbxx", drmMock, userMock);
+
+        assertEquals(1, runs.size());
+        assertEquals(runs, found);
+        assertEquals("PITT_0214_AHVHVFBBXX", runs.get(0).getRunId());
+        assertEquals(2000L, runs.get(0).getDateCreated());
+        assertEquals(10L, runs.get(0).getFlowCellRecordId());
+        verify(drmMock, times(1)).queryDataRecords(eq(HiseqRunIndex.FLOWCELL_DATA_TYPE), anyString(), eq(userMock));
+    }
+
+    @Test
+    public void refresh_queriesNewFlowcellsAndRetriesUnlinkedOnes() throws Exception {
+        DataRecord linked = record(10L);
+        DataRecord unlinked = record(11L);
+        DataRecord run1 = record(1L);
+        DataRecord run2 = record(2L);
+        when(drmMock.queryDataRecords(HiseqRunIndex.FLOWCELL_DATA_TYPE, null, userMock))
+                .thenReturn(Arrays.asList(linked, unlinked));
+        stubFlowcells(Arrays.asList(linked, unlinked), Arrays.asList(2000000L, 3000000L), Collections.singletonList(run1),
+                "PITT_0214_AHVHVFBBXX");
+        // 11 has no run yet
+        when(drmMock.getParentsOfType(Arrays.asList(linked, unlinked), HiseqRunIndex.RUN_DATA_TYPE, userMock))
+                .thenReturn(Arrays.<List<DataRecord>>asList(Collections.singletonList(run1), Collections.emptyList()));
+        String refreshQuery = "DateCreated > " + (3000000L - HiseqRunIndex.WATERMARK_OVERLAP_MILLIS) +
+                " OR RecordId in (11)";
+        when(drmMock.queryDataRecords(HiseqRunIndex.FLOWCELL_DATA_TYPE, refreshQuery, userMock))
+                .thenReturn(Arrays.asList(linked, unlinked));
+        stubFlowcells(Collections.singletonList(unlinked), Collections.singletonList(3000000L),
+                Collections.singletonList(run2), "JAX_0397_BHCYYWBBXY");
+        HiseqRunIndex index = new HiseqRunIndex(0, 86400000);
+
+        assertEquals(1, index.getRuns(drmMock, userMock).size());
+        List<HiseqRunIndex.Run> runs = index.getRuns(drmMock, userMock);
+
+        assertEquals(2, runs.size());
+        assertEquals("JAX_0397_BHCYYWBBXY", runs.get(1).getRunId());
+        assertEquals(0, index.getStats().get("pendingFlowCells"));
+    }
+
+    private void stubFlowcells(List<DataRecord> flowcells, List<Long> dates, List<DataRecord> runs, String runFolder)
+            throws Exception {
+        List<Map<String, Object>> flowcellFields = new ArrayList<>();
+        for (Long date : dates)
+            flowcellFields.add(Collections.<String, Object>singletonMap("DateCreated", date));
+        when(drmMock.getFieldsForRecords(flowcells, userMock)).thenReturn(flowcellFields);
+        List<List<DataRecord>> parents = new ArrayList<>();
+        for (DataRecord run : runs)
+            parents.add(Collections.singletonList(run));
+        when(drmMock.getParentsOfType(flowcells, HiseqRunIndex.RUN_DATA_TYPE, userMock)).thenReturn(parents);
+        Map<String, Object> runFields = new HashMap<>();
+        runFields.put("SequencerRunFolder", runFolder);
+        runFields.put("SequencingRunType", "PE100");
+        when(drmMock.getFieldsForRecords(runs, userMock)).thenReturn(Collections.singletonList(runFields));
+    }
+
+    private static DataRecord record(long recordId) {
+        DataRecord record = mock(DataRecord.class);
+        when(record.getRecordId()).thenReturn(recordId);
+        return record;
+    }
+}
@@ -0,0 +1,99 @@
+package org.mskcc.limsrest.service.interops;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class InterOpsIndexTest {
+    private final DataRecordManager drmMock = mock(DataRecordManager.class);
+    private final User userMock = mock(User.class);
+
+    @Test
+    public void getRecordIds_matchesFlowcellAndRunNameSubstrings() throws Exception {
+        List<DataRecord> records = Arrays.asList(record(1L), record(2L), record(3L));
+        when(drmMock.queryDataRecords(InterOpsIndex.DATA_TYPE, "RecordId > 0", userMock)).thenReturn(records);
+        when(drmMock.getFieldsForRecords(records, userMock)).thenReturn(Arrays.asList(
+                Collections.<String, Object>singletonMap(InterOpsIndex.RUN_NAME, "PITT_0214_AHVHVFBBXX"),
+                Collections.<String, Object>singletonMap(InterOpsIndex.RUN_NAME, "PITT_0214_AHVHVFBBXX"),
+                Collections.<String, Object>singletonMap(InterOpsIndex.RUN_NAME, "JAX_0397_BHCYYWBBXY")));
+        InterOpsIndex index = new InterOpsIndex(60000, 3600000);
+
+        assertEquals(Arrays.asList(1L, 2L), index.getRecordIds("AHVHVFBBXX", drmMock, userMock));
+        assertEquals(Collections.singletonList(3L), index.getRecordIds("JAX_0397", drmMock, userMock));
+        assertEquals(Collections.emptyList(), index.getRecordIds("HAWZ3BBXY", drmMock, userMock));
+        // built once, later lookups don't query the LIMS until refreshMillis has passed
+        verify(drmMock, times(1)).queryDataRecords(eq(InterOpsIndex.DATA_TYPE), anyString(), eq(userMock));
+    }
+
+    @Test
+    public void add_afterBuild_isFoundWithoutRefresh() throws Exception {
+        when(drmMock.queryDataRecords(InterOpsIndex.DATA_TYPE, "RecordId > 0", userMock))
+                .thenReturn(Collections.emptyList());
+        InterOpsIndex index = new InterOpsIndex(60000, 3600000);
+        index.getRecordIds("AHVHVFBBXX", drmMock, userMock);
+
+        index.add("PITT_0214_AHVHVFBBXX", 7L);
+
+        assertEquals(Collections.singletonList(7L), index.getRecordIds("AHVHVFBBXX", drmMock, userMock));
+        assertEquals(0L, index.getStats().get("maxRecordId"));
+    }
+
+    @Test
+    public void getRecordIds_matchesAllRunNamesContainingTheFlowcell() throws Exception {
+        List<DataRecord> records = Arrays.asList(record(1L), record(2L));
+        when(drmMock.queryDataRecords(InterOpsIndex.DATA_TYPE, "RecordId > 0", userMock)).thenReturn(records);
+        when(drmMock.getFieldsForRecords(records, userMock)).thenReturn(Arrays.asList(
+                Collections.<String, Object>singletonMap(InterOpsIndex.RUN_NAME, "PITT_0214_AHVHVFBBXX"),
+                Collections.<String, Object>singletonMap(InterOpsIndex.RUN_NAME, "PITT_0214_AHVHVFBBXX_A1")));
+        InterOpsIndex index = new InterOpsIndex(60000, 3600000);
+
+        assertEquals(Arrays.asList(1L, 2L), index.getRecordIds("AHVHVFBBXX", drmMock, userMock));
+        assertEquals(Arrays.asList(1L, 2L), index.getRecordIds("ahvhvfbbxx", drmMock, userMock));
+    }
+
+    @Test
+    public void getRecordIds_afterFullRefresh_dropsDeletedAndRenamedRecords() throws Exception {
+        List<DataRecord> records = Arrays.asList(record(1L), record(2L));
+        List<DataRecord> remaining = Collections.singletonList(record(2L));
+        when(drmMock.queryDataRecords(InterOpsIndex.DATA_TYPE, "RecordId > 0", userMock))
+                .thenReturn(records, remaining);
+        when(drmMock.getFieldsForRecords(records, userMock)).thenReturn(Arrays.asList(
+                Collections.<String, Object>singletonMap(InterOpsIndex.RUN_NAME, "PITT_0214_AHVHVFBBXX"),
+                Collections.<String, Object>singletonMap(InterOpsIndex.RUN_NAME, "PITT_0214_AHVHVFBBXX")));
+        when(drmMock.getFieldsForRecords(remaining, userMock)).thenReturn(Collections.singletonList(
+                Collections.<String, Object>singletonMap(InterOpsIndex.RUN_NAME, "JAX_0397_BHCYYWBBXY")));
+        InterOpsIndex index = new InterOpsIndex(0, 0);
+
+        assertEquals(Arrays.asList(1L, 2L), index.getRecordIds("AHVHVFBBXX", drmMock, userMock));
+        assertEquals(Collections.emptyList(), index.getRecordIds("AHVHVFBBXX", drmMock, userMock));
+        assertEquals(Collections.singletonList(2L), index.getRecordIds("BHCYYWBBXY", drmMock, userMock));
+    }
+
+    @Test
+    public void add_ofExistingRecord_movesItToTheNewRunName() throws Exception {
+        when(drmMock.queryDataRecords(InterOpsIndex.DATA_TYPE, "RecordId > 0", userMock))
+                .thenReturn(Collections.emptyList());
+        InterOpsIndex index = new InterOpsIndex(60000, 3600000);
+        index.getRecordIds("AHVHVFBBXX", drmMock, userMock);
+
+        index.add("PITT_0214_AHVHVFBBXX", 7L);
+        index.add("JAX_0397_BHCYYWBBXY", 7L);
+
+        assertEquals(Collections.emptyList(), index.getRecordIds("AHVHVFBBXX", drmMock, userMock));
+        assertEquals(Collections.singletonList(7L), index.getRecordIds("BHCYYWBBXY", drmMock, userMock));
+    }
+
+    private static DataRecord record(long recordId) {
+        DataRecord record = mock(DataRecord.class);
+        when(record.getRecordId()).thenReturn(recordId);
+        return record;
+    }
+}
@@ -0,0 +1,81 @@
+package org.mskcc.limsrest.service.ngsstats;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mskcc.limsrest.service.ArchivedFastq;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class NgsStatsClientTest {
+    private static final String FASTQS = "[{\"run\":\"PITT_0214_AHVHVFBBXX\",\"fastq\":\"/igo/06302_W_1_R1.fastq.gz\"}]";
+
+    private HttpServer server;
+    private NgsStatsClient client;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/ngs-stats/", exchange -> {
+            requests.incrementAndGet();
+            int status = failuresLeft.getAndDecrement() > 0 ? 503 : 200;
+            byte[] body = (status == 200 ? FASTQS : "").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        String baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+        client = new NgsStatsClient(baseUrl, 2, 1000, 1000, 2, 1, 60000, 100);
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void getFastqsByIgoId_whenCached_doesNotRequestAgain() {
+        client.getFastqsByIgoId("06302_W_1");
+        List<ArchivedFastq> fastqs = client.getFastqsByIgoId("06302_W_1");
+
+        assertEquals("PITT_0214_AHVHVFBBXX", fastqs.get(0).getRun());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void invalidate_requestsAgain() {
+        client.getFastqsByIgoId("06302_W_1");
+        client.getPooledNormalStats("PITT_0214_AHVHVFBBXX");
+
+        client.invalidateIgoId("06302_W_1");
+        client.invalidateRun("PITT_0214");
+        client.getFastqsByIgoId("06302_W_1");
+        client.getPooledNormalStats("PITT_0214_AHVHVFBBXX");
+
+        assertEquals(4, requests.get());
+    }
+
+    @Test
+    public void get_whenServiceUnavailable_retries() {
+        failuresLeft.set(2);
+
+        List<ArchivedFastq> fastqs = client.getPooledNormals("06302_W");
+
+        assertEquals(1, fastqs.size());
+        assertEquals(3, requests.get());
+        assertEquals(2L, client.getStats().get("retries"));
+    }
+}
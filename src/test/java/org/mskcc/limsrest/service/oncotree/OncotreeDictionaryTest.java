@@ -0,0 +1,118 @@
+package org.mskcc.limsrest.service.oncotree;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mskcc.limsrest.service.dmp.TumorType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OncotreeDictionaryTest {
+    private static final String TUMOR_TYPES = "[" +
+            "{\"code\":\"BREAST\",\"name\":\"Breast\",\"mainType\":null,\"tissue\":\"Breast\"}," +
+            "{\"code\":\"BRCA\",\"name\":\"Invasive Breast Carcinoma\",\"mainType\":\"Breast Cancer, NOS\",\"tissue\":\"Breast\"}," +
+            "{\"code\":\"IDC\",\"name\":\"Breast Invasive Ductal Carcinoma\",\"mainType\":\"Breast Cancer\",\"tissue\":\"Breast\"}," +
+            "{\"code\":\"THAP\",\"name\":\"Anaplastic Thyroid Cancer\",\"mainType\":{\"name\":\"Thyroid Cancer\"},\"tissue\":\"Thyroid\"}" +
+            "]";
+    private static final String DMP_TUMOR_TYPES = "{\"results\":[" +
+            "{\"code\":\"THAP\",\"tissue_type\":\"Thyroid\",\"tumor_type\":\"Anaplastic Thyroid Cancer\"}]}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/tumorTypes", exchange -> respond(exchange, TUMOR_TYPES));
+        server.createContext("/tumor_types", exchange -> respond(exchange, DMP_TUMOR_TYPES));
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void getMainType_resolvesNamesAndCodesFromMemory() throws Exception {
+        OncotreeDictionary oncotree = dictionary(baseUrl).start();
+
+        assertEquals("Thyroid Cancer", oncotree.getMainType("THAP"));
+        assertEquals("Thyroid Cancer", oncotree.getMainType("anaplastic thyroid cancer"));
+        assertEquals("Breast Cancer", oncotree.getMainType("Breast"));
+        assertEquals("Breast Cancer, NOS", oncotree.getMainType("Invasive Breast/Other"));
+        assertEquals("", oncotree.getMainType("Not found"));
+        oncotree.getMainType("THAP");
+
+        assertEquals(2, requests.get());
+        assertEquals(Collections.singleton(new TumorType("THAP", "Thyroid", "Anaplastic Thyroid Cancer")),
+                oncotree.retrieve());
+        oncotree.close();
+    }
+
+    @Test
+    public void start_whenOncotreeIsDown_usesLastSnapshot() throws Exception {
+        dictionary(baseUrl).start().close();
+
+        OncotreeDictionary offline = dictionary("http://localhost:1/").start();
+
+        assertEquals("Thyroid Cancer", offline.getMainType("THAP"));
+        assertEquals(1, offline.retrieve().size());
+        assertEquals("snapshot", offline.getStats().get("source"));
+        offline.close();
+    }
+
+    @Test
+    public void start_whenOncotreeIsDownWithoutSnapshot_usesBundledSnapshot() throws Exception {
+        OncotreeDictionary offline = dictionary("http://localhost:1/").start();
+
+        assertEquals("Glioma", offline.getMainType("GB"));
+        assertEquals("Thyroid Cancer", offline.getMainType("Anaplastic Thyroid Cancer"));
+        assertTrue(offline.retrieve().contains(new TumorType("GB", "Brain_CNS", "Glioblastoma")));
+        assertEquals("snapshot", offline.getStats().get("source"));
+        offline.close();
+    }
+
+    @Test
+    public void refresh_whenOncotreeIsDown_keepsLoadedTumorTypes() throws Exception {
+        OncotreeDictionary oncotree = dictionary(baseUrl).start();
+        server.stop(0);
+
+        oncotree.refresh(false);
+
+        assertEquals("Thyroid Cancer", oncotree.getMainType("THAP"));
+        assertTrue((Long) oncotree.getStats().get("loadFailures") > 0);
+        oncotree.close();
+    }
+
+    private OncotreeDictionary dictionary(String url) throws Exception {
+        return new OncotreeDictionary(url, url + "tumor_types", folder.getRoot(), 86400000L, 1000);
+    }
+
+    private void respond(HttpExchange exchange, String json) throws IOException {
+        requests.incrementAndGet();
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
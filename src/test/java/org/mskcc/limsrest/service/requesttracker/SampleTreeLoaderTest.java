@@ -0,0 +1,63 @@
+package org.mskcc.limsrest.service.requesttracker;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import com.velox.sloan.cmo.recmodels.SampleModel;
+import com.velox.sloan.cmo.recmodels.SeqAnalysisSampleQCModel;
+import org.junit.Before;
+import org.junit.Test;
+import org.mskcc.domain.sample.CmoSampleInfo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class SampleTreeLoaderTest {
+    private final DataRecordManager drmMock = mock(DataRecordManager.class);
+    private final User userMock = mock(User.class);
+    private final DataRecord root1 = record(1L);
+    private final DataRecord root2 = record(2L);
+    private final DataRecord child = record(3L);
+    private final DataRecord otherProjectChild = record(4L);
+
+    @Before
+    public void setUp() throws Exception {
+        List<DataRecord> roots = Arrays.asList(root1, root2);
+        List<DataRecord> children = Collections.singletonList(child);
+        when(drmMock.getChildrenOfType(roots, SampleModel.DATA_TYPE_NAME, userMock))
+                .thenReturn(Arrays.asList(Arrays.asList(child, otherProjectChild), Collections.emptyList()));
+        when(drmMock.getChildrenOfType(children, SampleModel.DATA_TYPE_NAME, userMock))
+                .thenReturn(Collections.singletonList(Collections.emptyList()));
+        when(drmMock.getChildrenOfType(roots, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, userMock))
+                .thenReturn(Arrays.asList(Collections.emptyList(), Collections.emptyList()));
+        when(drmMock.getChildrenOfType(children, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, userMock))
+                .thenReturn(Collections.singletonList(Collections.emptyList()));
+        when(drmMock.getChildrenOfType(roots, CmoSampleInfo.DATA_TYPE_NAME, userMock))
+                .thenReturn(Arrays.asList(Collections.emptyList(), Collections.emptyList()));
+        when(drmMock.getDescendantsOfType(roots, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, userMock))
+                .thenReturn(Arrays.asList(Collections.emptyList(), Collections.emptyList()));
+    }
+
+    @Test
+    public void load_fetchesEachLevelOnce() throws Exception {
+        SampleTreeLoader loader = new SampleTreeLoader(drmMock, userMock);
+        loader.load(Arrays.asList(root1, root2), record -> record != otherProjectChild);
+
+        assertArrayEquals(new DataRecord[]{child, otherProjectChild}, loader.getSampleChildren(root1));
+        assertEquals(0, loader.getSampleChildren(child).length);
+        // Samples outside of the project are not traversed
+        assertNull(loader.getSampleChildren(otherProjectChild));
+        verify(drmMock, times(2)).getChildrenOfType(anyListOf(DataRecord.class), eq(SampleModel.DATA_TYPE_NAME),
+                eq(userMock));
+    }
+
+    private static DataRecord record(long recordId) {
+        DataRecord record = mock(DataRecord.class);
+        when(record.getRecordId()).thenReturn(recordId);
+        return record;
+    }
+}
@@ -0,0 +1,40 @@
+package org.mskcc.limsrest.service.sampletracker;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class WESSampleDataStoreTest {
+    private final List<WESSampleData> rows = Collections.singletonList(mock(WESSampleData.class));
+
+    @Test
+    public void reuse_returnsRowsWhileInputsAreUnchanged() {
+        WESSampleDataStore store = new WESSampleDataStore(86400000L);
+        store.put(1L, 42, "P-0000001-T01-WES", new HashSet<>(Arrays.asList(1L, 10L, 11L)), rows, 1000L);
+
+        assertEquals(1000L, store.getWatermark(Arrays.asList(1L, 2L)));
+        assertSame(rows, store.reuse(1L, 42, changes(Collections.singleton(12L)), 2000L));
+        assertEquals(2000L, store.getWatermark(Collections.singletonList(1L)));
+        assertEquals(-1L, store.getWatermark(Collections.singletonList(2L)));
+    }
+
+    @Test
+    public void reuse_rebuildsChangedTrackers() {
+        WESSampleDataStore store = new WESSampleDataStore(86400000L);
+        store.put(1L, 42, "P-0000001-T01-WES", new HashSet<>(Arrays.asList(1L, 10L, 11L)), rows, 1000L);
+
+        assertNull(store.reuse(1L, 43, WESSampleDataStore.Changes.NONE, 2000L));
+        assertNull(store.reuse(1L, 42, changes(Collections.singleton(11L)), 2000L));
+        assertNull(store.reuse(1L, 42, new WESSampleDataStore.Changes(Collections.emptySet(),
+                Collections.singleton("P-0000001-T01-WES")), 2000L));
+        assertNull(store.reuse(1L, 42, WESSampleDataStore.Changes.NONE, 1000L + 86400000L));
+        assertNull(store.reuse(2L, 42, WESSampleDataStore.Changes.NONE, 2000L));
+    }
+
+    private static WESSampleDataStore.Changes changes(Set<Long> recordIds) {
+        return new WESSampleDataStore.Changes(recordIds, Collections.emptySet());
+    }
+}
@@ -0,0 +1,157 @@
+package org.mskcc.limsrest.service.timeline;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class ProjectTimelineStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final DataRecordManager drmMock = mock(DataRecordManager.class);
+    private final User userMock = mock(User.class);
+
+    @Test
+    public void getEvents_buildsOnceThenQueriesSamplesModifiedSinceWatermark() throws Exception {
+        DataRecord request = record(1L);
+        DataRecord received = record(10L);
+        DataRecord library = record(11L);
+        when(request.getDescendantsOfType(ProjectTimelineStore.SAMPLE_DATA_TYPE, userMock))
+                .thenReturn(new ArrayList<>(Arrays.asList(received, library)));
+        when(request.getDescendantsOfType(ProjectTimelineStore.PLATE_DATA_TYPE, userMock))
+                .thenReturn(new ArrayList<>());
+        when(drmMock.getFieldsForRecords(Arrays.asList(received, library), userMock)).thenReturn(Arrays.asList(
+                sampleFields("06000_B", "Received", 1000000L, 1000000L),
+                sampleFields("06000_B", "In Process - Library Preparation", 1000000L, 2000000L)));
+
+        String refreshQuery = "RequestId like '%06000_B%' AND DateModified > " +
+                (2000000L - ProjectTimelineStore.WATERMARK_OVERLAP_MILLIS);
+        DataRecord otherRequest = record(12L);
+        when(drmMock.queryDataRecords(ProjectTimelineStore.SAMPLE_DATA_TYPE, refreshQuery, userMock))
+                .thenReturn(Arrays.asList(library, otherRequest));
+        Map<String, Object> completed = sampleFields("06000_B", "Completed - Library Preparation", 1000000L, 3000000L);
+        when(drmMock.getFieldsForRecords(Arrays.asList(library, otherRequest), userMock)).thenReturn(Arrays.asList(
+                completed, sampleFields("06000_BB", "Received", 1000000L, 3000000L)));
+        when(drmMock.getFieldsForRecords(Collections.singletonList(library), userMock))
+                .thenReturn(Collections.singletonList(completed));
+        when(drmMock.getParentsOfType(Collections.singletonList(library), ProjectTimelineStore.PLATE_DATA_TYPE,
+                userMock)).thenReturn(Collections.singletonList(Collections.emptyList()));
+
+        ProjectTimelineStore store = new ProjectTimelineStore(folder.getRoot(), 86400000L);
+        List<ProjectTimelineStore.Event> built = store.getEvents(request, "06000_B", drmMock, userMock);
+        // a new store reads the materialized timeline from disk
+        List<ProjectTimelineStore.Event> refreshed = new ProjectTimelineStore(folder.getRoot(), 86400000L)
+                .getEvents(request, "06000_B", drmMock, userMock);
+
+        assertEquals(2, built.size());
+        assertEquals(0L, built.get(1).getEnd());
+        assertEquals(2, refreshed.size());
+        assertEquals("Received", refreshed.get(0).getTaskName());
+        assertEquals(1000000L, refreshed.get(0).getEnd());
+        assertEquals("Library Preparation", refreshed.get(1).getTaskName());
+        assertEquals(3000000L, refreshed.get(1).getEnd());
+        verify(request, times(1)).getDescendantsOfType(ProjectTimelineStore.SAMPLE_DATA_TYPE, userMock);
+    }
+
+    @Test
+    public void getEvents_refreshesDescendantsWithOtherRequestIdAndTheirNewChildren() throws Exception {
+        DataRecord request = record(1L);
+        DataRecord received = record(10L);
+        DataRecord pool = record(13L);
+        DataRecord aliquot = record(14L);
+        when(request.getDescendantsOfType(ProjectTimelineStore.SAMPLE_DATA_TYPE, userMock))
+                .thenReturn(new ArrayList<>(Arrays.asList(received, pool)));
+        when(request.getDescendantsOfType(ProjectTimelineStore.PLATE_DATA_TYPE, userMock))
+                .thenReturn(new ArrayList<>());
+        when(drmMock.getFieldsForRecords(Arrays.asList(received, pool), userMock)).thenReturn(Arrays.asList(
+                sampleFields("06000_B", "Received", 1000000L, 1000000L),
+                sampleFields("Pool-06000_C", "In Process - Pooling of Sample Libraries", 1000000L, 2000000L)));
+
+        long since = 2000000L - ProjectTimelineStore.WATERMARK_OVERLAP_MILLIS;
+        when(drmMock.queryDataRecords(ProjectTimelineStore.SAMPLE_DATA_TYPE, "RecordId in (10,13) AND " +
+                "DateModified > " + since, userMock)).thenReturn(Collections.singletonList(pool));
+        when(drmMock.getChildrenOfType(Collections.singletonList(pool), ProjectTimelineStore.SAMPLE_DATA_TYPE,
+                userMock)).thenReturn(Collections.singletonList(Collections.singletonList(aliquot)));
+        when(drmMock.getFieldsForRecords(Arrays.asList(pool, aliquot), userMock)).thenReturn(Arrays.asList(
+                sampleFields("Pool-06000_C", "Completed - Pooling of Sample Libraries", 1000000L, 3000000L),
+                sampleFields("Pool-06000_C", "Received", 3000000L, 3000000L)));
+        when(drmMock.getParentsOfType(Arrays.asList(pool, aliquot), ProjectTimelineStore.PLATE_DATA_TYPE,
+                userMock)).thenReturn(Arrays.asList(Collections.emptyList(), Collections.emptyList()));
+
+        ProjectTimelineStore store = new ProjectTimelineStore(folder.getRoot(), 86400000L);
+        store.getEvents(request, "06000_B", drmMock, userMock);
+        List<ProjectTimelineStore.Event> refreshed = new ProjectTimelineStore(folder.getRoot(), 86400000L)
+                .getEvents(request, "06000_B", drmMock, userMock);
+
+        assertEquals(3, refreshed.size());
+        assertEquals(3000000L, refreshed.get(1).getEnd());
+        assertEquals("Received", refreshed.get(2).getTaskName());
+        verify(request, times(1)).getDescendantsOfType(ProjectTimelineStore.SAMPLE_DATA_TYPE, userMock);
+    }
+
+    @Test(timeout = 10000)
+    public void getEvents_whileBuildingOtherRequest_doesNotWait() throws Exception {
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DataRecord large = record(1L);
+        when(large.getDescendantsOfType(ProjectTimelineStore.SAMPLE_DATA_TYPE, userMock)).thenAnswer(invocation -> {
+            building.countDown();
+            release.await();
+            return new ArrayList<>();
+        });
+        when(large.getDescendantsOfType(ProjectTimelineStore.PLATE_DATA_TYPE, userMock)).thenReturn(new ArrayList<>());
+        DataRecord small = record(2L);
+        when(small.getDescendantsOfType(anyString(), eq(userMock))).thenReturn(new ArrayList<>());
+        ProjectTimelineStore store = new ProjectTimelineStore(folder.getRoot(), 86400000L);
+
+        Thread build = new Thread(() -> {
+            try {
+                store.getEvents(large, "06000_B", drmMock, userMock);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        build.start();
+        building.await();
+
+        assertEquals(0, store.getEvents(small, "07000", drmMock, userMock).size());
+        release.countDown();
+        build.join();
+    }
+
+    @Test
+    public void toEvent_platesEndWhenCreated() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("ExemplarPlateStatus", "Completed - Library Preparation");
+        fields.put("DateCreated", 5000L);
+
+        ProjectTimelineStore.Event event = ProjectTimelineStore.toEvent(fields, "ExemplarPlateStatus", "06000_B", true);
+
+        assertEquals(5000L, event.getEnd());
+        assertEquals("06000_B", event.getRequestId());
+    }
+
+    private static Map<String, Object> sampleFields(String requestId, String status, long created, long modified) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("RequestId", requestId);
+        fields.put("ExemplarSampleStatus", status);
+        fields.put("DateCreated", created);
+        fields.put("DateModified", modified);
+        return fields;
+    }
+
+    private static DataRecord record(long recordId) {
+        DataRecord record = mock(DataRecord.class);
+        when(record.getRecordId()).thenReturn(recordId);
+        return record;
+    }
+}
@@ -0,0 +1,84 @@
+package org.mskcc.limsrest.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class AttachmentSpoolTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void put_thenGet_readsFromDisk() throws Exception {
+        AttachmentSpool spool = new AttachmentSpool(folder.getRoot(), 100);
+
+        spool.release(spool.put("1", "report.pdf", new byte[]{1, 2, 3}));
+        AttachmentSpool.Entry entry = spool.get("1");
+
+        assertEquals("report.pdf", entry.getFileName());
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(entry.getFile().toPath()));
+        assertEquals(3, entry.getLength());
+        spool.release(entry);
+    }
+
+    @Test
+    public void put_whenFull_deletesLeastRecentlyUsed() throws Exception {
+        AttachmentSpool spool = new AttachmentSpool(folder.getRoot(), 10);
+        AttachmentSpool.Entry first = spool.put("1", "a.pdf", new byte[6]);
+        spool.release(first);
+        AttachmentSpool.Entry second = spool.put("2", "b.pdf", new byte[4]);
+        spool.release(second);
+        spool.release(spool.get("1"));
+
+        spool.release(spool.put("3", "c.pdf", new byte[4]));
+
+        assertTrue(first.getFile().exists());
+        assertFalse(second.getFile().exists());
+        assertNull(spool.get("2"));
+        assertEquals(10L, spool.getStats().get("bytes"));
+    }
+
+    @Test
+    public void put_largerThanSpool_isKeptWhilePinned() throws Exception {
+        AttachmentSpool spool = new AttachmentSpool(folder.getRoot(), 10);
+
+        AttachmentSpool.Entry entry = spool.put("1", "run.pdf", new byte[20]);
+
+        assertTrue(entry.getFile().exists());
+        assertEquals(20L, entry.getLength());
+        spool.release(entry);
+        assertFalse(entry.getFile().exists());
+    }
+
+    @Test
+    public void put_whenFull_keepsPinnedEntriesUntilReleased() throws Exception {
+        AttachmentSpool spool = new AttachmentSpool(folder.getRoot(), 10);
+        AttachmentSpool.Entry streaming = spool.put("1", "a.pdf", new byte[6]);
+
+        spool.release(spool.put("2", "b.pdf", new byte[6]));
+
+        assertTrue(streaming.getFile().exists());
+        assertNull(spool.get("2"));
+        spool.release(streaming);
+        assertTrue(streaming.getFile().exists());
+        assertEquals(6L, spool.getStats().get("bytes"));
+    }
+
+    @Test
+    public void put_ofPinnedRecord_deletesOldFileOnRelease() throws Exception {
+        AttachmentSpool spool = new AttachmentSpool(folder.getRoot(), 100);
+        AttachmentSpool.Entry old = spool.put("1", "a.pdf", new byte[]{1});
+
+        AttachmentSpool.Entry replaced = spool.put("1", "a.pdf", new byte[]{2});
+
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(old.getFile().toPath()));
+        spool.release(old);
+        assertFalse(old.getFile().exists());
+        assertArrayEquals(new byte[]{2}, Files.readAllBytes(replaced.getFile().toPath()));
+        spool.release(replaced);
+    }
+}
@@ -0,0 +1,92 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class DataRecordFieldCacheTest {
+    private final DataRecordManager drmMock = mock(DataRecordManager.class);
+    private final User userMock = mock(User.class);
+    private final List<DataRecord> requests = Collections.singletonList(mock(DataRecord.class));
+    private final Map<String, Object> requestFields = Collections.singletonMap("RequestId", "06302_A");
+
+    @Before
+    public void setUp() throws Exception {
+        when(drmMock.queryDataRecords(eq("Request"), anyString(), any(User.class))).thenReturn(requests);
+        when(drmMock.getFieldsForRecords(requests, userMock)).thenReturn(Collections.singletonList(requestFields));
+    }
+
+    @Test
+    public void getFields_whenCached_doesNotQueryAgain() throws Exception {
+        DataRecordFieldCache cache = new DataRecordFieldCache(10, 60000);
+
+        cache.getFields("Request", "RequestId", "06302_A", drmMock, userMock);
+        List<Map<String, Object>> fields = cache.getFields("Request", "RequestId", "06302_A", drmMock, userMock);
+
+        assertEquals("06302_A", fields.get(0).get("RequestId"));
+        verify(drmMock, times(1)).queryDataRecords("Request", "RequestId = '06302_A'", userMock);
+        assertEquals(1L, cache.getStats().get("hits"));
+        assertEquals(1L, cache.getStats().get("misses"));
+    }
+
+    @Test
+    public void getFields_afterInvalidate_queriesAgain() throws Exception {
+        DataRecordFieldCache cache = new DataRecordFieldCache(10, 60000);
+
+        cache.getFields("Request", "RequestId", "06302_A", drmMock, userMock);
+        cache.invalidate("Request", "RequestId", "06302_A");
+        cache.getFields("Request", "RequestId", "06302_A", drmMock, userMock);
+
+        verify(drmMock, times(2)).queryDataRecords("Request", "RequestId = '06302_A'", userMock);
+    }
+
+    @Test
+    public void getFields_whenFull_evictsLeastRecentlyUsed() throws Exception {
+        DataRecordFieldCache cache = new DataRecordFieldCache(1, 60000);
+
+        cache.getFields("Request", "RequestId", "06302_A", drmMock, userMock);
+        cache.getFields("Request", "RequestId", "06302_B", drmMock, userMock);
+        cache.getFields("Request", "RequestId", "06302_A", drmMock, userMock);
+
+        verify(drmMock, times(2)).queryDataRecords("Request", "RequestId = '06302_A'", userMock);
+        assertEquals(2L, cache.getStats().get("evicted"));
+    }
+
+    @Test
+    public void getFields_ofManyValues_queriesMissesInOneCall() throws Exception {
+        DataRecordFieldCache cache = new DataRecordFieldCache(10, 60000);
+        cache.getFields("Request", "RequestId", "06302_A", drmMock, userMock);
+
+        Map<String, List<Map<String, Object>>> fields = cache.getFields("Request", "RequestId",
+                Arrays.asList("06302_A", "06302_a", "07000"), drmMock, userMock);
+
+        verify(drmMock, times(1)).queryDataRecords("Request", "RequestId IN ('06302_a','07000')", userMock);
+        assertEquals("06302_A", fields.get("06302_A").get(0).get("RequestId"));
+        assertEquals("06302_A", fields.get("06302_a").get(0).get("RequestId"));
+        assertTrue(fields.get("07000").isEmpty());
+        assertEquals(1L, cache.getStats().get("hits"));
+
+        cache.getFields("Request", "RequestId", Collections.singletonList("07000"), drmMock, userMock);
+        verify(drmMock, times(2)).queryDataRecords(eq("Request"), anyString(), eq(userMock));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void getFields_returnsReadOnlyMaps() throws Exception {
+        DataRecordFieldCache cache = new DataRecordFieldCache(10, 60000);
+
+        cache.getFields("Request", "RequestId", "06302_A", drmMock, userMock).get(0).put("RequestId", "changed");
+    }
+}
@@ -0,0 +1,106 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import com.velox.sloan.cmo.recmodels.SampleModel;
+import com.velox.sloan.cmo.recmodels.SeqAnalysisSampleQCModel;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.stubbing.Answer;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class SampleStageResolverTest {
+    private final DataRecordManager drmMock = mock(DataRecordManager.class);
+    private final User userMock = mock(User.class);
+    private final Map<DataRecord, Map<String, Object>> fields = new HashMap<>();
+    private final Map<DataRecord, List<DataRecord>> sampleChildren = new HashMap<>();
+    private final Map<DataRecord, List<DataRecord>> qcChildren = new HashMap<>();
+
+    private final DataRecord blood = sample(1L, "06302_A", "Blood", "Received");
+    private final DataRecord dna = sample(2L, "06302_A", "DNA", "Completed - DNA Extraction");
+    private final DataRecord otherRequestDna = sample(3L, "07000", "DNA", "Completed - Library Preparation");
+    private final DataRecord library = sample(4L, "06302_A", "DNA Library", "In Process - Library Preparation");
+    private final DataRecord secondBlood = sample(5L, "06302_A", "Blood", "");
+
+    @Before
+    public void setUp() throws Exception {
+        sampleChildren.put(blood, Arrays.asList(dna, otherRequestDna));
+        sampleChildren.put(dna, Collections.singletonList(library));
+        sampleChildren.put(secondBlood, Collections.singletonList(dna));
+        when(drmMock.getFieldsForRecords(anyListOf(DataRecord.class), eq(userMock))).thenAnswer(
+                invocation -> records(invocation.getArguments()[0]).stream().map(fields::get).collect(Collectors.toList()));
+        when(drmMock.getChildrenOfType(anyListOf(DataRecord.class), eq(SampleModel.DATA_TYPE_NAME), eq(userMock)))
+                .thenAnswer(children(sampleChildren));
+        when(drmMock.getChildrenOfType(anyListOf(DataRecord.class), eq(SeqAnalysisSampleQCModel.DATA_TYPE_NAME),
+                eq(userMock))).thenAnswer(children(qcChildren));
+    }
+
+    @Test
+    public void getMostAdvancedSampleStatus_usesLatestCompleteStatusOfTheRequest() throws Exception {
+        SampleStageResolver resolver = new SampleStageResolver(null, drmMock, userMock);
+        resolver.load(Arrays.asList(blood, secondBlood));
+
+        assertEquals("Completed - DNA Extraction", resolver.getMostAdvancedSampleStatus(blood, "06302_A"));
+        assertEquals("Completed - DNA Extraction", resolver.getMostAdvancedSampleStatus(secondBlood, "06302_A"));
+        assertEquals("Completed - DNA Extraction", resolver.getMostAdvancedSampleStatus(blood, "06302_A"));
+
+        // one call per tree depth, samples of other requests are not descended into
+        verify(drmMock, times(3)).getChildrenOfType(anyListOf(DataRecord.class), eq(SampleModel.DATA_TYPE_NAME),
+                eq(userMock));
+    }
+
+    @Test
+    public void getMostAdvancedSampleStatus_whenSequencingPassed_returnsSequencingAnalysis() throws Exception {
+        qcChildren.put(library, Collections.singletonList(qc(10L, "Passed", true)));
+        SampleStageResolver resolver = new SampleStageResolver(null, drmMock, userMock);
+
+        assertEquals("Completed - Illumina Sequencing Analysis", resolver.getMostAdvancedSampleStatus(blood, "06302_A"));
+    }
+
+    @Test
+    public void getMostAdvancedLimsStage_whenSequencingFailed_returnsFailedStatus() throws Exception {
+        qcChildren.put(library, Collections.singletonList(qc(10L, "Failed", false)));
+        SampleStageResolver resolver = new SampleStageResolver(null, drmMock, userMock);
+
+        assertEquals("Failed - Illumina Sequencing Analysis", resolver.getMostAdvancedLimsStage(blood, "06302_A"));
+    }
+
+    private DataRecord sample(long recordId, String requestId, String type, String status) {
+        DataRecord record = mock(DataRecord.class);
+        when(record.getRecordId()).thenReturn(recordId);
+        Map<String, Object> recordFields = new HashMap<>();
+        recordFields.put(SampleModel.SAMPLE_ID, requestId + "_" + recordId);
+        recordFields.put(SampleModel.REQUEST_ID, requestId);
+        recordFields.put(SampleModel.EXEMPLAR_SAMPLE_TYPE, type);
+        recordFields.put(SampleModel.EXEMPLAR_SAMPLE_STATUS, status);
+        fields.put(record, recordFields);
+        return record;
+    }
+
+    private DataRecord qc(long recordId, String seqQcStatus, boolean passedQc) {
+        DataRecord record = mock(DataRecord.class);
+        when(record.getRecordId()).thenReturn(recordId);
+        Map<String, Object> recordFields = new HashMap<>();
+        recordFields.put(SeqAnalysisSampleQCModel.SEQ_QCSTATUS, seqQcStatus);
+        recordFields.put(SeqAnalysisSampleQCModel.PASSED_QC, passedQc);
+        fields.put(record, recordFields);
+        return record;
+    }
+
+    private static Answer<List<List<DataRecord>>> children(Map<DataRecord, List<DataRecord>> children) {
+        return invocation -> records(invocation.getArguments()[0]).stream()
+                .map(record -> children.getOrDefault(record, Collections.emptyList()))
+                .collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<DataRecord> records(Object argument) {
+        return (List<DataRecord>) argument;
+    }
+}
@@ -0,0 +1,71 @@
+package org.mskcc.limsrest.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+    @Test
+    public void execute_concurrentCallsOfOneKeyShareOneLoad() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(0);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> singleFlight.execute("getRequestTracking?06000_A", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                release.await();
+                return "tracking";
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<String> second = executor.submit(() -> singleFlight.execute("getRequestTracking?06000_A", () -> {
+                loads.incrementAndGet();
+                return "second load";
+            }));
+            while (!Long.valueOf(1).equals(singleFlight.getStats().get("coalesced")))
+                Thread.sleep(1);
+            release.countDown();
+
+            assertEquals("tracking", first.get(5, TimeUnit.SECONDS));
+            assertEquals("tracking", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+            // no reuse window, the next call loads again
+            assertEquals("third", singleFlight.execute("getRequestTracking?06000_A", () -> "third"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void execute_reusesResultsWithinWindowButNotFailures() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(60000);
+
+        assertEquals("first", singleFlight.execute("getProjectQc?06000_A", () -> "first"));
+        assertEquals("first", singleFlight.execute("getProjectQc?06000_A", () -> "second"));
+        assertEquals("other", singleFlight.execute("getProjectQc?06000_B", () -> "other"));
+
+        try {
+            singleFlight.execute("getRequestSamples?06000_A", () -> {
+                throw new IOException("LIMS down");
+            });
+            fail("Expected the load to fail");
+        } catch (IOException e) {
+            assertEquals("LIMS down", e.getMessage());
+        }
+        assertEquals("retried", singleFlight.execute("getRequestSamples?06000_A", () -> "retried"));
+        assertEquals(1L, singleFlight.getStats().get("reused"));
+    }
+
+    @Test
+    public void key_trimsParametersAndKeepsTheirOrder() {
+        assertEquals("getProjectQc?06000_A|06000_B", SingleFlight.key("getProjectQc", " 06000_A", "06000_B "));
+        assertNotEquals(SingleFlight.key("getProjectQc", "06000_A", "06000_B"),
+                SingleFlight.key("getProjectQc", "06000_B", "06000_A"));
+    }
+}
@@ -7,12 +7,6 @@ import static org.mskcc.limsrest.util.Utils.selectLarger;
 
 public class UtilsTest {
 
-    @Test
-    public void getOncotreeTumorType(){
-        assertEquals("Thyroid Cancer", Utils.getOncotreeTumorType("THAP"));
-        assertEquals("Breast Cancer, NOS", Utils.getOncotreeTumorType("Breast"));
-    }
-
     @Test
     public void isCompleteStatus(){
         assertTrue(Utils.isSequencingCompleteStatus("Completed - Illumina Sequencing"));
@@ -0,0 +1,69 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.api.user.User;
+import com.velox.api.workflow.Workflow;
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.junit.Before;
+import org.junit.Test;
+import org.mskcc.limsrest.ConnectionLIMS;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class WorkflowStageRefresherTest {
+    private final ConnectionLIMS conn = mock(ConnectionLIMS.class);
+    private final VeloxConnection vConn = mock(VeloxConnection.class, RETURNS_DEEP_STUBS);
+    private final User user = mock(User.class);
+    private final List<Workflow> workflows = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        ConnectionLIMS.Lease lease = mock(ConnectionLIMS.Lease.class);
+        when(conn.lease()).thenReturn(lease);
+        when(lease.getConnection()).thenReturn(vConn);
+        when(vConn.getUser()).thenReturn(user);
+        when(vConn.getDataMgmtServer().getWorkflowManager(user).getLatestWorkflowList(user)).thenReturn(workflows);
+        workflows.add(workflow("DNA Extraction", StatusTrackerConfig.STAGE_EXTRACTION));
+    }
+
+    @Test
+    public void refresh_bumpsVersionOnlyWhenWorkflowsChange() throws Exception {
+        WorkflowStageRefresher refresher = new WorkflowStageRefresher(conn, 60000L);
+        long version = refresher.refresh().getVersion();
+
+        assertEquals(version, refresher.refresh().getVersion());
+        assertEquals("Nucleic Acid Extraction - Completed",
+                StatusTrackerConfig.getLimsStageFromStatus(conn, "Completed - DNA Extraction").toString());
+        assertEquals(StatusTrackerConfig.STAGE_AWAITING_PROCESSING,
+                StatusTrackerConfig.getLimsStageFromStatus(conn, "Completed - New Library Prep").getStageName());
+
+        workflows.add(workflow("New Library Prep", StatusTrackerConfig.STAGE_LIBRARY_PREP));
+        StatusTrackerConfig.WorkflowStages stages = refresher.refresh();
+
+        assertEquals(version + 1, stages.getVersion());
+        assertEquals("Library Preparation - Completed",
+                StatusTrackerConfig.getLimsStageFromStatus(conn, "Completed - New Library Prep").toString());
+        assertEquals(version + 1, refresher.getStats().get("version"));
+    }
+
+    @Test
+    public void refresh_whenLimsFails_keepsStages() throws Exception {
+        WorkflowStageRefresher refresher = new WorkflowStageRefresher(conn, 60000L);
+        StatusTrackerConfig.WorkflowStages loaded = refresher.refresh();
+        when(vConn.getDataMgmtServer()).thenThrow(new IllegalStateException("LIMS is down"));
+
+        assertSame(loaded, refresher.refresh());
+        assertEquals(StatusTrackerConfig.STAGE_EXTRACTION,
+                StatusTrackerConfig.getLimsStageFromStatus(conn, "Completed - DNA Extraction").getStageName());
+    }
+
+    private static Workflow workflow(String name, String stage) throws Exception {
+        Workflow workflow = mock(Workflow.class);
+        when(workflow.getWorkflowName()).thenReturn(name);
+        when(workflow.getShortDesc()).thenReturn(stage);
+        when(workflow.getWorkflowOptions()).thenReturn(new HashMap<>());
+        return workflow;
+    }
+}